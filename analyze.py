@@ -29,6 +29,7 @@ import typer
 from rich.console import Console
 from rich.table import Table
 
+from utils.jvm.features import FEATURE_COLUMNS, load_features
 from utils.matching.semantic import (
     build_detection_text,
     cosine_similarity,
@@ -144,6 +145,25 @@ def load_manifest(path: Path) -> dict[str, Any]:
     return load_json(path)
 
 
+def join_code_features(df: pd.DataFrame, assignment: str) -> pd.DataFrame:
+    """Left-join the parsed-once code features (utils.jvm.features) by student and question.
+
+    Feature columns get a "code_" prefix; the stored table is refreshed first,
+    which only re-parses submissions that changed since it was written.
+    """
+    files = [
+        (path.parent.name, path.stem, path)
+        for path in sorted((Path("authentic_seeded") / assignment).glob("*/Q*.java"))
+    ]
+    records = load_features(assignment, files).records()
+    if not records:
+        return df
+    columns = ["parsed", "clean", *FEATURE_COLUMNS]
+    features = pd.DataFrame(records)[["student", "question", *columns]]
+    features = features.rename(columns={c: f"code_{c}" for c in columns})
+    return df.merge(features, on=["student", "question"], how="left")
+
+
 def discover_strategies(detections_dir: Path) -> list[str]:
     return sorted(
         [
@@ -155,19 +175,30 @@ def discover_strategies(detections_dir: Path) -> list[str]:
 
 
 def load_detections_for_strategy(strategy_dir: Path) -> list[dict[str, Any]]:
+    """Result files of a strategy; "partial" ones still hold the models that answered."""
     results = []
     for f in strategy_dir.glob("*.json"):
         if f.name.startswith("_"):
             continue
         try:
             data = load_json(f)
-            if data.get("status") == "success":
+            if data.get("status") in ("success", "partial"):
                 results.append(data)
         except Exception:
             continue
     return results
 
 
+def answered_models(det: dict[str, Any]) -> tuple[dict[str, dict[str, Any]], int]:
+    """The model entries of a result file that hold an answer, and how many failed.
+
+    A failed call is missing data, not "no misconception", so it is left out.
+    """
+    models = det.get("models", {})
+    answered = {m: p for m, p in models.items() if p.get("status") != "error"}
+    return answered, len(models) - len(answered)
+
+
 def get_expected(manifest: dict[str, Any], student: str, question: str) -> tuple[str | None, bool]:
     for s in manifest.get("students", []):
         if s.get("folder_name") == student:
@@ -560,6 +591,7 @@ def build_scored_df(
     rows: list[dict[str, Any]] = []
     file_rows: list[dict[str, Any]] = []
     det_count = 0
+    failed_calls = 0
 
     for strategy in strategies:
         strategy_dir = detections_dir / strategy
@@ -577,7 +609,9 @@ def build_scored_df(
                 gt_map.get(expected_id, {}).get("category", "") if expected_id else ""
             )
 
-            for model, payload in det.get("models", {}).items():
+            answered, failed = answered_models(det)
+            failed_calls += failed
+            for model, payload in answered.items():
                 mis_list = payload.get("misconceptions", []) or []
                 null_flags = [
                     is_null_template_misconception(mis, null_embeddings, null_template_threshold)
@@ -632,6 +666,11 @@ def build_scored_df(
                 )
 
     console.print(f"[green]Total detections processed: {det_count}[/green]")
+    if failed_calls:
+        console.print(
+            f"[yellow]Skipped {failed_calls} failed model calls; "
+            f"`miscons.py resume` retries them[/yellow]"
+        )
     return pd.DataFrame(rows), pd.DataFrame(file_rows)
 
 
@@ -4474,6 +4513,9 @@ def analyze_multi(
         NOISE_FLOOR_THRESHOLD,
         help="Noise floor threshold - detections below this are filtered (default: 0.45)",
     ),
+    code_features: bool = typer.Option(
+        False, help="Join parsed code features (harness.py features) onto results.csv"
+    ),
 ):
     """Run multi-assignment analysis with semantic matching and statistical rigor."""
     console.print("[bold cyan]═══ Multi-Assignment Analysis v2 (Semantic) ═══[/bold cyan]")
@@ -4525,6 +4567,8 @@ def analyze_multi(
 
         if not df.empty:
             df["assignment"] = assignment
+            if code_features:
+                df = join_code_features(df, assignment)
             all_dfs.append(df)
 
         if not compliance_df.empty:
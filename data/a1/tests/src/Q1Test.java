@@ -1,18 +1,16 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * JUnit 5 tests for Q1: Acceleration Calculator
  * Formula: a = (v1 - v0) / t
  */
+@ExtendWith(ResourceProfiler.class)
 public class Q1Test {
 
     /**
@@ -20,18 +18,7 @@ public class Q1Test {
      * and capture the output.
      */
     private String runWithInput(String input) throws Exception {
-        // Redirect stdin
-        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes());
-        System.setIn(in);
-
-        // Redirect stdout
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(out));
-
-        // Run student code - class name will be determined at runtime
-        Q1.main(new String[]{});
-
-        return out.toString();
+        return StdioRouter.capture(input, () -> Q1.main(new String[]{}));
     }
 
     @Test
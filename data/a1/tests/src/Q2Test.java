@@ -1,27 +1,20 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * JUnit 5 tests for Q2: Road Trip Cost Calculator
  * Formula: cost = (distance / mpg) * pricePerGallon
  */
+@ExtendWith(ResourceProfiler.class)
 public class Q2Test {
 
     private String runWithInput(String input) throws Exception {
-        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes());
-        System.setIn(in);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(out));
-        Q2.main(new String[] {});
-        return out.toString();
+        return StdioRouter.capture(input, () -> Q2.main(new String[] {}));
     }
 
     @Test
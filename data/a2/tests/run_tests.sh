@@ -10,6 +10,10 @@ LIB_DIR="$SCRIPT_DIR/lib"
 SRC_DIR="$SCRIPT_DIR/src"
 BUILD_DIR="$SCRIPT_DIR/build"
 JUNIT_JAR="$LIB_DIR/junit-platform-console-standalone-1.10.0.jar"
+# Shared test support used by every Q*Test (per-thread stdio capture and
+# the per-test CPU/allocation profiler); javac compiles what the tests
+# reference from this source path
+HELPERS_DIR="$SCRIPT_DIR/../../../utils/jvm/java"
 
 QUESTION=$1
 STUDENT_FILE=$2
@@ -34,10 +38,13 @@ cp "$SRC_DIR/${QUESTION}Test.java" "$BUILD_DIR/"
 
 # Compile student code and test
 echo "Compiling ${QUESTION}..."
-javac -cp "$JUNIT_JAR" -d "$BUILD_DIR" "$BUILD_DIR/${QUESTION}.java" "$BUILD_DIR/${QUESTION}Test.java"
+javac -cp "$JUNIT_JAR" -sourcepath "$HELPERS_DIR" -d "$BUILD_DIR" "$BUILD_DIR/${QUESTION}.java" "$BUILD_DIR/${QUESTION}Test.java"
 
 # Run tests
 echo "Running tests for ${QUESTION}..."
-java -jar "$JUNIT_JAR" --class-path "$BUILD_DIR" --select-class "${QUESTION}Test" --details=tree
+# ResourceProfiler writes each test's wall/CPU/allocation figures here
+java -DresourceProfiler.report="$BUILD_DIR/resources.json" \
+    -jar "$JUNIT_JAR" --class-path "$BUILD_DIR" --select-class "${QUESTION}Test" --details=tree
+echo "Resource usage: $BUILD_DIR/resources.json"
 
 echo "Done!"
@@ -1,10 +1,8 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.Timeout;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -16,32 +14,27 @@ import static org.junit.jupiter.api.Assertions.*;
  * 1. Program terminates (doesn't infinite loop)
  * 2. Outputs expected messages (Too high/Too low/Correct)
  */
+@ExtendWith(ResourceProfiler.class)
 public class Q2Test {
 
     private String runWithInput(String input, int timeoutSeconds) throws Exception {
-        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes());
-        System.setIn(in);
+        return StdioRouter.capture(input, () -> {
+            // Run with timeout to catch infinite loops; the thread inherits the captured stdio
+            Thread thread = new Thread(() -> {
+                try {
+                    Q2.main(new String[] {});
+                } catch (Exception e) {
+                    // Ignore - likely NoSuchElementException when input exhausted
+                }
+            });
+            thread.start();
+            thread.join(timeoutSeconds * 1000L);
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(out));
-
-        // Run with timeout to catch infinite loops
-        Thread thread = new Thread(() -> {
-            try {
-                Q2.main(new String[] {});
-            } catch (Exception e) {
-                // Ignore - likely NoSuchElementException when input exhausted
+            if (thread.isAlive()) {
+                thread.interrupt();
+                fail("Program did not terminate within " + timeoutSeconds + " seconds (possible infinite loop)");
             }
         });
-        thread.start();
-        thread.join(timeoutSeconds * 1000L);
-
-        if (thread.isAlive()) {
-            thread.interrupt();
-            fail("Program did not terminate within " + timeoutSeconds + " seconds (possible infinite loop)");
-        }
-
-        return out.toString();
     }
 
     @Test
@@ -1,30 +1,20 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * JUnit 5 tests for Q3: Grade Calculator
  * A: 90-100, B: 80-89, C: 70-79, D: 60-69, F: below 60
  */
+@ExtendWith(ResourceProfiler.class)
 public class Q3Test {
 
     private String runWithInput(String input) throws Exception {
-        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes());
-        System.setIn(in);
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(out));
-
-        Q3.main(new String[] {});
-
-        return out.toString();
+        return StdioRouter.capture(input, () -> Q3.main(new String[] {}));
     }
 
     @ParameterizedTest
@@ -1,9 +1,6 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
+import org.junit.jupiter.api.extension.ExtendWith;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -11,18 +8,11 @@ import static org.junit.jupiter.api.Assertions.*;
  * JUnit 5 tests for Q4: Print a Right Triangle
  * N rows, row i has i asterisks.
  */
+@ExtendWith(ResourceProfiler.class)
 public class Q4Test {
 
     private String runWithInput(String input) throws Exception {
-        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes());
-        System.setIn(in);
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        System.setOut(new PrintStream(out));
-
-        Q4.main(new String[] {});
-
-        return out.toString();
+        return StdioRouter.capture(input, () -> Q4.main(new String[] {}));
     }
 
     @Test
@@ -0,0 +1,818 @@
+"""
+Java Execution Harness CLI
+
+Batch tooling around the warm-JVM helpers in utils.jvm: compiling and
+checking whole assignments of student submissions without one javac/java
+process per file.
+"""
+
+import json
+import time
+from concurrent.futures import ThreadPoolExecutor
+from dataclasses import asdict
+from datetime import datetime, timezone
+from collections.abc import Callable
+from pathlib import Path
+from typing import Any
+
+import typer
+from rich import box
+from rich.console import Console
+from rich.table import Table
+
+from utils.generators.complexity import (
+    DEFAULT_THRESHOLD,
+    PROFILE_TRACE_CAPACITY,
+    compare_growth,
+    measure_growth,
+    profile_reference,
+    scaled_inputs,
+    scaled_question,
+)
+from utils.generators.distinguish import (
+    DEFAULT_MAX_RUNS,
+    find_distinguishing_input,
+    parse_constants,
+    source_constants,
+)
+from utils.generators.fingerprint import (
+    FingerprintIndex,
+    behaviour_fingerprint,
+    fingerprint_inputs,
+    fingerprint_path,
+    reference_fingerprint,
+)
+from utils.generators.mutation import CONTROL, MutationError, run_mutation_matrix
+from utils.generators.oracle import (
+    DEFAULT_BATTERY_SIZE,
+    OracleError,
+    build_battery,
+    reference_path,
+    run_differential,
+)
+from utils.jvm.cache import DEFAULT_CACHE_DIR, ExecutionCache
+from utils.jvm.classspec import ClassSpecError, has_class_specs, run_class_specs
+from utils.jvm.compiler import CompilerService
+from utils.jvm.features import FeatureExtractorError, features_path, load_features
+from utils.jvm.junit import JUnitBatchError, resource_totals, run_junit_batch
+from utils.jvm.pool import JvmWorkerPool
+from utils.jvm.tracing import TracingPool, read_trace, trace_source
+
+app = typer.Typer(help="Java execution harness for student submissions")
+console = Console()
+
+SUBMISSIONS_ROOT = Path("authentic_seeded")
+QUESTIONS = ["Q1", "Q2", "Q3", "Q4"]
+
+
+def iter_submission_files(assignment: str) -> list[tuple[str, str, Path]]:
+    """Return (student, question, path) for every Q*.java under authentic_seeded/<assignment>."""
+    root = SUBMISSIONS_ROOT / assignment
+    if not root.exists():
+        return []
+    files = []
+    for student_dir in sorted(d for d in root.iterdir() if d.is_dir()):
+        for question in QUESTIONS:
+            path = student_dir / f"{question}.java"
+            if path.exists():
+                files.append((student_dir.name, question, path))
+    return files
+
+
+def select_files(
+    assignment: str,
+    students: int = 0,
+    keep: Callable[[tuple[str, str, Path]], bool] | None = None,
+    kind: str = "submissions",
+) -> list[tuple[str, str, Path]]:
+    """The files a command runs on, or exit if there are none.
+
+    keep drops files the command cannot check (no reference, ...); then only
+    the first `students` students are kept (0 = all). kind names the files in
+    the error message.
+    """
+    files = [f for f in iter_submission_files(assignment) if keep is None or keep(f)]
+    if students > 0:
+        selected = sorted({student for student, _, _ in files})[:students]
+        files = [f for f in files if f[0] in selected]
+    if not files:
+        console.print(f"[red]No {kind} found in {SUBMISSIONS_ROOT / assignment}[/red]")
+        raise typer.Exit(1)
+    return files
+
+
+def report_path(output: Path | None, assignment: str, name: str) -> Path:
+    """output, or grading/<assignment>_<name>.json by default."""
+    return output if output is not None else Path("grading") / f"{assignment}_{name}.json"
+
+
+def write_report(output: Path, assignment: str, **fields: Any) -> None:
+    """Write a JSON report: the assignment, a timestamp, then fields in order."""
+    output.parent.mkdir(parents=True, exist_ok=True)
+    output.write_text(
+        json.dumps(
+            {
+                "assignment": assignment,
+                "timestamp": datetime.now(timezone.utc).isoformat(),
+                **fields,
+            },
+            indent=2,
+        )
+    )
+
+
+@app.command("compile")
+def compile_cmd(
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, a3 or a4"),
+    show_errors: bool = typer.Option(False, help="Print diagnostics for failed files"),
+):
+    """Compile every submission of an assignment in a single compiler JVM."""
+    files = select_files(assignment)
+
+    sources = {(student, question): path.read_text() for student, question, path in files}
+
+    start = time.perf_counter()
+    with CompilerService() as compiler:
+        results = compiler.compile_batch(sources)
+    elapsed = time.perf_counter() - start
+
+    failed = {key: r for key, r in results.items() if not r.success}
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Metric", style="white")
+    table.add_column("Value", justify="right", style="cyan")
+    table.add_row("Files", str(len(results)))
+    table.add_row("Compiled", f"[green]{len(results) - len(failed)}[/green]")
+    table.add_row("Failed", f"[red]{len(failed)}[/red]")
+    table.add_row("Wall time", f"{elapsed:.1f}s")
+    console.print(table)
+
+    if show_errors:
+        for (student, question), result in sorted(failed.items()):
+            console.rule(f"[red]{student}/{question}[/red]")
+            for diag in result.diagnostics:
+                console.print(f"  line {diag.line}: {diag.kind}: {diag.message}")
+            if not result.diagnostics:
+                console.print(f"  {result.stderr}")
+
+
+@app.command()
+def junit(
+    assignment: str = typer.Option("a2", help="Assignment with JUnit tests: a1 or a2"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    threads: int = typer.Option(1, help="Submissions graded in parallel inside the JVM"),
+    method_threads: int = typer.Option(1, help="Test methods of one submission run in parallel"),
+    test_timeout: float = typer.Option(10.0, help="Per-test timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Report path (default: grading/<assignment>_junit.json)"
+    ),
+    cache: bool = typer.Option(True, help="Skip submissions graded before with identical code"),
+    top: int = typer.Option(5, help="Most CPU-expensive submissions to list"),
+):
+    """Run the Q*Test JUnit suites against every submission in one JVM."""
+    files = select_files(assignment, students)
+    output = report_path(output, assignment, "junit")
+
+    console.print(f"[cyan]Grading {len(files)} files with {threads} thread(s)...[/cyan]")
+    start = time.perf_counter()
+    try:
+        report = run_junit_batch(
+            assignment,
+            files,
+            threads=threads,
+            method_threads=method_threads,
+            test_timeout=test_timeout,
+            cache=ExecutionCache() if cache else None,
+        )
+    except JUnitBatchError as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from e
+    elapsed = time.perf_counter() - start
+
+    write_report(output, assignment, students=report)
+
+    counts: dict[str, int] = {}
+    for questions in report.values():
+        for entry in questions.values():
+            counts[entry["status"]] = counts.get(entry["status"], 0) + 1
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Status", style="white")
+    table.add_column("Files", justify="right", style="cyan")
+    for status, count in sorted(counts.items()):
+        table.add_row(status, str(count))
+    table.add_row("Wall time", f"{elapsed:.1f}s")
+    console.print(table)
+
+    expensive = resource_totals(report)[:top]
+    if expensive:
+        table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+        table.add_column("Student", style="white")
+        table.add_column("Question", style="white")
+        table.add_column("CPU", justify="right", style="cyan")
+        table.add_column("Wall", justify="right", style="cyan")
+        table.add_column("Allocated", justify="right", style="cyan")
+        for student, question, wall_ms, cpu_ms, alloc_bytes in expensive:
+            table.add_row(
+                student,
+                question,
+                f"{cpu_ms:.0f} ms",
+                f"{wall_ms:.0f} ms",
+                f"{alloc_bytes / (1 << 20):.1f} MB",
+            )
+        console.print("[bold]Most expensive submissions[/bold]")
+        console.print(table)
+    console.print(f"[dim]Report saved to {output}[/dim]")
+
+
+@app.command()
+def specs(
+    assignment: str = typer.Option("a4", help="Assignment with class specs: a4"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    threads: int = typer.Option(1, help="Submissions checked in parallel inside the JVM"),
+    check_timeout: float = typer.Option(10.0, help="Per-check timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Report path (default: grading/<assignment>_specs.json)"
+    ),
+    cache: bool = typer.Option(True, help="Skip submissions checked before with identical code"),
+):
+    """Check class-design submissions against their behavioural specs by reflection in one JVM."""
+    if not has_class_specs(assignment):
+        console.print(f"[red]No class specs for {assignment}[/red]")
+        raise typer.Exit(1)
+    files = select_files(assignment, students)
+    output = report_path(output, assignment, "specs")
+
+    console.print(f"[cyan]Checking {len(files)} files with {threads} thread(s)...[/cyan]")
+    start = time.perf_counter()
+    try:
+        report = run_class_specs(
+            assignment,
+            files,
+            threads=threads,
+            check_timeout=check_timeout,
+            cache=ExecutionCache() if cache else None,
+        )
+    except ClassSpecError as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from e
+    elapsed = time.perf_counter() - start
+
+    write_report(output, assignment, students=report)
+
+    counts: dict[str, int] = {}
+    failing: dict[str, int] = {}
+    for questions in report.values():
+        for question, entry in questions.items():
+            counts[entry["status"]] = counts.get(entry["status"], 0) + 1
+            for test in entry["tests"]:
+                if test["status"] != "SUCCESSFUL":
+                    name = f"{question} {test['name']}"
+                    failing[name] = failing.get(name, 0) + 1
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Status", style="white")
+    table.add_column("Files", justify="right", style="cyan")
+    for status, count in sorted(counts.items()):
+        table.add_row(status, str(count))
+    table.add_row("Wall time", f"{elapsed:.1f}s")
+    console.print(table)
+
+    if failing:
+        table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+        table.add_column("Check", style="white")
+        table.add_column("Failed", justify="right", style="cyan")
+        for name, count in sorted(failing.items(), key=lambda item: -item[1]):
+            table.add_row(name, str(count))
+        console.print("[bold]Failing checks[/bold]")
+        console.print(table)
+    console.print(f"[dim]Report saved to {output}[/dim]")
+
+
+@app.command()
+def diff(
+    assignment: str = typer.Option("a3", help="Assignment with reference solutions: a1, a2 or a3"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    inputs: int = typer.Option(DEFAULT_BATTERY_SIZE, help="Generated inputs per question"),
+    seed: int = typer.Option(0, help="Input generator seed"),
+    timeout: float = typer.Option(5.0, help="Per-run timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Report path (default: grading/<assignment>_differential.json)"
+    ),
+):
+    """Compare every submission with the reference solutions on generated inputs."""
+    files = select_files(assignment, students)
+    output = report_path(output, assignment, "differential")
+
+    exec_cache = ExecutionCache()
+    start = time.perf_counter()
+    with CompilerService() as compiler, JvmWorkerPool() as pool:
+        try:
+            batteries = {
+                q: build_battery(assignment, q, inputs, seed, pool, compiler, exec_cache)
+                for q in QUESTIONS
+            }
+        except OracleError as e:
+            console.print(f"[red]{e}[/red]")
+            raise typer.Exit(1) from e
+        files = [f for f in files if batteries[f[1]]]
+        console.print(f"[cyan]Checking {len(files)} files against the reference...[/cyan]")
+
+        def run_one(entry: tuple[str, str, Path]):
+            _, question, path = entry
+            return run_differential(
+                path.read_text(),
+                assignment,
+                question,
+                batteries[question],
+                pool=pool,
+                compiler=compiler,
+                timeout=timeout,
+                cache=exec_cache,
+            )
+
+        with ThreadPoolExecutor(max_workers=pool.size) as executor:
+            results = list(executor.map(run_one, files))
+    elapsed = time.perf_counter() - start
+
+    report: dict[str, dict[str, dict]] = {}
+    counts = {q: [0, 0] for q in QUESTIONS}
+    for (student, question, _), (agreed, total, failures) in zip(files, results):
+        report.setdefault(student, {})[question] = {
+            "status": "agrees" if agreed == total else "diverges",
+            "agreed": agreed,
+            "total": total,
+            "failures": failures,
+        }
+        counts[question][agreed == total] += 1
+
+    write_report(output, assignment, inputs=inputs, seed=seed, students=report)
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Question", style="white")
+    table.add_column("Agrees", justify="right", style="green")
+    table.add_column("Diverges", justify="right", style="red")
+    for question in QUESTIONS:
+        diverges, agrees = counts[question]
+        if agrees or diverges:
+            table.add_row(question, str(agrees), str(diverges))
+    table.add_row("Wall time", f"{elapsed:.1f}s", "")
+    console.print(table)
+    console.print(f"[dim]Report saved to {output}[/dim]")
+
+
+@app.command()
+def distinguish(
+    assignment: str = typer.Option("a2", help="Assignment with reference solutions: a1, a2 or a3"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    max_runs: int = typer.Option(DEFAULT_MAX_RUNS, help="Submission runs per file at most"),
+    timeout: float = typer.Option(5.0, help="Per-run timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Report path (default: grading/<assignment>_distinguish.json)"
+    ),
+):
+    """Find the smallest boundary input on which each submission and the reference differ."""
+    files = select_files(
+        assignment,
+        students,
+        keep=lambda f: reference_path(assignment, f[1]).exists(),
+        kind="submissions with a reference solution",
+    )
+    output = report_path(output, assignment, "distinguish")
+
+    # Constants come from the feature table, so no file is parsed twice
+    try:
+        table = load_features(assignment, files)
+        reference_constants = {
+            q: source_constants([reference_path(assignment, q).read_text()])
+            for q in {question for _, question, _ in files}
+        }
+    except FeatureExtractorError as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from e
+
+    console.print(f"[cyan]Searching boundary inputs for {len(files)} files...[/cyan]")
+    exec_cache = ExecutionCache()
+    start = time.perf_counter()
+    with CompilerService() as compiler, JvmWorkerPool() as pool:
+
+        def run_one(entry: tuple[str, str, Path]):
+            student, question, path = entry
+            row = table.get(student, question)
+            constants = parse_constants(row["compare_constants"] if row else "")
+            return find_distinguishing_input(
+                path.read_text(),
+                assignment,
+                question,
+                constants | reference_constants[question],
+                max_runs=max_runs,
+                pool=pool,
+                compiler=compiler,
+                cache=exec_cache,
+                timeout=timeout,
+            )
+
+        try:
+            with ThreadPoolExecutor(max_workers=pool.size) as executor:
+                results = list(executor.map(run_one, files))
+        except OracleError as e:
+            console.print(f"[red]{e}[/red]")
+            raise typer.Exit(1) from e
+    elapsed = time.perf_counter() - start
+
+    report: dict[str, dict[str, dict]] = {}
+    counts = {q: [0, 0, 0] for q in QUESTIONS}
+    for (student, question, _), found in zip(files, results):
+        if found is None:
+            report.setdefault(student, {})[question] = {"status": "agrees"}
+            counts[question][1] += 1
+            continue
+        report.setdefault(student, {})[question] = {
+            "status": "distinguished",
+            "input": found.input,
+            "runs": found.runs,
+            "message": found.message,
+        }
+        counts[question][0] += 1
+        counts[question][2] += found.runs
+
+    write_report(output, assignment, max_runs=max_runs, students=report)
+
+    table_out = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table_out.add_column("Question", style="white")
+    table_out.add_column("Distinguished", justify="right", style="red")
+    table_out.add_column("Agrees", justify="right", style="green")
+    table_out.add_column("Runs to find", justify="right", style="cyan")
+    for question in QUESTIONS:
+        found, agrees, runs = counts[question]
+        if found or agrees:
+            table_out.add_row(question, str(found), str(agrees), f"{runs / found:.1f}" if found else "-")
+    table_out.add_row("Wall time", f"{elapsed:.1f}s", "", "")
+    console.print(table_out)
+    console.print(f"[dim]Report saved to {output}[/dim]")
+
+
+@app.command()
+def fingerprint(
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2 or a3"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    inputs: int = typer.Option(DEFAULT_BATTERY_SIZE, help="Generated inputs per question"),
+    seed: int = typer.Option(0, help="Input generator seed"),
+    timeout: float = typer.Option(5.0, help="Per-run timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Index path (default: grading/<assignment>_fingerprints.json)"
+    ),
+):
+    """Group submissions that print the same output on every generated input."""
+    files = select_files(assignment, students)
+    output = output or fingerprint_path(assignment)
+
+    exec_cache = ExecutionCache()
+    battery = {q: fingerprint_inputs(assignment, q, inputs, seed) for q in QUESTIONS}
+    index = FingerprintIndex(assignment, seed, inputs)
+    console.print(f"[cyan]Fingerprinting {len(files)} files...[/cyan]")
+    start = time.perf_counter()
+    with CompilerService() as compiler, JvmWorkerPool() as pool:
+        for question in QUESTIONS:
+            index.references[question] = reference_fingerprint(
+                assignment, question, battery[question], pool, compiler, timeout, exec_cache
+            )
+
+        def run_one(entry: tuple[str, str, Path]):
+            _, question, path = entry
+            return behaviour_fingerprint(
+                path.read_text(), battery[question], pool, compiler, timeout, exec_cache
+            )
+
+        with ThreadPoolExecutor(max_workers=pool.size) as executor:
+            results = list(executor.map(run_one, files))
+    elapsed = time.perf_counter() - start
+
+    for (student, question, _), fp in zip(files, results):
+        index.students.setdefault(student, {})[question] = fp
+    index.save(output)
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Question", style="white")
+    table.add_column("Files", justify="right", style="white")
+    table.add_column("Groups", justify="right", style="cyan")
+    table.add_column("Largest", justify="right", style="white")
+    table.add_column("Like reference", justify="right", style="green")
+    table.add_column("Unfingerprinted", justify="right", style="yellow")
+    for question in QUESTIONS:
+        fps = [fp for (_, q, _), fp in zip(files, results) if q == question]
+        if not fps:
+            continue
+        groups = index.groups(question)
+        like_reference = len(groups.get(index.references[question] or "", []))
+        table.add_row(
+            question,
+            str(len(fps)),
+            str(len(groups)),
+            str(max((len(m) for m in groups.values()), default=0)),
+            str(like_reference),
+            str(fps.count(None)),
+        )
+    table.add_row("Wall time", f"{elapsed:.1f}s", "", "", "", "")
+    console.print(table)
+    console.print(f"[dim]Index saved to {output}[/dim]")
+
+
+@app.command()
+def complexity(
+    assignment: str = typer.Option("a3", help="Assignment with scalable questions: a2 or a3"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    threshold: float = typer.Option(
+        DEFAULT_THRESHOLD, help="Growth exponent difference that flags a submission"
+    ),
+    seed: int = typer.Option(0, help="Input generator seed"),
+    timeout: float = typer.Option(10.0, help="Per-run timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Report path (default: grading/<assignment>_complexity.json)"
+    ),
+):
+    """Flag submissions whose cost grows faster or slower than the reference's."""
+    files = select_files(
+        assignment,
+        students,
+        keep=lambda f: scaled_question(assignment, f[1]) is not None,
+        kind="scalable submissions",
+    )
+    output = report_path(output, assignment, "complexity")
+
+    start = time.perf_counter()
+    with (
+        CompilerService() as compiler,
+        JvmWorkerPool() as pool,
+        TracingPool(capacity=PROFILE_TRACE_CAPACITY) as tracing_pool,
+    ):
+        questions = sorted({question for _, question, _ in files})
+        try:
+            references = {
+                q: profile_reference(assignment, q, pool, tracing_pool, compiler, seed, timeout)
+                for q in questions
+            }
+        except OracleError as e:
+            console.print(f"[red]{e}[/red]")
+            raise typer.Exit(1) from e
+        files = [f for f in files if references[f[1]] is not None]
+        console.print(f"[cyan]Profiling {len(files)} files on growing inputs...[/cyan]")
+
+        def run_one(entry: tuple[str, str, Path]):
+            _, question, path = entry
+            return measure_growth(
+                path.read_text(),
+                scaled_inputs(assignment, question, seed),
+                pool,
+                tracing_pool,
+                compiler,
+                timeout,
+            )
+
+        with ThreadPoolExecutor(max_workers=pool.size) as executor:
+            results = list(executor.map(run_one, files))
+    elapsed = time.perf_counter() - start
+
+    report: dict[str, dict[str, dict]] = {}
+    counts: dict[str, dict[str, int]] = {q: {} for q in references}
+    for (student, question, _), growth in zip(files, results):
+        status = compare_growth(growth, references[question], threshold)
+        report.setdefault(student, {})[question] = {"status": status, **asdict(growth)}
+        counts[question][status] = counts[question].get(status, 0) + 1
+
+    write_report(
+        output,
+        assignment,
+        threshold=threshold,
+        seed=seed,
+        references={q: asdict(g) for q, g in references.items() if g is not None},
+        students=report,
+    )
+
+    statuses = ["matches", "slower", "faster", "timeout", "error"]
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Question", style="white")
+    table.add_column("Reference", justify="right", style="cyan")
+    for status in statuses:
+        table.add_column(status.capitalize(), justify="right", style="white")
+    for question, reference in references.items():
+        if reference is not None:
+            table.add_row(
+                question,
+                f"N^{reference.exponent:.1f}",
+                *(str(counts[question].get(status, 0)) for status in statuses),
+            )
+    table.add_row("Wall time", f"{elapsed:.1f}s", *([""] * len(statuses)))
+    console.print(table)
+    console.print(f"[dim]Report saved to {output}[/dim]")
+
+
+@app.command()
+def mutation(
+    assignment: str = typer.Option("a2", help="Assignment with JUnit tests: a1 or a2"),
+    threads: int = typer.Option(1, help="Mutants graded in parallel inside the JVM"),
+    method_threads: int = typer.Option(1, help="Test methods of one mutant run in parallel"),
+    test_timeout: float = typer.Option(5.0, help="Per-test timeout in seconds"),
+    output: Path = typer.Option(
+        None, help="Report path (default: grading/<assignment>_mutation.json)"
+    ),
+    cache: bool = typer.Option(True, help="Skip mutants graded before with identical code"),
+):
+    """Check which groundtruth misconceptions the JUnit suites detect."""
+    output = report_path(output, assignment, "mutation")
+
+    console.print(f"[cyan]Grading misconception mutants of the {assignment} references...[/cyan]")
+    start = time.perf_counter()
+    try:
+        controls, results = run_mutation_matrix(
+            assignment,
+            threads=threads,
+            method_threads=method_threads,
+            test_timeout=test_timeout,
+            cache=ExecutionCache() if cache else None,
+        )
+    except (MutationError, JUnitBatchError) as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from e
+    elapsed = time.perf_counter() - start
+
+    write_report(
+        output,
+        assignment,
+        **{
+            CONTROL: {q: entry["status"] for q, entry in controls.items()},
+            "mutants": [
+                {
+                    "id": r.mutant.mutant_id,
+                    "misconception": r.mutant.misconception,
+                    "question": r.mutant.question,
+                    "status": r.status,
+                    "killed_by": r.killed_by,
+                }
+                for r in results
+            ],
+        },
+    )
+
+    for question, entry in controls.items():
+        if entry["status"] != "passed":
+            console.print(
+                f"[red]Reference {question} does not pass its own suite ({entry['status']}); "
+                f"its mutant results are meaningless[/red]"
+            )
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Misconception", style="white")
+    table.add_column("Question", style="white")
+    table.add_column("Mutant", style="white")
+    table.add_column("Status", style="cyan")
+    table.add_column("Failing tests", justify="right", style="white")
+    for r in results:
+        style = {"killed": "green", "survived": "red"}.get(r.status, "yellow")
+        table.add_row(
+            r.mutant.misconception,
+            r.mutant.question,
+            r.mutant.variant,
+            f"[{style}]{r.status}[/{style}]",
+            str(len(r.killed_by)),
+        )
+    console.print(table)
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Suite", style="white")
+    table.add_column("Killed", justify="right", style="cyan")
+    table.add_column("Mutants", justify="right", style="white")
+    for question in sorted({r.mutant.question for r in results}):
+        graded = [
+            r
+            for r in results
+            if r.mutant.question == question and r.status not in ("stillborn", "unseeded")
+        ]
+        killed = sum(r.status == "killed" for r in graded)
+        table.add_row(f"{question}Test", str(killed), str(len(graded)))
+    table.add_row("Wall time", f"{elapsed:.1f}s", "")
+    console.print(table)
+    console.print(f"[dim]Report saved to {output}[/dim]")
+
+
+@app.command()
+def trace(
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, a3 or a4"),
+    question: str = typer.Option("Q1", help="Question to trace"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    stdin: str = typer.Option(
+        None, help="Program input (default: the question's first generator test case)"
+    ),
+    timeout: float = typer.Option(5.0, help="Per-run timeout in seconds"),
+    output_dir: Path = typer.Option(None, help="Trace directory (default: traces/<assignment>)"),
+):
+    """Record line-level execution traces of one question across submissions."""
+    files = select_files(
+        assignment, students, keep=lambda f: f[1] == question, kind=f"{question} submissions"
+    )
+
+    if stdin is None:
+        from utils.generators.dataset_generator import load_test_cases
+
+        cases = load_test_cases(assignment, question)
+        stdin = cases[0].input if cases else ""
+    if output_dir is None:
+        output_dir = Path("traces") / assignment
+    output_dir.mkdir(parents=True, exist_ok=True)
+
+    console.print(f"[cyan]Tracing {len(files)} files...[/cyan]")
+    start = time.perf_counter()
+    with CompilerService() as compiler, TracingPool() as pool:
+
+        def run_one(entry: tuple[str, str, Path]):
+            student, _, path = entry
+            trace_path = output_dir / f"{student}_{question}.trace"
+            return trace_source(path.read_text(), trace_path, pool, compiler, stdin, timeout), trace_path
+
+        with ThreadPoolExecutor(max_workers=pool.size) as executor:
+            results = list(executor.map(run_one, files))
+    elapsed = time.perf_counter() - start
+
+    traced = timed_out = compile_failed = events = 0
+    for (_, run), trace_path in results:
+        if run is None:
+            compile_failed += 1
+            continue
+        traced += 1
+        timed_out += run.timed_out
+        if trace_path.exists():
+            events += read_trace(trace_path).total
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Metric", style="white")
+    table.add_column("Value", justify="right", style="cyan")
+    table.add_row("Traced", f"[green]{traced}[/green]")
+    table.add_row("Timed out", f"[yellow]{timed_out}[/yellow]")
+    table.add_row("Compile failed", f"[red]{compile_failed}[/red]")
+    table.add_row("Events", str(events))
+    table.add_row("Wall time", f"{elapsed:.1f}s")
+    console.print(table)
+    console.print(f"[dim]Traces saved to {output_dir}[/dim]")
+
+
+@app.command()
+def features(
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, a3 or a4"),
+    rebuild: bool = typer.Option(False, help="Discard the stored table and extract every file"),
+):
+    """Bring the parsed-once code feature table of an assignment up to date."""
+    files = select_files(assignment)
+
+    path = features_path(assignment)
+    if rebuild and path.exists():
+        path.unlink()
+    start = time.perf_counter()
+    try:
+        table = load_features(assignment, files)
+    except FeatureExtractorError as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from None
+    elapsed = time.perf_counter() - start
+
+    records = table.records()
+    summary = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    summary.add_column("Metric", style="white")
+    summary.add_column("Value", justify="right", style="cyan")
+    summary.add_row("Rows", str(len(records)))
+    summary.add_row("Reused", f"[green]{table.reused}[/green]")
+    summary.add_row("Extracted", str(table.extracted))
+    summary.add_row("Dropped", str(table.dropped))
+    summary.add_row("Unparsed", f"[red]{sum(not r['parsed'] for r in records)}[/red]")
+    summary.add_row("Not clean", f"[yellow]{sum(not r['clean'] for r in records)}[/yellow]")
+    summary.add_row("Wall time", f"{elapsed:.1f}s")
+    console.print(summary)
+    console.print(f"[dim]Table saved to {path}[/dim]")
+
+
+@app.command("cache")
+def cache_cmd(
+    clear: bool = typer.Option(False, help="Delete every cached entry"),
+    prune: bool = typer.Option(False, help="Evict least recently used entries down to the limit"),
+    max_mb: int = typer.Option(512, help="Size limit in MB used by --prune"),
+):
+    """Show or maintain the compile/run result cache in .cache/exec."""
+    exec_cache = ExecutionCache(max_bytes=max_mb * 1024 * 1024)
+    if clear:
+        exec_cache.clear()
+        console.print(f"[green]Cleared {DEFAULT_CACHE_DIR}[/green]")
+        return
+    if prune:
+        removed = exec_cache.prune()
+        console.print(f"[green]Evicted {removed} entries[/green]")
+
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Namespace", style="white")
+    table.add_column("Entries", justify="right", style="cyan")
+    for namespace in sorted(p for p in DEFAULT_CACHE_DIR.iterdir() if p.is_dir()):
+        table.add_row(namespace.name, str(sum(1 for _ in namespace.glob("*/*"))))
+    table.add_row("Size", f"{exec_cache.size_bytes() / 1024 / 1024:.1f} MB")
+    console.print(table)
+
+
+if __name__ == "__main__":
+    app()
@@ -24,9 +24,22 @@ from rich.text import Text
 
 from prompts.strategies import PromptStrategy, build_prompt
 from pydantic_models import LLMDetectionResponse
+from utils.generators.fingerprint import FingerprintIndex, fingerprint_path
+from utils.jvm.features import FeatureExtractorError, load_features
+from utils.jvm.static import STATIC_MODEL, StaticDetectorError, run_static_detector, to_detection
 from utils.llm import anthropic as anthropic_client
 from utils.llm import gemini as gemini_client
 from utils.llm import openai as openai_client
+from utils.llm.batch import (
+    DEFAULT_MAX_WAIT,
+    DEFAULT_POLL_INTERVAL,
+    BatchJob,
+    BatchRequest,
+    run_batches,
+)
+from utils.llm.cache import DEFAULT_LLM_CACHE_DIR, ResponseCache
+from utils.llm.journal import DONE, ERROR, RunJournal, journal_path
+from utils.llm.ratelimit import limiters
 
 load_dotenv()
 
@@ -53,10 +66,10 @@ ALL_MODEL_SHORT_NAMES = {**MODEL_SHORT_NAMES, **REASONING_SHORT_NAMES}
 
 STRATEGIES = ["baseline", "taxonomy", "cot", "socratic"]
 
-# Reduced concurrency to avoid rate limiting on Tier 1 accounts
-# Anthropic Tier 1: 50 RPM, OpenAI/Gemini have higher limits
-# With 6 models per task, 3 concurrent tasks = 18 parallel requests max (safer for 100 students)
-MAX_CONCURRENCY = 3
+# Files in flight at once. Calls are paced per provider by utils.llm.ratelimit
+# (RPM/TPM token buckets, AIMD concurrency on 429s), so this only bounds open
+# files and waiting tasks, not the request rate
+MAX_CONCURRENT_FILES = 32
 
 # Configurable assignment (default a3, can be changed via CLI)
 CURRENT_ASSIGNMENT = "a3"
@@ -79,6 +92,25 @@ OPENAI_MODEL_SET = set(OPENAI_MODELS)
 ANTHROPIC_MODEL_SET = set(ANTHROPIC_MODELS)
 GEMINI_MODEL_SET = set(GEMINI_MODELS)
 
+PROVIDER_CLIENTS = {
+    "openai": openai_client,
+    "anthropic": anthropic_client,
+    "gemini": gemini_client,
+}
+
+# Response cache in front of the clients (None = always call the provider)
+LLM_CACHE: ResponseCache | None = None
+
+
+def provider_for(model: str) -> str:
+    if model in OPENAI_MODEL_SET:
+        return "openai"
+    if model in ANTHROPIC_MODEL_SET:
+        return "anthropic"
+    if model in GEMINI_MODEL_SET:
+        return "gemini"
+    raise ValueError(f"Unknown model provider for: {model}")
+
 
 def load_manifest() -> dict[str, Any]:
     manifest_path = get_submission_dir() / "manifest.json"
@@ -133,6 +165,107 @@ async def load_question_text_async(question: str) -> str:
         return await f.read()
 
 
+def load_shared_pairs(students: list[str]) -> dict[tuple[str, str], str]:
+    """(student, question) -> representative student, from `harness.py fingerprint`.
+
+    Only groups within `students` count, and never the group that behaves like
+    the reference solution.
+    """
+    path = fingerprint_path(CURRENT_ASSIGNMENT)
+    if not path.exists():
+        raise FileNotFoundError(
+            f"No fingerprint index at {path}; run `harness.py fingerprint --assignment "
+            f"{CURRENT_ASSIGNMENT}` first"
+        )
+    index = FingerprintIndex.load(path)
+    among = set(students)
+    return {
+        (member, question): representative
+        for question in ["Q1", "Q2", "Q3", "Q4"]
+        for member, representative in index.shared(question, among).items()
+    }
+
+
+def load_canonical_pairs(students: list[str]) -> dict[tuple[str, str], str]:
+    """(student, question) -> representative student with the same canonical AST.
+
+    The hashes come from the code feature table (utils.jvm.features), which is
+    refreshed first. Files in a group differ only in local names, layout and
+    comments; the first student of each group (within `students`) is detected.
+    """
+    files = [
+        (student, question, get_submission_dir() / student / f"{question}.java")
+        for student in students
+        for question in ["Q1", "Q2", "Q3", "Q4"]
+    ]
+    files = [f for f in files if f[2].exists()]
+    table = load_features(CURRENT_ASSIGNMENT, files)
+    representatives: dict[tuple[str, str], str] = {}
+    pairs = {}
+    for student, question, _ in sorted(files):
+        row = table.get(student, question)
+        if row is None or not row["canonical_hash"]:
+            continue
+        representative = representatives.setdefault((question, row["canonical_hash"]), student)
+        if representative != student:
+            pairs[(student, question)] = representative
+    return pairs
+
+
+def combine_shared(
+    **by_basis: dict[tuple[str, str], str],
+) -> dict[tuple[str, str], tuple[str, str]]:
+    """(student, question) -> (representative, basis) over several groupings.
+
+    Earlier bases win. Chains (a canonical duplicate whose representative is in
+    turn shared by behaviour) are followed to a file that is detected itself;
+    every grouping picks its group's first student, so chains always end.
+    """
+    combined: dict[tuple[str, str], tuple[str, str]] = {}
+    for basis, pairs in by_basis.items():
+        for key, representative in pairs.items():
+            combined.setdefault(key, (representative, basis))
+    resolved = {}
+    for (student, question), (representative, basis) in combined.items():
+        while (representative, question) in combined:
+            representative = combined[(representative, question)][0]
+        resolved[(student, question)] = (representative, basis)
+    return resolved
+
+
+async def write_shared_results(
+    strategy_dir: Path,
+    shared: dict[tuple[str, str], tuple[str, str]],
+    stats: dict[str, Any],
+) -> None:
+    """Copy each representative's detection to the members of its group."""
+    for (student, question), (representative, basis) in sorted(shared.items()):
+        source = strategy_dir / f"{representative}_{question}.json"
+        if not source.exists():
+            continue
+        async with aiofiles.open(source) as f:
+            result = json.loads(await f.read())
+        result["student"] = student
+        result["shared_from"] = representative
+        result["shared_by"] = basis
+        async with aiofiles.open(strategy_dir / f"{student}_{question}.json", mode="w") as f:
+            await f.write(json.dumps(result, indent=2))
+
+        stats["total_processed"] += 1
+        if result["status"] == "success":
+            stats["successful"] += 1
+        else:
+            stats["errors"] += 1
+        stats["shared"] += 1
+        stats["shared_by"][basis] = stats["shared_by"].get(basis, 0) + 1
+        stats["calls_saved"] += len(result["models"])
+        for model_key, entry in result["models"].items():
+            if "error" in entry:
+                stats["model_errors"] = stats.get("model_errors", 0) + 1
+            elif model_key in stats["total_misconceptions"]:
+                stats["total_misconceptions"][model_key] += entry["count"]
+
+
 async def detect_for_file(
     model: str,
     problem_description: str,
@@ -140,40 +273,86 @@ async def detect_for_file(
     strategy: str,
     use_reasoning: bool = False,
 ) -> LLMDetectionResponse:
+    """One model's detection for one file; provider errors propagate to the caller."""
     prompt = build_prompt(PromptStrategy(strategy), problem_description, student_code)
     messages = [{"role": "user", "content": prompt}]
 
-    try:
-        # Route to the correct provider
-        if model in OPENAI_MODEL_SET:
-            if use_reasoning:
-                return await openai_client.get_reasoning_response(
-                    messages, LLMDetectionResponse, model=model
-                )
-            return await openai_client.get_structured_response(
-                messages, LLMDetectionResponse, model=model
-            )
-        elif model in ANTHROPIC_MODEL_SET:
-            if use_reasoning:
-                return await anthropic_client.get_reasoning_response(
-                    messages, LLMDetectionResponse, model=model
-                )
-            return await anthropic_client.get_structured_response(
-                messages, LLMDetectionResponse, model=model
+    provider = provider_for(model)
+    if LLM_CACHE is not None:
+        cached = LLM_CACHE.get(provider, model, use_reasoning, messages, LLMDetectionResponse)
+        if cached is not None:
+            return cached
+
+    client = PROVIDER_CLIENTS[provider]
+    if use_reasoning:
+        response = await client.get_reasoning_response(messages, LLMDetectionResponse, model=model)
+    else:
+        response = await client.get_structured_response(messages, LLMDetectionResponse, model=model)
+    if LLM_CACHE is not None:
+        LLM_CACHE.put(provider, model, use_reasoning, messages, response)
+    return response
+
+
+def model_configs_for(include_reasoning: bool) -> list[tuple[str, str, bool]]:
+    """(model key, model id, reasoning) for every model configuration of a run."""
+    all_models = OPENAI_MODELS + ANTHROPIC_MODELS + GEMINI_MODELS
+    model_configs = [(model, model, False) for model in all_models]
+    if include_reasoning:
+        model_configs.extend([(f"{model}:reasoning", model, True) for model in all_models])
+    return model_configs
+
+
+def model_entry(response: LLMDetectionResponse | BaseException | str) -> dict[str, Any]:
+    """A result file's entry for one model: its misconceptions, or the error it failed with.
+
+    Failed entries have no misconceptions and no count, so they can never be
+    read as "no misconception found".
+    """
+    if isinstance(response, LLMDetectionResponse):
+        return {
+            "misconceptions": [m.model_dump() for m in response.misconceptions],
+            "count": len(response.misconceptions),
+        }
+    error = response if isinstance(response, str) else f"{type(response).__name__}: {response}"
+    return {"status": "error", "error": error}
+
+
+def record_models(
+    journal: RunJournal | None,
+    student_id: str,
+    question: str,
+    strategy: str,
+    entries: dict[str, dict[str, Any]],
+) -> None:
+    """Log failed entries and journal every cell."""
+    for model_key, entry in entries.items():
+        if "error" in entry:
+            short_name = ALL_MODEL_SHORT_NAMES.get(model_key, model_key)
+            console.print(
+                f"[red]Error with {short_name} on {student_id} {question}: {entry['error']}[/red]"
             )
-        elif model in GEMINI_MODEL_SET:
-            if use_reasoning:
-                return await gemini_client.get_reasoning_response(
-                    messages, LLMDetectionResponse, model=model
+        if journal is not None:
+            if "error" in entry:
+                journal.record(
+                    student_id, question, strategy, model_key, ERROR, error=entry["error"]
                 )
-            return await gemini_client.get_structured_response(
-                messages, LLMDetectionResponse, model=model
-            )
-        else:
-            raise ValueError(f"Unknown model provider for: {model}")
-    except Exception as e:
-        console.print(f"[red]Error with {ALL_MODEL_SHORT_NAMES.get(model, model)}: {e}[/red]")
-        return LLMDetectionResponse(misconceptions=[])
+            else:
+                journal.record(student_id, question, strategy, model_key, DONE, count=entry["count"])
+
+
+def completed_models(
+    journal: RunJournal, strategy_dir: Path, student_id: str, question: str, strategy: str
+) -> dict[str, dict[str, Any]]:
+    """Entries of a file's previous result that the journal records as done."""
+    result_file = strategy_dir / f"{student_id}_{question}.json"
+    if not result_file.exists():
+        return {}
+    models = json.loads(result_file.read_text()).get("models", {})
+    return {
+        model_key: entry
+        for model_key, entry in models.items()
+        if "error" not in entry and journal.status(student_id, question, strategy, model_key) == DONE
+    }
 
 
 async def process_student_question(
@@ -182,7 +361,14 @@ async def process_student_question(
     strategy: str,
     semaphore: asyncio.Semaphore,
     include_reasoning: bool = True,
+    journal: RunJournal | None = None,
+    done: dict[str, dict[str, Any]] | None = None,
 ) -> dict[str, Any]:
+    """Detect one file with every model configuration not already in done.
+
+    The result's status is "success" when every model answered and "partial"
+    when some failed; failed models get an error entry (see model_entry).
+    """
     async with semaphore:
         student_file = get_submission_dir() / student_id / f"{question}.java"
 
@@ -208,30 +394,31 @@ async def process_student_question(
                 "reason": str(e),
             }
 
-        # Build model configs for all providers
-        all_models = OPENAI_MODELS + ANTHROPIC_MODELS + GEMINI_MODELS
-        model_configs = [(model, model, False) for model in all_models]
-        if include_reasoning:
-            model_configs.extend([(f"{model}:reasoning", model, True) for model in all_models])
+        done = done or {}
+        model_configs = [c for c in model_configs_for(include_reasoning) if c[0] not in done]
 
         tasks = [
             detect_for_file(model_id, problem_description, student_code, strategy, use_reasoning)
             for (_, model_id, use_reasoning) in model_configs
         ]
-        results = await asyncio.gather(*tasks)
+        results = await asyncio.gather(*tasks, return_exceptions=True)
 
-        model_results: dict[str, Any] = {}
-        for (model_key, _, _), response in zip(model_configs, results):
-            model_results[model_key] = {
-                "misconceptions": [m.model_dump() for m in response.misconceptions],
-                "count": len(response.misconceptions),
-            }
+        new_entries = {
+            model_key: model_entry(response)
+            for (model_key, _, _), response in zip(model_configs, results)
+        }
+        record_models(journal, student_id, question, strategy, new_entries)
 
+        model_results = {
+            model_key: done.get(model_key) or new_entries[model_key]
+            for model_key, _, _ in model_configs_for(include_reasoning)
+        }
+        failed = any("error" in entry for entry in model_results.values())
         return {
             "student": student_id,
             "question": question,
             "strategy": strategy,
-            "status": "success",
+            "status": "partial" if failed else "success",
             "models": model_results,
             "timestamp": datetime.now(timezone.utc).isoformat(),
         }
@@ -242,74 +429,13 @@ async def run_detection(
     strategy: str,
     output_dir: Path,
     include_reasoning: bool = True,
+    shared: dict[tuple[str, str], tuple[str, str]] | None = None,
+    journal: RunJournal | None = None,
+    resume: bool = False,
 ) -> dict[str, Any]:
-    semaphore = asyncio.Semaphore(MAX_CONCURRENCY)
-    strategy_dir = output_dir / strategy
-    strategy_dir.mkdir(parents=True, exist_ok=True)
-
-    questions = ["Q1", "Q2", "Q3", "Q4"]
-    total_tasks = len(students) * len(questions)
-
-    all_models = OPENAI_MODELS + ANTHROPIC_MODELS + GEMINI_MODELS
-    all_model_keys = list(all_models)
-    if include_reasoning:
-        all_model_keys.extend([f"{m}:reasoning" for m in all_models])
-
-    stats: dict[str, Any] = {
-        "total_processed": 0,
-        "successful": 0,
-        "skipped": 0,
-        "errors": 0,
-        "total_misconceptions": dict.fromkeys(all_model_keys, 0),
-    }
-
-    with Progress(
-        SpinnerColumn(),
-        TextColumn("[progress.description]{task.description}"),
-        BarColumn(),
-        TextColumn("[progress.percentage]{task.percentage:>3.0f}%"),
-        TimeElapsedColumn(),
-        console=console,
-    ) as progress:
-        task_id = progress.add_task(f"[cyan]Detecting ({strategy})...", total=total_tasks)
-
-        tasks = [
-            process_student_question(student_id, question, strategy, semaphore, include_reasoning)
-            for student_id in students
-            for question in questions
-        ]
-
-        for coro in asyncio.as_completed(tasks):
-            result = await coro
-            progress.advance(task_id)
-
-            stats["total_processed"] += 1
-            if result["status"] == "success":
-                stats["successful"] += 1
-
-                output_file = strategy_dir / f"{result['student']}_{result['question']}.json"
-                output_file.parent.mkdir(parents=True, exist_ok=True)
-                async with aiofiles.open(output_file, mode="w") as f:
-                    await f.write(json.dumps(result, indent=2))
-
-                for model_key in result["models"]:
-                    if model_key in stats["total_misconceptions"]:
-                        stats["total_misconceptions"][model_key] += result["models"][model_key][
-                            "count"
-                        ]
-            elif result["status"] == "skipped":
-                stats["skipped"] += 1
-            else:
-                stats["errors"] += 1
-
-    stats["strategy"] = strategy
-    stats["timestamp"] = datetime.now(timezone.utc).isoformat()
-    stats["students_processed"] = len(students)
-
-    stats_file = strategy_dir / "_stats.json"
-    stats_file.parent.mkdir(parents=True, exist_ok=True)
-    async with aiofiles.open(stats_file, mode="w") as f:
-        await f.write(json.dumps(stats, indent=2))
+    stats = await run_detection_no_cleanup(
+        students, strategy, output_dir, include_reasoning, shared, journal, resume
+    )
 
     # Cleanup all LLM clients in parallel to avoid "Event loop is closed" errors
     await asyncio.gather(
@@ -326,28 +452,56 @@ async def run_detection_no_cleanup(
     strategy: str,
     output_dir: Path,
     include_reasoning: bool = True,
+    shared: dict[tuple[str, str], tuple[str, str]] | None = None,
+    journal: RunJournal | None = None,
+    resume: bool = False,
 ) -> dict[str, Any]:
-    """Run detection without cleaning up clients (for use in concurrent runs)."""
-    semaphore = asyncio.Semaphore(MAX_CONCURRENCY)
+    """Run detection without cleaning up clients (for use in concurrent runs).
+
+    With resume, model cells the journal records as done are kept from the
+    previous result files and not called again; files with every cell done
+    are skipped.
+    """
+    semaphore = asyncio.Semaphore(MAX_CONCURRENT_FILES)
     strategy_dir = output_dir / strategy
     strategy_dir.mkdir(parents=True, exist_ok=True)
 
     questions = ["Q1", "Q2", "Q3", "Q4"]
-    total_tasks = len(students) * len(questions)
+    shared = shared or {}
+    pairs = [(s, q) for s in students for q in questions if (s, q) not in shared]
 
-    all_models = OPENAI_MODELS + ANTHROPIC_MODELS + GEMINI_MODELS
-    all_model_keys = list(all_models)
-    if include_reasoning:
-        all_model_keys.extend([f"{m}:reasoning" for m in all_models])
+    all_model_keys = [model_key for model_key, _, _ in model_configs_for(include_reasoning)]
 
     stats: dict[str, Any] = {
         "total_processed": 0,
         "successful": 0,
         "skipped": 0,
         "errors": 0,
+        "model_errors": 0,
+        "already_done": 0,
+        "shared": 0,
+        "shared_by": {},
+        "calls_saved": 0,
         "total_misconceptions": dict.fromkeys(all_model_keys, 0),
     }
 
+    done: dict[tuple[str, str], dict[str, dict[str, Any]]] = {}
+    if resume and journal is not None:
+        for student_id, question in pairs:
+            done[(student_id, question)] = completed_models(
+                journal, strategy_dir, student_id, question, strategy
+            )
+        complete = {pair for pair, entries in done.items() if set(all_model_keys) <= set(entries)}
+        # Complete files still count, so _stats.json describes the whole directory
+        for pair in complete:
+            for model_key in all_model_keys:
+                stats["total_misconceptions"][model_key] += done[pair][model_key]["count"]
+        stats["already_done"] = len(complete)
+        stats["total_processed"] += len(complete)
+        stats["successful"] += len(complete)
+        pairs = [pair for pair in pairs if pair not in complete]
+    total_tasks = len(pairs)
+
     with Progress(
         SpinnerColumn(),
         TextColumn("[progress.description]{task.description}"),
@@ -359,9 +513,16 @@ async def run_detection_no_cleanup(
         task_id = progress.add_task(f"[cyan]Detecting ({strategy})...", total=total_tasks)
 
         tasks = [
-            process_student_question(student_id, question, strategy, semaphore, include_reasoning)
-            for student_id in students
-            for question in questions
+            process_student_question(
+                student_id,
+                question,
+                strategy,
+                semaphore,
+                include_reasoning,
+                journal,
+                done.get((student_id, question)),
+            )
+            for student_id, question in pairs
         ]
 
         for coro in asyncio.as_completed(tasks):
@@ -369,24 +530,27 @@ async def run_detection_no_cleanup(
             progress.advance(task_id)
 
             stats["total_processed"] += 1
-            if result["status"] == "success":
-                stats["successful"] += 1
-
+            if "models" in result:
                 output_file = strategy_dir / f"{result['student']}_{result['question']}.json"
                 output_file.parent.mkdir(parents=True, exist_ok=True)
                 async with aiofiles.open(output_file, mode="w") as f:
                     await f.write(json.dumps(result, indent=2))
 
-                for model_key in result["models"]:
-                    if model_key in stats["total_misconceptions"]:
-                        stats["total_misconceptions"][model_key] += result["models"][model_key][
-                            "count"
-                        ]
+                for model_key, entry in result["models"].items():
+                    if "error" in entry:
+                        stats["model_errors"] += 1
+                    elif model_key in stats["total_misconceptions"]:
+                        stats["total_misconceptions"][model_key] += entry["count"]
+
+            if result["status"] == "success":
+                stats["successful"] += 1
             elif result["status"] == "skipped":
                 stats["skipped"] += 1
             else:
                 stats["errors"] += 1
 
+    await write_shared_results(strategy_dir, shared, stats)
+
     stats["strategy"] = strategy
     stats["timestamp"] = datetime.now(timezone.utc).isoformat()
     stats["students_processed"] = len(students)
@@ -403,11 +567,17 @@ async def run_all_strategies_concurrent(
     students: list[str],
     output_dir: Path,
     include_reasoning: bool = True,
+    shared: dict[tuple[str, str], tuple[str, str]] | None = None,
+    journal: RunJournal | None = None,
+    resume: bool = False,
+    strategies: list[str] | None = None,
 ) -> list[dict[str, Any]]:
-    """Run all strategies concurrently in a single event loop."""
+    """Run all strategies (or the given ones) concurrently in a single event loop."""
     tasks = [
-        run_detection_no_cleanup(students, strategy, output_dir, include_reasoning)
-        for strategy in STRATEGIES
+        run_detection_no_cleanup(
+            students, strategy, output_dir, include_reasoning, shared, journal, resume
+        )
+        for strategy in strategies or STRATEGIES
     ]
     results = await asyncio.gather(*tasks)
 
@@ -421,6 +591,177 @@ async def run_all_strategies_concurrent(
     return list(results)
 
 
+def batch_state_path(output_dir: Path) -> Path:
+    return output_dir / "_batches.json"
+
+
+def print_batch_job(job: BatchJob) -> None:
+    short_name = ALL_MODEL_SHORT_NAMES.get(job.model, job.model)
+    state = "collected" if job.collected else job.status
+    console.print(
+        f"[dim]{job.provider} batch {job.batch_id} ({short_name}, "
+        f"{len(job.custom_ids)} requests): {state}[/dim]"
+    )
+
+
+async def run_batch_detection(
+    students: list[str],
+    strategies: list[str],
+    output_dir: Path,
+    include_reasoning: bool = True,
+    shared: dict[tuple[str, str], tuple[str, str]] | None = None,
+    poll_interval: float = DEFAULT_POLL_INTERVAL,
+    max_wait: float = DEFAULT_MAX_WAIT,
+    journal: RunJournal | None = None,
+) -> list[dict[str, Any]]:
+    """Detect through the providers' batch endpoints instead of live calls.
+
+    Builds every (strategy, student, question, model) prompt first, answers
+    those already in the response cache, submits the rest as one batch job per
+    model (see utils.llm.batch) and writes the same result files and
+    _stats.json as run_detection. Files whose jobs are still running after
+    max_wait seconds are not written; rerunning the same command collects them.
+    """
+    questions = ["Q1", "Q2", "Q3", "Q4"]
+    shared = shared or {}
+    pairs = [(s, q) for s in students for q in questions if (s, q) not in shared]
+
+    model_configs = model_configs_for(include_reasoning)
+
+    # (strategy, student, question) -> [(model_key, custom_id)], None for missing files
+    cells: dict[tuple[str, str, str], list[tuple[str, str]] | None] = {}
+    requests: dict[str, BatchRequest] = {}
+    for strategy in strategies:
+        for student_id, question in pairs:
+            student_file = get_submission_dir() / student_id / f"{question}.java"
+            if not student_file.exists():
+                cells[(strategy, student_id, question)] = None
+                continue
+            prompt = build_prompt(
+                PromptStrategy(strategy), load_question_text(question), student_file.read_text()
+            )
+            messages = [{"role": "user", "content": prompt}]
+            cell = []
+            for model_key, model_id, use_reasoning in model_configs:
+                provider = provider_for(model_id)
+                custom_id = ResponseCache.key(
+                    provider, model_id, use_reasoning, messages, LLMDetectionResponse
+                )
+                requests.setdefault(
+                    custom_id,
+                    BatchRequest(custom_id, provider, model_id, use_reasoning, messages),
+                )
+                cell.append((model_key, custom_id))
+            cells[(strategy, student_id, question)] = cell
+
+    answers: dict[str, LLMDetectionResponse | str] = {}
+    if LLM_CACHE is not None:
+        for custom_id, request in requests.items():
+            cached = LLM_CACHE.get(
+                request.provider,
+                request.model,
+                request.reasoning,
+                request.messages,
+                LLMDetectionResponse,
+            )
+            if cached is not None:
+                answers[custom_id] = cached
+    todo = [request for custom_id, request in requests.items() if custom_id not in answers]
+    console.print(
+        f"[cyan]{len(requests)} distinct requests, {len(answers)} cached, "
+        f"{len(todo)} to submit as batches[/cyan]"
+    )
+
+    if todo:
+        fresh = await run_batches(
+            todo,
+            PROVIDER_CLIENTS,
+            LLMDetectionResponse,
+            batch_state_path(output_dir),
+            poll_interval=poll_interval,
+            max_wait=max_wait,
+            on_update=print_batch_job,
+        )
+        for custom_id, answer in fresh.items():
+            request = requests[custom_id]
+            if isinstance(answer, LLMDetectionResponse) and LLM_CACHE is not None:
+                LLM_CACHE.put(
+                    request.provider, request.model, request.reasoning, request.messages, answer
+                )
+        answers.update(fresh)
+
+    all_model_keys = [model_key for model_key, _, _ in model_configs]
+    all_stats = []
+    for strategy in strategies:
+        strategy_dir = output_dir / strategy
+        strategy_dir.mkdir(parents=True, exist_ok=True)
+        stats: dict[str, Any] = {
+            "total_processed": 0,
+            "successful": 0,
+            "skipped": 0,
+            "errors": 0,
+            "model_errors": 0,
+            "pending": 0,
+            "shared": 0,
+            "shared_by": {},
+            "calls_saved": 0,
+            "total_misconceptions": dict.fromkeys(all_model_keys, 0),
+        }
+        for student_id, question in pairs:
+            cell = cells[(strategy, student_id, question)]
+            if cell is None:
+                stats["total_processed"] += 1
+                stats["skipped"] += 1
+                continue
+            if any(custom_id not in answers for _, custom_id in cell):
+                stats["pending"] += 1
+                continue
+
+            model_results = {
+                model_key: model_entry(answers[custom_id]) for model_key, custom_id in cell
+            }
+            record_models(journal, student_id, question, strategy, model_results)
+            failed = False
+            for model_key, entry in model_results.items():
+                if "error" in entry:
+                    failed = True
+                    stats["model_errors"] += 1
+                else:
+                    stats["total_misconceptions"][model_key] += entry["count"]
+            result = {
+                "student": student_id,
+                "question": question,
+                "strategy": strategy,
+                "status": "partial" if failed else "success",
+                "models": model_results,
+                "timestamp": datetime.now(timezone.utc).isoformat(),
+            }
+            async with aiofiles.open(strategy_dir / f"{student_id}_{question}.json", mode="w") as f:
+                await f.write(json.dumps(result, indent=2))
+            stats["total_processed"] += 1
+            if failed:
+                stats["errors"] += 1
+            else:
+                stats["successful"] += 1
+
+        await write_shared_results(strategy_dir, shared, stats)
+
+        stats["strategy"] = strategy
+        stats["timestamp"] = datetime.now(timezone.utc).isoformat()
+        stats["students_processed"] = len(students)
+        async with aiofiles.open(strategy_dir / "_stats.json", mode="w") as f:
+            await f.write(json.dumps(stats, indent=2))
+        all_stats.append(stats)
+
+    await asyncio.gather(
+        openai_client.cleanup(),
+        anthropic_client.cleanup(),
+        gemini_client.cleanup(),
+    )
+
+    return all_stats
+
+
 def create_header():
     title = Text("NOTIONAL MACHINE DETECTOR", style="bold white on blue", justify="center")
     subtitle = Text(
@@ -468,6 +809,17 @@ def display_results(stats: dict[str, Any], strategy: str):
     table.add_row("Successful", f"[green]{stats['successful']}[/green]")
     table.add_row("Skipped", f"[yellow]{stats['skipped']}[/yellow]")
     table.add_row("Errors", f"[red]{stats['errors']}[/red]")
+    if stats.get("model_errors"):
+        table.add_row("Failed model calls", f"[red]{stats['model_errors']}[/red]")
+    if stats.get("already_done"):
+        table.add_row("Already done (journal)", f"[cyan]{stats['already_done']}[/cyan]")
+    shared_by = stats.get("shared_by", {})
+    if shared_by.get("canonical"):
+        table.add_row("Reused (same canonical AST)", f"[cyan]{shared_by['canonical']}[/cyan]")
+    if shared_by.get("behaviour"):
+        table.add_row("Shared by behaviour", f"[cyan]{shared_by['behaviour']}[/cyan]")
+    if stats.get("calls_saved"):
+        table.add_row("API calls saved", f"[cyan]{stats['calls_saved']}[/cyan]")
 
     console.print(table)
     console.print()
@@ -485,18 +837,61 @@ def display_results(stats: dict[str, Any], strategy: str):
     console.print(f"[dim]Results saved to {get_output_dir()}/{strategy}/[/dim]")
 
 
-@app.command()
-def detect(
-    strategy: str = typer.Option("taxonomy", help="Strategy: baseline, taxonomy, cot, socratic"),
-    students: int = typer.Option(0, help="Number of students (0 = all)"),
-    output: Path = typer.Option(
-        None, help="Output directory (default: detections/<assignment>_multi)"
-    ),
-    no_reasoning: bool = typer.Option(False, help="Disable reasoning models"),
-    assignment: str = typer.Option("a3", help="Assignment: a1, a2, or a3"),
-):
-    global CURRENT_ASSIGNMENT
+def print_call_usage() -> None:
+    if LLM_CACHE is not None and LLM_CACHE.hits + LLM_CACHE.misses:
+        console.print(
+            f"[dim]LLM cache: {LLM_CACHE.hits} responses reused, {LLM_CACHE.misses} calls made[/dim]"
+        )
+    for provider, limiter in limiters().items():
+        console.print(
+            f"[dim]{provider}: {limiter.stats.calls} calls, {limiter.stats.rate_limited} rate-limited, "
+            f"{limiter.stats.waited_s / max(limiter.stats.calls, 1):.1f}s average wait for budget, "
+            f"final concurrency {int(limiter.limit)}[/dim]"
+        )
+
+
+def print_resume_hint(model_errors: int) -> None:
+    if model_errors:
+        console.print(
+            f"[yellow]{model_errors} model calls failed and are stored as errors; "
+            f"`miscons.py resume` with the same options retries only those[/yellow]"
+        )
+
+
+def resolve_shared(
+    students: list[str], share_behaviour: bool, reuse_canonical: bool
+) -> dict[tuple[str, str], tuple[str, str]] | None:
+    """The shared pairs for the CLI flags, or exit with the reason they are unavailable."""
+    if not share_behaviour and not reuse_canonical:
+        return None
+    try:
+        canonical = load_canonical_pairs(students) if reuse_canonical else {}
+        behaviour = load_shared_pairs(students) if share_behaviour else {}
+    except (FileNotFoundError, FeatureExtractorError) as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from e
+    shared = combine_shared(canonical=canonical, behaviour=behaviour)
+    if shared:
+        console.print(f"[dim]Reusing detections for {len(shared)} of {len(students) * 4} files[/dim]")
+    return shared
+
+
+def prepare_run(
+    assignment: str,
+    output: Path | None,
+    students: int,
+    share_behaviour: bool,
+    reuse_canonical: bool,
+    llm_cache: bool,
+) -> tuple[Path, list[str], dict[tuple[str, str], tuple[str, str]] | None]:
+    """Setup shared by the detection commands: (output dir, students, shared pairs).
+
+    Selects the assignment and the LLM response cache, or exits if the
+    assignment has no students.
+    """
+    global CURRENT_ASSIGNMENT, LLM_CACHE
     CURRENT_ASSIGNMENT = assignment
+    LLM_CACHE = ResponseCache() if llm_cache else None
 
     if output is None:
         output = get_output_dir()
@@ -509,6 +904,42 @@ def detect(
     if students > 0:
         student_list = student_list[:students]
 
+    return output, student_list, resolve_shared(student_list, share_behaviour, reuse_canonical)
+
+
+def resolve_strategies(strategy: str) -> list[str]:
+    """The strategies a --strategy value names ("all" or one), or exit if unknown."""
+    strategies = STRATEGIES if strategy == "all" else [strategy]
+    for name in strategies:
+        if name not in STRATEGIES:
+            console.print(f"[red]Unknown strategy: {name}[/red]")
+            raise typer.Exit(1)
+    return strategies
+
+
+@app.command()
+def detect(
+    strategy: str = typer.Option("taxonomy", help="Strategy: baseline, taxonomy, cot, socratic"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    output: Path = typer.Option(
+        None, help="Output directory (default: detections/<assignment>_multi)"
+    ),
+    no_reasoning: bool = typer.Option(False, help="Disable reasoning models"),
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, or a3"),
+    share_behaviour: bool = typer.Option(
+        False, help="Detect once per behaviour group (needs `harness.py fingerprint`)"
+    ),
+    reuse_canonical: bool = typer.Option(
+        False, help="Detect once per group of files with the same canonical AST"
+    ),
+    llm_cache: bool = typer.Option(
+        True, help="Reuse responses cached for identical prompts (.cache/llm)"
+    ),
+):
+    output, student_list, shared = prepare_run(
+        assignment, output, students, share_behaviour, reuse_canonical, llm_cache
+    )
+
     console.print(create_header())
     console.print()
     console.print(f"[cyan]Running {strategy} on {len(student_list)} students...[/cyan]")
@@ -519,8 +950,13 @@ def detect(
     )
     console.print()
 
-    stats = asyncio.run(run_detection(student_list, strategy, output, not no_reasoning))
+    journal = RunJournal(journal_path(output))
+    stats = asyncio.run(
+        run_detection(student_list, strategy, output, not no_reasoning, shared, journal)
+    )
     display_results(stats, strategy)
+    print_call_usage()
+    print_resume_hint(stats["model_errors"])
     console.print("[bold green]Detection complete![/bold green]")
 
 
@@ -531,12 +967,184 @@ def all_strategies(
         None, help="Output directory (default: detections/<assignment>_multi)"
     ),
     assignment: str = typer.Option("a3", help="Assignment: a1, a2, or a3"),
+    share_behaviour: bool = typer.Option(
+        False, help="Detect once per behaviour group (needs `harness.py fingerprint`)"
+    ),
+    reuse_canonical: bool = typer.Option(
+        False, help="Detect once per group of files with the same canonical AST"
+    ),
+    llm_cache: bool = typer.Option(
+        True, help="Reuse responses cached for identical prompts (.cache/llm)"
+    ),
+):
+    output, student_list, shared = prepare_run(
+        assignment, output, students, share_behaviour, reuse_canonical, llm_cache
+    )
+
+    console.print(create_header())
+    console.print()
+    console.print(
+        f"[bold]Running all 4 strategies concurrently on {len(student_list)} students[/bold]"
+    )
+    console.print()
+
+    journal = RunJournal(journal_path(output))
+    all_stats = asyncio.run(
+        run_all_strategies_concurrent(student_list, output, shared=shared, journal=journal)
+    )
+
+    for stats in all_stats:
+        console.rule(f"[bold cyan]{stats['strategy']}[/bold cyan]")
+        display_results(stats, stats["strategy"])
+        console.print()
+
+    print_call_usage()
+    print_resume_hint(sum(stats["model_errors"] for stats in all_stats))
+    console.print("[bold green]All strategies complete![/bold green]")
+
+
+@app.command()
+def resume(
+    strategy: str = typer.Option("all", help="Strategy: baseline, taxonomy, cot, socratic, or all"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    output: Path = typer.Option(
+        None, help="Output directory (default: detections/<assignment>_multi)"
+    ),
+    no_reasoning: bool = typer.Option(False, help="Disable reasoning models"),
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, or a3"),
+    share_behaviour: bool = typer.Option(
+        False, help="Detect once per behaviour group (needs `harness.py fingerprint`)"
+    ),
+    reuse_canonical: bool = typer.Option(
+        False, help="Detect once per group of files with the same canonical AST"
+    ),
+    llm_cache: bool = typer.Option(
+        True, help="Reuse responses cached for identical prompts (.cache/llm)"
+    ),
 ):
+    """Finish an interrupted or partly failed run: only cells the journal has not recorded as done."""
+    strategies = resolve_strategies(strategy)
+    output, student_list, shared = prepare_run(
+        assignment, output, students, share_behaviour, reuse_canonical, llm_cache
+    )
+
+    journal = RunJournal(journal_path(output))
+    console.print(create_header())
+    console.print()
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Strategy", style="white")
+    table.add_column("Done", justify="right", style="green")
+    table.add_column("Failed", justify="right", style="red")
+    for name in strategies:
+        summary = journal.summary(name)
+        table.add_row(name, str(summary[DONE]), str(summary[ERROR]))
+    console.print(f"[bold]Journal {journal.path}[/bold]")
+    console.print(table)
+
+    all_stats = asyncio.run(
+        run_all_strategies_concurrent(
+            student_list,
+            output,
+            not no_reasoning,
+            shared,
+            journal=journal,
+            resume=True,
+            strategies=strategies,
+        )
+    )
+
+    for stats in all_stats:
+        console.rule(f"[bold cyan]{stats['strategy']}[/bold cyan]")
+        display_results(stats, stats["strategy"])
+        console.print()
+
+    print_call_usage()
+    print_resume_hint(sum(stats["model_errors"] for stats in all_stats))
+    console.print("[bold green]Resume complete![/bold green]")
+
+
+@app.command()
+def batch(
+    strategy: str = typer.Option("all", help="Strategy: baseline, taxonomy, cot, socratic, or all"),
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    output: Path = typer.Option(
+        None, help="Output directory (default: detections/<assignment>_multi)"
+    ),
+    no_reasoning: bool = typer.Option(False, help="Disable reasoning models"),
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, or a3"),
+    share_behaviour: bool = typer.Option(
+        False, help="Detect once per behaviour group (needs `harness.py fingerprint`)"
+    ),
+    reuse_canonical: bool = typer.Option(
+        False, help="Detect once per group of files with the same canonical AST"
+    ),
+    llm_cache: bool = typer.Option(
+        True, help="Reuse responses cached for identical prompts (.cache/llm)"
+    ),
+    poll_interval: float = typer.Option(DEFAULT_POLL_INTERVAL, help="Seconds between status polls"),
+    max_wait: float = typer.Option(
+        DEFAULT_MAX_WAIT / 3600, help="Hours to wait before leaving running jobs for a rerun"
+    ),
+):
+    """Run detection through the OpenAI, Anthropic and Gemini batch APIs."""
+    strategies = resolve_strategies(strategy)
+    output, student_list, shared = prepare_run(
+        assignment, output, students, share_behaviour, reuse_canonical, llm_cache
+    )
+
+    console.print(create_header())
+    console.print()
+    console.print(
+        f"[bold]Batch detection: {', '.join(strategies)} on {len(student_list)} students[/bold]"
+    )
+    console.print()
+
+    all_stats = asyncio.run(
+        run_batch_detection(
+            student_list,
+            strategies,
+            output,
+            not no_reasoning,
+            shared,
+            poll_interval=poll_interval,
+            max_wait=max_wait * 3600,
+            journal=RunJournal(journal_path(output)),
+        )
+    )
+
+    for stats in all_stats:
+        display_results(stats, stats["strategy"])
+        console.print()
+
+    pending = sum(stats["pending"] for stats in all_stats)
+    if pending:
+        console.print(
+            f"[yellow]{pending} files wait for running batch jobs; "
+            f"rerun the same command to collect them[/yellow]"
+        )
+        return
+    print_resume_hint(sum(stats["model_errors"] for stats in all_stats))
+    console.print("[bold green]Batch detection complete![/bold green]")
+
+
+@app.command()
+def static(
+    students: int = typer.Option(0, help="Number of students (0 = all)"),
+    output: Path = typer.Option(
+        None, help="Output directory (default: detections/<assignment>_static)"
+    ),
+    assignment: str = typer.Option("a3", help="Assignment: a1, a2, or a3"),
+):
+    """Run the javac-based static detector; results go to <output>/static/.
+
+    The default output is kept out of detections/<assignment>_multi, where
+    analyze.py treats every directory as an LLM strategy in its ensemble vote.
+    """
     global CURRENT_ASSIGNMENT
     CURRENT_ASSIGNMENT = assignment
 
     if output is None:
-        output = get_output_dir()
+        output = Path(f"detections/{assignment}_static")
 
     student_list = get_student_list()
     if not student_list:
@@ -546,25 +1154,84 @@ def all_strategies(
     if students > 0:
         student_list = student_list[:students]
 
-    console.print(create_header())
-    console.print()
-    console.print(
-        f"[bold]Running all 4 strategies concurrently on {len(student_list)} students[/bold]"
-    )
-    console.print()
+    files = [
+        (student_id, question, get_submission_dir() / student_id / f"{question}.java")
+        for student_id in student_list
+        for question in ["Q1", "Q2", "Q3", "Q4"]
+    ]
+    files = [f for f in files if f[2].exists()]
+    console.print(f"[cyan]Running static detection on {len(files)} files...[/cyan]")
+    try:
+        report = run_static_detector(files)
+    except StaticDetectorError as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from e
+
+    strategy_dir = output / "static"
+    strategy_dir.mkdir(parents=True, exist_ok=True)
+    stats: dict[str, Any] = {
+        "total_processed": 0,
+        "successful": 0,
+        "skipped": 0,
+        "errors": 0,
+        "total_misconceptions": {STATIC_MODEL: 0},
+    }
+    for student_id, question, _ in files:
+        entry = report[student_id][question]
+        stats["total_processed"] += 1
+        if not entry["parsed"]:
+            stats["errors"] += 1
+            continue
+        detection = to_detection(entry["findings"])
+        result = {
+            "student": student_id,
+            "question": question,
+            "strategy": "static",
+            "status": "success",
+            "models": {STATIC_MODEL: detection},
+            "timestamp": datetime.now(timezone.utc).isoformat(),
+        }
+        (strategy_dir / f"{student_id}_{question}.json").write_text(json.dumps(result, indent=2))
+        stats["successful"] += 1
+        stats["total_misconceptions"][STATIC_MODEL] += detection["count"]
+
+    stats["strategy"] = "static"
+    stats["timestamp"] = datetime.now(timezone.utc).isoformat()
+    stats["students_processed"] = len(student_list)
+    (strategy_dir / "_stats.json").write_text(json.dumps(stats, indent=2))
+    display_results(stats, "static")
 
-    all_stats = asyncio.run(run_all_strategies_concurrent(student_list, output))
 
-    for stats in all_stats:
-        console.rule(f"[bold cyan]{stats['strategy']}[/bold cyan]")
-        display_results(stats, stats["strategy"])
-        console.print()
+@app.command("llm-cache")
+def llm_cache_cmd(
+    clear: bool = typer.Option(False, help="Delete cached responses (all, or those selected)"),
+    provider: str = typer.Option(None, help="Only this provider: openai, anthropic, gemini"),
+    model: str = typer.Option(None, help="Only this model"),
+):
+    """Show or invalidate the LLM response cache in .cache/llm."""
+    cache = ResponseCache()
+    if clear:
+        removed = cache.clear(provider=provider, model=model)
+        console.print(f"[green]Removed {removed} cached responses from {DEFAULT_LLM_CACHE_DIR}[/green]")
+        return
 
-    console.print("[bold green]All strategies complete![/bold green]")
+    table = Table(box=box.SIMPLE, show_header=True, header_style="bold")
+    table.add_column("Provider", style="white")
+    table.add_column("Model", style="white")
+    table.add_column("Responses", justify="right", style="cyan")
+    for (entry_provider, entry_model), count in cache.entries().items():
+        if provider is not None and entry_provider != provider:
+            continue
+        if model is not None and entry_model != model:
+            continue
+        table.add_row(entry_provider, entry_model, str(count))
+    table.add_row("Size", "", f"{cache.size_bytes() / 1024 / 1024:.1f} MB")
+    console.print(table)
 
 
 @app.callback(invoke_without_command=True)
 def main(ctx: typer.Context):
+    global LLM_CACHE
     if ctx.invoked_subcommand is None:
         console.print(create_header())
         console.print()
@@ -602,7 +1269,11 @@ def main(ctx: typer.Context):
             return
 
         console.print()
-        stats = asyncio.run(run_detection(selected, strategy, get_output_dir()))
+        LLM_CACHE = ResponseCache()
+        journal = RunJournal(journal_path(get_output_dir()))
+        stats = asyncio.run(
+            run_detection(selected, strategy, get_output_dir(), journal=journal)
+        )
         display_results(stats, strategy)
         console.print("[bold green]Detection complete![/bold green]")
 
@@ -0,0 +1,46 @@
+"""Loading detection result files, including runs where some model calls failed."""
+
+import json
+
+from analyze import answered_models, load_detections_for_strategy
+
+
+def detection(label: str) -> dict:
+    return {
+        "misconceptions": [
+            {
+                "inferred_category_name": label,
+                "student_thought_process": "The student believes ...",
+                "conceptual_gap": "gap",
+                "error_manifestation": "wrong output",
+                "confidence": 0.9,
+                "evidence": [{"line_number": 1, "code_snippet": "int x = 0;"}],
+            }
+        ],
+        "count": 1,
+    }
+
+
+def test_partial_files_keep_the_models_that_answered(tmp_path):
+    strategy_dir = tmp_path / "baseline"
+    strategy_dir.mkdir()
+    partial = {
+        "student": "StudentA",
+        "question": "Q1",
+        "status": "partial",
+        "models": {
+            "gpt-5.2-2025-12-11": detection("gpt"),
+            "claude-haiku-4-5-20251001": {"status": "error", "error": "RuntimeError: overloaded"},
+            "gemini-3-flash-preview": detection("gemini"),
+        },
+    }
+    (strategy_dir / "StudentA_Q1.json").write_text(json.dumps(partial))
+    (strategy_dir / "StudentB_Q1.json").write_text(json.dumps({"status": "error", "models": {}}))
+    (strategy_dir / "_stats.json").write_text(json.dumps({"successful": 0}))
+
+    detections = load_detections_for_strategy(strategy_dir)
+
+    assert [d["student"] for d in detections] == ["StudentA"]
+    answered, failed = answered_models(detections[0])
+    assert sorted(answered) == ["gemini-3-flash-preview", "gpt-5.2-2025-12-11"]
+    assert failed == 1
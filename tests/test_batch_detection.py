@@ -0,0 +1,224 @@
+"""Batch detection against local stand-ins for the three providers' batch endpoints."""
+
+import json
+from types import SimpleNamespace
+
+import pytest
+
+import miscons
+from pydantic_models import LLMDetectionResponse
+from utils.llm import anthropic as anthropic_module
+from utils.llm import gemini as gemini_module
+from utils.llm import openai as openai_module
+from utils.llm.batch import load_jobs
+from utils.llm.cache import ResponseCache
+
+# Status polls a stand-in batch needs before it has ended
+POLLS_TO_FINISH = 2
+
+
+def answer(model: str, reasoning: bool) -> str:
+    """A detection whose category names the model configuration that produced it."""
+    label = f"{model}-R" if reasoning else model
+    return json.dumps(
+        {
+            "misconceptions": [
+                {
+                    "inferred_category_name": label,
+                    "student_thought_process": "The student believes ...",
+                    "conceptual_gap": "gap",
+                    "error_manifestation": "wrong output",
+                    "confidence": 0.9,
+                    "evidence": [{"line_number": 1, "code_snippet": "int x = 0;"}],
+                }
+            ]
+        }
+    )
+
+
+class FakeBatch:
+    def __init__(self, batch_id: str):
+        self.id = batch_id
+        self.polls = 0
+
+    def poll(self) -> bool:
+        self.polls += 1
+        return self.polls >= POLLS_TO_FINISH
+
+
+class FakeOpenAI:
+    """files + batches for /v1/responses."""
+
+    def __init__(self):
+        self.stored: dict[str, bytes] = {}
+        self.submitted: dict[str, FakeBatch] = {}
+        self.files = SimpleNamespace(create=self._create_file, content=self._content)
+        self.batches = SimpleNamespace(create=self._create_batch, retrieve=self._retrieve)
+
+    async def _create_file(self, file, purpose):
+        file_id = f"file-{len(self.stored)}"
+        self.stored[file_id] = file[1]
+        return SimpleNamespace(id=file_id)
+
+    async def _create_batch(self, input_file_id, endpoint, completion_window):
+        batch = FakeBatch(f"batch_{len(self.submitted)}")
+        self.submitted[batch.id] = batch
+        lines = []
+        for line in self.stored[input_file_id].decode().splitlines():
+            request = json.loads(line)
+            body = request["body"]
+            text = answer(body["model"], "reasoning" in body)
+            output = [{"type": "message", "content": [{"type": "output_text", "text": text}]}]
+            response = {"status_code": 200, "body": {"output": output}}
+            lines.append(json.dumps({"custom_id": request["custom_id"], "response": response}))
+        self.stored[f"{batch.id}-output"] = "\n".join(lines).encode()
+        return SimpleNamespace(id=batch.id)
+
+    async def _retrieve(self, batch_id):
+        done = self.submitted[batch_id].poll()
+        return SimpleNamespace(
+            status="completed" if done else "in_progress",
+            output_file_id=f"{batch_id}-output" if done else None,
+            error_file_id=None,
+        )
+
+    async def _content(self, file_id):
+        return SimpleNamespace(text=self.stored[file_id].decode())
+
+
+class FakeAnthropic:
+    """beta.messages.batches."""
+
+    def __init__(self):
+        self.submitted: dict[str, FakeBatch] = {}
+        self.requests: dict[str, list] = {}
+        batches = SimpleNamespace(
+            create=self._create, retrieve=self._retrieve, results=self._results
+        )
+        self.beta = SimpleNamespace(messages=SimpleNamespace(batches=batches))
+
+    async def _create(self, requests, betas):
+        batch = FakeBatch(f"msgbatch_{len(self.submitted)}")
+        self.submitted[batch.id] = batch
+        self.requests[batch.id] = requests
+        return SimpleNamespace(id=batch.id)
+
+    async def _retrieve(self, batch_id, betas):
+        done = self.submitted[batch_id].poll()
+        return SimpleNamespace(processing_status="ended" if done else "in_progress")
+
+    async def _results(self, batch_id, betas):
+        async def entries():
+            for request in self.requests[batch_id]:
+                params = request["params"]
+                text = answer(params["model"], "thinking" in params)
+                message = SimpleNamespace(content=[SimpleNamespace(type="text", text=text)])
+                yield SimpleNamespace(
+                    custom_id=request["custom_id"],
+                    result=SimpleNamespace(type="succeeded", message=message),
+                )
+
+        return entries()
+
+
+class FakeGemini:
+    """aio.batches with inlined requests."""
+
+    def __init__(self):
+        self.submitted: dict[str, FakeBatch] = {}
+        self.responses: dict[str, list] = {}
+        self.aio = SimpleNamespace(batches=SimpleNamespace(create=self._create, get=self._get))
+
+    async def _create(self, model, src, config):
+        batch = FakeBatch(f"batches/{len(self.submitted)}")
+        self.submitted[batch.id] = batch
+        self.responses[batch.id] = [
+            SimpleNamespace(
+                error=None,
+                response=SimpleNamespace(
+                    text=answer(model, request.config.thinking_config is not None)
+                ),
+            )
+            for request in src
+        ]
+        return SimpleNamespace(name=batch.id)
+
+    async def _get(self, name):
+        done = self.submitted[name].poll()
+        return SimpleNamespace(
+            state=SimpleNamespace(name="JOB_STATE_SUCCEEDED" if done else "JOB_STATE_RUNNING"),
+            dest=SimpleNamespace(inlined_responses=self.responses[name]) if done else None,
+        )
+
+
+@pytest.fixture
+def providers(tmp_path, monkeypatch):
+    """An a3 dataset of two students in tmp_path and stand-ins behind all three clients."""
+    monkeypatch.chdir(tmp_path)
+    for student in ["StudentA", "StudentB"]:
+        student_dir = tmp_path / "authentic_seeded" / "a3" / student
+        student_dir.mkdir(parents=True)
+        for q in ["Q1", "Q2", "Q3", "Q4"]:
+            (student_dir / f"{q}.java").write_text(f"public class {q} {{ /* {student} */ }}")
+    questions_dir = tmp_path / "data" / "a3"
+    questions_dir.mkdir(parents=True)
+    for q in ["q1", "q2", "q3", "q4"]:
+        (questions_dir / f"{q}.md").write_text("Question text")
+
+    fakes = {"openai": FakeOpenAI(), "anthropic": FakeAnthropic(), "gemini": FakeGemini()}
+    monkeypatch.setattr(openai_module, "_client", lambda: fakes["openai"])
+    monkeypatch.setattr(anthropic_module, "_client", lambda: fakes["anthropic"])
+    monkeypatch.setattr(gemini_module, "_client", lambda: fakes["gemini"])
+    monkeypatch.setattr(miscons, "CURRENT_ASSIGNMENT", "a3")
+    monkeypatch.setattr(miscons, "LLM_CACHE", ResponseCache(tmp_path / "llm"))
+    return fakes
+
+
+@pytest.mark.asyncio
+async def test_batch_detection_writes_detections(tmp_path, providers):
+    output_dir = tmp_path / "detections" / "a3_multi"
+
+    all_stats = await miscons.run_batch_detection(
+        ["StudentA", "StudentB"], ["baseline", "taxonomy"], output_dir, poll_interval=0
+    )
+
+    # One job per model, every (strategy, student, question, reasoning) request in it
+    for fake in providers.values():
+        assert len(fake.submitted) == 1
+    assert [stats["successful"] for stats in all_stats] == [8, 8]
+
+    result = json.loads((output_dir / "taxonomy" / "StudentB_Q3.json").read_text())
+    assert result["status"] == "success"
+    assert len(result["models"]) == 6
+    for model_key, detection in result["models"].items():
+        label = model_key.replace(":reasoning", "-R")
+        assert detection["misconceptions"][0]["inferred_category_name"] == label
+        LLMDetectionResponse.model_validate({"misconceptions": detection["misconceptions"]})
+
+    assert json.loads((output_dir / "baseline" / "_stats.json").read_text())["successful"] == 8
+    assert load_jobs(miscons.batch_state_path(output_dir)) == []
+
+
+@pytest.mark.asyncio
+async def test_batch_detection_resumes_running_jobs(tmp_path, providers):
+    output_dir = tmp_path / "detections" / "a3_multi"
+    students = ["StudentA", "StudentB"]
+
+    # Give up before the jobs end: nothing is written, the jobs are recorded
+    first = await miscons.run_batch_detection(
+        students, ["cot"], output_dir, poll_interval=0, max_wait=0
+    )
+    assert first[0]["pending"] == 8
+    assert not (output_dir / "cot" / "StudentA_Q1.json").exists()
+    assert len(load_jobs(miscons.batch_state_path(output_dir))) == 3
+
+    # The rerun polls the recorded jobs instead of submitting new ones
+    second = await miscons.run_batch_detection(students, ["cot"], output_dir, poll_interval=0)
+    assert second[0]["successful"] == 8
+    for fake in providers.values():
+        assert len(fake.submitted) == 1
+
+    # Everything is cached now, so a third run submits nothing
+    await miscons.run_batch_detection(students, ["cot"], output_dir, poll_interval=0)
+    for fake in providers.values():
+        assert len(fake.submitted) == 1
@@ -0,0 +1,65 @@
+"""CompiledSource and run_tests: one compile per source, cached runs equal to fresh ones."""
+
+from utils import execution
+from utils.execution import CompiledSource
+from utils.generators.dataset_generator import TestCase, run_tests
+from utils.jvm.cache import ExecutionCache
+
+DOUBLER = """import java.util.Scanner;
+
+public class Doubler {
+    public static void main(String[] args) {
+        Scanner in = new Scanner(System.in);
+        System.out.println("Double: " + in.nextInt() * 2);
+    }
+}
+"""
+
+TESTS = [
+    TestCase("one", "1", "Double: 2"),
+    TestCase("two", "2", "Double: 4"),
+    TestCase("wrong", "3", "Double: 7"),
+]
+
+
+def count_compiles(monkeypatch) -> list[str]:
+    compiled = []
+    compile_source = execution.compile_source
+
+    def counting(java_source, *args, **kwargs):
+        compiled.append(java_source)
+        return compile_source(java_source, *args, **kwargs)
+
+    monkeypatch.setattr(execution, "compile_source", counting)
+    return compiled
+
+
+def test_a_source_is_compiled_once_for_all_inputs(monkeypatch):
+    compiled = count_compiles(monkeypatch)
+    passed, total, failures = run_tests(DOUBLER, TESTS)
+    assert (passed, total) == (2, 3)
+    assert failures == ["wrong: Expected 'Double: 7' in output, got 'Double: 6'"]
+    assert compiled == [DOUBLER]
+
+
+def test_a_broken_source_is_compiled_once(monkeypatch):
+    compiled = count_compiles(monkeypatch)
+    broken = DOUBLER.replace("in.nextInt() * 2", "in.nextInt() * ")
+    with CompiledSource(broken) as program:
+        assert [program.run(stdin) for stdin in ("1", "2", "3")] == [None, None, None]
+        assert not program.compile().success
+    assert compiled == [broken]
+
+
+def test_cached_runs_match_fresh_ones_and_skip_the_compile(tmp_path, monkeypatch):
+    fresh = run_tests(DOUBLER, TESTS)
+    cache = ExecutionCache(tmp_path)
+    assert run_tests(DOUBLER, TESTS, cache=cache) == fresh
+
+    compiled = count_compiles(monkeypatch)
+    assert run_tests(DOUBLER, TESTS, cache=cache) == fresh
+    assert compiled == []
+
+    with CompiledSource(DOUBLER) as uncached, CompiledSource(DOUBLER, cache=cache) as cached:
+        for tc in TESTS:
+            assert cached.cached(tc.input) == uncached.run(tc.input)
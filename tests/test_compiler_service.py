@@ -0,0 +1,73 @@
+"""CompilerService: results and diagnostics from the pooled compiler JVMs."""
+
+from concurrent.futures import ThreadPoolExecutor
+
+from utils.execution import compile_source
+from utils.jvm.compiler import CompilerService
+
+GOOD = """public class Good {
+    public static void main(String[] args) {
+        System.out.println(args.length);
+    }
+}
+"""
+
+BROKEN = """public class Broken {
+    public static void main(String[] args) {
+        int x = "text";
+    }
+}
+"""
+
+
+def numbered(i: int) -> str:
+    return GOOD.replace("Good", f"Good{i}")
+
+
+def test_compiles_to_class_files_and_reports_diagnostics(tmp_path):
+    with CompilerService(size=2) as compiler:
+        good = compiler.compile(GOOD, tmp_path)
+        broken = compiler.compile(BROKEN)
+
+    assert good.success and not good.infra_error
+    assert (tmp_path / "Good.class").is_file()
+
+    assert not broken.success and not broken.infra_error
+    errors = [d for d in broken.diagnostics if d.kind == "error"]
+    assert len(errors) == 1
+    assert (errors[0].line, errors[0].column) == (3, 17)
+    assert "incompatible types" in errors[0].message
+    assert "Broken.java:3" in broken.stderr
+
+
+def test_agrees_with_a_javac_process(tmp_path):
+    with CompilerService(size=1) as compiler:
+        for name, source in (("Good", GOOD), ("Broken", BROKEN)):
+            (tmp_path / name).mkdir()
+            service = compiler.compile(source)
+            process = compile_source(source, tmp_path / name)
+            assert service.success == process.success, name
+
+
+def test_batch_keeps_keys_and_order():
+    sources = {("s1", "Q1"): GOOD, ("s2", "Q1"): BROKEN, ("s3", "Q1"): "int x = 1;"}
+    with CompilerService(size=2) as compiler:
+        results = compiler.compile_batch(sources)
+    assert list(results) == list(sources)
+    assert [r.success for r in results.values()] == [True, False, False]
+    assert results[("s3", "Q1")].stderr == "No class found in source"
+
+
+def test_concurrent_callers_use_several_workers(tmp_path):
+    with CompilerService(size=3) as compiler:
+        with ThreadPoolExecutor(max_workers=6) as executor:
+            results = list(
+                executor.map(lambda i: compiler.compile(numbered(i), tmp_path), range(12))
+            )
+        started = len(compiler._all)
+
+    assert all(r.success for r in results)
+    assert sorted(p.name for p in tmp_path.glob("*.class")) == sorted(
+        f"Good{i}.class" for i in range(12)
+    )
+    assert 1 < started <= 3
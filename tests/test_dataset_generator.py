@@ -0,0 +1,78 @@
+"""Generator acceptance with and without the differential battery (--differential)."""
+
+import asyncio
+
+from utils.generators import dataset_generator
+from utils.generators.dataset_generator import (
+    MAX_RETRIES,
+    PipelineStats,
+    check_seeded,
+    generate_sample,
+    load_test_cases,
+)
+from utils.generators.oracle import build_battery, reference_path
+
+REFERENCE = reference_path("a1", "Q1").read_text()
+# Passes every a1 Q1 test case (none has a negative v0) but not the battery
+SIGN_BUG = REFERENCE.replace(
+    "double acceleration = (v1 - v0) / t;",
+    "double acceleration = (v1 - Math.abs(v0)) / t;",
+)
+
+
+def battery():
+    return build_battery("a1", "Q1", count=6)
+
+
+def test_seeded_code_must_fail_a_test_without_a_battery():
+    tests = load_test_cases("a1", "Q1")
+    rejected = check_seeded(SIGN_BUG, REFERENCE, tests, "a1", "Q1", None)
+    assert rejected == ("passed", "passed all tests")
+
+
+def test_seeded_code_that_diverges_from_the_reference_is_accepted():
+    tests = load_test_cases("a1", "Q1")
+    assert check_seeded(SIGN_BUG, REFERENCE, tests, "a1", "Q1", battery()) is None
+
+
+def generate(monkeypatch, q1_code: str, batteries) -> tuple:
+    async def generate_correct_code(client, model, text, brief, persona, question):
+        if question == "Q1":
+            return q1_code
+        return reference_path("a1", question).read_text()
+
+    monkeypatch.setattr(dataset_generator, "generate_correct_code", generate_correct_code)
+    stats = PipelineStats()
+    all_tests = {q: load_test_cases("a1", q) for q in ("Q1", "Q2", "Q3", "Q4")}
+    sample = asyncio.run(
+        generate_sample(
+            None,
+            "model",
+            {},
+            {},
+            ("style_minimal", "cog_procedural"),
+            None,
+            None,
+            all_tests,
+            stats,
+            assignment="a1",
+            batteries=batteries,
+        )
+    )
+    return sample, stats
+
+
+def test_correct_code_must_agree_with_the_reference(monkeypatch):
+    sample, stats = generate(monkeypatch, SIGN_BUG, {"Q1": battery()})
+    assert sample is None
+    assert stats.correct_oracle_failures == MAX_RETRIES
+
+    sample, stats = generate(monkeypatch, REFERENCE, {"Q1": battery()})
+    assert sample is not None and stats.correct_oracle_failures == 0
+
+
+def test_correct_code_only_needs_the_tests_without_a_battery(monkeypatch):
+    sample, stats = generate(monkeypatch, SIGN_BUG, None)
+    assert sample is not None
+    assert sample.correct_codes["Q1"] == SIGN_BUG
+    assert stats.correct_oracle_failures == 0
@@ -0,0 +1,60 @@
+"""Distinguishing inputs: boundary candidates from compare constants, and the search."""
+
+from utils.generators.distinguish import (
+    boundary_values,
+    candidate_inputs,
+    find_distinguishing_input,
+    parse_constants,
+    source_constants,
+)
+from utils.generators.oracle import question_spec, reference_path
+
+GRADER = reference_path("a2", "Q3").read_text()
+# Off by one at the A boundary only
+OFF_BY_ONE = GRADER.replace("grade >= 90", "grade > 90")
+
+
+def test_boundary_values_surround_each_constant():
+    assert boundary_values([90.0, 2.5]) == ["0", "-1", "1", "1.5", "2.5", "3.5", "89", "90", "91"]
+    assert boundary_values([]) == ["0", "-1", "1"]
+    assert parse_constants("90.0;80.0;") == {90.0, 80.0}
+    assert parse_constants("") == set()
+
+
+def test_candidates_keep_the_question_domain():
+    candidates = candidate_inputs("a2", "Q3", [90.0, 100.0])
+    for value in ("89", "90", "91", "99", "100"):
+        assert value in candidates
+    # Grades run from 0 to 100
+    assert "101" not in candidates and "-1" not in candidates
+    valid = question_spec("a2", "Q3").valid
+    assert all(valid(stdin) for stdin in candidates)
+    assert candidate_inputs("a2", "Q3", [90.0, 100.0], limit=3) == candidates[:3]
+
+
+def test_candidates_set_two_tokens_to_the_same_boundary():
+    candidates = candidate_inputs("a1", "Q3", [5.0])
+    # x1 and x2 both at the constant: the x1 == x2 boundary
+    assert any(stdin.startswith("5 ") and "\n5 " in stdin for stdin in candidates)
+    assert all(len(stdin.split()) == 4 for stdin in candidates)
+
+
+def test_candidates_are_ordered_smallest_first():
+    candidates = candidate_inputs("a3", "Q4", [3.0], limit=40)
+    sizes = [len(stdin.split()) for stdin in candidates]
+    assert sizes == sorted(sizes)
+    assert candidate_inputs("a9", "Q1", [1.0]) == []
+
+
+def test_constants_come_from_the_comparisons():
+    assert {90.0, 80.0, 70.0, 60.0} <= source_constants([GRADER])
+    assert 90.0 in source_constants([OFF_BY_ONE, GRADER])
+
+
+def test_the_search_finds_the_boundary_a_bug_is_about():
+    found = find_distinguishing_input(OFF_BY_ONE, "a2", "Q3")
+    assert found is not None
+    assert found.input == "90"
+    assert "expected ['A'], got ['B']" in found.message
+    assert found.runs <= 60
+    assert find_distinguishing_input(GRADER, "a2", "Q3") is None
@@ -0,0 +1,94 @@
+"""ExecutionCache: compile and run entries, their keys, and LRU eviction."""
+
+import os
+
+from utils.execution import CompileDiagnostic, CompileResult, RunResult
+from utils.jvm.cache import ExecutionCache
+
+SOURCE = "public class Hello { public static void main(String[] a) { System.out.println(1); } }"
+
+
+def run_result(stdout: str = "1\n") -> RunResult:
+    return RunResult(success=True, stdout=stdout, stderr="", timed_out=False)
+
+
+def test_compile_round_trip_copies_the_classes(tmp_path):
+    cache = ExecutionCache(tmp_path / "cache")
+    classes = tmp_path / "classes"
+    classes.mkdir()
+    (classes / "Hello.class").write_bytes(b"\xca\xfe\xba\xbe")
+    assert cache.get_compile(SOURCE, tmp_path) is None
+
+    cache.put_compile(SOURCE, CompileResult(success=True, stderr=""), classes)
+    out = tmp_path / "out"
+    out.mkdir()
+    assert cache.get_compile(SOURCE, out) == CompileResult(success=True, stderr="")
+    assert (out / "Hello.class").read_bytes() == b"\xca\xfe\xba\xbe"
+    assert (cache.hits, cache.misses) == (1, 1)
+
+
+def test_failed_compiles_keep_their_diagnostics(tmp_path):
+    cache = ExecutionCache(tmp_path)
+    failed = CompileResult(
+        success=False,
+        stderr="Hello.java:1: error: ';' expected",
+        diagnostics=[CompileDiagnostic(kind="error", line=1, column=5, message="';' expected")],
+    )
+    cache.put_compile(SOURCE, failed)
+    assert cache.get_compile(SOURCE) == failed
+
+
+def test_compiles_are_keyed_by_javac_options(tmp_path):
+    cache = ExecutionCache(tmp_path)
+    failed = CompileResult(success=False, stderr="error")
+    cache.put_compile(SOURCE, failed, options=("-g",))
+    assert cache.get_compile(SOURCE, options=("-g",)) == failed
+    assert cache.get_compile(SOURCE) is None
+    assert cache.get_compile(SOURCE + " ", options=("-g",)) is None
+
+
+def test_infrastructure_failures_and_timeouts_are_not_stored(tmp_path):
+    cache = ExecutionCache(tmp_path)
+    cache.put_compile(SOURCE, CompileResult(success=False, stderr="javac not found", infra_error=True))
+    cache.put_run(SOURCE, "", RunResult(success=False, stdout="", stderr="", timed_out=True))
+    cache.put_run(SOURCE, "x", RunResult(False, "", "worker crashed", False, infra_error=True))
+    assert cache.get_compile(SOURCE) is None
+    assert cache.get_run(SOURCE, "") is None
+    assert cache.get_run(SOURCE, "x") is None
+
+
+def test_runs_are_keyed_by_stdin_and_mode(tmp_path):
+    cache = ExecutionCache(tmp_path)
+    cache.put_run(SOURCE, "1 2", run_result("3\n"), mode="pool")
+    assert cache.get_run(SOURCE, "1 2", mode="pool") == run_result("3\n")
+    assert cache.get_run(SOURCE, "1 2", mode="process") is None
+    assert cache.get_run(SOURCE, "1 3", mode="pool") is None
+
+
+def test_least_recently_used_entries_are_evicted_first(tmp_path):
+    entry_bytes = len(b'{"v": "' + b"x" * 1000 + b'"}')
+    cache = ExecutionCache(tmp_path, max_bytes=int(entry_bytes * 3.5))
+    for name in ("a", "b", "c"):
+        cache.put_json("junit", {"v": "x" * 1000}, name)
+    # "a" is the oldest write, but reading it makes "b" the least recently used
+    for name, age in (("a", 30), ("b", 20), ("c", 10)):
+        path = cache._json_path("junit", (name,))
+        os.utime(path, (path.stat().st_atime, path.stat().st_mtime - age))
+    assert cache.get_json("junit", "a") is not None
+
+    cache.put_json("junit", {"v": "x" * 1000}, "d")
+    assert cache.get_json("junit", "b") is None
+    for name in ("a", "c", "d"):
+        assert cache.get_json("junit", name) is not None
+    assert cache.size_bytes() <= cache.max_bytes
+
+
+def test_size_is_tracked_without_rescanning(tmp_path, monkeypatch):
+    cache = ExecutionCache(tmp_path, max_bytes=1 << 20)
+    cache.put_json("junit", {"v": 1}, "first")
+    scans = []
+    monkeypatch.setattr(cache, "size_bytes", lambda: scans.append(1) or 0)
+    monkeypatch.setattr(cache, "prune", lambda: scans.append(1) or 0)
+    for i in range(200):
+        cache.put_run(SOURCE, str(i), run_result())
+    assert scans == []
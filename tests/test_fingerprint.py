@@ -0,0 +1,89 @@
+"""Behavioural fingerprints and the groups FingerprintIndex builds from them."""
+
+from utils.execution import RunResult
+from utils.generators.fingerprint import (
+    FingerprintIndex,
+    _outcome,
+    behaviour_fingerprint,
+    fingerprint_inputs,
+    normalize_output,
+    reference_fingerprint,
+)
+from utils.generators.oracle import reference_path
+
+
+def index() -> FingerprintIndex:
+    return FingerprintIndex(
+        "a1",
+        references={"Q1": "ref"},
+        students={
+            "dan": {"Q1": "bug"},
+            "amy": {"Q1": "ref"},
+            "cat": {"Q1": "bug"},
+            "bob": {"Q1": "ref"},
+            "eve": {"Q1": None},
+            "fay": {"Q1": "bug"},
+            "gus": {"Q1": "other"},
+        },
+    )
+
+
+def test_groups_are_sorted_and_skip_missing_fingerprints():
+    groups = index().groups("Q1")
+    assert groups == {"bug": ["cat", "dan", "fay"], "ref": ["amy", "bob"], "other": ["gus"]}
+    assert index().representative("fay", "Q1") == "cat"
+    assert index().representative("eve", "Q1") == "eve"
+    assert index().representative("zed", "Q1") == "zed"
+
+
+def test_shared_leaves_out_the_reference_group():
+    assert index().shared("Q1") == {"dan": "cat", "fay": "cat"}
+    assert index().shared("Q1", include_reference=True) == {
+        "dan": "cat",
+        "fay": "cat",
+        "bob": "amy",
+    }
+
+
+def test_shared_among_a_subset_picks_a_representative_inside_it():
+    assert index().shared("Q1", among={"dan", "fay", "gus", "eve"}) == {"fay": "dan"}
+    assert index().shared("Q1", among={"dan"}) == {}
+    assert index().shared("Q2") == {}
+
+
+def test_index_round_trip(tmp_path):
+    path = tmp_path / "grading" / "a1_fingerprints.json"
+    index().save(path)
+    assert FingerprintIndex.load(path) == index()
+
+
+def test_outcomes_normalize_output_and_name_crashes():
+    assert normalize_output("a  \r\n\r\nb\rc\n\n") == "a\nb\nc"
+    crash = RunResult(
+        success=False,
+        stdout="partial",
+        stderr='Exception in thread "main" java.util.InputMismatchException: x\n\tat Q1.main',
+        timed_out=False,
+    )
+    assert _outcome(crash) == "<crash:java.util.InputMismatchException>"
+    stopped = RunResult(False, "", "", True, reason="no_progress")
+    assert _outcome(stopped) == "<stopped:no_progress>"
+    assert _outcome(RunResult(False, "", "", True)) == "<stopped:timeout>"
+
+
+def test_programs_with_the_same_behaviour_share_a_fingerprint():
+    inputs = fingerprint_inputs("a1", "Q1", count=4, seed=0)
+    reference = reference_path("a1", "Q1").read_text()
+    # Different names and trailing whitespace, same normalized output
+    renamed = reference.replace("double acceleration", "double a").replace(
+        'System.out.println("The average acceleration is " + acceleration);',
+        'System.out.print("The average acceleration is " + a + "  \\r\\n");',
+    )
+    bug = reference.replace("(v1 - v0) / t", "(v0 - v1) / t")
+
+    expected = reference_fingerprint("a1", "Q1", inputs)
+    assert expected is not None
+    assert behaviour_fingerprint(renamed, inputs) == expected
+    assert behaviour_fingerprint(bug, inputs) not in (None, expected)
+    assert behaviour_fingerprint(reference.replace("double t", "double"), inputs) is None
+    assert fingerprint_inputs("a2", "Q2", count=4, seed=0) == []
@@ -0,0 +1,99 @@
+"""RunJournal records and resuming a detection run from them."""
+
+import asyncio
+import json
+
+import miscons
+from miscons import completed_models, run_detection_no_cleanup
+from pydantic_models import LLMDetectionResponse
+from utils.llm.journal import DONE, ERROR, RunJournal, journal_path
+
+
+def test_records_survive_a_reload_and_the_last_one_wins(tmp_path):
+    path = journal_path(tmp_path / "out")
+    journal = RunJournal(path)
+    journal.record("amy", "Q1", "baseline", "gpt", ERROR, error="RateLimitError: 429")
+    journal.record("amy", "Q2", "baseline", "gpt", DONE, count=2)
+    journal.record("amy", "Q1", "baseline", "gpt", DONE, count=0)
+    journal.record("bob", "Q1", "cot", "claude", ERROR, error="APITimeoutError: timed out")
+    # A crash mid-write leaves a partial last line
+    with path.open("a") as f:
+        f.write('{"student": "bob", "question": "Q2", "stra')
+
+    reloaded = RunJournal(path)
+    assert reloaded.cells == journal.cells
+    assert reloaded.status("amy", "Q1", "baseline", "gpt") == DONE
+    assert reloaded.status("bob", "Q2", "baseline", "gpt") is None
+    assert reloaded.summary() == {DONE: 2, ERROR: 1}
+    assert reloaded.summary("baseline") == {DONE: 2}
+    assert [r["student"] for r in reloaded.errors()] == ["bob"]
+    assert reloaded.errors("baseline") == []
+
+
+def test_completed_models_are_done_in_the_journal_and_the_result(tmp_path):
+    journal = RunJournal(journal_path(tmp_path))
+    journal.record("amy", "Q1", "baseline", "gpt", DONE, count=1)
+    journal.record("amy", "Q1", "baseline", "claude", ERROR, error="boom")
+    result = {
+        "models": {
+            "gpt": {"misconceptions": [], "count": 1},
+            "claude": {"status": "error", "error": "boom"},
+            # In the file but never journalled (the run stopped before)
+            "gemini": {"misconceptions": [], "count": 0},
+        }
+    }
+    (tmp_path / "amy_Q1.json").write_text(json.dumps(result))
+
+    done = completed_models(journal, tmp_path, "amy", "Q1", "baseline")
+    assert done == {"gpt": {"misconceptions": [], "count": 1}}
+    assert completed_models(journal, tmp_path, "bob", "Q1", "baseline") == {}
+
+
+def test_resume_retries_only_the_failed_models(tmp_path, monkeypatch):
+    monkeypatch.chdir(tmp_path)
+    monkeypatch.setattr(miscons, "CURRENT_ASSIGNMENT", "a1")
+    monkeypatch.setattr(miscons, "OPENAI_MODELS", ["gpt"])
+    monkeypatch.setattr(miscons, "ANTHROPIC_MODELS", ["claude"])
+    monkeypatch.setattr(miscons, "GEMINI_MODELS", [])
+    (tmp_path / "data" / "a1").mkdir(parents=True)
+    (tmp_path / "data" / "a1" / "q1.md").write_text("Question 1")
+    (tmp_path / "authentic_seeded" / "a1" / "amy").mkdir(parents=True)
+    (tmp_path / "authentic_seeded" / "a1" / "amy" / "Q1.java").write_text("class Q1 {}")
+
+    calls = []
+    failing = {"claude"}
+
+    async def detect_for_file(model, problem, code, strategy, use_reasoning=False):
+        calls.append(model)
+        if model in failing:
+            raise TimeoutError("timed out")
+        return LLMDetectionResponse(misconceptions=[])
+
+    monkeypatch.setattr(miscons, "detect_for_file", detect_for_file)
+    output = tmp_path / "out"
+
+    def run(resume: bool) -> dict:
+        journal = RunJournal(journal_path(output))
+        return asyncio.run(
+            run_detection_no_cleanup(
+                ["amy"], "baseline", output, False, journal=journal, resume=resume
+            )
+        )
+
+    first = run(resume=False)
+    assert sorted(calls) == ["claude", "gpt"]
+    assert (first["errors"], first["model_errors"]) == (1, 1)
+
+    calls.clear()
+    failing.clear()
+    second = run(resume=True)
+    assert calls == ["claude"]
+    assert (second["successful"], second["model_errors"]) == (1, 0)
+    result = json.loads((output / "baseline" / "amy_Q1.json").read_text())
+    assert result["status"] == "success"
+    assert set(result["models"]) == {"gpt", "claude"}
+
+    calls.clear()
+    third = run(resume=True)
+    assert calls == []
+    assert third["already_done"] == 1
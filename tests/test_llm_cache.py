@@ -0,0 +1,79 @@
+"""ResponseCache: hits and misses, key stability, and clearing by provider or model."""
+
+from pydantic import BaseModel
+
+from utils.llm.cache import ResponseCache
+
+MESSAGES = [{"role": "user", "content": "Find the misconception."}]
+
+
+class Answer(BaseModel):
+    value: str
+
+
+class OtherAnswer(BaseModel):
+    value: str
+    confidence: float
+
+
+def test_put_then_get(tmp_path):
+    cache = ResponseCache(tmp_path)
+    assert cache.get("openai", "gpt", False, MESSAGES, Answer) is None
+    cache.put("openai", "gpt", False, MESSAGES, Answer(value="x"))
+    assert cache.get("openai", "gpt", False, MESSAGES, Answer) == Answer(value="x")
+    assert (cache.hits, cache.misses) == (1, 1)
+    # A new instance reads the same files
+    reopened = ResponseCache(tmp_path)
+    assert reopened.get("openai", "gpt", False, MESSAGES, Answer) == Answer(value="x")
+
+
+def test_every_key_input_separates_entries(tmp_path):
+    cache = ResponseCache(tmp_path)
+    cache.put("openai", "gpt", False, MESSAGES, Answer(value="x"))
+    other_messages = [{"role": "user", "content": "Find the misconception!"}]
+    for args in (
+        ("anthropic", "gpt", False, MESSAGES, Answer),
+        ("openai", "gpt-mini", False, MESSAGES, Answer),
+        ("openai", "gpt", True, MESSAGES, Answer),
+        ("openai", "gpt", False, other_messages, Answer),
+        ("openai", "gpt", False, MESSAGES, OtherAnswer),
+    ):
+        assert cache.get(*args) is None, args
+
+
+def test_keys_are_stable():
+    key = ResponseCache.key("openai", "gpt", False, MESSAGES, Answer)
+    reordered = [{"content": "Find the misconception.", "role": "user"}]
+    assert ResponseCache.key("openai", "gpt", False, reordered, Answer) == key
+    assert len(key) == 64 and key == ResponseCache.key("openai", "gpt", False, MESSAGES, Answer)
+
+
+def test_an_entry_that_no_longer_validates_is_a_miss(tmp_path):
+    cache = ResponseCache(tmp_path)
+    cache.put("openai", "gpt", False, MESSAGES, Answer(value="x"))
+    key = cache.key("openai", "gpt", False, MESSAGES, Answer)
+    cache._path("openai", "gpt", key).write_text("{not json")
+    assert cache.get("openai", "gpt", False, MESSAGES, Answer) is None
+    assert cache.misses == 1
+
+
+def test_clear_by_provider_and_model(tmp_path):
+    cache = ResponseCache(tmp_path)
+    for provider, model in (
+        ("openai", "gpt"),
+        ("openai", "gpt-mini"),
+        ("anthropic", "claude"),
+        ("gemini", "models/flash"),
+    ):
+        cache.put(provider, model, False, MESSAGES, Answer(value=model))
+        cache.put(provider, model, True, MESSAGES, Answer(value=model))
+    assert cache.entries()[("gemini", "models_flash")] == 2
+
+    assert cache.clear(model="gpt-mini") == 2
+    assert cache.get("openai", "gpt", False, MESSAGES, Answer) is not None
+    assert cache.clear(provider="gemini", model="models/flash") == 2
+    assert not (tmp_path / "gemini").exists()
+    assert cache.clear(provider="openai") == 2
+    assert cache.get("anthropic", "claude", True, MESSAGES, Answer) == Answer(value="claude")
+    assert cache.clear() == 2
+    assert cache.entries() == {}
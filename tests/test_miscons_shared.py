@@ -0,0 +1,108 @@
+"""Reusing one detection for a group of files: shared pairs and how they are written."""
+
+import asyncio
+import json
+
+import pytest
+import typer
+
+import miscons
+from miscons import combine_shared, load_shared_pairs, resolve_shared, write_shared_results
+from utils.generators.fingerprint import FingerprintIndex, fingerprint_path
+
+
+@pytest.fixture
+def fingerprints(tmp_path, monkeypatch):
+    """A fingerprint index for a1 in a temporary working directory."""
+    monkeypatch.chdir(tmp_path)
+    monkeypatch.setattr(miscons, "CURRENT_ASSIGNMENT", "a1")
+    index = FingerprintIndex(
+        "a1",
+        references={"Q1": "ref", "Q2": "ref2"},
+        students={
+            "amy": {"Q1": "ref", "Q2": "x"},
+            "bob": {"Q1": "ref", "Q2": "x"},
+            "cat": {"Q1": "bug", "Q2": "x"},
+            "dan": {"Q1": "bug", "Q2": None},
+        },
+    )
+    index.save(fingerprint_path("a1"))
+    return index
+
+
+def test_behaviour_pairs_skip_the_reference_group(fingerprints):
+    assert load_shared_pairs(["amy", "bob", "cat", "dan"]) == {
+        ("dan", "Q1"): "cat",
+        ("bob", "Q2"): "amy",
+        ("cat", "Q2"): "amy",
+    }
+
+
+def test_behaviour_pairs_stay_within_the_selected_students(fingerprints):
+    assert load_shared_pairs(["bob", "cat", "dan"]) == {
+        ("dan", "Q1"): "cat",
+        ("cat", "Q2"): "bob",
+    }
+    assert load_shared_pairs(["dan"]) == {}
+
+
+def test_earlier_bases_win_and_chains_end_at_a_detected_file():
+    shared = combine_shared(
+        canonical={("cat", "Q1"): "bob", ("eve", "Q1"): "dan"},
+        behaviour={("bob", "Q1"): "amy", ("cat", "Q1"): "amy", ("fay", "Q2"): "eve"},
+    )
+    assert shared == {
+        ("cat", "Q1"): ("amy", "canonical"),
+        ("eve", "Q1"): ("dan", "canonical"),
+        ("bob", "Q1"): ("amy", "behaviour"),
+        ("fay", "Q2"): ("eve", "behaviour"),
+    }
+
+
+def test_resolve_shared_follows_the_flags(fingerprints):
+    students = ["amy", "bob", "cat", "dan"]
+    assert resolve_shared(students, share_behaviour=False, reuse_canonical=False) is None
+    assert resolve_shared(students, share_behaviour=True, reuse_canonical=False) == {
+        ("dan", "Q1"): ("cat", "behaviour"),
+        ("bob", "Q2"): ("amy", "behaviour"),
+        ("cat", "Q2"): ("amy", "behaviour"),
+    }
+
+
+def test_resolve_shared_exits_without_an_index(tmp_path, monkeypatch):
+    monkeypatch.chdir(tmp_path)
+    monkeypatch.setattr(miscons, "CURRENT_ASSIGNMENT", "a1")
+    with pytest.raises(typer.Exit):
+        resolve_shared(["amy"], share_behaviour=True, reuse_canonical=False)
+
+
+def test_members_get_a_copy_of_the_representative_result(tmp_path):
+    detected = {
+        "student": "amy",
+        "question": "Q2",
+        "status": "success",
+        "models": {"gpt": {"count": 2}, "claude": {"error": "timeout"}},
+    }
+    (tmp_path / "amy_Q2.json").write_text(json.dumps(detected))
+    stats = {
+        "total_processed": 0,
+        "successful": 0,
+        "errors": 0,
+        "shared": 0,
+        "shared_by": {},
+        "calls_saved": 0,
+        "total_misconceptions": {"gpt": 0, "claude": 0},
+    }
+    shared = {("bob", "Q2"): ("amy", "behaviour"), ("cat", "Q2"): ("zed", "behaviour")}
+    asyncio.run(write_shared_results(tmp_path, shared, stats))
+
+    copy = json.loads((tmp_path / "bob_Q2.json").read_text())
+    assert copy["student"] == "bob"
+    assert (copy["shared_from"], copy["shared_by"]) == ("amy", "behaviour")
+    assert copy["models"] == detected["models"]
+    # No result for the representative, nothing to copy
+    assert not (tmp_path / "cat_Q2.json").exists()
+    assert stats["shared"] == 1 and stats["shared_by"] == {"behaviour": 1}
+    assert stats["calls_saved"] == 2
+    assert stats["total_misconceptions"] == {"gpt": 2, "claude": 0}
+    assert stats["model_errors"] == 1
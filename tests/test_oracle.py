@@ -0,0 +1,110 @@
+"""Oracle judging: answer extraction, float tolerance and the per-question input domains."""
+
+from utils.generators.oracle import (
+    OracleCase,
+    _answer_number,
+    _numbers_match,
+    compare_output,
+    generate_inputs,
+    question_spec,
+)
+
+
+def compare(assignment: str, question: str, case: OracleCase, stdout: str) -> str | None:
+    return compare_output(question_spec(assignment, question), case, stdout)
+
+
+def judge(assignment: str, question: str, stdin: str, expected: str, actual: str) -> str | None:
+    return compare(assignment, question, OracleCase("case", stdin, expected), actual)
+
+
+def test_answer_number_skips_prompts_and_units():
+    for stdout, answer in (
+        ("Enter v0, v1, and t: The average acceleration is 2.5\n", "2.5"),
+        ("Enter v0, v1, and t: Acceleration: 2.5 m/s^2\n", "2.5"),
+        ("Acceleration (m/s^2) = -6.0\n", "-6.0"),
+        ("Enter x1 and y1: Enter x2 and y2: 5.0 units\nDone.\n", "5.0"),
+        ("The cost of driving is $34.29\n", "34.29"),
+        ("(x1, y1):(x2, y2):(x3, y3):The area of the triangle is 12.5\n", "12.5"),
+        ("The average acceleration is NaN\n", "NaN"),
+        ("1.0E-4 is the answer\n", "1.0E-4"),
+        ("Enter v0, v1, and t: \n", None),
+    ):
+        assert _answer_number(stdout, "") == answer, stdout
+
+
+def test_numbers_match_up_to_the_printed_precision():
+    assert _numbers_match("18.266666666666666", "18.27")
+    assert _numbers_match("18.266666666666666", "18.266666666666666")
+    assert _numbers_match("10.0", "10")
+    assert not _numbers_match("18.266666666666666", "18.26")
+    assert not _numbers_match("10.0", "11")
+    assert _numbers_match("NaN", "NaN")
+    assert not _numbers_match("NaN", "0.0")
+    assert _numbers_match("-Infinity", "-Infinity")
+    assert not _numbers_match("Infinity", "-Infinity")
+    assert _numbers_match("1.0E-4", "0.0001")
+
+
+def test_compare_ignores_prompt_wording_and_units():
+    expected = "Enter v0, v1, and t: The average acceleration is 18.266666666666666\n"
+    assert judge("a1", "Q1", "3 30.4 1.5", expected, "Acceleration: 18.27 m/s^2\n") is None
+    assert judge("a1", "Q1", "3 30.4 1.5", expected, "a = 18.266666666666666\n") is None
+    failure = judge("a1", "Q1", "3 30.4 1.5", expected, "Acceleration: 9.13 m/s^2\n")
+    assert failure == "case: input '3 30.4 1.5' expected '18.266666666666666', got '9.13'"
+    assert judge("a1", "Q1", "3 30.4 1.5", expected, "Bye\n") is not None
+
+
+def test_compare_non_numeric_answers():
+    assert judge("a2", "Q3", "90", "Enter a grade: A\n", "Your grade is A\n") is None
+    assert judge("a2", "Q3", "90", "Enter a grade: A\n", "Your grade is B\n") is not None
+    assert judge("a2", "Q4", "3", "*\n**\n***\n", "Rows: 3\n*\n**\n***\n") is None
+    assert judge("a2", "Q4", "3", "*\n**\n***\n", "*\n**\n") is not None
+    names = "3\nBob Alice Charlie\n70 90 80"
+    top = "Top student: Alice (90)\n"
+    assert judge("a3", "Q2", names, top, "Alice has the top score\n") is None
+    assert judge("a3", "Q2", names, top, "Top: Charlie\n") is not None
+
+
+def test_guessing_game_is_checked_against_the_sweep():
+    ascending = "\n".join(map(str, range(1, 101)))
+    case = OracleCase("sweep", ascending, None)
+    assert compare("a2", "Q2", case, "Too low\nToo low\nCorrect!\n") is None
+    assert "never reported" in compare("a2", "Q2", case, "Too low\n")
+    assert "ascending" in compare("a2", "Q2", case, "Too high\nCorrect!\n")
+
+
+def test_valid_inputs():
+    valid = {
+        ("a1", "Q1"): (["0 0 1", "1.5 -2 0.5"], ["0 0 0", "0 0 -1", "1 2", "a b c"]),
+        ("a1", "Q2"): (["100\n25\n4"], ["100\n0\n4", "100\n25"]),
+        ("a1", "Q3"): (["0 0\n0 0", "-1.5 2\n3 4"], ["0 0\n0", "x 0\n0 0"]),
+        ("a1", "Q4"): (["0 0\n5 0\n0 5"], ["0 0\n1 1\n2 2", "0 0\n10 0\n0 5", "0 0\n5 0"]),
+        ("a2", "Q1"): (["1 2 3 4 5", "1\n2\n3\n4\n5"], ["1 2 3 4", "1 2 3 4 5 6", "1.5 2 3 4 5"]),
+        ("a2", "Q2"): (["\n".join(map(str, range(100, 0, -1)))], ["50", "1\n2\n3"]),
+        ("a2", "Q3"): (["0", "100"], ["-1", "101", "90 80"]),
+        ("a2", "Q4"): (["1", "20"], ["0", "21"]),
+        ("a3", "Q1"): (["3\n5 5 5\n5"], ["0\n\n5", "3\n5 5\n5", "3\n5 5 5"]),
+        ("a3", "Q2"): (
+            ["2\nAlice Bob\n70 90"],
+            ["2\nAlice Bob\n90 90", "2\nAlice\n70 90", "1\nAl\n101"],
+        ),
+        ("a3", "Q4"): (["2\n1 2"], ["0\n", "2\n1 2 3"]),
+    }
+    for (assignment, question), (good, bad) in valid.items():
+        spec = question_spec(assignment, question)
+        for stdin in good:
+            assert spec.valid(stdin), (assignment, question, stdin)
+        for stdin in bad:
+            assert not spec.valid(stdin), (assignment, question, stdin)
+
+
+def test_generated_inputs_are_valid_and_reproducible():
+    for assignment in ("a1", "a2", "a3"):
+        for question in ("Q1", "Q2", "Q3", "Q4"):
+            spec = question_spec(assignment, question)
+            inputs = generate_inputs(assignment, question, count=30, seed=7)
+            assert inputs == generate_inputs(assignment, question, count=30, seed=7)
+            if spec.valid is not None:
+                for name, stdin in inputs:
+                    assert spec.valid(stdin), (assignment, question, name, stdin)
@@ -0,0 +1,177 @@
+"""AdaptiveLimiter and its helpers: token buckets, AIMD, retry policy, usage settlement."""
+
+import asyncio
+import json
+import time
+from types import SimpleNamespace
+
+import pytest
+
+from utils.llm import ratelimit
+from utils.llm.ratelimit import (
+    AdaptiveLimiter,
+    ParseFailure,
+    TokenBucket,
+    is_retryable,
+    retry_after,
+    stop_after,
+    usage_tokens,
+)
+
+
+class StatusError(Exception):
+    def __init__(self, status: int, headers: dict[str, str] | None = None):
+        super().__init__(f"status {status}")
+        self.status_code = status
+        self.response = SimpleNamespace(headers=headers or {})
+
+
+class ValidationError(ValueError):
+    """Stands in for pydantic's, which is matched by name."""
+
+
+def test_bucket_refills_at_capacity_per_minute():
+    bucket = TokenBucket(60)
+    start = bucket.updated
+    bucket.take(60)
+    assert bucket.wait_time(1, start) == 1.0
+    assert bucket.wait_time(1, start + 0.5) == 0.5
+    assert bucket.wait_time(30, start + 10) == 20.0
+    assert bucket.wait_time(60, start + 600) == 0.0
+    assert bucket.level == 60
+
+
+def test_give_returns_units_but_never_past_capacity():
+    bucket = TokenBucket(100)
+    bucket.take(80)
+    bucket.give(50)
+    assert bucket.level == 70
+    bucket.give(1_000)
+    assert bucket.level == 100
+
+
+def test_successes_grow_the_limit_by_one_per_limit_calls():
+    limiter = AdaptiveLimiter("test", rpm=1_000, tpm=1_000_000, max_concurrency=6)
+    assert limiter.limit == ratelimit.INITIAL_CONCURRENCY
+    for _ in range(4):
+        limiter.in_flight += 1
+        limiter.release(limiter.epoch)
+    assert 4.9 < limiter.limit <= 5.0
+    for _ in range(100):
+        limiter.in_flight += 1
+        limiter.release(limiter.epoch)
+    assert limiter.limit == 6
+
+
+def test_a_429_halves_the_limit_once_per_epoch_and_pauses():
+    limiter = AdaptiveLimiter("test", rpm=1_000, tpm=1_000_000, max_concurrency=32)
+    limiter.limit = 8.0
+    limiter.in_flight = 3
+    epoch = limiter.epoch
+    before = time.monotonic()
+    limiter.release(epoch, StatusError(429, {"retry-after": "2"}))
+    assert limiter.limit == 4.0
+    assert limiter.paused_until >= before + 2
+    # Calls started before the cut report the same congestion
+    limiter.release(epoch, StatusError(429))
+    limiter.release(epoch, StatusError(429))
+    assert limiter.limit == 4.0
+    assert limiter.stats.rate_limited == 3
+    assert limiter.paused_until >= before + ratelimit.DEFAULT_BACKOFF
+
+
+def test_other_errors_leave_the_limit_alone():
+    limiter = AdaptiveLimiter("test", rpm=1_000, tpm=1_000_000, max_concurrency=32)
+    limiter.in_flight = 1
+    limiter.release(limiter.epoch, StatusError(400))
+    assert limiter.limit == ratelimit.INITIAL_CONCURRENCY
+    assert limiter.paused_until == 0.0
+
+
+def test_retryable_errors():
+    for error in (
+        StatusError(429),
+        StatusError(408),
+        StatusError(500),
+        StatusError(529),
+        ConnectionError(),
+        TimeoutError(),
+        ParseFailure("missing parsed output"),
+        ValidationError("1 validation error"),
+        json.JSONDecodeError("Expecting value", "", 0),
+    ):
+        assert is_retryable(error), error
+    for error in (StatusError(400), StatusError(401), ValueError("messages must not be empty")):
+        assert not is_retryable(error), error
+
+
+def test_retry_after_reads_milliseconds_then_seconds():
+    assert retry_after(StatusError(429, {"retry-after-ms": "1500", "retry-after": "9"})) == 1.5
+    assert retry_after(StatusError(429, {"retry-after": "3"})) == 3.0
+    assert retry_after(StatusError(429, {"retry-after": "Wed, 21 Oct 2015 07:28:00 GMT"})) is None
+    assert retry_after(StatusError(429)) is None
+    assert retry_after(RuntimeError()) is None
+
+
+def test_parse_failures_stop_sooner_than_transient_errors():
+    stop = stop_after(6)
+
+    def state(attempt: int, error: BaseException) -> SimpleNamespace:
+        outcome = SimpleNamespace(failed=True, exception=lambda: error)
+        return SimpleNamespace(attempt_number=attempt, outcome=outcome)
+
+    assert not stop(state(5, StatusError(503)))
+    assert stop(state(6, StatusError(503)))
+    assert not stop(state(ratelimit.PARSE_ATTEMPTS - 1, ParseFailure("missing")))
+    assert stop(state(ratelimit.PARSE_ATTEMPTS, ParseFailure("missing")))
+    assert stop(state(ratelimit.PARSE_ATTEMPTS, ValidationError("bad")))
+
+
+def test_usage_tokens_of_each_sdk():
+    anthropic = SimpleNamespace(usage=SimpleNamespace(input_tokens=900, output_tokens=300))
+    openai = SimpleNamespace(
+        usage=SimpleNamespace(input_tokens=900, output_tokens=300, total_tokens=1200)
+    )
+    gemini = SimpleNamespace(usage_metadata=SimpleNamespace(total_token_count=1200))
+    for response in (anthropic, openai, gemini):
+        assert usage_tokens(response) == 1200
+    assert usage_tokens(SimpleNamespace()) is None
+
+
+@pytest.mark.asyncio
+async def test_settling_refunds_the_unused_estimate():
+    limiter = AdaptiveLimiter("test", rpm=50, tpm=50_000, max_concurrency=8)
+    used = SimpleNamespace(usage=SimpleNamespace(input_tokens=700, output_tokens=500))
+    for _ in range(20):
+        async with limiter.slot(6_000) as reservation:
+            reservation.settle(used)
+    # 20 reasoning calls at the estimate would need 120k of the 50k budget
+    assert limiter.stats.waited_s < 1.0
+    assert 50_000 - 20 * 1_200 <= limiter.tokens.level <= 50_000
+
+
+@pytest.mark.asyncio
+async def test_settling_charges_an_answer_over_the_estimate():
+    limiter = AdaptiveLimiter("test", rpm=50, tpm=50_000, max_concurrency=8)
+    async with limiter.slot(1_000) as reservation:
+        reservation.settle(SimpleNamespace(usage=SimpleNamespace(total_tokens=4_000)))
+    assert limiter.tokens.level < 46_100
+
+
+@pytest.mark.asyncio
+async def test_a_waiting_call_starts_when_a_slot_is_released():
+    limiter = AdaptiveLimiter("test", rpm=1_000, tpm=1_000_000, max_concurrency=1)
+    limiter.limit = 1.0
+    order = []
+
+    async def call(name: str, hold: float) -> None:
+        async with limiter.slot(10):
+            order.append(f"start {name}")
+            await asyncio.sleep(hold)
+        order.append(f"end {name}")
+
+    started = time.monotonic()
+    await asyncio.gather(call("a", 0.2), call("b", 0))
+    assert order == ["start a", "end a", "start b", "end b"]
+    assert time.monotonic() - started < 1.0
+    assert limiter._waiters == []
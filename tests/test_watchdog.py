@@ -0,0 +1,62 @@
+"""Watchdog triggers, in a fresh `java` process and on a warm worker alike."""
+
+from utils.execution import Watchdog, compile_and_run
+from utils.jvm.pool import JvmWorkerPool
+
+WATCHDOG = Watchdog(spin_seconds=0.5, output_limit=4096, idle_seconds=1.0)
+RUN_TIMEOUT = 20.0
+
+
+def program(body: str) -> str:
+    return f"""import java.util.Scanner;
+
+public class Watched {{
+    public static void main(String[] args) throws Exception {{
+        Scanner in = new Scanner(System.in);
+        {body}
+    }}
+}}
+"""
+
+
+def run_both(body: str, stdin: str = "") -> list:
+    """The RunResult of the program in a subprocess, then on a pool worker."""
+    source = program(body)
+    results = []
+    with JvmWorkerPool(size=1) as pool:
+        for p in (None, pool):
+            compiled, run = compile_and_run(
+                source, stdin, run_timeout=RUN_TIMEOUT, pool=p, watchdog=WATCHDOG
+            )
+            assert compiled.success, compiled.stderr
+            results.append(run)
+    return results
+
+
+def test_spinning_after_the_last_input_is_stdin_exhausted():
+    for run in run_both("int n = in.nextInt(); System.out.println(n); while (n > 0) { n |= 1; }", "5\n"):
+        assert run.reason == "stdin_exhausted"
+        assert run.timed_out and not run.success
+        assert run.stdout.startswith("5")
+
+
+def test_printing_past_the_cap_is_output_limit():
+    for run in run_both('while (true) { System.out.println("again and again"); }'):
+        assert run.reason == "output_limit"
+        assert run.timed_out and not run.success
+
+
+def test_blocking_without_output_is_no_progress():
+    for run in run_both("System.out.println(in.nextInt()); Thread.sleep(60_000);", "7\n"):
+        assert run.reason == "no_progress"
+        assert run.timed_out and not run.success
+        assert run.stdout.startswith("7")
+
+
+def test_clocks_start_at_the_first_read_or_output():
+    # Longer than idle_seconds before main touches stdin or stdout: a slow
+    # start, not a hang
+    for run in run_both("Thread.sleep(2_000); System.out.println(in.nextInt() * 2);", "21\n"):
+        assert run.reason is None
+        assert run.success
+        assert run.stdout.strip() == "42"
@@ -6,11 +6,42 @@ No legacy code, no fallbacks - just the essentials.
 
 from __future__ import annotations
 
+import asyncio
+import functools
+import os
 import re
+import selectors
+import signal
 import subprocess
 import tempfile
-from dataclasses import dataclass
+import threading
+import time
+from collections.abc import Callable
+from concurrent.futures import ThreadPoolExecutor
+from dataclasses import dataclass, field
 from pathlib import Path
+from typing import TYPE_CHECKING, TypeVar
+
+if TYPE_CHECKING:
+    from utils.jvm.cache import ExecutionCache
+    from utils.jvm.compiler import CompilerService
+    from utils.jvm.pool import JvmWorkerPool
+    from utils.jvm.profile import LaunchProfile
+
+T = TypeVar("T")
+
+# Options for a `javac` process; CompilerService has its own (see compile_options)
+JAVAC_OPTIONS: tuple[str, ...] = ()
+
+
+@dataclass
+class CompileDiagnostic:
+    """A single javac diagnostic (only the in-process compiler reports these)."""
+
+    kind: str  # "error", "warning", "note", ...
+    line: int  # 1-indexed, 0 when javac gives no position
+    column: int
+    message: str
 
 
 @dataclass
@@ -19,6 +50,10 @@ class CompileResult:
 
     success: bool
     stderr: str
+    diagnostics: list[CompileDiagnostic] = field(default_factory=list)
+    # The harness failed rather than the source (javac missing, a compile
+    # timeout, a crashed compiler service); never cached
+    infra_error: bool = False
 
 
 @dataclass
@@ -29,6 +64,54 @@ class RunResult:
     stdout: str
     stderr: str
     timed_out: bool
+    # Why a run that did not finish was stopped: "timeout", or a Watchdog
+    # trigger ("stdin_exhausted", "output_limit", "no_progress"). Watchdog
+    # stops also set timed_out, so callers treating timeouts specially still do.
+    reason: str | None = None
+    # CPU time and bytes allocated by main's thread; only warm-worker runs
+    # (utils.jvm.pool) measure these
+    cpu_ms: float | None = None
+    alloc_bytes: int | None = None
+    # The harness failed rather than the program (java missing, a worker that
+    # would not start or crashed); never cached
+    infra_error: bool = False
+
+
+@dataclass(frozen=True)
+class Watchdog:
+    """Stops runs early that are clearly not going to terminate; 0 disables a trigger.
+
+    - stdin_exhausted: all input has been read and the program has used
+      spin_seconds of CPU since (a loop waiting for input that never comes)
+    - output_limit: stdout + stderr exceed output_limit bytes
+    - no_progress: no new output and no stdin read for idle_seconds (wall time)
+
+    Runs are only watched when given one: a correct program that needs more
+    than spin_seconds of CPU after reading its input would be stopped too, so
+    it suits small programs such as the seeded code generation validates. The
+    spin and idle clocks start at the program's first read or output, in a
+    subprocess and on a warm worker alike.
+    """
+
+    spin_seconds: float = 1.5
+    output_limit: int = 1 << 20
+    idle_seconds: float = 3.0
+
+    def message(self, reason: str) -> str:
+        if reason == "stdin_exhausted":
+            return f"Execution stopped: still running {self.spin_seconds:g}s of CPU after all input was read"
+        if reason == "output_limit":
+            return f"Execution stopped: output exceeded {self.output_limit} bytes"
+        if reason == "no_progress":
+            return f"Execution stopped: no output or input read for {self.idle_seconds:g}s"
+        return "Execution timed out"
+
+
+# Settings for callers that opt in; runs are not watched unless given a Watchdog
+DEFAULT_WATCHDOG = Watchdog()
+
+# How often a running subprocess is checked against its Watchdog
+_POLL_SECONDS = 0.02
 
 
 def extract_class_name(java_source: str) -> str | None:
@@ -51,9 +134,21 @@ def compile_and_run(
     stdin_input: str = "",
     compile_timeout: float = 30.0,
     run_timeout: float = 10.0,
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+    watchdog: Watchdog | None = None,
+    profile: LaunchProfile | None = None,
 ) -> tuple[CompileResult, RunResult | None]:
     """Compile and run Java source code in an isolated temp directory.
 
+    If a JvmWorkerPool is given, the compiled class runs on a warm worker
+    instead of a fresh `java` process (started with `profile`, see run_class);
+    a CompilerService likewise replaces the `javac` process. With an
+    ExecutionCache, a source/stdin pair that has been seen before is answered
+    from disk without touching the JVM. A watchdog, if given, ends runs that
+    will not terminate before run_timeout.
+
     Returns:
         (CompileResult, RunResult | None)
         - RunResult is None if compilation fails
@@ -62,84 +157,403 @@ def compile_and_run(
     if not class_name:
         return CompileResult(success=False, stderr="No class found in source"), None
 
+    if cache is not None:
+        cached_compile = cache.get_compile(java_source, options=compile_options(compiler))
+        if cached_compile is not None and not cached_compile.success:
+            return cached_compile, None
+        cached_run = cache.get_run(java_source, stdin_input, run_mode(pool, watchdog, profile))
+        if cached_compile is not None and cached_run is not None:
+            return cached_compile, cached_run
+
     with tempfile.TemporaryDirectory() as tmp:
         tmp_path = Path(tmp)
-        java_file = tmp_path / f"{class_name}.java"
+        compile_result = compile_source(java_source, tmp_path, compile_timeout, compiler, cache)
+        if not compile_result.success:
+            return compile_result, None
+
+        run_result = run_class(
+            tmp_path, class_name, stdin_input, run_timeout, pool, profile, watchdog
+        )
+        if cache is not None:
+            cache.put_run(
+                java_source, stdin_input, run_result, run_mode(pool, watchdog, profile)
+            )
+        return compile_result, run_result
+
+
+def compile_source(
+    java_source: str,
+    out_dir: Path,
+    timeout: float = 30.0,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+) -> CompileResult:
+    """Compile Java source so its classes land in out_dir, ready for run_class.
+
+    Lets callers compile once and run many inputs against the same classes.
+    With a cache, previously compiled classes are copied into out_dir instead.
+    """
+    class_name = extract_class_name(java_source)
+    if not class_name:
+        return CompileResult(success=False, stderr="No class found in source")
+
+    options = compile_options(compiler)
+    if cache is not None:
+        cached = cache.get_compile(java_source, out_dir, options)
+        if cached is not None:
+            return cached
+
+    if compiler is not None:
+        result = compiler.compile(java_source, out_dir, timeout)
+    else:
+        java_file = out_dir / f"{class_name}.java"
         java_file.write_text(java_source, encoding="utf-8")
+        result = _javac(java_file, out_dir, timeout)
 
-        # Compile
-        try:
-            result = subprocess.run(
-                ["javac", str(java_file)],
-                cwd=tmp_path,
-                capture_output=True,
-                text=True,
-                timeout=compile_timeout,
+    if cache is not None:
+        cache.put_compile(java_source, result, out_dir, options)
+    return result
+
+
+def compile_options(compiler: CompilerService | None = None) -> tuple[str, ...]:
+    """The javac options compile_source uses; part of a compile's cache key."""
+    return compiler.OPTIONS if compiler is not None else JAVAC_OPTIONS
+
+
+def run_class(
+    class_dir: Path,
+    class_name: str,
+    stdin_input: str = "",
+    timeout: float = 10.0,
+    pool: JvmWorkerPool | None = None,
+    profile: LaunchProfile | None = None,
+    watchdog: Watchdog | None = None,
+) -> RunResult:
+    """Run an already compiled class, on a warm worker if a pool is given.
+
+    Otherwise a fresh `java` is started with the given launch profile, by
+    default a bare `java ClassName`. Callers opt into the fast-start profile
+    (AppCDS archive, C1 only, rlimits) with utils.jvm.profile.fast_start_profile().
+
+    A watchdog stops non-terminating runs before the timeout (see Watchdog);
+    without one, a run that does not finish waits out the full timeout.
+    """
+    if pool is not None:
+        return pool.run(class_dir, class_name, stdin_input, timeout, watchdog=watchdog)
+
+    if profile is None:
+        from utils.jvm.profile import PLAIN_PROFILE
+
+        profile = PLAIN_PROFILE
+
+    return _run_process(profile.command(class_name, timeout), class_dir, stdin_input, timeout, watchdog)
+
+
+def run_mode(
+    pool: JvmWorkerPool | None = None,
+    watchdog: Watchdog | None = None,
+    profile: LaunchProfile | None = None,
+) -> str:
+    """How run_class executes besides the class and stdin; part of a run's cache key.
+
+    A warm worker and fresh processes with different launch profiles differ in
+    JVM flags and limits, and a watchdog can stop runs that would otherwise
+    finish, so results from one mode are not reused for another.
+    """
+    if pool is not None:
+        launch = f"pool {' '.join(pool.jvm_args)}"
+    else:
+        from utils.jvm.profile import PLAIN_PROFILE
+
+        launch = f"process {profile or PLAIN_PROFILE!r}"
+    return f"{launch}; watchdog {watchdog!r}"
+
+
+class CompiledSource:
+    """One source run on many inputs: compiled at most once, cached runs reused.
+
+    The source is compiled into a temp directory on the first input that is
+    not in the cache, so a source whose every input is cached is never
+    compiled. New runs are stored in the cache. Use as a context manager; the
+    class files are deleted on exit.
+    """
+
+    def __init__(
+        self,
+        java_source: str,
+        pool: JvmWorkerPool | None = None,
+        compiler: CompilerService | None = None,
+        cache: ExecutionCache | None = None,
+        timeout: float = 10.0,
+        watchdog: Watchdog | None = None,
+        profile: LaunchProfile | None = None,
+    ):
+        self.java_source = java_source
+        self.class_name = extract_class_name(java_source)
+        self.pool = pool
+        self.compiler = compiler
+        self.cache = cache
+        self.timeout = timeout
+        self.watchdog = watchdog
+        self.profile = profile
+        self.mode = run_mode(pool, watchdog, profile)
+        self._tmp = tempfile.TemporaryDirectory()
+        self._compiled: CompileResult | None = None
+
+    def __enter__(self) -> CompiledSource:
+        return self
+
+    def __exit__(self, *exc) -> None:
+        self._tmp.cleanup()
+
+    def compile(self) -> CompileResult:
+        if self._compiled is None:
+            self._compiled = compile_source(
+                self.java_source, Path(self._tmp.name), compiler=self.compiler, cache=self.cache
             )
-            if result.returncode != 0:
-                return CompileResult(success=False, stderr=result.stderr), None
-        except subprocess.TimeoutExpired:
-            return CompileResult(success=False, stderr="Compilation timed out"), None
-        except FileNotFoundError:
-            return CompileResult(success=False, stderr="javac not found"), None
+        return self._compiled
+
+    def cached(self, stdin_input: str) -> RunResult | None:
+        if self.cache is None:
+            return None
+        return self.cache.get_run(self.java_source, stdin_input, self.mode)
+
+    def run(self, stdin_input: str) -> RunResult | None:
+        """The run on stdin_input, from the cache or the JVM; None if the source does not compile."""
+        return self.cached(stdin_input) or self.execute(stdin_input)
 
-        compile_result = CompileResult(success=True, stderr="")
+    def execute(self, stdin_input: str) -> RunResult | None:
+        """Run on stdin_input without looking in the cache (after cached() missed)."""
+        if not self.compile().success:
+            return None
+        run = run_class(
+            Path(self._tmp.name),
+            self.class_name,
+            stdin_input,
+            self.timeout,
+            self.pool,
+            self.profile,
+            self.watchdog,
+        )
+        if self.cache is not None:
+            self.cache.put_run(self.java_source, stdin_input, run, self.mode)
+        return run
 
-        # Run
+
+def _run_process(
+    cmd: list[str], cwd: Path, stdin_input: str, timeout: float, watchdog: Watchdog | None
+) -> RunResult:
+    """subprocess.run with a Watchdog polled while the process runs.
+
+    stdin comes from a temp file rather than a pipe: the child shares the
+    file offset, so how much input it has read is visible from here.
+    """
+    stdin_bytes = stdin_input.encode("utf-8")
+    with tempfile.TemporaryFile() as stdin_file:
+        stdin_file.write(stdin_bytes)
+        stdin_file.flush()
+        stdin_file.seek(0)
         try:
-            result = subprocess.run(
-                ["java", class_name],
-                cwd=tmp_path,
-                input=stdin_input,
-                capture_output=True,
-                text=True,
-                timeout=run_timeout,
-            )
-            run_result = RunResult(
-                success=(result.returncode == 0),
-                stdout=result.stdout,
-                stderr=result.stderr,
-                timed_out=False,
-            )
-        except subprocess.TimeoutExpired:
-            run_result = RunResult(
-                success=False,
-                stdout="",
-                stderr="Execution timed out",
-                timed_out=True,
+            proc = subprocess.Popen(
+                cmd, cwd=cwd, stdin=stdin_file, stdout=subprocess.PIPE, stderr=subprocess.PIPE
             )
         except FileNotFoundError:
-            run_result = RunResult(
-                success=False,
-                stdout="",
-                stderr="java not found",
-                timed_out=False,
+            return RunResult(
+                success=False, stdout="", stderr="java not found", timed_out=False, infra_error=True
             )
 
-        return compile_result, run_result
+        monitor = _ProcessMonitor(proc.pid, stdin_file.fileno(), len(stdin_bytes), watchdog)
+        out_fd, err_fd = proc.stdout.fileno(), proc.stderr.fileno()
+        buffers = {out_fd: bytearray(), err_fd: bytearray()}
+        deadline = time.monotonic() + timeout
+        reason = None
+        try:
+            with selectors.DefaultSelector() as selector:
+                for fd in buffers:
+                    selector.register(fd, selectors.EVENT_READ)
+                while selector.get_map() and reason is None:
+                    remaining = deadline - time.monotonic()
+                    if remaining <= 0:
+                        reason = "timeout"
+                        break
+                    for key, _ in selector.select(min(_POLL_SECONDS, remaining)):
+                        chunk = os.read(key.fd, 65536)
+                        if not chunk:
+                            selector.unregister(key.fd)
+                            continue
+                        monitor.output_bytes += len(chunk)
+                        buf = buffers[key.fd]
+                        if watchdog is None or not watchdog.output_limit:
+                            buf += chunk
+                        elif len(buf) < watchdog.output_limit:
+                            buf += chunk[: watchdog.output_limit - len(buf)]
+                    reason = reason or monitor.check()
+            if reason is None:
+                try:
+                    proc.wait(timeout=max(deadline - time.monotonic(), 0))
+                except subprocess.TimeoutExpired:
+                    reason = "timeout"
+        finally:
+            if proc.poll() is None:
+                proc.kill()
+            proc.wait()
+            proc.stdout.close()
+            proc.stderr.close()
+
+    stdout = buffers[out_fd].decode("utf-8", errors="replace")
+    stderr = buffers[err_fd].decode("utf-8", errors="replace")
+    if reason == "timeout":
+        return RunResult(
+            success=False, stdout="", stderr="Execution timed out", timed_out=True, reason=reason
+        )
+    if reason is not None:
+        return RunResult(
+            success=False,
+            stdout=stdout,
+            stderr=watchdog.message(reason),
+            timed_out=True,
+            reason=reason,
+        )
+    if proc.returncode == -signal.SIGXCPU:
+        stderr += "\nCPU time limit exceeded"
+    return RunResult(
+        success=(proc.returncode == 0),
+        stdout=stdout,
+        stderr=stderr,
+        timed_out=False,
+    )
+
+
+class _ProcessMonitor:
+    """Watchdog state for one subprocess (see Watchdog for the triggers)."""
+
+    def __init__(self, pid: int, stdin_fd: int, stdin_size: int, watchdog: Watchdog | None):
+        self.pid = pid
+        self.stdin_fd = stdin_fd
+        self.stdin_size = stdin_size
+        self.watchdog = watchdog
+        self.output_bytes = 0
+        self._progress = (0, 0)
+        # The clocks start at the program's first read or output, so JVM
+        # startup on a loaded machine is not taken for a hang
+        self._last_progress: float | None = None
+        self._cpu_at_exhaustion: float | None = None
+
+    def check(self) -> str | None:
+        """The reason to stop the process now, or None."""
+        watchdog = self.watchdog
+        if watchdog is None:
+            return None
+        now = time.monotonic()
+        consumed = os.lseek(self.stdin_fd, 0, os.SEEK_CUR)
+        if (self.output_bytes, consumed) != self._progress:
+            self._progress = (self.output_bytes, consumed)
+            self._last_progress = now
+
+        if watchdog.output_limit and self.output_bytes > watchdog.output_limit:
+            return "output_limit"
+        started = self._last_progress is not None
+        if watchdog.spin_seconds and started and consumed >= self.stdin_size:
+            cpu = self._cpu_seconds(now)
+            if self._cpu_at_exhaustion is None:
+                self._cpu_at_exhaustion = cpu
+            elif cpu - self._cpu_at_exhaustion > watchdog.spin_seconds:
+                return "stdin_exhausted"
+        if watchdog.idle_seconds and started and now - self._last_progress > watchdog.idle_seconds:
+            return "no_progress"
+        return None
+
+    def _cpu_seconds(self, wall: float) -> float:
+        """utime + stime of the process from /proc; wall time where /proc is missing."""
+        try:
+            with open(f"/proc/{self.pid}/stat", encoding="ascii") as f:
+                fields = f.read().rsplit(")", 1)[1].split()
+        except (OSError, IndexError):
+            return wall
+        return (int(fields[11]) + int(fields[12])) / os.sysconf("SC_CLK_TCK")
 
 
-def compile_only(java_source: str, timeout: float = 30.0) -> CompileResult:
+def _javac(java_file: Path, cwd: Path, timeout: float) -> CompileResult:
+    """Compile a single source file in place."""
+    try:
+        result = subprocess.run(
+            ["javac", *JAVAC_OPTIONS, str(java_file)],
+            cwd=cwd,
+            capture_output=True,
+            text=True,
+            timeout=timeout,
+        )
+        return CompileResult(success=(result.returncode == 0), stderr=result.stderr)
+    except subprocess.TimeoutExpired:
+        return CompileResult(success=False, stderr="Compilation timed out", infra_error=True)
+    except FileNotFoundError:
+        return CompileResult(success=False, stderr="javac not found", infra_error=True)
+
+
+def compile_only(
+    java_source: str,
+    timeout: float = 30.0,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+) -> CompileResult:
     """Compile Java source code without running it."""
-    class_name = extract_class_name(java_source)
-    if not class_name:
-        return CompileResult(success=False, stderr="No class found in source")
+    if cache is not None:
+        cached = cache.get_compile(java_source, options=compile_options(compiler))
+        if cached is not None:
+            return cached
 
     with tempfile.TemporaryDirectory() as tmp:
-        tmp_path = Path(tmp)
-        java_file = tmp_path / f"{class_name}.java"
-        java_file.write_text(java_source, encoding="utf-8")
+        return compile_source(java_source, Path(tmp), timeout, compiler, cache)
 
-        try:
-            result = subprocess.run(
-                ["javac", str(java_file)],
-                cwd=tmp_path,
-                capture_output=True,
-                text=True,
-                timeout=timeout,
+
+# ============================================================================
+# Async API
+# ============================================================================
+#
+# The functions above block on javac/java (or on a worker JVM). The async
+# variants run them on a shared thread pool sized to the CPU count, so an
+# asyncio caller keeps its event loop (and in-flight LLM requests) moving
+# while at most one Java job per core runs at a time.
+
+_executor: ThreadPoolExecutor | None = None
+_executor_lock = threading.Lock()
+
+
+def _java_executor() -> ThreadPoolExecutor:
+    global _executor
+    with _executor_lock:
+        if _executor is None:
+            _executor = ThreadPoolExecutor(
+                max_workers=os.cpu_count() or 4, thread_name_prefix="java-exec"
             )
-            return CompileResult(success=(result.returncode == 0), stderr=result.stderr)
-        except subprocess.TimeoutExpired:
-            return CompileResult(success=False, stderr="Compilation timed out")
-        except FileNotFoundError:
-            return CompileResult(success=False, stderr="javac not found")
+        return _executor
+
+
+async def run_blocking(fn: Callable[..., T], /, *args, **kwargs) -> T:
+    """Await a blocking Java call on the shared, CPU-bounded executor."""
+    loop = asyncio.get_running_loop()
+    return await loop.run_in_executor(_java_executor(), functools.partial(fn, *args, **kwargs))
+
+
+async def async_compile_and_run(
+    java_source: str, stdin_input: str = "", **kwargs
+) -> tuple[CompileResult, RunResult | None]:
+    """Async compile_and_run; accepts the same keyword arguments."""
+    return await run_blocking(compile_and_run, java_source, stdin_input, **kwargs)
+
+
+async def async_compile_source(java_source: str, out_dir: Path, **kwargs) -> CompileResult:
+    """Async compile_source; accepts the same keyword arguments."""
+    return await run_blocking(compile_source, java_source, out_dir, **kwargs)
+
+
+async def async_run_class(
+    class_dir: Path, class_name: str, stdin_input: str = "", **kwargs
+) -> RunResult:
+    """Async run_class; accepts the same keyword arguments."""
+    return await run_blocking(run_class, class_dir, class_name, stdin_input, **kwargs)
+
+
+async def async_compile_only(java_source: str, **kwargs) -> CompileResult:
+    """Async compile_only; accepts the same keyword arguments."""
+    return await run_blocking(compile_only, java_source, **kwargs)
@@ -0,0 +1,253 @@
+"""Empirical complexity profiling against the reference solutions.
+
+Some questions have an obvious input size: the array length in a3 Q1/Q2/Q4,
+the text length in a3 Q3, the triangle height in a2 Q4. A correct-looking
+submission can still scale worse than the reference (a nested loop, an array
+or string rebuilt on every pass). For these questions the profiler runs the
+submission and data/<assignment>/tests/reference/Q*.java on the same inputs of
+doubling size N on warm JVMs and measures two costs per run:
+
+- ops: source lines and local-variable stores executed in the program's own
+  classes, counted by TraceAgent (TracingPool). Deterministic and blind to
+  JIT warm-up and library internals.
+- alloc: bytes allocated by main's thread (ThreadMXBean on a plain worker, so
+  the tracer's own boxing is not counted). Catches work hidden in library
+  calls, such as String concatenation in a loop.
+
+Each cost is fitted to a + b * N^k. With doubling sizes the constant cancels
+in the ratio of successive differences, (c(4N) - c(2N)) / (c(2N) - c(N)) = 2^k,
+and k is the median over consecutive triples. A program's growth is the larger
+of its two exponents; a submission is flagged when its growth differs from the
+reference's by at least the threshold, or when it times out on a size the
+reference finished.
+"""
+
+from __future__ import annotations
+
+import math
+import random
+import statistics
+import tempfile
+from collections.abc import Callable
+from dataclasses import dataclass, field
+from pathlib import Path
+
+from utils.execution import RunResult, compile_source, extract_class_name, run_class
+from utils.generators.oracle import OracleError, reference_path
+from utils.jvm.compiler import CompilerService
+from utils.jvm.pool import JvmWorkerPool
+from utils.jvm.tracing import TracingPool, read_trace
+
+# Growth exponent difference that counts as different asymptotic behaviour
+DEFAULT_THRESHOLD = 0.5
+
+# Trace events kept per run; only the event count is used
+PROFILE_TRACE_CAPACITY = 16
+
+
+@dataclass
+class ScaledQuestion:
+    """A question with an input size: generate(n, rng) returns one stdin of size n."""
+
+    generate: Callable[[int, random.Random], str]
+    sizes: tuple[int, ...]  # each double the previous one
+
+
+@dataclass
+class Growth:
+    """Measured costs of one program over the sizes it completed."""
+
+    sizes: list[int] = field(default_factory=list)
+    ops: list[int] = field(default_factory=list)
+    alloc_bytes: list[int] = field(default_factory=list)
+    cpu_ms: list[float] = field(default_factory=list)
+    ops_exponent: float | None = None
+    alloc_exponent: float | None = None
+    error: str | None = None  # compile error, crash or why a run was stopped
+    timed_out_at: int | None = None  # size at which the run timed out
+
+    @property
+    def exponent(self) -> float | None:
+        exponents = [e for e in (self.ops_exponent, self.alloc_exponent) if e is not None]
+        return max(exponents) if exponents else None
+
+
+# ============================================================================
+# Scaled input generators
+# ============================================================================
+
+
+def _array_input(n: int, rng: random.Random) -> str:
+    return f"{n}\n{' '.join(str(rng.randint(1, 1_000_000)) for _ in range(n))}"
+
+
+def _a3_q1(n: int, rng: random.Random) -> str:
+    # Target never present: every correct search scans the whole array
+    return f"{_array_input(n, rng)}\n0"
+
+
+def _a3_q2(n: int, rng: random.Random) -> str:
+    names = [f"s{i}" for i in range(n)]
+    scores = rng.sample(range(1, 10 * n + 1), n)
+    return f"{n}\n{' '.join(names)}\n{' '.join(map(str, scores))}"
+
+
+def _a3_q3(n: int, rng: random.Random) -> str:
+    words = []
+    length = 0
+    while length < n:
+        word = "".join(rng.choice("abcdefgXYZ") for _ in range(rng.randint(1, 7)))
+        words.append(word)
+        length += len(word) + 1
+    return " ".join(words)[:n]
+
+
+def _a2_q4(n: int, rng: random.Random) -> str:
+    return str(n)
+
+
+SCALED: dict[str, dict[str, ScaledQuestion]] = {
+    "a2": {
+        "Q4": ScaledQuestion(_a2_q4, (16, 32, 64, 128, 256)),
+    },
+    "a3": {
+        "Q1": ScaledQuestion(_a3_q1, (512, 1024, 2048, 4096, 8192)),
+        "Q2": ScaledQuestion(_a3_q2, (64, 128, 256, 512, 1024)),
+        # Library calls do the work here, so only allocation grows; start above
+        # Scanner's initial 1 KB buffer
+        "Q3": ScaledQuestion(_a3_q3, (4096, 8192, 16384, 32768, 65536)),
+        "Q4": ScaledQuestion(_array_input, (512, 1024, 2048, 4096, 8192)),
+    },
+}
+
+
+def scaled_question(assignment: str, question: str) -> ScaledQuestion | None:
+    return SCALED.get(assignment, {}).get(question)
+
+
+def scaled_inputs(assignment: str, question: str, seed: int = 0) -> list[tuple[int, str]]:
+    """(n, stdin) per size; the same for every program so costs are comparable."""
+    scale = scaled_question(assignment, question)
+    if scale is None:
+        return []
+    return [
+        (n, scale.generate(n, random.Random(f"{assignment}/{question}/{n}/{seed}")))
+        for n in scale.sizes
+    ]
+
+
+# ============================================================================
+# Measurement
+# ============================================================================
+
+
+def growth_exponent(costs: list[float]) -> float | None:
+    """k in a + b * N^k for costs at doubling sizes; None with fewer than three sizes.
+
+    Flat or shrinking differences (constant cost, measurement noise) count as 0.
+    """
+    if len(costs) < 3:
+        return None
+    estimates = []
+    for c1, c2, c3 in zip(costs, costs[1:], costs[2:]):
+        lower, upper = c2 - c1, c3 - c2
+        estimates.append(math.log2(upper / lower) if lower > 0 and upper > 0 else 0.0)
+    return max(statistics.median(estimates), 0.0)
+
+
+def measure_growth(
+    java_source: str,
+    inputs: list[tuple[int, str]],
+    pool: JvmWorkerPool,
+    tracing_pool: TracingPool,
+    compiler: CompilerService | None = None,
+    timeout: float = 10.0,
+) -> Growth:
+    """Run java_source on each (n, stdin) and fit its ops and allocation growth.
+
+    Stops at the first size that times out or fails; the exponents are fitted
+    on the sizes completed before it.
+    """
+    growth = Growth()
+    class_name = extract_class_name(java_source)
+    if not class_name:
+        growth.error = "No class found in source"
+        return growth
+
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        compiled = compile_source(java_source, tmp_path, compiler=compiler)
+        if not compiled.success:
+            growth.error = f"Compile error: {compiled.stderr.strip()[:200]}"
+            return growth
+
+        trace_path = tmp_path / "profile.trace"
+        if inputs:
+            # The first run in a worker also initialises Scanner, regex, ... in
+            # main's thread; keep that allocation out of the smallest size
+            run_class(tmp_path, class_name, inputs[0][1], timeout, pool)
+        for n, stdin in inputs:
+            plain = run_class(tmp_path, class_name, stdin, timeout, pool)
+            traced = tracing_pool.run(tmp_path, class_name, stdin, timeout, trace_path)
+            stopped = next((run for run in (plain, traced) if run.timed_out), None)
+            if stopped is not None:
+                growth.timed_out_at = n
+                growth.error = f"N={n}: stopped ({stopped.reason or 'timeout'})"
+                break
+            failed = _failure(plain) or _failure(traced)
+            if failed is not None:
+                growth.error = f"N={n}: {failed}"
+                break
+            growth.sizes.append(n)
+            growth.ops.append(read_trace(trace_path).total)
+            growth.alloc_bytes.append(plain.alloc_bytes or 0)
+            growth.cpu_ms.append(round(plain.cpu_ms or 0.0, 3))
+
+    growth.ops_exponent = growth_exponent(growth.ops)
+    growth.alloc_exponent = growth_exponent(growth.alloc_bytes)
+    return growth
+
+
+def _failure(run: RunResult) -> str | None:
+    if not run.success:
+        lines = run.stderr.strip().splitlines()
+        return lines[0] if lines else "non-zero exit"
+    return None
+
+
+def profile_reference(
+    assignment: str,
+    question: str,
+    pool: JvmWorkerPool,
+    tracing_pool: TracingPool,
+    compiler: CompilerService | None = None,
+    seed: int = 0,
+    timeout: float = 10.0,
+) -> Growth | None:
+    """Growth of the reference solution; None for questions without a size."""
+    ref = reference_path(assignment, question)
+    if scaled_question(assignment, question) is None or not ref.exists():
+        return None
+    growth = measure_growth(
+        ref.read_text(), scaled_inputs(assignment, question, seed), pool, tracing_pool, compiler, timeout
+    )
+    if growth.error or growth.timed_out_at is not None or growth.exponent is None:
+        raise OracleError(
+            f"Reference {assignment} {question} could not be profiled: "
+            f"{growth.error}"
+        )
+    return growth
+
+
+def compare_growth(student: Growth, reference: Growth, threshold: float = DEFAULT_THRESHOLD) -> str:
+    """Verdict for a submission: matches, slower, faster, timeout or error."""
+    if student.timed_out_at is not None:
+        return "timeout"
+    if student.error is not None or student.exponent is None:
+        return "error"
+    delta = student.exponent - reference.exponent
+    if delta >= threshold:
+        return "slower"
+    if delta <= -threshold:
+        return "faster"
+    return "matches"
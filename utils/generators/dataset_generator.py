@@ -3,12 +3,20 @@
 This module implements a 6-step pipeline:
 1. Generate correct code with persona
 2. Compile correct code
-3. Test correct code (must pass all tests)
-4. Generate seeded code with misconception
+3. Test correct code (must pass all tests, and with --differential agree
+   with the reference solution on the differential battery, see
+   utils.generators.oracle; a4's class-design questions are checked by
+   reflection, see utils.jvm.classspec)
+4. Generate seeded code with misconception (rule-based AST rewrites of the
+   correct code first, see utils.generators.rewrite; the LLM otherwise)
 5. Compile seeded code
-6. Test seeded code (must fail at least 1 test + differ from correct)
+6. Test seeded code (must fail at least 1 test, or with --differential
+   diverge from the reference on the battery or on a boundary input, see
+   utils.generators.distinguish, and differ from correct)
 
-Each step has 3-retry logic before discarding.
+Each step has 3-retry logic before discarding. The `rewrite` command seeds an
+existing dataset's correct code with every applicable misconception using the
+rewrites alone.
 """
 
 from __future__ import annotations
@@ -19,6 +27,9 @@ import random
 import re
 import subprocess
 import tempfile
+from collections.abc import Iterator
+from concurrent.futures import ThreadPoolExecutor
+from contextlib import contextmanager
 from dataclasses import dataclass
 from datetime import datetime
 from pathlib import Path
@@ -31,6 +42,30 @@ from openai import AsyncOpenAI
 from rich.console import Console
 from rich.progress import BarColumn, Progress, SpinnerColumn, TextColumn, TimeElapsedColumn
 
+from utils.execution import (
+    DEFAULT_WATCHDOG,
+    CompiledSource,
+    Watchdog,
+    compile_and_run,
+    compile_only,
+    run_blocking,
+)
+from utils.generators.distinguish import find_distinguishing_input
+from utils.generators.oracle import OracleCase, OracleError, build_battery, run_differential
+from utils.generators.rewrite import (
+    SeededCandidate,
+    SeedRewriterError,
+    correct_files,
+    rewrite_candidates,
+    rewrite_dataset,
+)
+from utils.jvm.build import JvmBuildError
+from utils.jvm.cache import ExecutionCache
+from utils.jvm.classspec import check_class_specs, has_class_specs
+from utils.jvm.compiler import CompilerService
+from utils.jvm.pool import JvmWorkerPool, WorkerCrashed
+from utils.jvm.profile import fast_start_profile
+
 load_dotenv()
 
 console = Console()
@@ -100,10 +135,13 @@ class PipelineStats:
 
     correct_compile_failures: int = 0
     correct_test_failures: int = 0
+    correct_oracle_failures: int = 0  # Passed tests but disagreed with the reference
     seeded_compile_failures: int = 0
     seeded_test_pass_failures: int = 0  # Seeded passed all tests (bad)
     seeded_no_diff_failures: int = 0  # Seeded is identical to correct (bad)
     seeded_fallback_to_clean: int = 0  # Students who got 4 clean codes due to seeding failure
+    seeded_by_rewrite: int = 0  # Seeded by a rule-based rewrite, no LLM call
+    seeded_rewrite_rejected: int = 0  # Rewrite candidates that failed validation
     successful_samples: int = 0
     discarded_samples: int = 0
 
@@ -111,10 +149,13 @@ class PipelineStats:
         return {
             "correct_compile_failures": self.correct_compile_failures,
             "correct_test_failures": self.correct_test_failures,
+            "correct_oracle_failures": self.correct_oracle_failures,
             "seeded_compile_failures": self.seeded_compile_failures,
             "seeded_test_pass_failures": self.seeded_test_pass_failures,
             "seeded_no_diff_failures": self.seeded_no_diff_failures,
             "seeded_fallback_to_clean": self.seeded_fallback_to_clean,
+            "seeded_by_rewrite": self.seeded_by_rewrite,
+            "seeded_rewrite_rejected": self.seeded_rewrite_rejected,
             "successful_samples": self.successful_samples,
             "discarded_samples": self.discarded_samples,
         }
@@ -133,6 +174,7 @@ class StudentSample:
     misconception_name: str | None
     correct_codes: dict[str, str]  # {"Q1": "...", "Q2": "...", ...}
     seeded_code: str | None  # Only the seeded version of seeded_question
+    seeded_by: str | None = None  # "llm" or "rewrite:<variant>"
 
 
 # ============================================================================
@@ -149,8 +191,17 @@ def extract_class_name(java_source: str) -> str | None:
     return match.group(1) if match else None
 
 
-def compile_java(java_source: str, timeout: float = 30.0) -> tuple[bool, str]:
+def compile_java(
+    java_source: str,
+    timeout: float = 30.0,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+) -> tuple[bool, str]:
     """Compile Java source code. Returns (success, stderr)."""
+    if compiler is not None or cache is not None:
+        result = compile_only(java_source, timeout, compiler, cache)
+        return result.success, result.stderr
+
     class_name = extract_class_name(java_source)
     if not class_name:
         return False, "No class found in source"
@@ -175,46 +226,60 @@ def compile_java(java_source: str, timeout: float = 30.0) -> tuple[bool, str]:
             return False, "javac not found"
 
 
-def run_java(java_source: str, stdin_input: str, timeout: float = 10.0) -> tuple[bool, str, str]:
-    """Compile and run Java code. Returns (success, stdout, stderr)."""
-    class_name = extract_class_name(java_source)
-    if not class_name:
-        return False, "", "No class found in source"
+def run_java(
+    java_source: str,
+    stdin_input: str,
+    timeout: float = 10.0,
+    pool: JvmWorkerPool | None = None,
+) -> tuple[bool, str, str]:
+    """Compile and run Java code. Returns (success, stdout, stderr).
 
-    with tempfile.TemporaryDirectory() as tmp:
-        tmp_path = Path(tmp)
-        java_file = tmp_path / f"{class_name}.java"
-        java_file.write_text(java_source, encoding="utf-8")
+    With a pool, the run happens on a warm JVM worker; otherwise a fresh `java`
+    starts with the fast-start launch profile (see utils.jvm.profile).
+    """
+    compiled, run = compile_and_run(
+        java_source,
+        stdin_input,
+        run_timeout=timeout,
+        pool=pool,
+        profile=None if pool is not None else fast_start_profile(),
+    )
+    if run is None:
+        return False, "", compiled.stderr
+    return run.success, run.stdout, run.stderr
 
-        # Compile
-        try:
-            result = subprocess.run(
-                ["javac", str(java_file)],
-                cwd=tmp_path,
-                capture_output=True,
-                text=True,
-                timeout=30.0,
-            )
-            if result.returncode != 0:
-                return False, "", result.stderr
-        except (subprocess.TimeoutExpired, FileNotFoundError) as e:
-            return False, "", str(e)
 
-        # Run
+@contextmanager
+def warm_jvm_services(
+    enabled: bool = True,
+) -> Iterator[tuple[JvmWorkerPool | None, CompilerService | None]]:
+    """A started worker pool and compiler service, closed on exit.
+
+    Yields (None, None) when disabled, or when the helpers do not build or the
+    first worker does not start; callers then run `java`/`javac` processes.
+    """
+    if not enabled:
+        yield None, None
+        return
+    try:
+        pool = JvmWorkerPool()
+    except JvmBuildError as e:
+        console.print(f"[yellow]Warm JVM unavailable, using java/javac processes: {e}[/yellow]")
+        yield None, None
+        return
+    with pool:
         try:
-            result = subprocess.run(
-                ["java", class_name],
-                cwd=tmp_path,
-                input=stdin_input,
-                capture_output=True,
-                text=True,
-                timeout=timeout,
-            )
-            return result.returncode == 0, result.stdout, result.stderr
-        except subprocess.TimeoutExpired:
-            return False, "", "Execution timed out"
-        except FileNotFoundError:
-            return False, "", "java not found"
+            pool.start()
+        except (OSError, WorkerCrashed, TimeoutError) as e:
+            console.print(f"[yellow]Warm JVM unavailable, using java/javac processes: {e}[/yellow]")
+            started = False
+        else:
+            started = True
+        if not started:
+            yield None, None
+            return
+        with CompilerService() as compiler:
+            yield pool, compiler
 
 
 # ============================================================================
@@ -335,40 +400,65 @@ def load_test_cases(assignment: str, question: str) -> list[TestCase]:
     return TEST_CASES.get(assignment, {}).get(question, [])
 
 
-def run_tests(java_source: str, test_cases: list[TestCase]) -> tuple[int, int, list[str]]:
+def run_tests(
+    java_source: str,
+    test_cases: list[TestCase],
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    timeout: float = 10.0,
+    cache: ExecutionCache | None = None,
+    watchdog: Watchdog | None = None,
+) -> tuple[int, int, list[str]]:
     """Run test cases against Java code.
 
+    The source is compiled once and every test case runs against the same
+    compiled classes (on warm JVM workers when a pool is given). With a cache,
+    test inputs already run against this exact source are not rerun, and the
+    source is not compiled at all when every input is cached.
+
     Returns: (passed_count, total_count, failure_messages)
     """
+    class_name = extract_class_name(java_source)
+    if not class_name:
+        return 0, len(test_cases), [f"{tc.name}: No class found in source" for tc in test_cases]
+
     passed = 0
     failures = []
+    with CompiledSource(java_source, pool, compiler, cache, timeout, watchdog) as program:
+        runs = [program.cached(tc.input) for tc in test_cases]
+        for i, tc in enumerate(test_cases):
+            run = runs[i] or program.execute(tc.input)
+            if run is None:
+                stderr = program.compile().stderr
+                failures = [f"{tc.name}: Execution failed - {stderr}" for tc in test_cases]
+                return 0, len(test_cases), failures
+            if not run.success:
+                failures.append(f"{tc.name}: Execution failed - {run.stderr}")
+                continue
+
+            failure = check_test_output(tc, run.stdout)
+            if failure:
+                failures.append(failure)
+            else:
+                passed += 1
 
-    for tc in test_cases:
-        success, stdout, stderr = run_java(java_source, tc.input)
-        if not success:
-            failures.append(f"{tc.name}: Execution failed - {stderr}")
-            continue
+    return passed, len(test_cases), failures
 
-        # Check if expected output is in stdout
-        output_contains_expected = (
-            tc.expected_output in stdout or tc.expected_output.rstrip("0").rstrip(".") in stdout
-        )
 
-        # Check forbidden output if specified
-        if tc.forbidden_output and tc.forbidden_output in stdout:
-            failures.append(
-                f"{tc.name}: Found forbidden '{tc.forbidden_output}' in output: '{stdout.strip()}'"
-            )
-            continue
+def check_test_output(tc: TestCase, stdout: str) -> str | None:
+    """Check one test case's stdout. Returns a failure message, or None if it passed."""
+    # Check if expected output is in stdout
+    output_contains_expected = (
+        tc.expected_output in stdout or tc.expected_output.rstrip("0").rstrip(".") in stdout
+    )
 
-        if output_contains_expected:
-            passed += 1
-        else:
-            failures.append(
-                f"{tc.name}: Expected '{tc.expected_output}' in output, got '{stdout.strip()}'"
-            )
+    # Check forbidden output if specified
+    if tc.forbidden_output and tc.forbidden_output in stdout:
+        return f"{tc.name}: Found forbidden '{tc.forbidden_output}' in output: '{stdout.strip()}'"
 
-    return passed, len(test_cases), failures
+    if output_contains_expected:
+        return None
+    return f"{tc.name}: Expected '{tc.expected_output}' in output, got '{stdout.strip()}'"
 
 
 # ============================================================================
@@ -478,6 +568,69 @@ async def generate_seeded_code(
     return strip_code_fences(text)
 
 
+def check_seeded(
+    code: str,
+    correct_code: str,
+    test_cases: list[TestCase],
+    assignment: str | None,
+    question: str,
+    battery: list[OracleCase] | None,
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+) -> tuple[str, str] | None:
+    """Steps 5-6 for one seeded candidate.
+
+    Returns None if it compiles, differs from the correct code and fails a
+    test or diverges from the reference; otherwise (reason, detail) with
+    reason "compile", "identical" or "passed". Without a battery (no
+    --differential) it must fail a test.
+    """
+    compiles, stderr = compile_java(code, compiler=compiler, cache=cache)
+    if not compiles:
+        return "compile", f"compile failed: {stderr[:100]}"
+    if code.strip() == correct_code.strip():
+        return "identical", "identical to correct"
+    # Seeded loop bugs rarely terminate; the watchdog stops them well before the timeout
+    passed, total, _ = run_tests(
+        code, test_cases, pool=pool, compiler=compiler, cache=cache, watchdog=DEFAULT_WATCHDOG
+    )
+    if has_class_specs(assignment):
+        spec_passed, spec_total, _ = check_class_specs(code, assignment, question, cache=cache)
+        passed, total = passed + spec_passed, total + spec_total
+    if passed < total:
+        return None
+    # The hand-written tests target specific misconceptions; a divergence
+    # from the reference on the battery also shows the seeded bug is observable
+    if battery and assignment is not None:
+        agreed, total, _ = run_differential(
+            code,
+            assignment,
+            question,
+            battery,
+            pool=pool,
+            compiler=compiler,
+            cache=cache,
+            watchdog=DEFAULT_WATCHDOG,
+        )
+        if agreed < total:
+            return None
+        # Random inputs rarely hit the exact threshold a bug is about; try the
+        # boundaries of the constants both programs compare against
+        distinguishing = find_distinguishing_input(
+            code,
+            assignment,
+            question,
+            pool=pool,
+            compiler=compiler,
+            cache=cache,
+            watchdog=DEFAULT_WATCHDOG,
+        )
+        if distinguishing is not None:
+            return None
+    return "passed", "passed all tests"
+
+
 # ============================================================================
 # Pipeline Orchestration
 # ============================================================================
@@ -493,6 +646,12 @@ async def generate_sample(
     misconception: dict[str, Any] | None,
     all_test_cases: dict[str, list[TestCase]],
     stats: PipelineStats,
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+    assignment: str | None = None,
+    batteries: dict[str, list[OracleCase]] | None = None,
+    rewrite: bool = True,
 ) -> StudentSample | None:
     """Generate a complete assignment (all 4 questions) with optional misconception seeding.
 
@@ -500,22 +659,46 @@ async def generate_sample(
         seeded_question: Which question (Q1-Q4) to inject the misconception into, or None for all clean
         misconception: The misconception to inject (should be applicable to seeded_question)
         all_test_cases: Dict mapping question ID to test cases
+        pool: Optional warm JVM workers used for every test run
+        compiler: Optional in-process compiler used for the compile checks
+        cache: Optional on-disk cache of compile and run results
+        assignment: Assignment ID the batteries belong to
+        batteries: Optional differential batteries (reference outputs) by question ID
+        rewrite: Try rule-based rewrites of the correct code (utils.generators.rewrite)
+            before asking the LLM to seed the misconception
 
     Returns:
         StudentSample with all 4 correct codes + optionally 1 seeded code, or None if generation failed
     """
     style_id, cog_id = persona
     persona_prompt = build_persona_prompt(style_id, cog_id)
+    batteries = batteries or {}
 
-    correct_codes = {}
+    async def diverges(code: str, question: str) -> tuple[int, int, list[str]] | None:
+        """Differential run against the reference; None if the code agrees (or no battery)."""
+        battery = batteries.get(question)
+        if not battery or assignment is None:
+            return None
+        agreed, total, failures = await run_blocking(
+            run_differential,
+            code,
+            assignment,
+            question,
+            battery,
+            pool=pool,
+            compiler=compiler,
+            cache=cache,
+        )
+        return None if agreed == total else (agreed, total, failures)
 
-    # Step 1-3: Generate and validate correct code for ALL 4 questions
-    for question in ["Q1", "Q2", "Q3", "Q4"]:
+    # Step 1-3: Generate and validate correct code for ALL 4 questions.
+    # The questions run concurrently so one question's javac/test runs
+    # overlap with the others' LLM calls.
+    async def generate_valid_correct(question: str) -> str | None:
         question_text = question_texts.get(question, "")
         question_brief = question_briefs.get(question, "")
         test_cases = all_test_cases.get(question, [])
 
-        correct_code = None
         for attempt in range(MAX_RETRIES):
             try:
                 code = await generate_correct_code(
@@ -523,7 +706,9 @@ async def generate_sample(
                 )
 
                 # Step 2: Compile check
-                compiles, stderr = compile_java(code)
+                compiles, stderr = await run_blocking(
+                    compile_java, code, compiler=compiler, cache=cache
+                )
                 if not compiles:
                     console.print(
                         f"  [yellow]{question} correct code compile failed (attempt {attempt + 1}): {stderr[:100]}[/yellow]"
@@ -532,7 +717,16 @@ async def generate_sample(
                     continue
 
                 # Step 3: Test check (all must pass)
-                passed, total, failures = run_tests(code, test_cases)
+                passed, total, failures = await run_blocking(
+                    run_tests, code, test_cases, pool=pool, compiler=compiler, cache=cache
+                )
+                # Class-design questions (a4) have no stdin tests; check them by reflection
+                if has_class_specs(assignment):
+                    spec_passed, spec_total, spec_failures = await run_blocking(
+                        check_class_specs, code, assignment, question, cache=cache
+                    )
+                    passed, total = passed + spec_passed, total + spec_total
+                    failures = failures + spec_failures
                 if passed < total:
                     console.print(
                         f"  [yellow]{question} correct code tests failed (attempt {attempt + 1}): {passed}/{total}[/yellow]"
@@ -540,26 +734,85 @@ async def generate_sample(
                     stats.correct_test_failures += 1
                     continue
 
-                correct_code = code
-                break
+                # Step 3b: Differential check against the reference solution
+                divergence = await diverges(code, question)
+                if divergence:
+                    agreed, total, failures = divergence
+                    console.print(
+                        f"  [yellow]{question} correct code disagrees with reference (attempt {attempt + 1}): {agreed}/{total} - {failures[0][:100]}[/yellow]"
+                    )
+                    stats.correct_oracle_failures += 1
+                    continue
+
+                return code
             except Exception as e:
                 console.print(f"  [red]Error generating {question} correct code: {e}[/red]")
-
-        if not correct_code:
-            # Failed to generate correct code for this question → discard entire student
-            stats.discarded_samples += 1
-            return None
-
-        correct_codes[question] = correct_code
+        return None
+
+    # The first question that runs out of attempts discards the student, so
+    # the others are cancelled then instead of finishing their LLM calls
+    tasks = {q: asyncio.create_task(generate_valid_correct(q)) for q in ["Q1", "Q2", "Q3", "Q4"]}
+    pending = set(tasks.values())
+    try:
+        while pending:
+            done, pending = await asyncio.wait(pending, return_when=asyncio.FIRST_COMPLETED)
+            if not all(task.result() for task in done):
+                # Failed to generate correct code for some question → discard entire student
+                stats.discarded_samples += 1
+                return None
+    finally:
+        for task in pending:
+            task.cancel()
+        await asyncio.gather(*pending, return_exceptions=True)
+
+    correct_codes = {q: task.result() for q, task in tasks.items()}
 
     # Step 4-6: Optionally generate seeded code for the designated question
     seeded_code = None
+    seeded_by = None
 
     if seeded_question and misconception:
         correct_code_for_seeding = correct_codes[seeded_question]
         test_cases_for_seeding = all_test_cases.get(seeded_question, [])
 
-        for attempt in range(MAX_RETRIES):
+        async def reject_seeded(code: str) -> tuple[str, str] | None:
+            return await run_blocking(
+                check_seeded,
+                code,
+                correct_code_for_seeding,
+                test_cases_for_seeding,
+                assignment,
+                seeded_question,
+                batteries.get(seeded_question),
+                pool=pool,
+                compiler=compiler,
+                cache=cache,
+            )
+
+        # Step 4a: rule-based rewrite of the correct code, no LLM round-trip
+        if rewrite:
+            try:
+                candidates = await run_blocking(
+                    rewrite_candidates, correct_code_for_seeding, misconception["id"], seeded_question
+                )
+            except SeedRewriterError as e:
+                console.print(f"  [red]Rewriting {seeded_question} failed: {e}[/red]")
+                candidates = []
+            for variant, code in candidates:
+                rejected = await reject_seeded(code)
+                if rejected:
+                    console.print(
+                        f"  [yellow]{seeded_question} rewrite {variant} rejected: {rejected[1]}[/yellow]"
+                    )
+                    stats.seeded_rewrite_rejected += 1
+                    continue
+                seeded_code = code
+                seeded_by = f"rewrite:{variant}"
+                stats.seeded_by_rewrite += 1
+                break
+
+        # Step 4b: LLM seeding, for misconceptions without a transform or rejected rewrites
+        for attempt in range(MAX_RETRIES if seeded_code is None else 0):
             try:
                 code = await generate_seeded_code(
                     client,
@@ -570,33 +823,23 @@ async def generate_sample(
                     seeded_question,
                 )
 
-                # Step 5: Compile check
-                compiles, stderr = compile_java(code)
-                if not compiles:
-                    console.print(
-                        f"  [yellow]{seeded_question} seeded code compile failed (attempt {attempt + 1}): {stderr[:100]}[/yellow]"
-                    )
-                    stats.seeded_compile_failures += 1
-                    continue
-
-                # Check if code differs from correct
-                if code.strip() == correct_code_for_seeding.strip():
+                # Steps 5-6: compile, differ from correct, fail a test or diverge
+                rejected = await reject_seeded(code)
+                if rejected:
+                    reason, detail = rejected
                     console.print(
-                        f"  [yellow]{seeded_question} seeded code identical to correct (attempt {attempt + 1})[/yellow]"
+                        f"  [yellow]{seeded_question} seeded code {detail} (attempt {attempt + 1})[/yellow]"
                     )
-                    stats.seeded_no_diff_failures += 1
-                    continue
-
-                # Step 6: Test check (at least 1 must fail)
-                passed, total, failures = run_tests(code, test_cases_for_seeding)
-                if passed == total:
-                    console.print(
-                        f"  [yellow]{seeded_question} seeded code passed all tests (attempt {attempt + 1})[/yellow]"
-                    )
-                    stats.seeded_test_pass_failures += 1
+                    if reason == "compile":
+                        stats.seeded_compile_failures += 1
+                    elif reason == "identical":
+                        stats.seeded_no_diff_failures += 1
+                    else:
+                        stats.seeded_test_pass_failures += 1
                     continue
 
                 seeded_code = code
+                seeded_by = "llm"
                 break
             except Exception as e:
                 console.print(f"  [red]Error generating {seeded_question} seeded code: {e}[/red]")
@@ -620,6 +863,7 @@ async def generate_sample(
         misconception_name=misconception.get("name") if seeded_code else None,
         correct_codes=correct_codes,
         seeded_code=seeded_code,
+        seeded_by=seeded_by,
     )
 
 
@@ -634,6 +878,10 @@ async def run_pipeline(
     model: str,
     output_root: Path,
     seed: int,
+    warm_jvm: bool = True,
+    exec_cache: bool = True,
+    differential: bool = False,
+    rewrite: bool = True,
 ) -> None:
     """Run the full synthetic generation pipeline."""
     random.seed(seed)
@@ -674,105 +922,139 @@ async def run_pipeline(
     # Statistics
     stats = PipelineStats()
 
-    # Generate students
-    console.print(f"\n[bold cyan]Generating {student_count} students...[/bold cyan]\n")
-
-    manifest_students = []
-
-    with Progress(
-        SpinnerColumn(),
-        TextColumn("[progress.description]{task.description}"),
-        BarColumn(),
-        TimeElapsedColumn(),
-        console=console,
-    ) as progress:
-        task = progress.add_task("Generating students", total=student_count)
-
-        for i in range(student_count):
-            first = faker.first_name()
-            last = faker.last_name()
-            student_id = random.randint(100000, 999999)
-            folder_name = f"{last}_{first}_{student_id}"
-
-            # Pick random persona
-            style_id, cog_id = random.choice(personas)
-
-            # Pick ONE random question to seed
-            seeded_question = random.choice(["Q1", "Q2", "Q3", "Q4"])
-            applicable_miscns = [
-                m
-                for m in misconceptions
-                if seeded_question.upper() in [q.upper() for q in m.get("applicable_questions", [])]
-            ]
-            misconception = random.choice(applicable_miscns) if applicable_miscns else None
-
-            progress.update(task, description=f"Student {i + 1}: {folder_name}")
-
-            # Load test cases for ALL questions
-            all_test_cases = {q: load_test_cases(assignment, q) for q in ["Q1", "Q2", "Q3", "Q4"]}
-
-            # Generate sample (all 4 questions)
-            sample = await generate_sample(
-                client=client,
-                model=model,
-                question_texts=question_texts,
-                question_briefs=question_briefs,
-                persona=(style_id, cog_id),
-                seeded_question=seeded_question,
-                misconception=misconception,
-                all_test_cases=all_test_cases,
-                stats=stats,
-            )
-
-            if sample:
-                sample.student_id = str(student_id)
-                sample.folder_name = folder_name
-
-                # Save all 4 correct codes
-                student_correct_dir = correct_dir / folder_name
-                student_correct_dir.mkdir(parents=True, exist_ok=True)
-                for question, code in sample.correct_codes.items():
-                    (student_correct_dir / f"{question}.java").write_text(code)
-
-                # Save student submission folder (3 clean + 1 seeded OR 4 clean)
-                student_submission_dir = output_root / folder_name
-                student_submission_dir.mkdir(parents=True, exist_ok=True)
+    # Retries and reruns with identical code skip the JVM entirely
+    cache = ExecutionCache() if exec_cache else None
+
+    # Warm JVM workers for test runs and compile checks (otherwise one new
+    # `java`/`javac` process per call)
+    with warm_jvm_services(warm_jvm) as (pool, compiler):
+        # Reference outputs for the differential check, built once per question
+        batteries: dict[str, list[OracleCase]] = {}
+        if differential:
+            for question in ["Q1", "Q2", "Q3", "Q4"]:
+                try:
+                    batteries[question] = await run_blocking(
+                        build_battery,
+                        assignment,
+                        question,
+                        pool=pool,
+                        compiler=compiler,
+                        cache=cache,
+                    )
+                except OracleError as e:
+                    console.print(f"[yellow]{question}: differential check disabled: {e}[/yellow]")
+
+        # Generate students
+        console.print(f"\n[bold cyan]Generating {student_count} students...[/bold cyan]\n")
+
+        manifest_students = []
+
+        with Progress(
+            SpinnerColumn(),
+            TextColumn("[progress.description]{task.description}"),
+            BarColumn(),
+            TimeElapsedColumn(),
+            console=console,
+        ) as progress:
+            task = progress.add_task("Generating students", total=student_count)
+
+            for i in range(student_count):
+                first = faker.first_name()
+                last = faker.last_name()
+                student_id = random.randint(100000, 999999)
+                folder_name = f"{last}_{first}_{student_id}"
+
+                # Pick random persona
+                style_id, cog_id = random.choice(personas)
+
+                # Pick ONE random question to seed
+                seeded_question = random.choice(["Q1", "Q2", "Q3", "Q4"])
+                applicable_miscns = [
+                    m
+                    for m in misconceptions
+                    if seeded_question.upper()
+                    in [q.upper() for q in m.get("applicable_questions", [])]
+                ]
+                misconception = random.choice(applicable_miscns) if applicable_miscns else None
+
+                progress.update(task, description=f"Student {i + 1}: {folder_name}")
+
+                # Load test cases for ALL questions
+                all_test_cases = {
+                    q: load_test_cases(assignment, q) for q in ["Q1", "Q2", "Q3", "Q4"]
+                }
+
+                # Generate sample (all 4 questions)
+                sample = await generate_sample(
+                    client=client,
+                    model=model,
+                    question_texts=question_texts,
+                    question_briefs=question_briefs,
+                    persona=(style_id, cog_id),
+                    seeded_question=seeded_question,
+                    misconception=misconception,
+                    all_test_cases=all_test_cases,
+                    stats=stats,
+                    pool=pool,
+                    compiler=compiler,
+                    cache=cache,
+                    assignment=assignment,
+                    batteries=batteries,
+                    rewrite=rewrite,
+                )
 
-                for question in ["Q1", "Q2", "Q3", "Q4"]:
-                    if question == sample.seeded_question and sample.seeded_code:
-                        # Use seeded version
-                        (student_submission_dir / f"{question}.java").write_text(sample.seeded_code)
-                    else:
-                        # Use correct version
-                        (student_submission_dir / f"{question}.java").write_text(
-                            sample.correct_codes[question]
+                if sample:
+                    sample.student_id = str(student_id)
+                    sample.folder_name = folder_name
+
+                    # Save all 4 correct codes
+                    student_correct_dir = correct_dir / folder_name
+                    student_correct_dir.mkdir(parents=True, exist_ok=True)
+                    for question, code in sample.correct_codes.items():
+                        (student_correct_dir / f"{question}.java").write_text(code)
+
+                    # Save student submission folder (3 clean + 1 seeded OR 4 clean)
+                    student_submission_dir = output_root / folder_name
+                    student_submission_dir.mkdir(parents=True, exist_ok=True)
+
+                    for question in ["Q1", "Q2", "Q3", "Q4"]:
+                        if question == sample.seeded_question and sample.seeded_code:
+                            # Use seeded version
+                            (student_submission_dir / f"{question}.java").write_text(
+                                sample.seeded_code
+                            )
+                        else:
+                            # Use correct version
+                            (student_submission_dir / f"{question}.java").write_text(
+                                sample.correct_codes[question]
+                            )
+
+                    # Add to manifest
+                    files_dict = {}
+                    for question in ["Q1", "Q2", "Q3", "Q4"]:
+                        is_seeded = (
+                            question == sample.seeded_question and sample.seeded_code is not None
                         )
-
-                # Add to manifest
-                files_dict = {}
-                for question in ["Q1", "Q2", "Q3", "Q4"]:
-                    is_seeded = (
-                        question == sample.seeded_question and sample.seeded_code is not None
+                        files_dict[question] = {
+                            "type": "SEEDED" if is_seeded else "CLEAN",
+                            "misconception_id": sample.misconception_id if is_seeded else None,
+                            "misconception_name": sample.misconception_name if is_seeded else None,
+                            "seeded_by": sample.seeded_by if is_seeded else None,
+                        }
+
+                    manifest_students.append(
+                        {
+                            "folder_name": folder_name,
+                            "student_id": student_id,
+                            "first_name": first,
+                            "last_name": last,
+                            "persona_style": style_id,
+                            "persona_cognitive": cog_id,
+                            "files": files_dict,
+                        }
                     )
-                    files_dict[question] = {
-                        "type": "SEEDED" if is_seeded else "CLEAN",
-                        "misconception_id": sample.misconception_id if is_seeded else None,
-                        "misconception_name": sample.misconception_name if is_seeded else None,
-                    }
-
-                manifest_students.append(
-                    {
-                        "folder_name": folder_name,
-                        "student_id": student_id,
-                        "first_name": first,
-                        "last_name": last,
-                        "persona_style": style_id,
-                        "persona_cognitive": cog_id,
-                        "files": files_dict,
-                    }
-                )
 
-            progress.advance(task)
+                progress.advance(task)
 
     # Save manifest
     manifest = {
@@ -795,10 +1077,13 @@ async def run_pipeline(
     console.print(f"  Discarded samples: {stats.discarded_samples}")
     console.print(f"  Correct compile failures: {stats.correct_compile_failures}")
     console.print(f"  Correct test failures: {stats.correct_test_failures}")
+    console.print(f"  Correct disagreed with reference: {stats.correct_oracle_failures}")
     console.print(f"  Seeded compile failures: {stats.seeded_compile_failures}")
     console.print(f"  Seeded passed all tests: {stats.seeded_test_pass_failures}")
     console.print(f"  Seeded identical to correct: {stats.seeded_no_diff_failures}")
     console.print(f"  Seeded fallback to clean: {stats.seeded_fallback_to_clean}")
+    console.print(f"  Seeded by rewrite: {stats.seeded_by_rewrite}")
+    console.print(f"  Rewrites rejected: {stats.seeded_rewrite_rejected}")
     console.print(f"\nOutput saved to: {output_root}")
 
 
@@ -809,6 +1094,18 @@ def generate(
     model: str = typer.Option(DEFAULT_MODEL, help="OpenAI model to use"),
     output: Path = typer.Option(Path("authentic_seeded/a3"), help="Output directory"),
     seed: int = typer.Option(None, help="Random seed (default: current timestamp)"),
+    warm_jvm: bool = typer.Option(
+        True, help="Compile and run tests on warm JVMs instead of per-call javac/java"
+    ),
+    exec_cache: bool = typer.Option(
+        True, help="Reuse cached compile/run results from .cache/exec for identical code"
+    ),
+    differential: bool = typer.Option(
+        False, help="Also validate against the reference solutions on generated inputs"
+    ),
+    rewrite: bool = typer.Option(
+        True, help="Seed by rule-based AST rewrites first, asking the LLM only when none validates"
+    ),
 ):
     """Generate synthetic student submissions with seeded misconceptions."""
     if seed is None:
@@ -821,7 +1118,181 @@ def generate(
     console.print(f"  Seed: {seed}")
     console.print(f"  Output: {output}")
 
-    asyncio.run(run_pipeline(assignment, students, model, output, seed))
+    asyncio.run(
+        run_pipeline(
+            assignment, students, model, output, seed, warm_jvm, exec_cache, differential, rewrite
+        )
+    )
+
+
+@app.command()
+def rewrite(
+    assignment: str = typer.Option(DEFAULT_ASSIGNMENT, help="Assignment ID (a1, a2, etc.)"),
+    source: Path = typer.Option(
+        None, help="Generated dataset whose correct files are seeded (default: authentic_seeded/<assignment>)"
+    ),
+    output: Path = typer.Option(
+        None, help="Output directory (default: authentic_seeded/<assignment>_rewrite)"
+    ),
+    validate: bool = typer.Option(
+        True, help="Keep only rewrites that compile and fail a test or diverge from the reference"
+    ),
+    warm_jvm: bool = typer.Option(
+        True, help="Compile and run tests on warm JVMs instead of per-call javac/java"
+    ),
+    exec_cache: bool = typer.Option(
+        True, help="Reuse cached compile/run results from .cache/exec for identical code"
+    ),
+    differential: bool = typer.Option(
+        False, help="Also validate against the reference solutions on generated inputs"
+    ),
+):
+    """Seed every correct file of a dataset with every applicable misconception, without an LLM.
+
+    Each (correct file, misconception) pair whose rewrite validates becomes one
+    student folder <student>_<question>_<NM id>: the rewrite plus the student's
+    other correct files, listed in a manifest like the generator's.
+    """
+    source = source or Path("authentic_seeded") / assignment
+    output = output or Path("authentic_seeded") / f"{assignment}_rewrite"
+    manifest_path = source / "manifest.json"
+    if not manifest_path.exists():
+        console.print(f"[red]No manifest found: {manifest_path}[/red]")
+        raise typer.Exit(1)
+    source_manifest = json.loads(manifest_path.read_text())
+    names = {
+        m["id"]: m["name"]
+        for m in json.loads((Path("data") / assignment / "groundtruth.json").read_text())
+    }
+
+    files = correct_files(source)
+    console.print(f"[cyan]Rewriting {len(files)} correct files of {source}...[/cyan]")
+    start = datetime.now()
+    try:
+        candidates = rewrite_dataset(assignment, files)
+    except SeedRewriterError as e:
+        console.print(f"[red]{e}[/red]")
+        raise typer.Exit(1) from None
+    rewrite_seconds = (datetime.now() - start).total_seconds()
+
+    # Variants of one (student, question, misconception) in the transform's order
+    jobs: dict[tuple[str, str, str], list[SeededCandidate]] = {}
+    for candidate in candidates:
+        jobs.setdefault(
+            (candidate.student, candidate.question, candidate.misconception_id), []
+        ).append(candidate)
+    correct = {(student, question): path.read_text() for student, question, path in files}
+
+    start = datetime.now()
+    cache = ExecutionCache() if exec_cache else None
+    with warm_jvm_services(warm_jvm and validate) as (pool, compiler):
+        batteries: dict[str, list[OracleCase]] = {}
+        if validate and differential:
+            for question in ["Q1", "Q2", "Q3", "Q4"]:
+                try:
+                    batteries[question] = build_battery(
+                        assignment, question, pool=pool, compiler=compiler, cache=cache
+                    )
+                except OracleError as e:
+                    console.print(f"[yellow]{question}: differential check disabled: {e}[/yellow]")
+
+        def seed_job(variants: list[SeededCandidate]) -> SeededCandidate | None:
+            for candidate in variants:
+                if not validate:
+                    candidate.status = "seeded"
+                    return candidate
+                rejected = check_seeded(
+                    candidate.source,
+                    correct[(candidate.student, candidate.question)],
+                    load_test_cases(assignment, candidate.question),
+                    assignment,
+                    candidate.question,
+                    batteries.get(candidate.question),
+                    pool=pool,
+                    compiler=compiler,
+                    cache=cache,
+                )
+                candidate.status = rejected[0] if rejected else "seeded"
+                candidate.detail = rejected[1] if rejected else ""
+                if not rejected:
+                    return candidate
+            return None
+
+        with ThreadPoolExecutor(max_workers=pool.size if pool is not None else 1) as executor:
+            seeded = [c for c in executor.map(seed_job, jobs.values()) if c is not None]
+    validate_seconds = (datetime.now() - start).total_seconds()
+
+    # One student folder per seeded sample
+    students_by_folder = {s["folder_name"]: s for s in source_manifest["students"]}
+    manifest_students = []
+    for candidate in seeded:
+        student = students_by_folder[candidate.student]
+        folder_name = f"{candidate.student}_{candidate.question}_{candidate.misconception_id}"
+        folder = output / folder_name
+        folder.mkdir(parents=True, exist_ok=True)
+        files_dict = {}
+        for question in ["Q1", "Q2", "Q3", "Q4"]:
+            if question == candidate.question:
+                (folder / f"{question}.java").write_text(candidate.source)
+                files_dict[question] = {
+                    "type": "SEEDED",
+                    "misconception_id": candidate.misconception_id,
+                    "misconception_name": names.get(candidate.misconception_id),
+                    "seeded_by": f"rewrite:{candidate.variant}",
+                }
+            elif (candidate.student, question) in correct:
+                (folder / f"{question}.java").write_text(correct[(candidate.student, question)])
+                files_dict[question] = {
+                    "type": "CLEAN",
+                    "misconception_id": None,
+                    "misconception_name": None,
+                }
+            elif (source / candidate.student / f"{question}.java").exists():
+                # No correct copy of the student's own seeded file; keep it as it was
+                (folder / f"{question}.java").write_text(
+                    (source / candidate.student / f"{question}.java").read_text()
+                )
+                files_dict[question] = student["files"][question]
+        manifest_students.append({**student, "folder_name": folder_name, "files": files_dict})
+
+    manifest = {
+        "manifest_version": "2.0",
+        "generated_at": datetime.utcnow().isoformat(),
+        "source": str(source),
+        "seeding": "rewrite",
+        "assignment": assignment,
+        "student_count": len(manifest_students),
+        "students": manifest_students,
+    }
+    output.mkdir(parents=True, exist_ok=True)
+    (output / "manifest.json").write_text(json.dumps(manifest, indent=2))
+    (output / "rewrite_report.json").write_text(
+        json.dumps(
+            [
+                {
+                    "student": c.student,
+                    "question": c.question,
+                    "misconception_id": c.misconception_id,
+                    "variant": c.variant,
+                    "status": c.status,
+                    "detail": c.detail,
+                }
+                for c in candidates
+            ],
+            indent=2,
+        )
+    )
+
+    console.print("\n[bold green]Rewrite Complete![/bold green]")
+    console.print(f"  Correct files: {len(files)}")
+    console.print(f"  Jobs with a rewrite: {len(jobs)}")
+    console.print(f"  Candidates: {len(candidates)} in {rewrite_seconds:.1f}s")
+    console.print(f"  Seeded samples: {len(seeded)} (validated in {validate_seconds:.1f}s)")
+    for reason in ("compile", "identical", "passed"):
+        count = sum(c.status == reason for c in candidates)
+        if count:
+            console.print(f"  Rejected ({reason}): {count}")
+    console.print(f"\nOutput saved to: {output}")
 
 
 if __name__ == "__main__":
@@ -0,0 +1,235 @@
+"""Distinguishing-input synthesis: a small input on which a submission and the reference differ.
+
+Random batteries rarely land on the exact boundary a seeded bug is about (the
+a2 Q3 dangling else misgrades 90 and 60 only), and TEST_CASES encodes those
+boundaries by hand. This module derives them from the code instead:
+
+1. FeatureExtractor collects the numeric constants both programs compare
+   against (`grade >= 90`, `i < 5`, `case 3:`); each constant c gives the
+   boundary values c - 1, c and c + 1, plus 0, 1 and -1.
+2. Candidate inputs keep the shape of the question's inputs (its fixed edge
+   inputs and a few generated ones) and overwrite one numeric token, or two
+   tokens with the same value (equality boundaries such as x1 == x2), with a
+   boundary value. Candidates outside the question's domain
+   (QuestionSpec.valid: a grade of 101, N = 2 followed by three values) are
+   dropped.
+3. Candidates run smallest first: fewest numeric tokens, fewest overwritten
+   tokens, smallest values. Inputs the reference fails on are skipped, and
+   the first input whose answer differs, judged as in the oracle's
+   compare_output, is returned with the number of submission runs it took.
+
+This stands in for symbolic execution: the programs are small and branch on
+literal thresholds, so their path conditions are the comparisons with those
+literals, and the inputs on either side of each are what a solver would
+produce. Branches on computed values (a sum crossing a threshold) are only
+reached through the generated bases.
+"""
+
+from __future__ import annotations
+
+import re
+import tempfile
+from collections.abc import Iterable
+from dataclasses import dataclass
+from itertools import combinations
+from pathlib import Path
+from typing import TYPE_CHECKING
+
+from utils.execution import CompiledSource, Watchdog, extract_class_name
+from utils.generators.oracle import (
+    OracleCase,
+    OracleError,
+    compare_output,
+    generate_inputs,
+    question_spec,
+    reference_path,
+)
+from utils.jvm.features import run_feature_extractor
+
+if TYPE_CHECKING:
+    from utils.jvm.cache import ExecutionCache
+    from utils.jvm.compiler import CompilerService
+    from utils.jvm.pool import JvmWorkerPool
+
+# Submission runs one search may spend
+DEFAULT_MAX_RUNS = 60
+# Generated inputs used as bases, on top of the question's fixed edge inputs
+GENERATED_BASES = 2
+# Bases with more numeric tokens than this get single-token candidates only
+MAX_PAIR_TOKENS = 8
+
+GENERIC_VALUES = (0.0, 1.0, -1.0)
+
+# A numeric stdin token, as the oracle's generators write them
+_TOKEN = re.compile(r"(?<![\w.])-?\d+(?:\.\d+)?(?![\w.])")
+
+
+@dataclass
+class DistinguishingInput:
+    """An input the submission answers differently from the reference."""
+
+    input: str
+    expected_output: str | None
+    actual_output: str
+    message: str
+    runs: int
+
+
+def _format(value: float) -> str:
+    return str(int(value)) if value == int(value) else repr(value)
+
+
+def boundary_values(constants: Iterable[float]) -> list[str]:
+    """c - 1, c, c + 1 for every constant, and 0, 1, -1; smallest magnitude first."""
+    values = set(GENERIC_VALUES)
+    for c in constants:
+        values.update((c - 1, c, c + 1))
+    return [_format(v) for v in sorted(values, key=lambda v: (abs(v), v))]
+
+
+def source_constants(sources: Iterable[str], java: str = "java") -> set[float]:
+    """The numeric constants any of the sources compares against, from one FeatureExtractor run."""
+    with tempfile.TemporaryDirectory() as tmp:
+        files = []
+        for i, source in enumerate(sources):
+            folder = Path(tmp) / str(i)
+            folder.mkdir()
+            path = folder / f"{extract_class_name(source) or 'Main'}.java"
+            path.write_text(source, encoding="utf-8")
+            files.append((str(i), "Q", path))
+        report = run_feature_extractor(files, java=java)
+    constants: set[float] = set()
+    for entry in report.values():
+        constants.update(parse_constants(entry["features"].get("compare_constants") or ""))
+    return constants
+
+
+def parse_constants(joined: str) -> set[float]:
+    """The feature table's ";"-joined compare_constants column back to numbers."""
+    return {float(c) for c in joined.split(";") if c}
+
+
+def _substitute(base: str, tokens: list[re.Match[str]], values: dict[int, str]) -> str:
+    parts = []
+    last = 0
+    for i, token in enumerate(tokens):
+        if i in values:
+            parts.append(base[last : token.start()])
+            parts.append(values[i])
+            last = token.end()
+    parts.append(base[last:])
+    return "".join(parts)
+
+
+def _magnitude(stdin: str) -> float:
+    return sum(abs(float(t)) for t in _TOKEN.findall(stdin))
+
+
+def candidate_inputs(
+    assignment: str,
+    question: str,
+    constants: Iterable[float],
+    limit: int | None = None,
+) -> list[str]:
+    """Boundary-substituted inputs of the question's shape and domain, smallest first."""
+    spec = question_spec(assignment, question)
+    if spec is None:
+        return []
+    values = boundary_values(constants)
+    bases = [
+        stdin
+        for _, stdin in generate_inputs(
+            assignment, question, len(spec.fixed_inputs) + GENERATED_BASES
+        )
+    ]
+
+    costs: dict[str, tuple[int, int, float, int]] = {}
+
+    def add(stdin: str, size: int, changed: int) -> None:
+        if spec.valid is not None and not spec.valid(stdin):
+            return
+        cost = (size, changed, _magnitude(stdin), len(stdin))
+        if stdin not in costs or cost < costs[stdin]:
+            costs[stdin] = cost
+
+    for base in bases:
+        tokens = list(_TOKEN.finditer(base))
+        size = len(tokens)
+        add(base, size, 0)
+        for i in range(size):
+            for value in values:
+                add(_substitute(base, tokens, {i: value}), size, 1)
+        if size <= MAX_PAIR_TOKENS:
+            for i, j in combinations(range(size), 2):
+                for value in values:
+                    add(_substitute(base, tokens, {i: value, j: value}), size, 2)
+
+    ordered = sorted(costs, key=costs.__getitem__)
+    return ordered if limit is None else ordered[:limit]
+
+
+def find_distinguishing_input(
+    java_source: str,
+    assignment: str,
+    question: str,
+    constants: Iterable[float] | None = None,
+    max_runs: int = DEFAULT_MAX_RUNS,
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+    timeout: float = 5.0,
+    watchdog: Watchdog | None = None,
+) -> DistinguishingInput | None:
+    """The smallest candidate input on which java_source and the reference differ.
+
+    constants are the numeric constants to build boundaries around; by default
+    they are extracted from java_source and the reference (one JVM run).
+    Returns None if the question has no reference or oracle spec, the
+    submission does not compile, or no candidate within max_runs submission
+    runs tells the two apart. Reference and submission runs are cached like
+    the oracle's.
+    """
+    spec = question_spec(assignment, question)
+    ref = reference_path(assignment, question)
+    if spec is None or not ref.exists():
+        return None
+    ref_source = ref.read_text()
+    if constants is None:
+        constants = source_constants([java_source, ref_source])
+    class_name = extract_class_name(java_source)
+    ref_class = extract_class_name(ref_source)
+    if not class_name or not ref_class:
+        return None
+
+    runs = 0
+    with (
+        CompiledSource(java_source, pool, compiler, cache, timeout, watchdog) as submission,
+        CompiledSource(ref_source, pool, compiler, cache, timeout) as reference,
+    ):
+        if not submission.compile().success:
+            return None
+        compiled = reference.compile()
+        if not compiled.success:
+            raise OracleError(f"Reference solution does not compile: {compiled.stderr}")
+
+        for stdin in candidate_inputs(assignment, question, constants):
+            if runs >= max_runs:
+                break
+            expected = None
+            if spec.check is None:
+                ref_run = reference.run(stdin)
+                if not ref_run.success:
+                    # Outside what the question accepts
+                    continue
+                expected = ref_run.stdout
+            run = submission.run(stdin)
+            runs += 1
+            case = OracleCase("boundary", stdin, expected)
+            if run.success:
+                message = compare_output(spec, case, run.stdout)
+            else:
+                shown_input = stdin.replace("\n", " / ")
+                message = f"boundary: input '{shown_input}' failed - {run.stderr.strip()[:200]}"
+            if message:
+                return DistinguishingInput(stdin, expected, run.stdout, message, runs)
+    return None
@@ -0,0 +1,163 @@
+"""Behavioural fingerprints: group submissions that behave identically.
+
+Many synthetic submissions print exactly the same thing on every input. A
+fingerprint runs one Q*.java against the oracle's input battery
+(oracle.generate_inputs, same inputs and seed as `harness.py diff`, so cached
+runs are shared) and hashes the vector of normalized outcomes:
+
+- a completed run: its stdout, with line endings unified, trailing whitespace
+  and blank lines removed
+- a crash: the exception class on the first line of stderr
+- a run stopped by the watchdog or the timeout: the stop reason
+
+Submissions of a question with the same fingerprint form a group; test
+results, grades and detections can then be computed for one representative
+and reused for the others. Programs that do not compile, and questions whose
+output is not a function of stdin (a2 Q2), get no fingerprint and stay alone.
+The reference solution is fingerprinted too, so the group of programs that
+behave exactly like it is known.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import json
+from dataclasses import dataclass, field
+from pathlib import Path
+
+from utils.execution import CompiledSource, RunResult, extract_class_name
+from utils.generators.oracle import (
+    DEFAULT_BATTERY_SIZE,
+    generate_inputs,
+    question_spec,
+    reference_path,
+)
+from utils.jvm.cache import ExecutionCache
+from utils.jvm.compiler import CompilerService
+from utils.jvm.pool import JvmWorkerPool
+
+# Bump when normalization changes so stored indexes are not mixed up
+FINGERPRINT_VERSION = "1"
+
+
+def fingerprint_path(assignment: str) -> Path:
+    return Path("grading") / f"{assignment}_fingerprints.json"
+
+
+def normalize_output(stdout: str) -> str:
+    lines = stdout.replace("\r\n", "\n").replace("\r", "\n").split("\n")
+    return "\n".join(line.rstrip() for line in lines if line.strip())
+
+
+def _outcome(run: RunResult) -> str:
+    if run.timed_out:
+        return f"<stopped:{run.reason or 'timeout'}>"
+    if not run.success:
+        first = run.stderr.strip().splitlines()[0] if run.stderr.strip() else ""
+        # "Exception in thread "main" java.lang.X: message" -> java.lang.X
+        exception = first.split(": ")[0].split(" ")[-1] if first else "non-zero exit"
+        return f"<crash:{exception}>"
+    return normalize_output(run.stdout)
+
+
+def behaviour_fingerprint(
+    java_source: str,
+    inputs: list[tuple[str, str]],
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    timeout: float = 10.0,
+    cache: ExecutionCache | None = None,
+) -> str | None:
+    """Hash of java_source's outcomes on inputs; None if it does not compile.
+
+    Like oracle.run_differential, the source is compiled once, cached runs
+    are reused and new ones stored.
+    """
+    class_name = extract_class_name(java_source)
+    if not class_name or not inputs:
+        return None
+
+    with CompiledSource(java_source, pool, compiler, cache, timeout) as program:
+        runs = [program.run(stdin) for _, stdin in inputs]
+    if any(run is None for run in runs):
+        return None
+
+    vector = [FINGERPRINT_VERSION, *(_outcome(run) for run in runs)]
+    return hashlib.sha256(json.dumps(vector).encode()).hexdigest()[:16]
+
+
+@dataclass
+class FingerprintIndex:
+    """Fingerprints of one assignment's submissions (None = no fingerprint)."""
+
+    assignment: str
+    seed: int = 0
+    count: int = DEFAULT_BATTERY_SIZE
+    references: dict[str, str | None] = field(default_factory=dict)
+    students: dict[str, dict[str, str | None]] = field(default_factory=dict)
+
+    def groups(self, question: str) -> dict[str, list[str]]:
+        """Fingerprint -> students (sorted) for one question."""
+        groups: dict[str, list[str]] = {}
+        for student in sorted(self.students):
+            fp = self.students[student].get(question)
+            if fp is not None:
+                groups.setdefault(fp, []).append(student)
+        return groups
+
+    def representative(self, student: str, question: str) -> str:
+        """First student of student's group, or student itself if it has none."""
+        fp = self.students.get(student, {}).get(question)
+        if fp is None:
+            return student
+        return self.groups(question)[fp][0]
+
+    def shared(
+        self, question: str, among: set[str] | None = None, include_reference: bool = False
+    ) -> dict[str, str]:
+        """Non-representative member -> representative for every group of question.
+
+        With `among`, groups are restricted to those students. The group that
+        behaves like the reference is left out unless include_reference:
+        correct programs share an output, not a mistake.
+        """
+        shared = {}
+        for fp, members in self.groups(question).items():
+            if fp == self.references.get(question) and not include_reference:
+                continue
+            if among is not None:
+                members = [m for m in members if m in among]
+            for member in members[1:]:
+                shared[member] = members[0]
+        return shared
+
+    def save(self, path: Path) -> None:
+        path.parent.mkdir(parents=True, exist_ok=True)
+        path.write_text(json.dumps(self.__dict__, indent=2))
+
+    @classmethod
+    def load(cls, path: Path) -> FingerprintIndex:
+        return cls(**json.loads(path.read_text()))
+
+
+def fingerprint_inputs(assignment: str, question: str, count: int, seed: int) -> list[tuple[str, str]]:
+    """The battery inputs, or [] when the question's output is not a function of stdin."""
+    spec = question_spec(assignment, question)
+    if spec is None or spec.check is not None:
+        return []
+    return generate_inputs(assignment, question, count, seed)
+
+
+def reference_fingerprint(
+    assignment: str,
+    question: str,
+    inputs: list[tuple[str, str]],
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    timeout: float = 10.0,
+    cache: ExecutionCache | None = None,
+) -> str | None:
+    ref = reference_path(assignment, question)
+    if not inputs or not ref.exists():
+        return None
+    return behaviour_fingerprint(ref.read_text(), inputs, pool, compiler, timeout, cache)
@@ -0,0 +1,152 @@
+"""Mutation testing of the JUnit suites against the groundtruth misconceptions.
+
+How strong is data/<assignment>/tests/src/Q*Test.java against the mistakes
+listed in data/<assignment>/groundtruth.json? For every (NM_* id, question)
+pair in the groundtruth, the reference solution
+(data/<assignment>/tests/reference/Q*.java) is rewritten by the same
+SeedRewriter transform that seeds the generated datasets
+(utils.generators.rewrite), so each misconception has one definition. Every
+candidate variant of the transform becomes a mutant; a pair whose transform
+finds nothing to break in the reference is reported as unseeded instead of
+being silently dropped.
+
+All mutants, plus the unmutated reference as a control, are graded in one
+JUnitBatchRunner JVM (utils.jvm.junit): each is compiled in memory with its
+test class and loaded in its own class loader. A mutant is
+
+- killed: at least one test fails (the failing tests are recorded)
+- survived: every test passes, so the suite cannot see that misconception
+- stillborn: it does not compile (a transform bug, not a suite weakness)
+
+With the ExecutionCache, unchanged mutants and suites are not rerun, so the
+matrix is cheap to refresh after every test-suite change.
+"""
+
+from __future__ import annotations
+
+import tempfile
+from dataclasses import dataclass, field
+from pathlib import Path
+from typing import TYPE_CHECKING
+
+from utils.generators.oracle import reference_path
+from utils.generators.rewrite import (
+    SeedRewriterError,
+    groundtruth_pairs,
+    rewritable_ids,
+    run_seed_rewriter,
+)
+from utils.jvm.junit import run_junit_batch, tests_dir_for
+
+if TYPE_CHECKING:
+    from utils.jvm.cache import ExecutionCache
+
+# Student key of the unmutated reference in the batch manifest
+CONTROL = "reference"
+
+
+class MutationError(RuntimeError):
+    """Raised when an assignment has no suites to grade or the rewriter fails."""
+
+
+@dataclass
+class Mutant:
+    """One SeedRewriter variant of a reference solution; source is empty when unseeded."""
+
+    misconception: str
+    question: str
+    variant: str
+    source: str = ""
+
+    @property
+    def mutant_id(self) -> str:
+        return f"{self.misconception}__{self.question}__{self.variant}"
+
+
+@dataclass
+class MutantResult:
+    mutant: Mutant
+    status: str  # "killed", "survived", "stillborn", "unseeded" or "error"
+    killed_by: list[str] = field(default_factory=list)
+
+
+def build_mutants(assignment: str) -> tuple[list[Mutant], list[Mutant]]:
+    """(mutants, unseeded) for every groundtruth pair whose question has a reference.
+
+    unseeded holds the pairs the rewriter has no transform for, or whose
+    transform finds nothing to rewrite in the reference.
+    """
+    try:
+        rewritable = rewritable_ids()
+        jobs = [
+            (f"{mid}/{question}", mid, question, reference_path(assignment, question))
+            for mid, question in groundtruth_pairs(assignment)
+            if mid in rewritable and reference_path(assignment, question).exists()
+        ]
+        report = run_seed_rewriter(jobs)
+    except SeedRewriterError as e:
+        raise MutationError(str(e)) from e
+
+    mutants, unseeded = [], []
+    for mid, question in groundtruth_pairs(assignment):
+        if not reference_path(assignment, question).exists():
+            continue
+        candidates = report.get(f"{mid}/{question}", [])
+        if not candidates:
+            unseeded.append(Mutant(mid, question, "none"))
+        for variant, source in candidates:
+            mutants.append(Mutant(mid, question, variant, source))
+    return mutants, unseeded
+
+
+def run_mutation_matrix(
+    assignment: str,
+    threads: int = 1,
+    method_threads: int = 1,
+    test_timeout: float = 5.0,
+    cache: ExecutionCache | None = None,
+) -> tuple[dict, list[MutantResult]]:
+    """Grade every mutant (and the reference) with the assignment's JUnit suites.
+
+    Returns (controls, results): controls maps each question to the reference's
+    JUnit entry, which should have passed; results has one entry per mutant,
+    followed by the unseeded pairs.
+    """
+    if not tests_dir_for(assignment).is_dir():
+        raise MutationError(f"No JUnit suites for {assignment}")
+    mutants, unseeded = build_mutants(assignment)
+    questions = sorted({mutant.question for mutant in mutants})
+
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        submissions = []
+        for question in questions:
+            submissions.append((CONTROL, question, reference_path(assignment, question)))
+        for mutant in mutants:
+            path = tmp_path / mutant.mutant_id / f"{mutant.question}.java"
+            path.parent.mkdir()
+            path.write_text(mutant.source, encoding="utf-8")
+            submissions.append((mutant.mutant_id, mutant.question, path))
+        report = run_junit_batch(
+            assignment,
+            submissions,
+            threads=threads,
+            method_threads=method_threads,
+            test_timeout=test_timeout,
+            cache=cache,
+        )
+
+    results = []
+    for mutant in mutants:
+        entry = report[mutant.mutant_id][mutant.question]
+        if entry["status"] == "compile_error":
+            results.append(MutantResult(mutant, "stillborn"))
+        elif entry["status"] == "passed":
+            results.append(MutantResult(mutant, "survived"))
+        elif entry["status"] == "failed":
+            killers = [t["name"] for t in entry["tests"] if t["status"] != "SUCCESSFUL"]
+            results.append(MutantResult(mutant, "killed", killers))
+        else:
+            results.append(MutantResult(mutant, "error"))
+    results.extend(MutantResult(mutant, "unseeded") for mutant in unseeded)
+    return report.get(CONTROL, {}), results
@@ -0,0 +1,563 @@
+"""Differential testing against the reference solutions in data/<assignment>/tests/reference.
+
+The hand-written TEST_CASES in dataset_generator check a few inputs aimed at
+specific misconceptions. The oracle complements them:
+
+1. A per-question generator produces a battery of inputs (boundary values plus
+   seeded random ones).
+2. The reference solution runs once per input; the expected outputs are
+   cached in the ExecutionCache ("oracle" namespace), keyed by the reference
+   source, so a battery is built once per machine.
+3. A submission is compiled once and run against every input in the battery.
+4. Outputs are compared on the *answer* each question asks for (the number,
+   letter grade, star rows, ...), not on exact text, since prompts and labels
+   legitimately differ between students.
+
+Questions whose reference output is not a function of stdin (a2 Q2 draws a
+random number) have no expected outputs; their cases are checked against a
+property of the input instead (ascending guesses must only get "too low").
+"""
+
+from __future__ import annotations
+
+import math
+import random
+import re
+from collections.abc import Callable
+from dataclasses import dataclass
+from pathlib import Path
+from typing import Any
+
+from utils.execution import CompiledSource, Watchdog, extract_class_name
+from utils.jvm.cache import ExecutionCache
+from utils.jvm.compiler import CompilerService
+from utils.jvm.pool import JvmWorkerPool
+
+REFERENCE_ROOT = Path("data")
+
+# Bump when a generator changes so cached batteries are rebuilt
+ORACLE_VERSION = "1"
+
+DEFAULT_BATTERY_SIZE = 24
+
+
+class OracleError(RuntimeError):
+    """The reference solution is missing, does not compile, or fails an input."""
+
+
+@dataclass
+class OracleCase:
+    """One battery input and the reference program's stdout for it (None if nondeterministic)."""
+
+    name: str
+    input: str
+    expected_output: str | None
+
+
+@dataclass
+class QuestionSpec:
+    """How to fuzz and judge one question.
+
+    generate(rng) returns one stdin. extract(stdout, stdin) pulls the answer
+    out of a program's output. check(stdout, stdin), when set, replaces the
+    comparison with the reference for nondeterministic questions and returns
+    a failure message or None. valid(stdin), when set, tells whether an input
+    is one the question allows (a grade in 0-100, N values after N); inputs
+    that are not built by generate (utils.generators.distinguish) must pass it.
+    """
+
+    generate: Callable[[random.Random], str]
+    extract: Callable[[str, str], Any]
+    fixed_inputs: tuple[str, ...] = ()
+    check: Callable[[str, str], str | None] | None = None
+    numeric: bool = False
+    valid: Callable[[str], bool] | None = None
+
+
+# ============================================================================
+# Answer extraction
+# ============================================================================
+
+# Numbers not glued to an identifier ("v0", "Q1") or another number
+_NUMBER = re.compile(r"(?<![\w.])-?\d+(?:\.\d+)?(?:[eE]-?\d+)?(?![\w.])|NaN|-?Infinity")
+_INT = re.compile(r"(?<![\w.])-?\d+(?![\w.])")
+_GRADE = re.compile(r"\b[ABCDF]\b")
+# What comes before an answer: "... is 2.5", "Area: 2.5", "a = 2.5", a new line
+_LABEL = re.compile(r":|=|\bis\b|\n")
+
+
+def _answer_number(stdout: str, _stdin: str) -> str | None:
+    """The first number after the last label that is followed by one.
+
+    Prompts before the answer and units after it ("2.5 m/s^2") are skipped.
+    """
+    for segment in reversed(_LABEL.split(stdout)):
+        numbers = _NUMBER.findall(segment)
+        if numbers:
+            return numbers[0]
+    return None
+
+
+def _last_int(stdout: str, _stdin: str) -> int | None:
+    ints = _INT.findall(stdout)
+    return int(ints[-1]) if ints else None
+
+
+def _ints_after_label(stdout: str, _stdin: str) -> list[int]:
+    """Integers after the last ':' (the result label follows the input prompts)."""
+    return [int(v) for v in _INT.findall(stdout.rsplit(":", 1)[-1])]
+
+
+def _grades(stdout: str, _stdin: str) -> list[str]:
+    return _GRADE.findall(stdout)
+
+
+def _star_rows(stdout: str, _stdin: str) -> list[int]:
+    return [line.count("*") for line in stdout.splitlines() if "*" in line]
+
+
+def _last_token(stdout: str, _stdin: str) -> str | None:
+    tokens = stdout.split()
+    return tokens[-1] if tokens else None
+
+
+def _top_name(stdout: str, stdin: str) -> str | None:
+    """The last input name mentioned in the output."""
+    names = set(stdin.splitlines()[1].split())
+    mentioned = [w for w in re.findall(r"[A-Za-z]+", stdout) if w in names]
+    return mentioned[-1] if mentioned else None
+
+
+def _numbers_match(expected: str, actual: str) -> bool:
+    """Equal up to the precision the submission printed (printf("%.2f") is fine)."""
+    try:
+        e, a = float(expected), float(actual)
+    except ValueError:
+        return expected == actual
+    if math.isnan(e) or math.isnan(a):
+        return math.isnan(e) and math.isnan(a)
+    if math.isinf(e) or math.isinf(a):
+        return e == a
+    decimals = len(actual.split(".", 1)[1]) if "." in actual and "e" not in actual.lower() else 12
+    return abs(e - a) <= 0.5 * 10 ** -min(decimals, 12) + 1e-9 * max(1.0, abs(e))
+
+
+# ============================================================================
+# Input generators
+# ============================================================================
+
+
+def _num(rng: random.Random, low: float, high: float) -> str:
+    value = round(rng.uniform(low, high), rng.choice([0, 1, 2]))
+    return str(int(value)) if value == int(value) else str(value)
+
+
+def _a1_q1(rng: random.Random) -> str:
+    t = _num(rng, 0.5, 20)
+    return f"{_num(rng, -100, 100)} {_num(rng, -100, 100)} {t}"
+
+
+def _a1_q2(rng: random.Random) -> str:
+    return f"{_num(rng, 1, 1000)}\n{_num(rng, 5, 60)}\n{_num(rng, 1, 10)}"
+
+
+def _a1_q3(rng: random.Random) -> str:
+    return f"{_num(rng, -50, 50)} {_num(rng, -50, 50)}\n{_num(rng, -50, 50)} {_num(rng, -50, 50)}"
+
+
+def _a1_q4(rng: random.Random) -> str:
+    # The handout's sample run types points as "00", which some students parse
+    # digit by digit; single non-negative digits are valid under both readings
+    while True:
+        pts = [(rng.randint(0, 9), rng.randint(0, 9)) for _ in range(3)]
+        (x1, y1), (x2, y2), (x3, y3) = pts
+        # Skip (near-)collinear points: Heron's formula turns into sqrt(-tiny)
+        if abs((x2 - x1) * (y3 - y1) - (x3 - x1) * (y2 - y1)) >= 2:
+            return "\n".join(f"{x} {y}" for x, y in pts)
+
+
+def _a2_q1(rng: random.Random) -> str:
+    return " ".join(str(rng.randint(-50, 50)) for _ in range(5))
+
+
+def _a2_q2(rng: random.Random) -> str:
+    guesses = list(range(1, 101))
+    if rng.random() < 0.5:
+        guesses.reverse()
+    return "\n".join(map(str, guesses))
+
+
+def _a2_q2_check(stdout: str, stdin: str) -> str | None:
+    """Sweeping 1..100 must end in "correct" with hints pointing the right way."""
+    if "correct" not in stdout.lower():
+        return "never reported a correct guess"
+    ascending = stdin.split()[0] == "1"
+    wrong = "high" if ascending else "low"
+    for line in stdout.lower().splitlines():
+        if wrong in line and ("low" in line) != ("high" in line):
+            order = "ascending" if ascending else "descending"
+            return f"hint '{line.strip()}' for {order} guesses"
+    return None
+
+
+def _a2_q3(rng: random.Random) -> str:
+    return str(rng.randint(0, 100))
+
+
+def _a2_q4(rng: random.Random) -> str:
+    return str(rng.randint(1, 12))
+
+
+def _a3_q1(rng: random.Random) -> str:
+    n = rng.randint(1, 10)
+    # A narrow value range makes repeated values (first occurrence) common
+    values = [rng.randint(0, 12) for _ in range(n)]
+    target = rng.choice(values) if rng.random() < 0.7 else rng.randint(13, 20)
+    return f"{n}\n{' '.join(map(str, values))}\n{target}"
+
+
+_NAMES = ["Alice", "Bob", "Charlie", "Diana", "Ethan", "Fiona", "George", "Hannah"]
+
+
+def _a3_q2(rng: random.Random) -> str:
+    n = rng.randint(1, 6)
+    names = rng.sample(_NAMES, n)
+    # Distinct scores: the top student is well defined
+    scores = rng.sample(range(40, 101), n)
+    return f"{n}\n{' '.join(names)}\n{' '.join(map(str, scores))}"
+
+
+def _a3_q3(rng: random.Random) -> str:
+    words = ["hello", "World", "java", "Code", "cs1", "MiXeD", "a", "test"]
+    return " ".join(rng.choice(words) for _ in range(rng.randint(1, 4)))
+
+
+def _a3_q4(rng: random.Random) -> str:
+    n = rng.randint(1, 8)
+    return f"{n}\n{' '.join(str(rng.randint(-20, 20)) for _ in range(n))}"
+
+
+# ============================================================================
+# Input domains
+# ============================================================================
+
+
+def _numbers(stdin: str) -> list[float] | None:
+    try:
+        return [float(token) for token in stdin.split()]
+    except ValueError:
+        return None
+
+
+def _int_lines(stdin: str) -> list[list[int]] | None:
+    try:
+        return [[int(token) for token in line.split()] for line in stdin.splitlines()]
+    except ValueError:
+        return None
+
+
+def _a1_q1_valid(stdin: str) -> bool:
+    values = _numbers(stdin)
+    return values is not None and len(values) == 3 and values[2] > 0
+
+
+def _a1_q2_valid(stdin: str) -> bool:
+    values = _numbers(stdin)
+    return values is not None and len(values) == 3 and all(v > 0 for v in values)
+
+
+def _a1_q3_valid(stdin: str) -> bool:
+    values = _numbers(stdin)
+    return values is not None and len(values) == 4
+
+
+def _a1_q4_valid(stdin: str) -> bool:
+    lines = _int_lines(stdin)
+    if lines is None or len(lines) != 3 or any(len(line) != 2 for line in lines):
+        return False
+    (x1, y1), (x2, y2), (x3, y3) = lines
+    # Single digits and no (near-)collinear points, as _a1_q4 generates them
+    return all(0 <= v <= 9 for line in lines for v in line) and (
+        abs((x2 - x1) * (y3 - y1) - (x3 - x1) * (y2 - y1)) >= 2
+    )
+
+
+def _a2_q1_valid(stdin: str) -> bool:
+    lines = _int_lines(stdin)
+    return lines is not None and sum(len(line) for line in lines) == 5
+
+
+def _a2_q2_valid(stdin: str) -> bool:
+    # _a2_q2_check judges the full 1..100 sweep only
+    guesses = _int_lines(stdin)
+    sweep = [v for line in guesses or [] for v in line]
+    return sweep in (list(range(1, 101)), list(range(100, 0, -1)))
+
+
+def _a2_q3_valid(stdin: str) -> bool:
+    lines = _int_lines(stdin)
+    return lines is not None and len(lines) == 1 and len(lines[0]) == 1 and 0 <= lines[0][0] <= 100
+
+
+def _a2_q4_valid(stdin: str) -> bool:
+    lines = _int_lines(stdin)
+    return lines is not None and len(lines) == 1 and len(lines[0]) == 1 and 1 <= lines[0][0] <= 20
+
+
+def _a3_q1_valid(stdin: str) -> bool:
+    lines = _int_lines(stdin)
+    return (
+        lines is not None
+        and len(lines) == 3
+        and len(lines[0]) == 1
+        and lines[0][0] >= 1
+        and len(lines[1]) == lines[0][0]
+        and len(lines[2]) == 1
+    )
+
+
+def _a3_q2_valid(stdin: str) -> bool:
+    lines = stdin.splitlines()
+    if len(lines) != 3:
+        return False
+    counts = _int_lines(lines[0])
+    scores = _int_lines(lines[2])
+    if not counts or len(counts[0]) != 1 or not scores:
+        return False
+    n = counts[0][0]
+    names = lines[1].split()
+    # Distinct scores, so the top student is well defined
+    return (
+        n >= 1
+        and len(names) == n
+        and len(scores[0]) == n
+        and len(set(scores[0])) == n
+        and all(0 <= v <= 100 for v in scores[0])
+    )
+
+
+def _a3_q4_valid(stdin: str) -> bool:
+    lines = _int_lines(stdin)
+    return (
+        lines is not None
+        and len(lines) == 2
+        and len(lines[0]) == 1
+        and lines[0][0] >= 1
+        and len(lines[1]) == lines[0][0]
+    )
+
+
+SPECS: dict[str, dict[str, QuestionSpec]] = {
+    "a1": {
+        "Q1": QuestionSpec(
+            _a1_q1, _answer_number, ("0 0 1", "10 -10 4"), numeric=True, valid=_a1_q1_valid
+        ),
+        "Q2": QuestionSpec(
+            _a1_q2, _answer_number, ("100\n25\n4",), numeric=True, valid=_a1_q2_valid
+        ),
+        "Q3": QuestionSpec(
+            _a1_q3, _answer_number, ("0 0\n0 0", "-3 -4\n0 0"), numeric=True, valid=_a1_q3_valid
+        ),
+        "Q4": QuestionSpec(
+            _a1_q4,
+            _answer_number,
+            ("0 0\n5 0\n0 5", "0 0\n4 0\n0 3"),
+            numeric=True,
+            valid=_a1_q4_valid,
+        ),
+    },
+    "a2": {
+        "Q1": QuestionSpec(_a2_q1, _last_int, ("0 0 0 0 0", "-2 -4 3 5 7"), valid=_a2_q1_valid),
+        "Q2": QuestionSpec(_a2_q2, _last_int, check=_a2_q2_check, valid=_a2_q2_valid),
+        "Q3": QuestionSpec(
+            _a2_q3,
+            _grades,
+            ("0", "59", "60", "69", "70", "79", "80", "89", "90", "100"),
+            valid=_a2_q3_valid,
+        ),
+        "Q4": QuestionSpec(_a2_q4, _star_rows, ("1", "2"), valid=_a2_q4_valid),
+    },
+    "a3": {
+        "Q1": QuestionSpec(
+            _a3_q1, _last_int, ("1\n7\n7", "3\n5 5 5\n5", "4\n1 2 3 4\n4"), valid=_a3_q1_valid
+        ),
+        "Q2": QuestionSpec(
+            _a3_q2, _top_name, ("1\nAlice\n50", "3\nBob Alice Charlie\n70 90 80"), valid=_a3_q2_valid
+        ),
+        "Q3": QuestionSpec(_a3_q3, _last_token, ("a", "already UPPER")),
+        "Q4": QuestionSpec(_a3_q4, _ints_after_label, ("1\n5", "2\n1 2"), valid=_a3_q4_valid),
+    },
+}
+
+
+def question_spec(assignment: str, question: str) -> QuestionSpec | None:
+    return SPECS.get(assignment, {}).get(question)
+
+
+def generate_inputs(
+    assignment: str, question: str, count: int = DEFAULT_BATTERY_SIZE, seed: int = 0
+) -> list[tuple[str, str]]:
+    """(name, stdin) pairs: the question's fixed boundary inputs, then seeded random ones."""
+    spec = question_spec(assignment, question)
+    if spec is None:
+        return []
+    rng = random.Random(f"{assignment}/{question}/{seed}")
+    inputs = [(f"edge_{i}", stdin) for i, stdin in enumerate(spec.fixed_inputs)]
+    seen = {stdin for _, stdin in inputs}
+    attempts = 0
+    while len(inputs) < count and attempts < count * 20:
+        attempts += 1
+        stdin = spec.generate(rng)
+        if stdin not in seen:
+            seen.add(stdin)
+            inputs.append((f"fuzz_{len(inputs)}", stdin))
+    return inputs
+
+
+# ============================================================================
+# Battery (reference outputs)
+# ============================================================================
+
+
+def reference_path(assignment: str, question: str) -> Path:
+    return REFERENCE_ROOT / assignment / "tests" / "reference" / f"{question}.java"
+
+
+def build_battery(
+    assignment: str,
+    question: str,
+    count: int = DEFAULT_BATTERY_SIZE,
+    seed: int = 0,
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    cache: ExecutionCache | None = None,
+    timeout: float = 10.0,
+) -> list[OracleCase]:
+    """Generate inputs and record the reference solution's output for each.
+
+    Returns [] for questions without a spec or reference solution. With a
+    cache, a battery built before for the same reference source, seed and
+    size is returned without running anything.
+    """
+    spec = question_spec(assignment, question)
+    ref = reference_path(assignment, question)
+    if spec is None or not ref.exists():
+        return []
+    ref_source = ref.read_text()
+    key = (ORACLE_VERSION, assignment, question, str(seed), str(count), ref_source)
+
+    if cache is not None:
+        cached = cache.get_json("oracle", *key)
+        if cached is not None:
+            return [OracleCase(**case) for case in cached]
+
+    inputs = generate_inputs(assignment, question, count, seed)
+    if spec.check is not None:
+        battery = [OracleCase(name, stdin, None) for name, stdin in inputs]
+    else:
+        battery = _run_reference(ref_source, inputs, pool, compiler, cache, timeout)
+
+    if cache is not None:
+        cache.put_json("oracle", [case.__dict__ for case in battery], *key)
+    return battery
+
+
+def _run_reference(
+    ref_source: str,
+    inputs: list[tuple[str, str]],
+    pool: JvmWorkerPool | None,
+    compiler: CompilerService | None,
+    cache: ExecutionCache | None,
+    timeout: float,
+) -> list[OracleCase]:
+    battery = []
+    with CompiledSource(ref_source, pool, compiler, cache, timeout) as reference:
+        for name, stdin in inputs:
+            run = reference.run(stdin)
+            if run is None:
+                stderr = reference.compile().stderr
+                raise OracleError(f"Reference solution does not compile: {stderr}")
+            if not run.success:
+                raise OracleError(f"Reference solution failed on {name} ({stdin!r}): {run.stderr}")
+            battery.append(OracleCase(name, stdin, run.stdout))
+    return battery
+
+
+# ============================================================================
+# Differential runs
+# ============================================================================
+
+
+def compare_output(spec: QuestionSpec, case: OracleCase, stdout: str) -> str | None:
+    """Judge one submission output against the battery. Returns a failure message or None."""
+    if spec.check is not None:
+        failure = spec.check(stdout, case.input)
+        return f"{case.name}: {failure}" if failure else None
+
+    expected = spec.extract(case.expected_output or "", case.input)
+    actual = spec.extract(stdout, case.input)
+    if actual is None:
+        same = expected is None
+    elif spec.numeric and expected is not None:
+        same = _numbers_match(expected, actual)
+    else:
+        same = expected == actual
+    if same:
+        return None
+    shown_input = case.input.replace("\n", " / ")
+    return f"{case.name}: input '{shown_input}' expected {expected!r}, got {actual!r}"
+
+
+def run_differential(
+    java_source: str,
+    assignment: str,
+    question: str,
+    battery: list[OracleCase],
+    pool: JvmWorkerPool | None = None,
+    compiler: CompilerService | None = None,
+    timeout: float = 10.0,
+    cache: ExecutionCache | None = None,
+    watchdog: Watchdog | None = None,
+) -> tuple[int, int, list[str]]:
+    """Run java_source on every battery input and compare with the reference.
+
+    Mirrors dataset_generator.run_tests: compiled once, cached runs reused.
+
+    Returns: (agreeing_count, total_count, divergence_messages)
+    """
+    spec = question_spec(assignment, question)
+    if spec is None or not battery:
+        return 0, 0, []
+    class_name = extract_class_name(java_source)
+    if not class_name:
+        return 0, len(battery), [f"{case.name}: No class found in source" for case in battery]
+
+    passed = 0
+    failures = []
+    with CompiledSource(java_source, pool, compiler, cache, timeout, watchdog) as program:
+        runs = [program.cached(case.input) for case in battery]
+        timed_out = False
+        for i, case in enumerate(battery):
+            run = runs[i]
+            if run is None:
+                if timed_out:
+                    # A program that hung once almost always hangs again;
+                    # don't pay the timeout for every remaining input
+                    failures.append(f"{case.name}: Skipped after an earlier timeout")
+                    continue
+                run = program.execute(case.input)
+                if run is None:
+                    stderr = program.compile().stderr
+                    failures = [f"{case.name}: Execution failed - {stderr}" for case in battery]
+                    return 0, len(battery), failures
+            timed_out = timed_out or run.timed_out
+            if not run.success:
+                failures.append(f"{case.name}: Execution failed - {run.stderr.strip()[:200]}")
+                continue
+            failure = compare_output(spec, case, run.stdout)
+            if failure:
+                failures.append(failure)
+            else:
+                passed += 1
+
+    return passed, len(battery), failures
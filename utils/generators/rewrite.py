@@ -0,0 +1,164 @@
+"""Rule-based misconception seeding by rewriting the AST of correct code.
+
+Drives SeedRewriter: for a (correct source, NM_* id, question) job the javac
+Tree API locates the construct the misconception is about (the division of
+the velocity formula, the accumulator of a loop, the shift loop of an array
+rotation, ...) and edits the source at those positions, so names, comments
+and layout of the persona's code are kept. A transform returns zero or more
+candidate variants; zero means the code has no construct it knows how to
+break, and the caller falls back to the LLM. Candidates are not validated
+here: the generator compiles and tests them exactly like LLM output.
+
+Every groundtruth id of a1-a3 has a transform. Of a4, NM_OOP_02 (static
+state) has none, so it is always seeded by the LLM.
+
+One JVM run rewrites any number of jobs: seeding the 400 correct files of an
+assignment with every applicable misconception takes about 13 s on one core
+(mostly javac attribution) instead of one LLM round-trip per sample.
+"""
+
+from __future__ import annotations
+
+import json
+import subprocess
+import tempfile
+from dataclasses import dataclass
+from functools import lru_cache
+from pathlib import Path
+
+from utils.execution import extract_class_name
+from utils.jvm.build import ensure_built
+
+
+GROUNDTRUTH_ROOT = Path("data")
+
+
+class SeedRewriterError(RuntimeError):
+    """Raised when the rewriter JVM itself fails."""
+
+
+@dataclass
+class SeededCandidate:
+    """One rewrite of a correct file; status is set by validation."""
+
+    student: str
+    question: str
+    misconception_id: str
+    variant: str
+    source: str
+    status: str = "unchecked"  # "seeded", or check_seeded's reason: "compile", "identical", "passed"
+    detail: str = ""
+
+
+def _java_cmd(java: str, *args: str) -> list[str]:
+    return [
+        java,
+        "-XX:+UseSerialGC",
+        "-XX:TieredStopAtLevel=1",
+        "-cp",
+        str(ensure_built()),
+        "SeedRewriter",
+        *args,
+    ]
+
+
+@lru_cache(maxsize=1)
+def rewritable_ids(java: str = "java") -> frozenset[str]:
+    """NM_* ids that have a transform."""
+    result = subprocess.run(_java_cmd(java, "--list"), capture_output=True, text=True)
+    if result.returncode != 0:
+        raise SeedRewriterError(f"SeedRewriter failed:\n{result.stderr[-2000:]}")
+    return frozenset(result.stdout.split())
+
+
+def run_seed_rewriter(
+    jobs: list[tuple[str, str, str, Path]],
+    java: str = "java",
+) -> dict[str, list[tuple[str, str]]]:
+    """Rewrite each (key, NM_* id, question, path) job in one JVM.
+
+    Returns key -> [(variant, rewritten source)], empty for a job no transform
+    applies to (or whose file does not parse).
+    """
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        manifest = tmp_path / "jobs.tsv"
+        manifest.write_text(
+            "".join(f"{key}\t{mid}\t{question}\t{path.resolve()}\n" for key, mid, question, path in jobs),
+            encoding="utf-8",
+        )
+        report_path = tmp_path / "candidates.json"
+        cmd = _java_cmd(java, "--manifest", str(manifest), "--report", str(report_path))
+        result = subprocess.run(cmd, capture_output=True, text=True)
+        if result.returncode != 0 or not report_path.exists():
+            raise SeedRewriterError(f"SeedRewriter failed:\n{result.stderr[-2000:]}")
+        entries = json.loads(report_path.read_text(encoding="utf-8"))["files"]
+
+    return {
+        entry["key"]: [(c["variant"], c["source"]) for c in entry["candidates"]] for entry in entries
+    }
+
+
+def groundtruth_pairs(assignment: str) -> list[tuple[str, str]]:
+    """(NM_* id, question) for every applicable question in groundtruth.json."""
+    path = GROUNDTRUTH_ROOT / assignment / "groundtruth.json"
+    if not path.exists():
+        return []
+    entries = json.loads(path.read_text(encoding="utf-8"))
+    return [(m["id"], q) for m in entries for q in m.get("applicable_questions", [])]
+
+
+def rewrite_candidates(java_source: str, misconception_id: str, question: str) -> list[tuple[str, str]]:
+    """(variant, source) rewrites of one correct source; [] if none applies."""
+    if misconception_id not in rewritable_ids():
+        return []
+    class_name = extract_class_name(java_source) or question
+    with tempfile.TemporaryDirectory() as tmp:
+        path = Path(tmp) / f"{class_name}.java"
+        path.write_text(java_source, encoding="utf-8")
+        return run_seed_rewriter([("job", misconception_id, question, path)]).get("job", [])
+
+
+def correct_files(root: Path) -> list[tuple[str, str, Path]]:
+    """(student, question, path) of the correct code of a generated dataset.
+
+    Uses the correct/ copy the generator saved of every question, and for
+    datasets without one the submission files the manifest marks CLEAN.
+    """
+    manifest = json.loads((root / "manifest.json").read_text(encoding="utf-8"))
+    files = []
+    for student in manifest["students"]:
+        folder = student["folder_name"]
+        for question, entry in sorted(student["files"].items()):
+            correct = root / "correct" / folder / f"{question}.java"
+            if correct.exists():
+                files.append((folder, question, correct))
+            elif entry["type"] == "CLEAN" and (root / folder / f"{question}.java").exists():
+                files.append((folder, question, root / folder / f"{question}.java"))
+    return files
+
+
+def rewrite_dataset(
+    assignment: str,
+    files: list[tuple[str, str, Path]],
+    java: str = "java",
+) -> list[SeededCandidate]:
+    """Every candidate for every (correct file, applicable rewritable misconception)."""
+    rewritable = rewritable_ids(java)
+    by_question: dict[str, list[str]] = {}
+    for mid, question in groundtruth_pairs(assignment):
+        if mid in rewritable:
+            by_question.setdefault(question.upper(), []).append(mid)
+
+    jobs = []
+    for student, question, path in files:
+        for mid in by_question.get(question, []):
+            jobs.append((f"{student}/{question}/{mid}", mid, question, path))
+    report = run_seed_rewriter(jobs, java=java)
+
+    candidates = []
+    for key, mid, question, _ in jobs:
+        student = key.split("/", 1)[0]
+        for variant, source in report.get(key, []):
+            candidates.append(SeededCandidate(student, question, mid, variant, source))
+    return candidates
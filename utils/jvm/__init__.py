@@ -0,0 +1,5 @@
+"""JVM-side helpers for compiling and running student Java programs.
+
+The Java sources live in utils/jvm/java and are compiled on demand by
+utils.jvm.build; the Python modules here drive them.
+"""
@@ -0,0 +1,134 @@
+"""Build step for the Java helper sources under utils/jvm/java.
+
+The helpers are compiled lazily with plain javac (no Maven/Gradle) into a
+content-addressed directory, so editing a .java file triggers a rebuild and
+unchanged sources are reused across processes. TraceAgent is compiled on its
+own, against the vendored ASM jar, only when tracing asks for it: nothing else
+depends on it, so a JDK it does not build on still runs everything else.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import os
+import shutil
+import subprocess
+import sys
+import threading
+import zipfile
+from pathlib import Path
+
+JAVA_SRC_DIR = Path(__file__).parent / "java"
+REPO_ROOT = Path(__file__).resolve().parents[2]
+BUILD_ROOT = REPO_ROOT / ".cache" / "jvm"
+
+# The JUnit console standalone jar shipped with the assignment tests; it bundles
+# the Platform Launcher and Jupiter APIs the batch runner compiles against.
+JUNIT_JAR = REPO_ROOT / "data" / "a1" / "tests" / "lib" / "junit-platform-console-standalone-1.10.0.jar"
+
+# ASM for TraceAgent; bump it when a new JDK's class files are not readable
+ASM_JAR = Path(__file__).parent / "lib" / "asm-9.8.jar"
+AGENT_SOURCE = JAVA_SRC_DIR / "TraceAgent.java"
+
+_build_lock = threading.Lock()
+
+
+class JvmBuildError(RuntimeError):
+    """Raised when the Java helper sources fail to compile."""
+
+
+def _source_digest(sources: list[Path]) -> str:
+    digest = hashlib.sha256()
+    for src in sources:
+        digest.update(src.name.encode("utf-8"))
+        digest.update(src.read_bytes())
+    return digest.hexdigest()[:16]
+
+
+def _javac(
+    javac: str, classpath: list[Path], out_dir: Path, sources: list[Path], what: str
+) -> None:
+    out_dir.mkdir(parents=True, exist_ok=True)
+    try:
+        result = subprocess.run(
+            [
+                javac,
+                "-Xlint:all",
+                "-cp",
+                os.pathsep.join(str(p) for p in classpath),
+                "-d",
+                str(out_dir),
+                *[str(s) for s in sources],
+            ],
+            capture_output=True,
+            text=True,
+            timeout=120.0,
+        )
+    except FileNotFoundError as e:
+        raise JvmBuildError("javac not found") from e
+    if result.returncode != 0:
+        raise JvmBuildError(f"Failed to compile {what}:\n{result.stderr}")
+    if result.stderr.strip():
+        # Lint warnings; shown once per build, as the build is reused until a source changes
+        print(result.stderr, file=sys.stderr)
+
+
+def ensure_built(javac: str = "javac") -> Path:
+    """Compile the helper sources if needed and return the classes directory."""
+    sources = sorted(JAVA_SRC_DIR.glob("*.java"))
+    out_dir = BUILD_ROOT / f"classes-{_source_digest(sources)}"
+    marker = out_dir / ".complete"
+
+    with _build_lock:
+        if marker.exists():
+            return out_dir
+        _javac(javac, [JUNIT_JAR], out_dir, [s for s in sources if s != AGENT_SOURCE], "JVM helpers")
+        marker.touch()
+        return out_dir
+
+
+def junit_classpath(javac: str = "javac") -> str:
+    """Classpath for helpers that run JUnit (helpers plus the standalone jar)."""
+    return os.pathsep.join([str(ensure_built(javac)), str(JUNIT_JAR)])
+
+
+def ensure_agent_jars(javac: str = "javac") -> Path:
+    """Package TraceAgent as a -javaagent jar and return its path.
+
+    TraceRecorder goes in a sibling jar on the agent's Boot-Class-Path, so code
+    instrumented in any class loader (including TracerWorker's per-run loaders,
+    which do not delegate to the application class path) can call it. ASM is
+    copied next to the agent jar and put on its Class-Path.
+    """
+    classes = ensure_built(javac)
+    agent_classes = classes / "agent"
+    agent_jar = classes / "trace-agent.jar"
+    recorder_jar = classes / "trace-recorder.jar"
+
+    with _build_lock:
+        if agent_jar.exists():
+            return agent_jar
+
+        _javac(javac, [classes, ASM_JAR], agent_classes, [AGENT_SOURCE], "TraceAgent")
+        shutil.copyfile(ASM_JAR, classes / ASM_JAR.name)
+        manifest = (
+            "Manifest-Version: 1.0\n"
+            "Premain-Class: TraceAgent\n"
+            f"Class-Path: {ASM_JAR.name}\n"
+            f"Boot-Class-Path: {recorder_jar.name}\n"
+        )
+        _write_jar(recorder_jar, classes, ["TraceRecorder"])
+        _write_jar(agent_jar, agent_classes, ["TraceAgent"], manifest)
+        return agent_jar
+
+
+def _write_jar(jar: Path, classes: Path, prefixes: list[str], manifest: str | None = None) -> None:
+    tmp = jar.with_suffix(".tmp")
+    with zipfile.ZipFile(tmp, "w") as zf:
+        if manifest is not None:
+            zf.writestr("META-INF/MANIFEST.MF", manifest)
+        for class_file in sorted(classes.glob("*.class")):
+            name = class_file.stem
+            if any(name == p or name.startswith(p + "$") for p in prefixes):
+                zf.write(class_file, class_file.name)
+    tmp.replace(jar)
@@ -0,0 +1,298 @@
+"""Content-addressed on-disk cache for compiled classes and execution results.
+
+Entries are keyed by the SHA-256 of the toolchain version and the source text,
+so the same code compiled by the same JDK is compiled once, ever. Compile
+results are also keyed by the javac options (a javac process and the compiler
+service differ in -g), run results by the execution mode (see
+utils.execution.run_mode) and the stdin. Layout under the cache root:
+
+    src/<kk>/<key>/compile.json        CompileResult (key covers the javac options)
+    src/<kk>/<key>/classes/*.class     class files of a successful compile
+    src/<kk>/<key>/runs/<run>.json     RunResult per execution mode and stdin
+    junit/<kk>/<key>.json              run_junit_batch entries
+
+Every <namespace>/<kk>/<entry> is evicted as a unit.
+
+Writes go through a temp file and os.replace, so concurrent processes sharing
+a cache only ever see complete entries. Total size is bounded by evicting the
+least recently used entries (by directory mtime, refreshed on every hit) once
+the running total of bytes written passes max_bytes.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import json
+import os
+import shutil
+import subprocess
+import tempfile
+import threading
+from dataclasses import asdict
+from functools import lru_cache
+from pathlib import Path
+from typing import Any
+
+from utils.execution import CompileDiagnostic, CompileResult, RunResult
+
+DEFAULT_CACHE_DIR = Path(".cache") / "exec"
+DEFAULT_MAX_BYTES = 512 * 1024 * 1024
+
+
+@lru_cache(maxsize=None)
+def toolchain_version(javac: str = "javac", java: str = "java") -> str:
+    """Identify the JDK in use; part of every cache key."""
+    parts = []
+    for tool in (javac, java):
+        try:
+            result = subprocess.run(
+                [tool, "-version"], capture_output=True, text=True, timeout=30.0
+            )
+            parts.append((result.stdout + result.stderr).strip())
+        except (FileNotFoundError, subprocess.TimeoutExpired):
+            parts.append(f"{tool}: unavailable")
+    return "\n".join(parts)
+
+
+def _sha256(*parts: str) -> str:
+    digest = hashlib.sha256()
+    for part in parts:
+        digest.update(part.encode("utf-8"))
+        digest.update(b"\0")
+    return digest.hexdigest()
+
+
+class ExecutionCache:
+    """Thread- and process-safe cache of compile and run results."""
+
+    def __init__(
+        self,
+        root: Path = DEFAULT_CACHE_DIR,
+        max_bytes: int = DEFAULT_MAX_BYTES,
+        javac: str = "javac",
+        java: str = "java",
+    ):
+        self.root = Path(root)
+        self.max_bytes = max_bytes
+        self.version = toolchain_version(javac, java)
+        self.hits = 0
+        self.misses = 0
+        # Bytes under root, measured on the first write and kept up to date
+        # from there; prune() measures it again
+        self._size: int | None = None
+        self._lock = threading.Lock()
+        self.root.mkdir(parents=True, exist_ok=True)
+
+    # -- keys ---------------------------------------------------------------
+
+    def source_key(self, java_source: str) -> str:
+        return _sha256(self.version, java_source)
+
+    def compile_key(self, java_source: str, options: tuple[str, ...] = ()) -> str:
+        """Key of the compile entry: the classes differ with the javac options."""
+        return _sha256(self.version, "javac", *options, java_source)
+
+    def _entry_dir(self, key: str) -> Path:
+        return self.root / "src" / key[:2] / key
+
+    # -- compile results ----------------------------------------------------
+
+    def get_compile(
+        self, java_source: str, out_dir: Path | None = None, options: tuple[str, ...] = ()
+    ) -> CompileResult | None:
+        """Return the cached CompileResult, copying cached classes into out_dir.
+
+        options are the javac options the source is compiled with (see
+        utils.execution.compile_options). A successful compile only counts as a
+        hit if its class files are present.
+        """
+        entry = self._entry_dir(self.compile_key(java_source, options))
+        data = self._read_json(entry / "compile.json")
+        if data is None:
+            return self._miss()
+        result = CompileResult(
+            success=data["success"],
+            stderr=data["stderr"],
+            diagnostics=[CompileDiagnostic(**d) for d in data.get("diagnostics", [])],
+        )
+        if result.success and out_dir is not None:
+            classes = entry / "classes"
+            if not classes.is_dir():
+                return self._miss()
+            for class_file in classes.glob("*.class"):
+                shutil.copy2(class_file, out_dir / class_file.name)
+        self._touch(entry)
+        return self._hit(result)
+
+    def put_compile(
+        self,
+        java_source: str,
+        result: CompileResult,
+        class_dir: Path | None = None,
+        options: tuple[str, ...] = (),
+    ) -> None:
+        """Store a CompileResult and, for successful compiles, the class files in class_dir."""
+        if result.infra_error:
+            return
+        if result.success and class_dir is None:
+            return
+        entry = self._entry_dir(self.compile_key(java_source, options))
+        entry.mkdir(parents=True, exist_ok=True)
+
+        if result.success:
+            staging = Path(tempfile.mkdtemp(prefix="classes-", dir=entry))
+            copied = 0
+            for class_file in Path(class_dir).glob("*.class"):
+                shutil.copy2(class_file, staging / class_file.name)
+                copied += class_file.stat().st_size
+            try:
+                staging.rename(entry / "classes")
+                self._grow(copied)
+            except OSError:
+                # Another process stored the same classes first
+                shutil.rmtree(staging, ignore_errors=True)
+
+        self._write_json(entry / "compile.json", asdict(result))
+
+    # -- run results --------------------------------------------------------
+
+    def get_run(self, java_source: str, stdin_input: str, mode: str = "") -> RunResult | None:
+        entry = self._entry_dir(self.source_key(java_source))
+        data = self._read_json(entry / "runs" / f"{_sha256(mode, stdin_input)}.json")
+        if data is None:
+            return self._miss()
+        self._touch(entry)
+        return self._hit(RunResult(**data))
+
+    def put_run(
+        self, java_source: str, stdin_input: str, result: RunResult, mode: str = ""
+    ) -> None:
+        """Store a RunResult. Timeouts and harness failures are not cached.
+
+        mode names how the run was executed (see utils.execution.run_mode), so
+        a result is only reused under the same pool, launch profile and watchdog.
+        """
+        if result.timed_out or result.infra_error:
+            return
+        entry = self._entry_dir(self.source_key(java_source))
+        self._write_json(entry / "runs" / f"{_sha256(mode, stdin_input)}.json", asdict(result))
+
+    # -- arbitrary JSON (JUnit reports etc.) --------------------------------
+
+    def get_json(self, namespace: str, *key_parts: str) -> Any | None:
+        path = self._json_path(namespace, key_parts)
+        data = self._read_json(path)
+        if data is None:
+            return self._miss()
+        self._touch(path)
+        return self._hit(data)
+
+    def put_json(self, namespace: str, value: Any, *key_parts: str) -> None:
+        self._write_json(self._json_path(namespace, key_parts), value)
+
+    def _json_path(self, namespace: str, key_parts: tuple[str, ...]) -> Path:
+        key = _sha256(self.version, *key_parts)
+        return self.root / namespace / key[:2] / f"{key}.json"
+
+    # -- maintenance --------------------------------------------------------
+
+    def size_bytes(self) -> int:
+        return sum(p.stat().st_size for p in self.root.rglob("*") if p.is_file())
+
+    def clear(self) -> None:
+        shutil.rmtree(self.root, ignore_errors=True)
+        self.root.mkdir(parents=True, exist_ok=True)
+        with self._lock:
+            self._size = 0
+
+    def prune(self) -> int:
+        """Evict least recently used entries until under max_bytes. Returns entries removed."""
+        entries: list[tuple[float, int, Path]] = []
+        total = 0
+        for entry in self.root.glob("*/*/*"):
+            if entry.name.startswith(".tmp-"):
+                continue
+            size = self._entry_size(entry)
+            total += size
+            entries.append((self._mtime(entry), size, entry))
+
+        removed = 0
+        for _, size, entry in sorted(entries):
+            if total <= self.max_bytes:
+                break
+            if entry.is_dir():
+                shutil.rmtree(entry, ignore_errors=True)
+            else:
+                entry.unlink(missing_ok=True)
+            try:
+                entry.parent.rmdir()  # drop the shard once it is empty
+            except OSError:
+                pass
+            total -= size
+            removed += 1
+        with self._lock:
+            self._size = total
+        return removed
+
+    @staticmethod
+    def _entry_size(entry: Path) -> int:
+        if entry.is_file():
+            return entry.stat().st_size
+        return sum(p.stat().st_size for p in entry.rglob("*") if p.is_file())
+
+    @staticmethod
+    def _mtime(entry: Path) -> float:
+        try:
+            return entry.stat().st_mtime
+        except FileNotFoundError:
+            return 0.0
+
+    # -- internals ----------------------------------------------------------
+
+    def _hit(self, value: Any) -> Any:
+        with self._lock:
+            self.hits += 1
+        return value
+
+    def _miss(self) -> None:
+        with self._lock:
+            self.misses += 1
+        return None
+
+    @staticmethod
+    def _touch(path: Path) -> None:
+        try:
+            os.utime(path)
+        except FileNotFoundError:
+            pass
+
+    @staticmethod
+    def _read_json(path: Path) -> Any | None:
+        try:
+            return json.loads(path.read_text(encoding="utf-8"))
+        except (FileNotFoundError, json.JSONDecodeError):
+            return None
+
+    def _write_json(self, path: Path, value: Any) -> None:
+        path.parent.mkdir(parents=True, exist_ok=True)
+        fd, tmp = tempfile.mkstemp(prefix=".tmp-", dir=path.parent)
+        with os.fdopen(fd, "w", encoding="utf-8") as f:
+            json.dump(value, f)
+        written = os.stat(tmp).st_size
+        try:
+            replaced = path.stat().st_size
+        except FileNotFoundError:
+            replaced = 0
+        os.replace(tmp, path)
+        self._grow(written - replaced)
+
+    def _grow(self, delta: int) -> None:
+        """Account for bytes written; evict once the total passes max_bytes."""
+        with self._lock:
+            if self._size is None:
+                self._size = self.size_bytes()
+            else:
+                self._size += delta
+            due = self._size > self.max_bytes
+        if due:
+            self.prune()
@@ -0,0 +1,150 @@
+"""Reflection-based checks of class-design submissions in a single JVM.
+
+Drives ClassSpecRunner: a4's questions ask for a class (Book, BankAccount,
+User, Student) and have no scripted stdin/stdout tests. Every (student,
+question) file is compiled in memory, isolated in its own class loader, and
+checked against the behavioural specs in ClassSpecs.java, which construct the
+student's classes, call their methods, read their fields and run main. One
+JVM checks a whole assignment, as JUnitBatchRunner does for a1 and a2.
+
+The report has run_junit_batch's shape, one test entry per check.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import json
+import subprocess
+import tempfile
+from pathlib import Path
+from typing import TYPE_CHECKING, Any
+
+from utils.execution import extract_class_name
+from utils.jvm.build import JAVA_SRC_DIR, junit_classpath
+from utils.jvm.junit import cacheable
+
+if TYPE_CHECKING:
+    from utils.jvm.cache import ExecutionCache
+
+# Assignments ClassSpecs.java has specs for
+CLASS_SPEC_ASSIGNMENTS = frozenset({"a4"})
+
+
+class ClassSpecError(RuntimeError):
+    """Raised when the spec runner itself fails (not when checks fail)."""
+
+
+def has_class_specs(assignment: str | None) -> bool:
+    return assignment in CLASS_SPEC_ASSIGNMENTS
+
+
+def _specs_digest() -> str:
+    """Cache key part that changes whenever the specs or the runner change."""
+    digest = hashlib.sha256()
+    for name in (
+        "ClassSpecs.java",
+        "ClassSpecRunner.java",
+        "MemoryClassLoader.java",
+        "SystemExit.java",
+    ):
+        digest.update((JAVA_SRC_DIR / name).read_bytes())
+    return digest.hexdigest()
+
+
+def run_class_specs(
+    assignment: str,
+    submissions: list[tuple[str, str, Path]],
+    threads: int = 1,
+    check_timeout: float = 10.0,
+    java: str = "java",
+    jvm_args: tuple[str, ...] = ("-XX:+UseSerialGC",),
+    cache: ExecutionCache | None = None,
+) -> dict[str, dict[str, dict[str, Any]]]:
+    """Check each (student, question, path) submission against its class specs.
+
+    Returns a report keyed by student, then question, with run_junit_batch's
+    entries: status ("passed", "failed", "compile_error" or "error"),
+    tests_run, tests_passed, duration_ms, errors and per-check outcomes. With a
+    cache, submissions whose source, specs and timeout are unchanged are not
+    rerun.
+    """
+    if not has_class_specs(assignment):
+        raise ClassSpecError(f"No class specs for {assignment}")
+
+    report: dict[str, dict[str, dict[str, Any]]] = {}
+    keys: dict[tuple[str, str], tuple[str, ...]] = {}
+    if cache is not None:
+        specs = _specs_digest()
+        pending = []
+        for student, question, path in submissions:
+            key = (path.read_text(encoding="utf-8"), assignment, specs, f"{check_timeout:g}")
+            cached = cache.get_json("classspec", *key)
+            if cached is not None:
+                report.setdefault(student, {})[question] = cached
+            else:
+                keys[(student, question.upper())] = key
+                pending.append((student, question, path))
+        submissions = pending
+        if not submissions:
+            return report
+
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        manifest = tmp_path / "submissions.tsv"
+        manifest.write_text(
+            "".join(f"{student}\t{question}\t{path.resolve()}\n" for student, question, path in submissions),
+            encoding="utf-8",
+        )
+        report_path = tmp_path / "report.json"
+
+        cmd = [
+            java,
+            *jvm_args,
+            "-cp",
+            junit_classpath(),
+            "ClassSpecRunner",
+            "--assignment",
+            assignment,
+            "--manifest",
+            str(manifest),
+            "--report",
+            str(report_path),
+            "--threads",
+            str(threads),
+            "--timeout",
+            f"{check_timeout:g}",
+        ]
+        result = subprocess.run(cmd, capture_output=True, text=True)
+        if result.returncode != 0 or not report_path.exists():
+            raise ClassSpecError(f"ClassSpecRunner failed:\n{result.stderr[-2000:]}")
+
+        entries = json.loads(report_path.read_text(encoding="utf-8"))["submissions"]
+
+    for entry in entries:
+        student = entry.pop("student")
+        question = entry.pop("question")
+        report.setdefault(student, {})[question] = entry
+        if cache is not None and cacheable(entry):
+            cache.put_json("classspec", entry, *keys[(student, question)])
+    return report
+
+
+def check_class_specs(
+    java_source: str,
+    assignment: str,
+    question: str,
+    cache: ExecutionCache | None = None,
+) -> tuple[int, int, list[str]]:
+    """Check one source; (passed, total, failure messages) like run_tests."""
+    class_name = extract_class_name(java_source) or question
+    with tempfile.TemporaryDirectory() as tmp:
+        path = Path(tmp) / f"{class_name}.java"
+        path.write_text(java_source, encoding="utf-8")
+        entry = run_class_specs(assignment, [("source", question, path)], cache=cache)["source"][
+            question.upper()
+        ]
+    failures = entry["errors"] + [
+        f"{t['name']}: {t['message']}" for t in entry["tests"] if t["status"] != "SUCCESSFUL"
+    ]
+    # A file that does not compile counts as one failed check
+    return entry["tests_passed"], max(entry["tests_run"], 1), failures
@@ -0,0 +1,151 @@
+"""Long-running in-process Java compiler.
+
+CompilerService keeps a few TracerWorker JVMs, each with a warmed-up
+javax.tools compiler and an in-memory file manager, so compiling N submissions
+costs a handful of JVM starts instead of N javac processes. Each source is
+still compiled as its own unit and gets its own CompileResult with structured
+diagnostics.
+"""
+
+from __future__ import annotations
+
+import os
+import queue
+import threading
+from collections.abc import Hashable, Mapping
+from concurrent.futures import ThreadPoolExecutor
+from pathlib import Path
+from typing import TypeVar
+
+from utils.execution import CompileResult, extract_class_name
+from utils.jvm.build import ensure_built
+from utils.jvm.pool import DEFAULT_JVM_ARGS, STARTUP_TIMEOUT, JvmWorker, WorkerCrashed
+
+K = TypeVar("K", bound=Hashable)
+
+# Sources per request; bounds how much work is lost if one unit hangs javac
+CHUNK_SIZE = 64
+
+# Compiler JVMs by default; javac is CPU-bound and each JVM holds its own heap
+DEFAULT_SIZE = 4
+
+
+class CompilerService:
+    """Thread-safe front end to up to `size` compiler JVMs, each restarted on failure.
+
+    A request holds one worker while it compiles, so callers on different
+    threads (and the chunks of one large batch) compile in parallel. Workers
+    start on first use.
+    """
+
+    # What TracerWorker passes to javac, so traces can name local variables;
+    # part of the compile cache key
+    OPTIONS: tuple[str, ...] = ("-g",)
+
+    def __init__(
+        self,
+        size: int | None = None,
+        java: str = "java",
+        jvm_args: tuple[str, ...] = DEFAULT_JVM_ARGS,
+    ):
+        self.size = size or min(DEFAULT_SIZE, os.cpu_count() or 1)
+        self.java = java
+        self.jvm_args = jvm_args
+        self._classpath = ensure_built()
+        # One slot per worker; None until that worker is first started
+        self._slots: queue.LifoQueue[JvmWorker | None] = queue.LifoQueue()
+        for _ in range(self.size):
+            self._slots.put(None)
+        self._all: set[JvmWorker] = set()
+        self._lock = threading.Lock()
+
+    def __enter__(self) -> CompilerService:
+        return self
+
+    def __exit__(self, *exc) -> None:
+        self.close()
+
+    def close(self) -> None:
+        with self._lock:
+            workers = list(self._all)
+            self._all.clear()
+        for worker in workers:
+            worker.close()
+
+    def compile(
+        self, java_source: str, out_dir: Path | None = None, timeout: float = 30.0
+    ) -> CompileResult:
+        """Compile one source, writing class files to out_dir if given."""
+        return self.compile_batch({0: java_source}, {0: out_dir}, timeout)[0]
+
+    def compile_batch(
+        self,
+        sources: Mapping[K, str],
+        output_dirs: Mapping[K, Path | None] | None = None,
+        timeout_per_file: float = 30.0,
+    ) -> dict[K, CompileResult]:
+        """Compile many sources in one JVM. Returns a CompileResult per key.
+
+        Keys are caller-defined (e.g. (student, question)); output_dirs maps a
+        key to the directory its class files go to.
+        """
+        output_dirs = output_dirs or {}
+        results: dict[K, CompileResult] = {}
+        pending: list[tuple[K, tuple[str, str, Path | None]]] = []
+
+        for key, source in sources.items():
+            class_name = extract_class_name(source)
+            if not class_name:
+                results[key] = CompileResult(success=False, stderr="No class found in source")
+                continue
+            pending.append((key, (class_name, source, output_dirs.get(key))))
+
+        chunks = [pending[i : i + CHUNK_SIZE] for i in range(0, len(pending), CHUNK_SIZE)]
+        if len(chunks) > 1 and self.size > 1:
+            with ThreadPoolExecutor(max_workers=min(self.size, len(chunks))) as executor:
+                compiled = list(
+                    executor.map(lambda c: self._compile_chunk(c, timeout_per_file), chunks)
+                )
+        else:
+            compiled = [self._compile_chunk(chunk, timeout_per_file) for chunk in chunks]
+        for chunk, chunk_results in zip(chunks, compiled):
+            for (key, _), result in zip(chunk, chunk_results):
+                results[key] = result
+
+        return {key: results[key] for key in sources}
+
+    def _compile_chunk(
+        self, chunk: list[tuple[K, tuple[str, str, Path | None]]], timeout_per_file: float
+    ) -> list[CompileResult]:
+        units = [unit for _, unit in chunk]
+        worker = self._slots.get()
+        try:
+            if worker is None or not worker.alive():
+                self._reset_worker(worker)
+                worker = None
+                worker = self._start_worker()
+            return worker.compile(units, STARTUP_TIMEOUT + timeout_per_file * len(units))
+        except TimeoutError:
+            self._reset_worker(worker)
+            worker = None
+            stderr = "Compilation timed out"
+        except (WorkerCrashed, OSError) as e:
+            self._reset_worker(worker)
+            worker = None
+            stderr = f"Compiler service failed: {e}"
+        finally:
+            self._slots.put(worker)
+        return [CompileResult(success=False, stderr=stderr, infra_error=True) for _ in units]
+
+    def _start_worker(self) -> JvmWorker:
+        worker = JvmWorker(self.java, self._classpath, self.jvm_args)
+        with self._lock:
+            self._all.add(worker)
+        return worker
+
+    def _reset_worker(self, worker: JvmWorker | None) -> None:
+        """Kill a failed worker; its slot starts a new one on next use."""
+        if worker is not None:
+            worker.kill()
+            with self._lock:
+                self._all.discard(worker)
@@ -0,0 +1,238 @@
+"""Parsed-once code features of every submission, stored as one table.
+
+Drives FeatureExtractor: each Q*.java is parsed and attributed with the javac
+Tree API in one JVM, and one scan records structural features (loops and
+their bound shapes, array index shapes, discarded call results, String /
+Scanner / Math usage, branching, integer division, the numeric constants
+compared against, ...) and the hash of the file's canonical AST
+(Canonicalizer: local names alpha-renamed, comments and layout gone), so
+exact duplicates up to renaming can be found. The rows are stored per
+assignment in a CSV table under .cache/features, one row per (student,
+question), with the file's SHA-256 and FEATURES_VERSION. Refreshing the table
+re-extracts only files that are new or whose hash or version changed, and
+drops rows of files that are gone, so a refresh of an unchanged assignment
+starts no JVM at all.
+
+analyze.py joins the table onto results_df by (assignment, student, question)
+instead of re-reading thousands of files.
+"""
+
+from __future__ import annotations
+
+import csv
+import hashlib
+import json
+import subprocess
+import tempfile
+from dataclasses import dataclass, field
+from pathlib import Path
+from typing import Any
+
+from utils.jvm.build import ensure_built
+
+# Bump when FeatureExtractor changes so stored rows are re-extracted
+FEATURES_VERSION = "3"
+
+DEFAULT_FEATURES_DIR = Path(".cache") / "features"
+
+KEY_COLUMNS = ["assignment", "student", "question"]
+META_COLUMNS = ["source_hash", "version", "parsed", "clean", "canonical_hash"]
+
+# In FeatureExtractor's order; set-valued columns are ";"-joined sorted shapes
+FEATURE_COLUMNS = [
+    "lines",
+    "methods",
+    "for_loops",
+    "foreach_loops",
+    "while_loops",
+    "do_loops",
+    "max_loop_depth",
+    "loop_declarations",
+    "loop_starts_at_one",
+    "loop_le_length",
+    "loop_bounds",
+    "array_accesses",
+    "index_offset",
+    "index_length",
+    "index_shapes",
+    "discarded_calls",
+    "discarded_methods",
+    "string_calls",
+    "string_methods",
+    "string_ref_compares",
+    "scanner_reads",
+    "math_calls",
+    "if_statements",
+    "max_else_if_chain",
+    "switches",
+    "int_divisions",
+    "casts",
+    "xor_ops",
+    "compound_assignments",
+    "compare_constants",
+]
+TEXT_COLUMNS = {"loop_bounds", "index_shapes", "discarded_methods", "string_methods", "compare_constants"}
+
+COLUMNS = KEY_COLUMNS + META_COLUMNS + FEATURE_COLUMNS
+
+
+class FeatureExtractorError(RuntimeError):
+    """Raised when the extractor JVM itself fails."""
+
+
+@dataclass
+class FeatureTable:
+    """One assignment's feature rows, keyed by (student, question)."""
+
+    assignment: str
+    rows: dict[tuple[str, str], dict[str, Any]] = field(default_factory=dict)
+    reused: int = 0
+    extracted: int = 0
+    dropped: int = 0
+
+    def records(self) -> list[dict[str, Any]]:
+        """Rows in (student, question) order, ready for pd.DataFrame."""
+        return [self.rows[key] for key in sorted(self.rows)]
+
+    def get(self, student: str, question: str) -> dict[str, Any] | None:
+        return self.rows.get((student, question))
+
+
+def features_path(assignment: str, store_dir: Path = DEFAULT_FEATURES_DIR) -> Path:
+    return store_dir / f"{assignment}.csv"
+
+
+def source_hash(path: Path) -> str:
+    return hashlib.sha256(path.read_bytes()).hexdigest()
+
+
+def _typed(row: dict[str, str]) -> dict[str, Any]:
+    """CSV strings back to ints and bools."""
+    typed: dict[str, Any] = {}
+    for column in COLUMNS:
+        value = row.get(column, "")
+        if column in ("parsed", "clean"):
+            typed[column] = value == "True"
+        elif column in FEATURE_COLUMNS and column not in TEXT_COLUMNS:
+            typed[column] = int(value) if value else None
+        else:
+            typed[column] = value
+    return typed
+
+
+def _read_table(path: Path) -> dict[tuple[str, str], dict[str, Any]]:
+    if not path.exists():
+        return {}
+    with path.open(newline="", encoding="utf-8") as f:
+        reader = csv.DictReader(f)
+        if reader.fieldnames != COLUMNS:
+            # Written by a different column layout; extract everything again
+            return {}
+        return {(row["student"], row["question"]): _typed(row) for row in reader}
+
+
+def _write_table(path: Path, records: list[dict[str, Any]]) -> None:
+    path.parent.mkdir(parents=True, exist_ok=True)
+    tmp = path.with_suffix(".tmp")
+    with tmp.open("w", newline="", encoding="utf-8") as f:
+        writer = csv.DictWriter(f, fieldnames=COLUMNS)
+        writer.writeheader()
+        for record in records:
+            writer.writerow({c: "" if record.get(c) is None else record[c] for c in COLUMNS})
+    tmp.replace(path)
+
+
+def run_feature_extractor(
+    files: list[tuple[str, str, Path]],
+    java: str = "java",
+) -> dict[tuple[str, str], dict[str, Any]]:
+    """Extract features of each (student, question, path) in one JVM.
+
+    Returns (student, question) -> {"parsed", "clean", "features"}.
+    """
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        manifest = tmp_path / "files.tsv"
+        manifest.write_text(
+            "".join(f"{student}/{question}\t{path.resolve()}\n" for student, question, path in files),
+            encoding="utf-8",
+        )
+        report_path = tmp_path / "features.json"
+        cmd = [
+            java,
+            "-XX:+UseSerialGC",
+            "-XX:TieredStopAtLevel=1",
+            "-cp",
+            str(ensure_built()),
+            "FeatureExtractor",
+            "--manifest",
+            str(manifest),
+            "--report",
+            str(report_path),
+        ]
+        result = subprocess.run(cmd, capture_output=True, text=True)
+        if result.returncode != 0 or not report_path.exists():
+            raise FeatureExtractorError(f"FeatureExtractor failed:\n{result.stderr[-2000:]}")
+        entries = json.loads(report_path.read_text(encoding="utf-8"))["files"]
+
+    report = {}
+    for entry in entries:
+        student, question = entry.pop("key").split("/", 1)
+        report[(student, question)] = entry
+    return report
+
+
+def load_features(
+    assignment: str,
+    files: list[tuple[str, str, Path]],
+    store_dir: Path = DEFAULT_FEATURES_DIR,
+    refresh: bool = True,
+    java: str = "java",
+) -> FeatureTable:
+    """The feature table for files, bringing the stored table up to date.
+
+    Stored rows whose source hash and version still match are reused; the rest
+    are extracted in one JVM run and the table is rewritten. With refresh=False
+    the stored table is returned as is (stale or missing rows included).
+    """
+    path = features_path(assignment, store_dir)
+    stored = _read_table(path)
+    table = FeatureTable(assignment)
+    if not refresh:
+        table.rows = stored
+        table.reused = len(stored)
+        return table
+
+    stale = []
+    for student, question, file_path in files:
+        digest = source_hash(file_path)
+        row = stored.get((student, question))
+        if row is not None and row["source_hash"] == digest and row["version"] == FEATURES_VERSION:
+            table.rows[(student, question)] = row
+            table.reused += 1
+        else:
+            stale.append((student, question, file_path, digest))
+
+    if stale:
+        report = run_feature_extractor([(s, q, p) for s, q, p, _ in stale], java=java)
+        for student, question, _, digest in stale:
+            entry = report[(student, question)]
+            row = {
+                "assignment": assignment,
+                "student": student,
+                "question": question,
+                "source_hash": digest,
+                "version": FEATURES_VERSION,
+                "parsed": entry["parsed"],
+                "clean": entry["clean"],
+                "canonical_hash": entry["canonical"],
+            }
+            for column in FEATURE_COLUMNS:
+                row[column] = entry["features"].get(column)
+            table.rows[(student, question)] = row
+        table.extracted = len(stale)
+
+    table.dropped = len(set(stored) - set(table.rows))
+    if table.extracted or table.dropped or not path.exists():
+        _write_table(path, table.records())
+    return table
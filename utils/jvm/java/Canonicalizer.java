@@ -0,0 +1,150 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.lang.model.element.Modifier;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.PrimitiveTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+
+/**
+ * Canonical form of a parsed file: the AST with local names alpha-renamed.
+ *
+ * The form is a pre-order serialization of the tree, "(KIND label children...)".
+ * Comments and layout are not part of the tree, so they drop out. Method
+ * parameters and local variables are renamed v0, v1, ... in declaration order
+ * within each method. Class, method and field names and all literals are kept,
+ * because they change what the program prints or how it is called. Two files
+ * with the same hash differ only in local names, formatting and comments.
+ */
+final class Canonicalizer extends TreeScanner<Void, Void> {
+
+    private final InMemoryCompiler.Analysis analysis;
+    private final StringBuilder form = new StringBuilder();
+    // Local name -> canonical name in the current method; null outside methods
+    private Map<String, String> locals;
+
+    private Canonicalizer(InMemoryCompiler.Analysis analysis) {
+        this.analysis = analysis;
+    }
+
+    /** First 16 hex digits of the SHA-256 of the canonical form. */
+    static String hash(InMemoryCompiler.Analysis analysis) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(form(analysis).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String form(InMemoryCompiler.Analysis analysis) {
+        Canonicalizer canonicalizer = new Canonicalizer(analysis);
+        canonicalizer.scan(analysis.unit, null);
+        return canonicalizer.form.toString();
+    }
+
+    @Override
+    public Void scan(Tree tree, Void unused) {
+        if (tree == null) {
+            form.append('_');
+            return null;
+        }
+        if (tree instanceof MethodTree
+                && analysis.trees.getSourcePositions().getEndPosition(analysis.unit, tree) < 0) {
+            // javac's default constructor, not part of the source
+            return null;
+        }
+        form.append('(').append(tree.getKind());
+        String label = label(tree);
+        if (label != null) {
+            form.append(' ').append(label);
+        }
+        super.scan(tree, unused);
+        form.append(')');
+        return null;
+    }
+
+    private String label(Tree tree) {
+        if (tree instanceof IdentifierTree) {
+            String name = ((IdentifierTree) tree).getName().toString();
+            return locals == null ? name : locals.getOrDefault(name, name);
+        }
+        if (tree instanceof MemberSelectTree) {
+            return ((MemberSelectTree) tree).getIdentifier().toString();
+        }
+        if (tree instanceof MemberReferenceTree) {
+            return ((MemberReferenceTree) tree).getName().toString();
+        }
+        if (tree instanceof LiteralTree) {
+            Object value = ((LiteralTree) tree).getValue();
+            return value == null ? "null" : Json.quote(value.toString());
+        }
+        if (tree instanceof PrimitiveTypeTree) {
+            return ((PrimitiveTypeTree) tree).getPrimitiveTypeKind().toString();
+        }
+        if (tree instanceof ModifiersTree) {
+            Set<String> flags = new TreeSet<>();
+            for (Modifier flag : ((ModifiersTree) tree).getFlags()) {
+                flags.add(flag.toString());
+            }
+            return String.join(",", flags);
+        }
+        if (tree instanceof ClassTree) {
+            return ((ClassTree) tree).getSimpleName().toString();
+        }
+        if (tree instanceof MethodTree) {
+            return ((MethodTree) tree).getName().toString();
+        }
+        if (tree instanceof VariableTree) {
+            String name = ((VariableTree) tree).getName().toString();
+            if (locals == null) {
+                return name;
+            }
+            // Rename before the initializer is scanned; a local cannot refer to itself there
+            return locals.computeIfAbsent(name, n -> "v" + locals.size());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitClass(ClassTree node, Void unused) {
+        // Fields keep their names: they are part of the class's interface
+        Map<String, String> outer = locals;
+        locals = null;
+        try {
+            return super.visitClass(node, unused);
+        } finally {
+            locals = outer;
+        }
+    }
+
+    @Override
+    public Void visitMethod(MethodTree node, Void unused) {
+        Map<String, String> outer = locals;
+        locals = new HashMap<>();
+        try {
+            return super.visitMethod(node, unused);
+        } finally {
+            locals = outer;
+        }
+    }
+}
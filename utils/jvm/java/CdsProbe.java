@@ -0,0 +1,47 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * Exercises the JDK classes typical student programs load (Scanner on stdin,
+ * printf/String.format, collections, Math, Random, parsing).
+ *
+ * Run once with -XX:DumpLoadedClassList by utils.jvm.profile; the resulting
+ * class list seeds the AppCDS archive used for short-lived student runs.
+ * Expects "int double\nline\n" on stdin.
+ */
+public class CdsProbe {
+
+    public static void main(String[] args) {
+        Scanner sc = new Scanner(System.in);
+        int n = sc.nextInt();
+        double d = sc.nextDouble();
+        sc.nextLine();
+        String line = sc.hasNextLine() ? sc.nextLine() : "";
+        boolean more = sc.hasNext();
+
+        List<Integer> list = new ArrayList<>(List.of(n, 3, 1));
+        Collections.sort(list);
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : line.split("\\s+")) {
+            counts.merge(word.toLowerCase(Locale.ROOT), 1, Integer::sum);
+        }
+        int[] arr = {n, 2, 1};
+        Arrays.sort(arr);
+
+        StringBuilder sb = new StringBuilder(line).reverse();
+        System.out.printf("%d %.2f %s%n", n, Math.sqrt(Math.abs(d)), String.format("%-5s|", line));
+        System.out.println(String.join(",", counts.keySet()) + sb + Arrays.toString(arr) + list
+                + new Random(n).nextInt(10) + Integer.parseInt("5") + Double.parseDouble("1.5")
+                + Math.round(d) + Math.pow(d, 2) + Math.max(n, 1) + (int) (Math.random() * 0)
+                + String.valueOf(more).charAt(0) + line.contains("a") + line.trim().isEmpty());
+        System.err.println(Integer.MAX_VALUE + " " + Long.toString(1L << 40) + " " + Character.isDigit('1'));
+        sc.close();
+    }
+}
@@ -0,0 +1,563 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Checks class-design submissions (a4) against behavioural specs by reflection, in one JVM.
+ *
+ * The a4 questions ask for a class (Book, BankAccount, User, Student) rather
+ * than a stdin/stdout program, so there is no scripted input to replay. Each
+ * submission is compiled in memory, loaded in its own MemoryClassLoader, and
+ * the checks ClassSpecs defines for its question construct the student's
+ * classes, call their methods and read their fields through a Probe, and run
+ * main with its output captured.
+ *
+ * Usage:
+ *   java -cp helpers:junit-standalone.jar ClassSpecRunner \
+ *       --assignment a4 --manifest subs.tsv --report report.json \
+ *       [--threads N] [--timeout 10]
+ *
+ * The manifest has one "student TAB question TAB path/to/Qn.java" line per
+ * submission. The report has JUnitBatchRunner's shape (one check per test
+ * entry, SUCCESSFUL or FAILED, wall_ms measured, cpu_ms and alloc_bytes null),
+ * so both are read the same way. Each check runs on its own thread with the
+ * submission's class loader as context loader and stdio bound by StdioRouter;
+ * a check still running after --timeout seconds fails with a TimeoutException.
+ * As in JUnitBatchRunner, a System.exit() in student code or a thread left
+ * running that cannot be stopped makes the submission an "error".
+ */
+public class ClassSpecRunner {
+
+    private static final class Submission {
+        final String student;
+        final String question;
+        final Path file;
+
+        Submission(String student, String question, Path file) {
+            this.student = student;
+            this.question = question;
+            this.file = file;
+        }
+    }
+
+    private static final class CheckOutcome {
+        final ClassSpecs.Spec spec;
+        final String status;
+        final String message;
+        final long wallMs;
+        /** The check ran into a System.exit() in student code. */
+        final boolean exited;
+
+        CheckOutcome(ClassSpecs.Spec spec, String status, String message, long wallMs, boolean exited) {
+            this.spec = spec;
+            this.status = status;
+            this.message = message;
+            this.wallMs = wallMs;
+            this.exited = exited;
+        }
+    }
+
+    /**
+     * Reflective access to one submission's classes for the checks.
+     *
+     * Classes are found by simple name whether the student declared them top
+     * level or nested in the question class. Missing classes, constructors,
+     * methods and fields, and exceptions thrown by student code, surface as
+     * AssertionErrors whose message becomes the check's failure message.
+     */
+    static final class Probe {
+
+        private static final Object NO_MATCH = new Object();
+        private static final Pattern PUBLIC_CLASS = Pattern.compile("public\\s+(?:final\\s+)?class\\s+(\\w+)");
+
+        private final String question;
+        private final Map<String, Class<?>> types = new HashMap<>();
+
+        Probe(String question, Map<String, byte[]> classes, ClassLoader loader) throws ClassNotFoundException {
+            this.question = question;
+            for (String name : classes.keySet()) {
+                Class<?> type = Class.forName(name, false, loader);
+                if (type.getSimpleName().isEmpty()) {
+                    continue; // anonymous
+                }
+                // A top-level class wins over a nested one of the same name
+                types.merge(type.getSimpleName(), type,
+                        (kept, other) -> kept.getEnclosingClass() == null ? kept : other);
+            }
+        }
+
+        /** The student's class with this simple name. */
+        Class<?> type(String simpleName) {
+            Class<?> type = types.get(simpleName);
+            if (type == null) {
+                throw new AssertionError("no class " + simpleName);
+            }
+            return type;
+        }
+
+        /** Every class of the submission. */
+        Iterable<Class<?>> types() {
+            return types.values();
+        }
+
+        /** new type(args), converting numeric arguments to the declared parameter types. */
+        Object construct(Class<?> type, Object... args) {
+            Object instance = tryConstruct(type, args);
+            if (instance == null) {
+                throw new AssertionError("no constructor " + signature(type.getSimpleName(), args));
+            }
+            return instance;
+        }
+
+        /** As construct, but null if type declares no matching constructor. */
+        Object tryConstruct(Class<?> type, Object... args) {
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                Object[] converted = convert(constructor, args);
+                if (converted != null) {
+                    return invoke(constructor, null, converted);
+                }
+            }
+            return null;
+        }
+
+        /** target.name(args), or a static call when target is a Class. */
+        Object call(Object target, String name, Object... args) {
+            Method method = findMethod(target, name, args);
+            if (method == null) {
+                Class<?> type = target instanceof Class ? (Class<?>) target : target.getClass();
+                throw new AssertionError("no method " + signature(type.getSimpleName() + "." + name, args));
+            }
+            return invoke(method, target instanceof Class ? null : target, convert(method, args));
+        }
+
+        boolean hasMethod(Object target, String name, Object... args) {
+            return findMethod(target, name, args) != null;
+        }
+
+        /**
+         * The property `name` of target: the field of that name, else its getter,
+         * else the only field of the given type (students rename fields).
+         */
+        Object read(Object target, String name, Class<?> fallbackType) {
+            Field field = field(target.getClass(), name, fallbackType);
+            if (field != null) {
+                try {
+                    return field.get(target);
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError("cannot read field " + field.getName());
+                }
+            }
+            String getter = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            if (hasMethod(target, getter)) {
+                return call(target, getter);
+            }
+            throw new AssertionError("no field " + name + " in " + target.getClass().getSimpleName());
+        }
+
+        /** Set the property `name` of target: its setter, else the field (see read). */
+        void write(Object target, String name, Class<?> fallbackType, Object value) {
+            String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            if (hasMethod(target, setter, value)) {
+                call(target, setter, value);
+                return;
+            }
+            Field field = field(target.getClass(), name, fallbackType);
+            if (field == null) {
+                throw new AssertionError("no field " + name + " in " + target.getClass().getSimpleName());
+            }
+            Object converted = convertArg(field.getType(), value);
+            if (converted == NO_MATCH) {
+                throw new AssertionError("field " + field.getName() + " is not a " + fallbackType.getSimpleName());
+            }
+            try {
+                field.set(target, converted);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError("cannot write field " + field.getName());
+            }
+        }
+
+        /** The instance field `name` of type, else its only instance field of fallbackType. */
+        Field field(Class<?> type, String name, Class<?> fallbackType) {
+            Field byType = null;
+            int ofType = 0;
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (f.isSynthetic()) {
+                        continue;
+                    }
+                    if (f.getName().equals(name)) {
+                        f.setAccessible(true);
+                        return f;
+                    }
+                    if (f.getType() == fallbackType && !Modifier.isStatic(f.getModifiers())) {
+                        byType = f;
+                        ofType++;
+                    }
+                }
+            }
+            if (ofType != 1) {
+                return null;
+            }
+            byType.setAccessible(true);
+            return byType;
+        }
+
+        /**
+         * Run the submission's main with no input and return what it printed.
+         * The question's public class is tried first, then any class with a main.
+         */
+        String runMain(String source) throws Exception {
+            Method main = null;
+            Matcher m = PUBLIC_CLASS.matcher(source);
+            List<Class<?>> candidates = new ArrayList<>();
+            if (m.find() && types.containsKey(m.group(1))) {
+                candidates.add(types.get(m.group(1)));
+            }
+            if (types.containsKey(question)) {
+                candidates.add(types.get(question));
+            }
+            candidates.addAll(types.values());
+            for (Class<?> type : candidates) {
+                try {
+                    Method candidate = type.getDeclaredMethod("main", String[].class);
+                    if (Modifier.isStatic(candidate.getModifiers())) {
+                        main = candidate;
+                        break;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // try the next class
+                }
+            }
+            if (main == null) {
+                throw new AssertionError("no main method");
+            }
+            Method entry = main;
+            entry.setAccessible(true);
+            return StdioRouter.capture("", () -> invoke(entry, null, new Object[] {new String[0]}));
+        }
+
+        private Method findMethod(Object target, String name, Object... args) {
+            Class<?> start = target instanceof Class ? (Class<?>) target : target.getClass();
+            for (Class<?> c = start; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    if (method.getName().equals(name) && convert(method, args) != null
+                            && Modifier.isStatic(method.getModifiers()) == (target instanceof Class)) {
+                        return method;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static Object invoke(Executable executable, Object target, Object[] args) {
+            executable.setAccessible(true);
+            try {
+                if (executable instanceof Constructor) {
+                    return ((Constructor<?>) executable).newInstance(args);
+                }
+                return ((Method) executable).invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ThreadDeath) {
+                    throw (ThreadDeath) cause;
+                }
+                if (cause instanceof SystemExit.Trap) {
+                    throw (SystemExit.Trap) cause;
+                }
+                String name = executable instanceof Constructor
+                        ? "new " + executable.getDeclaringClass().getSimpleName()
+                        : executable.getName();
+                throw new AssertionError(name + " threw " + JUnitBatchRunner.describe(cause), cause);
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new AssertionError(JUnitBatchRunner.describe(e), e);
+            }
+        }
+
+        /** args converted to executable's parameter types, or null if they do not fit. */
+        private static Object[] convert(Executable executable, Object[] args) {
+            Class<?>[] params = executable.getParameterTypes();
+            if (params.length != args.length) {
+                return null;
+            }
+            Object[] converted = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                converted[i] = convertArg(params[i], args[i]);
+                if (converted[i] == NO_MATCH) {
+                    return null;
+                }
+            }
+            return converted;
+        }
+
+        /** Numbers convert to any numeric parameter that holds the value exactly. */
+        private static Object convertArg(Class<?> param, Object arg) {
+            if (arg == null) {
+                return param.isPrimitive() ? NO_MATCH : null;
+            }
+            if (arg instanceof Number && !(param.isInstance(arg))) {
+                double value = ((Number) arg).doubleValue();
+                boolean integral = value == Math.rint(value);
+                if (param == double.class || param == Double.class) {
+                    return value;
+                }
+                if (param == float.class || param == Float.class) {
+                    return (float) value;
+                }
+                if ((param == int.class || param == Integer.class) && integral) {
+                    return (int) value;
+                }
+                if ((param == long.class || param == Long.class) && integral) {
+                    return (long) value;
+                }
+                return NO_MATCH;
+            }
+            if (param.isPrimitive()) {
+                return wrapper(param).isInstance(arg) ? arg : NO_MATCH;
+            }
+            return param.isInstance(arg) ? arg : NO_MATCH;
+        }
+
+        private static Class<?> wrapper(Class<?> primitive) {
+            if (primitive == boolean.class) {
+                return Boolean.class;
+            }
+            if (primitive == char.class) {
+                return Character.class;
+            }
+            return Number.class;
+        }
+
+        private static String signature(String name, Object[] args) {
+            StringBuilder sb = new StringBuilder(name).append('(');
+            for (int i = 0; i < args.length; i++) {
+                sb.append(i == 0 ? "" : ", ")
+                        .append(args[i] == null ? "null" : args[i].getClass().getSimpleName());
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    private static final InMemoryCompiler COMPILER = new InMemoryCompiler();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        String assignment = require(opts, "--assignment");
+        Path manifest = Paths.get(require(opts, "--manifest"));
+        Path report = Paths.get(require(opts, "--report"));
+        int threads = Integer.parseInt(opts.getOrDefault("--threads", "1"));
+        long timeoutMs = (long) (Double.parseDouble(opts.getOrDefault("--timeout", "10")) * 1000);
+
+        Map<String, List<ClassSpecs.Spec>> specs = ClassSpecs.forAssignment(assignment);
+        if (specs == null) {
+            throw new IllegalArgumentException("No class specs for " + assignment);
+        }
+
+        StdioRouter.install();
+
+        List<Submission> submissions = readManifest(manifest);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<String>> futures = new ArrayList<>();
+        for (Submission sub : submissions) {
+            futures.add(executor.submit(
+                    () -> runSubmission(sub, specs.getOrDefault(sub.question, List.of()), timeoutMs)));
+        }
+
+        StringBuilder json = new StringBuilder("{\"submissions\": [\n");
+        for (int i = 0; i < futures.size(); i++) {
+            json.append(i == 0 ? "" : ",\n").append(futures.get(i).get());
+        }
+        json.append("\n]}\n");
+        executor.shutdownNow();
+
+        Files.writeString(report, json.toString(), StandardCharsets.UTF_8);
+        // Student code may leave non-daemon threads spinning after a timeout
+        System.exit(0);
+    }
+
+    private static String runSubmission(Submission sub, List<ClassSpecs.Spec> specs, long timeoutMs) {
+        long start = System.nanoTime();
+        if (specs.isEmpty()) {
+            return entry(sub, "error", start, List.of(), List.of("No class specs for " + sub.question));
+        }
+
+        String source;
+        InMemoryCompiler.Result compiled;
+        try {
+            source = Files.readString(sub.file, StandardCharsets.UTF_8);
+            Matcher m = Probe.PUBLIC_CLASS.matcher(source);
+            compiled = COMPILER.compile(m.find() ? m.group(1) : sub.question, source, List.of("-proc:none"));
+        } catch (IOException e) {
+            return entry(sub, "error", start, List.of(), List.of(JUnitBatchRunner.describe(e)));
+        }
+
+        if (!compiled.success) {
+            List<String> errors = new ArrayList<>();
+            for (Diagnostic<? extends JavaFileObject> d : compiled.diagnostics) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    String file = d.getSource() == null ? "" : d.getSource().getName().replace("/", "");
+                    errors.add(InMemoryCompiler.format(file, d));
+                }
+            }
+            return entry(sub, "compile_error", start, List.of(), errors);
+        }
+
+        ClassLoader loader = new MemoryClassLoader(compiled.classes, ClassSpecRunner.class.getClassLoader());
+        List<CheckOutcome> outcomes = new ArrayList<>();
+        List<String> leaked = new ArrayList<>();
+        // The streams are StdioRouter's; restore them in case student code swapped them
+        InputStream savedIn = System.in;
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        try {
+            Probe probe = new Probe(sub.question, compiled.classes, loader);
+            for (ClassSpecs.Spec spec : specs) {
+                outcomes.add(runCheck(spec, probe, source, loader, timeoutMs));
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            return entry(sub, "error", start, List.of(), List.of(JUnitBatchRunner.describe(e)));
+        } finally {
+            leaked.addAll(JUnitBatchRunner.stopLeftoverThreads(loader));
+            System.setIn(savedIn);
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+        }
+
+        List<String> errors = new ArrayList<>();
+        outcomes.stream().filter(o -> o.exited).findFirst()
+                .ifPresent(o -> errors.add(o.message + " called in " + o.spec.name));
+        if (!leaked.isEmpty()) {
+            errors.add(leaked.size() + " thread(s) still running after the checks: "
+                    + String.join(", ", leaked.stream().distinct().toList()));
+        }
+        if (!errors.isEmpty()) {
+            return entry(sub, "error", start, outcomes, errors);
+        }
+        boolean allPassed = outcomes.stream().allMatch(o -> o.status.equals("SUCCESSFUL"));
+        return entry(sub, allPassed ? "passed" : "failed", start, outcomes, List.of());
+    }
+
+    /**
+     * Run one check on a fresh thread, so a check stuck in student code can be
+     * abandoned at the timeout without holding up the submission's other checks.
+     */
+    private static CheckOutcome runCheck(ClassSpecs.Spec spec, Probe probe, String source,
+            ClassLoader loader, long timeoutMs) {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(() -> {
+            try {
+                StdioRouter.capture("", () -> spec.check.run(probe, source));
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+        }, "spec-" + spec.method);
+        thread.setDaemon(true);
+        thread.setContextClassLoader(loader);
+
+        long start = System.nanoTime();
+        thread.start();
+        try {
+            thread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+        if (thread.isAlive()) {
+            // Stop it now rather than at the end, so it does not slow the next checks
+            // down; one that cannot be stopped is reported after the last check
+            JUnitBatchRunner.stopLeftoverThreads(loader);
+            return new CheckOutcome(spec, "FAILED",
+                    "TimeoutException: " + spec.method + "() timed out after " + timeoutMs + " ms", wallMs,
+                    false);
+        }
+        Throwable t = failure[0];
+        if (t == null) {
+            return new CheckOutcome(spec, "SUCCESSFUL", null, wallMs, false);
+        }
+        SystemExit.Trap exit = SystemExit.find(t);
+        if (exit != null) {
+            return new CheckOutcome(spec, "FAILED", exit.getMessage(), wallMs, true);
+        }
+        String message = t instanceof AssertionError ? t.getMessage() : JUnitBatchRunner.describe(t);
+        return new CheckOutcome(spec, "FAILED", message, wallMs, false);
+    }
+
+    private static String entry(Submission sub, String status, long startNanos,
+            List<CheckOutcome> outcomes, List<String> errors) {
+        long passed = outcomes.stream().filter(o -> o.status.equals("SUCCESSFUL")).count();
+        StringBuilder sb = new StringBuilder();
+        sb.append("  {\"student\": ").append(Json.quote(sub.student))
+                .append(", \"question\": ").append(Json.quote(sub.question))
+                .append(", \"status\": ").append(Json.quote(status))
+                .append(", \"tests_run\": ").append(outcomes.size())
+                .append(", \"tests_passed\": ").append(passed)
+                .append(", \"duration_ms\": ").append((System.nanoTime() - startNanos) / 1_000_000)
+                .append(",\n   \"errors\": [");
+        for (int i = 0; i < errors.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(Json.quote(errors.get(i)));
+        }
+        sb.append("],\n   \"tests\": [");
+        for (int i = 0; i < outcomes.size(); i++) {
+            CheckOutcome o = outcomes.get(i);
+            sb.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(Json.quote(o.spec.name))
+                    .append(", \"method\": ").append(Json.quote(o.spec.method + "()"))
+                    .append(", \"status\": ").append(Json.quote(o.status))
+                    .append(", \"message\": ").append(Json.quote(o.message))
+                    .append(", \"wall_ms\": ").append(o.wallMs)
+                    .append(", \"cpu_ms\": null, \"alloc_bytes\": null}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static List<Submission> readManifest(Path manifest) throws IOException {
+        List<Submission> subs = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 3);
+            subs.add(new Submission(parts[0], parts[1].toUpperCase(Locale.ROOT), Paths.get(parts[2])));
+        }
+        return subs;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            opts.put(args[i], args[i + 1]);
+        }
+        return opts;
+    }
+
+    private static String require(Map<String, String> opts, String key) {
+        String value = opts.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required option " + key);
+        }
+        return value;
+    }
+}
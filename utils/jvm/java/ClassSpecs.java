@@ -0,0 +1,296 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Behavioural specs of the class-design questions, run by ClassSpecRunner.
+ *
+ * a4 (data/a4/q1-q4.md) has no scripted stdin/stdout tests: each question asks
+ * for a class and a main that exercises it. The checks construct the class with
+ * the values the question names and others, call its methods, read its fields,
+ * and look at main's output, so each NM_OOP_* misconception fails at least one:
+ *
+ *   Q1 Book         constructor sets title/pages (NM_OOP_01: title = title)
+ *   Q2 BankAccount  transferTo moves money between two separate accounts; main
+ *                   prints 50.0 twice (NM_OOP_02: the "backup" alias)
+ *   Q3 User         any comparison method compares ids by content; main prints
+ *                   "Same User" (NM_OOP_03: u1 == u2)
+ *   Q4 Student      main fills slot 0 and prints Alice (NM_OOP_04: null slot)
+ *
+ * Checks are lenient about what the question leaves open: field and getter
+ * names fall back to the only field of the expected type, constructors fall
+ * back to a no-arg one plus a setter, and numeric arguments convert to int or
+ * double as declared.
+ */
+final class ClassSpecs {
+
+    /** One check; throws AssertionError (or whatever student code throws) on failure. */
+    @FunctionalInterface
+    interface Check {
+        void run(ClassSpecRunner.Probe probe, String source) throws Exception;
+    }
+
+    static final class Spec {
+        final String method;
+        final String name;
+        final Check check;
+
+        Spec(String method, String name, Check check) {
+            this.method = method;
+            this.name = name;
+            this.check = check;
+        }
+    }
+
+    /** A balance of 50 as main prints it: 50, 50.0, 50.00. */
+    private static final Pattern FIFTY = Pattern.compile("(?<![\\d.])50(?:\\.0+)?(?![\\d.])");
+
+    private static final Map<String, Map<String, List<Spec>>> SPECS = new LinkedHashMap<>();
+
+    static {
+        Map<String, List<Spec>> a4 = new LinkedHashMap<>();
+        a4.put("Q1", List.of(
+                new Spec("constructorSetsFields", "Book(title, pages) stores both values", (p, src) -> {
+                    Object book = p.construct(p.type("Book"), "Java Programming", 500);
+                    expectEquals("title", "Java Programming", p.read(book, "title", String.class));
+                    expectEquals("pages", 500, p.read(book, "pages", int.class));
+                }),
+                new Spec("fieldsArePrivate", "title and pages are private instance fields", (p, src) -> {
+                    Class<?> book = p.type("Book");
+                    expectPrivate(p.field(book, "title", String.class), "title");
+                    expectPrivate(p.field(book, "pages", int.class), "pages");
+                }),
+                new Spec("isLongAbove300", "isLong() is true above 300 pages", (p, src) -> {
+                    expectEquals("isLong() for 301 pages", true, p.call(p.construct(p.type("Book"), "A", 301), "isLong"));
+                    expectEquals("isLong() for 500 pages", true, p.call(p.construct(p.type("Book"), "A", 500), "isLong"));
+                }),
+                new Spec("isLongUpTo300", "isLong() is false up to 300 pages", (p, src) -> {
+                    expectEquals("isLong() for 300 pages", false, p.call(p.construct(p.type("Book"), "A", 300), "isLong"));
+                    expectEquals("isLong() for 12 pages", false, p.call(p.construct(p.type("Book"), "A", 12), "isLong"));
+                }),
+                new Spec("booksAreIndependent", "two books keep their own values", (p, src) -> {
+                    Object first = p.construct(p.type("Book"), "First", 500);
+                    Object second = p.construct(p.type("Book"), "Second", 12);
+                    expectEquals("first title", "First", p.read(first, "title", String.class));
+                    expectEquals("first isLong()", true, p.call(first, "isLong"));
+                    expectEquals("second isLong()", false, p.call(second, "isLong"));
+                }),
+                new Spec("mainPrintsBook", "main prints the book and that it is long", (p, src) -> {
+                    String out = p.runMain(src);
+                    expectContains(out, "Java Programming");
+                    expectContains(out, "true");
+                })));
+        a4.put("Q2", List.of(
+                new Spec("transferMovesAmount", "transferTo moves the amount to the other account", (p, src) -> {
+                    Object a = account(p, 100);
+                    Object b = account(p, 0);
+                    p.call(a, "transferTo", b, 50.0);
+                    expectBalance(p, "A after transfer", 50, a);
+                    expectBalance(p, "B after transfer", 50, b);
+                }),
+                new Spec("accountsAreIndependent", "accounts keep their own balances", (p, src) -> {
+                    Object a = account(p, 100);
+                    Object b = account(p, 0);
+                    Object c = account(p, 30);
+                    expectBalance(p, "A", 100, a);
+                    expectBalance(p, "B", 0, b);
+                    p.call(a, "transferTo", b, 20.0);
+                    expectBalance(p, "untouched account", 30, c);
+                }),
+                new Spec("transfersAccumulate", "repeated transfers add up", (p, src) -> {
+                    Object a = account(p, 100);
+                    Object b = account(p, 0);
+                    for (int i = 0; i < 3; i++) {
+                        p.call(a, "transferTo", b, 10.0);
+                    }
+                    expectBalance(p, "A after 3 x 10", 70, a);
+                    expectBalance(p, "B after 3 x 10", 30, b);
+                }),
+                new Spec("mainPrintsBalances", "main prints 50.0 for both accounts", (p, src) -> {
+                    String out = p.runMain(src);
+                    Matcher m = FIFTY.matcher(out);
+                    int count = 0;
+                    while (m.find()) {
+                        count++;
+                    }
+                    if (count < 2) {
+                        throw new AssertionError("expected both balances to be 50.0, main printed: " + excerpt(out));
+                    }
+                })));
+        a4.put("Q3", List.of(
+                new Spec("constructorSetsId", "User(id) stores the id", (p, src) -> {
+                    expectEquals("id", "User123", p.read(user(p, "User123"), "id", String.class));
+                }),
+                new Spec("equalIdsAreSameUser", "comparisons treat equal id contents as the same user", (p, src) -> {
+                    for (Comparison c : comparisons(p)) {
+                        // new String: two equal ids that are not the same object
+                        Object first = user(p, new String("User123"));
+                        Object second = user(p, new String("User123"));
+                        expectEquals(c.name + " on equal ids", true, c.compare(p, first, second));
+                    }
+                }),
+                new Spec("differentIdsAreDifferentUsers", "comparisons tell different ids apart", (p, src) -> {
+                    for (Comparison c : comparisons(p)) {
+                        Object first = user(p, "User123");
+                        Object second = user(p, "User456");
+                        expectEquals(c.name + " on different ids", false, c.compare(p, first, second));
+                    }
+                }),
+                new Spec("mainPrintsSameUser", "main reports the same user", (p, src) -> {
+                    String out = p.runMain(src);
+                    expectContains(out, "Same User");
+                    if (out.contains("Different User")) {
+                        throw new AssertionError("main printed Different User: " + excerpt(out));
+                    }
+                })));
+        a4.put("Q4", List.of(
+                new Spec("constructorSetsName", "a Student stores its name", (p, src) -> {
+                    expectEquals("name", "Alice", p.read(student(p, "Alice"), "name", String.class));
+                }),
+                new Spec("studentsAreIndependent", "two students keep their own names", (p, src) -> {
+                    Object first = student(p, "Alice");
+                    student(p, "Bob");
+                    expectEquals("first name", "Alice", p.read(first, "name", String.class));
+                }),
+                new Spec("mainPrintsFirstSlot", "main fills slot 0 and prints Alice", (p, src) -> {
+                    expectContains(p.runMain(src), "Alice");
+                })));
+        SPECS.put("a4", a4);
+    }
+
+    private ClassSpecs() {
+    }
+
+    /** Question -> checks for an assignment, or null if it has no class specs. */
+    static Map<String, List<Spec>> forAssignment(String assignment) {
+        return SPECS.get(assignment);
+    }
+
+    // ------------------------------------------------------------------ a4 helpers
+
+    /** BankAccount with a starting balance: (balance), (name, balance), or () then the balance set. */
+    private static Object account(ClassSpecRunner.Probe p, double balance) {
+        Class<?> type = p.type("BankAccount");
+        Object account = p.tryConstruct(type, balance);
+        if (account == null) {
+            account = p.tryConstruct(type, "Account", balance);
+        }
+        if (account == null) {
+            account = p.construct(type);
+            p.write(account, "balance", double.class, balance);
+        }
+        return account;
+    }
+
+    private static void expectBalance(ClassSpecRunner.Probe p, String what, double expected, Object account) {
+        Object balance = p.read(account, "balance", double.class);
+        if (!(balance instanceof Number) || Math.abs(((Number) balance).doubleValue() - expected) > 1e-9) {
+            throw new AssertionError(what + ": expected balance " + expected + " but was " + balance);
+        }
+    }
+
+    private static Object user(ClassSpecRunner.Probe p, String id) {
+        Class<?> type = p.type("User");
+        Object user = p.tryConstruct(type, id);
+        if (user == null) {
+            user = p.construct(type);
+            p.write(user, "id", String.class, id);
+        }
+        return user;
+    }
+
+    private static Object student(ClassSpecRunner.Probe p, String name) {
+        Class<?> type = p.type("Student");
+        Object student = p.tryConstruct(type, name);
+        if (student == null) {
+            student = p.construct(type);
+            p.write(student, "name", String.class, name);
+        }
+        return student;
+    }
+
+    /** A way the submission compares two Users: an instance method on User or a static helper. */
+    private static final class Comparison {
+        final String name;
+        final Method method;
+
+        Comparison(String name, Method method) {
+            this.name = name;
+            this.method = method;
+        }
+
+        Object compare(ClassSpecRunner.Probe p, Object first, Object second) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                return p.call(method.getDeclaringClass(), method.getName(), first, second);
+            }
+            return p.call(first, method.getName(), second);
+        }
+    }
+
+    /**
+     * Boolean methods the submission declares that compare two Users. Where
+     * the comparison lives only in main, none are found and main's output is
+     * the only check.
+     */
+    private static List<Comparison> comparisons(ClassSpecRunner.Probe p) {
+        Class<?> user = p.type("User");
+        List<Comparison> found = new ArrayList<>();
+        for (Class<?> type : p.types()) {
+            for (Method m : type.getDeclaredMethods()) {
+                if (m.getReturnType() != boolean.class || m.isSynthetic()) {
+                    continue;
+                }
+                Class<?>[] params = m.getParameterTypes();
+                boolean instance = type == user && !Modifier.isStatic(m.getModifiers())
+                        && params.length == 1 && params[0].isAssignableFrom(user);
+                boolean helper = Modifier.isStatic(m.getModifiers()) && params.length == 2
+                        && params[0].isAssignableFrom(user) && params[1].isAssignableFrom(user)
+                        && params[0] != Object.class;
+                if (instance || helper) {
+                    found.add(new Comparison(type.getSimpleName() + "." + m.getName() + "()", m));
+                }
+            }
+        }
+        return found;
+    }
+
+    // ------------------------------------------------------------------ assertions
+
+    private static void expectEquals(String what, Object expected, Object actual) {
+        boolean equal = expected instanceof Number && actual instanceof Number
+                ? ((Number) expected).doubleValue() == ((Number) actual).doubleValue()
+                : expected.equals(actual);
+        if (!equal) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void expectPrivate(Field field, String name) {
+        if (field == null) {
+            throw new AssertionError("no field " + name);
+        }
+        if (!Modifier.isPrivate(field.getModifiers())) {
+            throw new AssertionError("field " + field.getName() + " is not private");
+        }
+        if (Modifier.isStatic(field.getModifiers())) {
+            throw new AssertionError("field " + field.getName() + " is static");
+        }
+    }
+
+    private static void expectContains(String output, String expected) {
+        if (!output.contains(expected)) {
+            throw new AssertionError("main did not print " + expected + ": " + excerpt(output));
+        }
+    }
+
+    private static String excerpt(String output) {
+        String flat = output.strip().replace('\n', '|');
+        return flat.length() > 200 ? flat.substring(0, 200) + "..." : flat;
+    }
+}
@@ -0,0 +1,557 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.CaseTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.DoWhileLoopTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.IfTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.SwitchTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.tree.WhileLoopTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+
+/**
+ * Structural features of each source file, for joining onto analysis tables.
+ *
+ * Every file is parsed and attributed once (InMemoryCompiler.analyze) and one scan
+ * counts what the code does: loops and the shape of their bounds, array index
+ * expressions, calls whose result is thrown away, String/Scanner/Math usage,
+ * branching and arithmetic, and the numeric constants the code compares against
+ * (the boundaries distinguish.py builds inputs around). Shapes abstract the names away, so "i <= scores.length"
+ * and "k <= a.length" are both "<=length", "a[i + 1]" is "var+1", and so on.
+ *
+ * Usage:
+ *   java -cp helpers FeatureExtractor --manifest files.tsv --report features.json
+ *
+ * The manifest has one "key TAB path/to/File.java" line per file. The report is
+ * {"files": [{"key", "parsed", "clean", "canonical", "features": {name: number or string}}]};
+ * set-valued features are sorted and joined with ";". "canonical" is the
+ * Canonicalizer hash, equal for files that differ only in local names, layout and
+ * comments. Files that do not parse have a null hash and an empty features object.
+ */
+public class FeatureExtractor {
+
+    private static final Set<String> RELATIONAL = Set.of("<", "<=", ">", ">=", "!=", "==");
+
+    public static void main(String[] args) throws IOException {
+        String manifest = null;
+        String report = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--manifest":
+                    manifest = args[++i];
+                    break;
+                case "--report":
+                    report = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (manifest == null || report == null) {
+            System.err.println("usage: FeatureExtractor --manifest files.tsv --report features.json");
+            System.exit(2);
+        }
+
+        InMemoryCompiler compiler = new InMemoryCompiler();
+        StringBuilder sb = new StringBuilder("{\"files\": [\n");
+        boolean first = true;
+        for (String line : Files.readAllLines(Paths.get(manifest), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 2);
+            Path file = Paths.get(parts[1]);
+            String source = Files.readString(file, StandardCharsets.UTF_8);
+            String className = file.getFileName().toString().replaceFirst("\\.java$", "");
+            InMemoryCompiler.Analysis analysis = compiler.analyze(className, source);
+
+            sb.append(first ? "" : ",\n").append("  {\"key\": ").append(Json.quote(parts[0]));
+            first = false;
+            if (analysis == null) {
+                sb.append(", \"parsed\": false, \"clean\": false, \"canonical\": null")
+                        .append(", \"features\": {}}");
+                continue;
+            }
+            sb.append(", \"parsed\": true, \"clean\": ").append(analysis.clean)
+                    .append(", \"canonical\": ").append(Json.quote(Canonicalizer.hash(analysis)))
+                    .append(", \"features\": {");
+            boolean firstFeature = true;
+            for (Map.Entry<String, Object> e : extract(analysis).entrySet()) {
+                sb.append(firstFeature ? "" : ", ").append(Json.quote(e.getKey())).append(": ");
+                firstFeature = false;
+                Object value = e.getValue();
+                sb.append(value instanceof String ? Json.quote((String) value) : value.toString());
+            }
+            sb.append("}}");
+        }
+        sb.append("\n]}\n");
+        Files.writeString(Paths.get(report), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    /** Feature name -> Integer or String, in a fixed order. */
+    static Map<String, Object> extract(InMemoryCompiler.Analysis analysis) {
+        Features features = new Features(analysis);
+        features.scan(analysis.unit, null);
+        return features.values();
+    }
+
+    private static final class Features extends TreePathScanner<Void, Void> {
+        private final InMemoryCompiler.Analysis analysis;
+
+        int methods;
+        int forLoops;
+        int foreachLoops;
+        int whileLoops;
+        int doLoops;
+        int maxLoopDepth;
+        int loopDeclarations;
+        int loopStartsAtOne;
+        int loopLeLength;
+        final Set<String> loopBounds = new TreeSet<>();
+        int arrayAccesses;
+        int indexOffset;
+        int indexLength;
+        final Set<String> indexShapes = new TreeSet<>();
+        int discardedCalls;
+        final Set<String> discardedMethods = new TreeSet<>();
+        int stringCalls;
+        final Set<String> stringMethods = new TreeSet<>();
+        int stringRefCompares;
+        int scannerReads;
+        int mathCalls;
+        int ifStatements;
+        int maxElseIfChain;
+        int switches;
+        int intDivisions;
+        int casts;
+        int xorOps;
+        int compoundAssignments;
+        /** Numeric literals compared against (x >= 90, 0 < n) or used as case labels. */
+        final Set<Double> compareConstants = new TreeSet<>();
+
+        private int loopDepth;
+
+        Features(InMemoryCompiler.Analysis analysis) {
+            this.analysis = analysis;
+        }
+
+        Map<String, Object> values() {
+            Map<String, Object> v = new LinkedHashMap<>();
+            v.put("lines", (int) analysis.source.lines().filter(l -> !l.isBlank()).count());
+            v.put("methods", methods);
+            v.put("for_loops", forLoops);
+            v.put("foreach_loops", foreachLoops);
+            v.put("while_loops", whileLoops);
+            v.put("do_loops", doLoops);
+            v.put("max_loop_depth", maxLoopDepth);
+            v.put("loop_declarations", loopDeclarations);
+            v.put("loop_starts_at_one", loopStartsAtOne);
+            v.put("loop_le_length", loopLeLength);
+            v.put("loop_bounds", String.join(";", loopBounds));
+            v.put("array_accesses", arrayAccesses);
+            v.put("index_offset", indexOffset);
+            v.put("index_length", indexLength);
+            v.put("index_shapes", String.join(";", indexShapes));
+            v.put("discarded_calls", discardedCalls);
+            v.put("discarded_methods", String.join(";", discardedMethods));
+            v.put("string_calls", stringCalls);
+            v.put("string_methods", String.join(";", stringMethods));
+            v.put("string_ref_compares", stringRefCompares);
+            v.put("scanner_reads", scannerReads);
+            v.put("math_calls", mathCalls);
+            v.put("if_statements", ifStatements);
+            v.put("max_else_if_chain", maxElseIfChain);
+            v.put("switches", switches);
+            v.put("int_divisions", intDivisions);
+            v.put("casts", casts);
+            v.put("xor_ops", xorOps);
+            v.put("compound_assignments", compoundAssignments);
+            v.put("compare_constants", compareConstants.stream()
+                    .map(c -> c == Math.rint(c) && Math.abs(c) < 1e15
+                            ? String.valueOf(c.longValue()) : c.toString())
+                    .collect(Collectors.joining(";")));
+            return v;
+        }
+
+        // -- helpers ----------------------------------------------------------
+
+        private TypeMirror typeOf(Tree tree) {
+            TreePath path = TreePath.getPath(analysis.unit, tree);
+            return path == null ? null : analysis.trees.getTypeMirror(path);
+        }
+
+        private boolean isIntegral(Tree tree) {
+            TypeMirror type = typeOf(tree);
+            if (type == null) {
+                return false;
+            }
+            switch (type.getKind()) {
+                case INT:
+                case LONG:
+                case SHORT:
+                case BYTE:
+                case CHAR:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private boolean hasType(Tree tree, String qualifiedName) {
+            TypeMirror type = typeOf(tree);
+            return type != null && type.getKind() == TypeKind.DECLARED
+                    && type.toString().equals(qualifiedName);
+        }
+
+        private static ExpressionTree unparen(ExpressionTree e) {
+            while (e instanceof ParenthesizedTree) {
+                e = ((ParenthesizedTree) e).getExpression();
+            }
+            return e;
+        }
+
+        private static String operator(Tree.Kind kind) {
+            switch (kind) {
+                case LESS_THAN:
+                    return "<";
+                case LESS_THAN_EQUAL:
+                    return "<=";
+                case GREATER_THAN:
+                    return ">";
+                case GREATER_THAN_EQUAL:
+                    return ">=";
+                case NOT_EQUAL_TO:
+                    return "!=";
+                case EQUAL_TO:
+                    return "==";
+                case PLUS:
+                    return "+";
+                case MINUS:
+                    return "-";
+                default:
+                    return null;
+            }
+        }
+
+        private static String flip(String op) {
+            switch (op) {
+                case "<":
+                    return ">";
+                case "<=":
+                    return ">=";
+                case ">":
+                    return "<";
+                case ">=":
+                    return "<=";
+                default:
+                    return op;
+            }
+        }
+
+        /** Name-free shape of an operand: literal, var, length, size, var+1, length-1, expr. */
+        private static String shape(ExpressionTree e) {
+            e = unparen(e);
+            if (e instanceof LiteralTree) {
+                return "literal";
+            }
+            if (e instanceof IdentifierTree) {
+                return "var";
+            }
+            if (e instanceof MemberSelectTree
+                    && ((MemberSelectTree) e).getIdentifier().contentEquals("length")) {
+                return "length";
+            }
+            if (e instanceof MethodInvocationTree && ((MethodInvocationTree) e).getArguments().isEmpty()
+                    && ((MethodInvocationTree) e).getMethodSelect() instanceof MemberSelectTree) {
+                String method = ((MemberSelectTree) ((MethodInvocationTree) e).getMethodSelect())
+                        .getIdentifier().toString();
+                if (method.equals("length") || method.equals("size")) {
+                    return "size";
+                }
+            }
+            if (e instanceof BinaryTree) {
+                BinaryTree b = (BinaryTree) e;
+                String op = operator(b.getKind());
+                ExpressionTree right = unparen(b.getRightOperand());
+                if (("+".equals(op) || "-".equals(op)) && right instanceof LiteralTree) {
+                    return shape(b.getLeftOperand()) + op + ((LiteralTree) right).getValue();
+                }
+            }
+            return "expr";
+        }
+
+        /** "<=length", "<var", ... with the counter on the left; "other" if not a comparison. */
+        private void recordBound(ExpressionTree cond) {
+            if (cond == null) {
+                loopBounds.add("none");
+                return;
+            }
+            cond = unparen(cond);
+            if (cond instanceof BinaryTree) {
+                BinaryTree b = (BinaryTree) cond;
+                String op = operator(b.getKind());
+                if (op != null && RELATIONAL.contains(op)) {
+                    String left = shape(b.getLeftOperand());
+                    String right = shape(b.getRightOperand());
+                    String bound = right;
+                    if (!left.equals("var") && right.equals("var")) {
+                        op = flip(op);
+                        bound = left;
+                    }
+                    loopBounds.add(op + bound);
+                    if (op.equals("<=") && (bound.equals("length") || bound.equals("size"))) {
+                        loopLeLength++;
+                    }
+                    return;
+                }
+                if (b.getKind() == Tree.Kind.CONDITIONAL_AND || b.getKind() == Tree.Kind.CONDITIONAL_OR) {
+                    recordBound(b.getLeftOperand());
+                    recordBound(b.getRightOperand());
+                    return;
+                }
+            }
+            loopBounds.add("other");
+        }
+
+        /** Record e if it is a numeric literal, with or without a sign. */
+        private void recordConstant(ExpressionTree e) {
+            e = unparen(e);
+            double sign = 1;
+            if (e instanceof UnaryTree
+                    && (e.getKind() == Tree.Kind.UNARY_MINUS || e.getKind() == Tree.Kind.UNARY_PLUS)) {
+                sign = e.getKind() == Tree.Kind.UNARY_MINUS ? -1 : 1;
+                e = unparen(((UnaryTree) e).getExpression());
+            }
+            if (e instanceof LiteralTree && ((LiteralTree) e).getValue() instanceof Number) {
+                // + 0.0 turns -0.0 into 0.0
+                compareConstants.add(sign * ((Number) ((LiteralTree) e).getValue()).doubleValue() + 0.0);
+            }
+        }
+
+        private void enterLoop() {
+            loopDepth++;
+            maxLoopDepth = Math.max(maxLoopDepth, loopDepth);
+        }
+
+        private Void exitLoop() {
+            loopDepth--;
+            return null;
+        }
+
+        // -- declarations and statements -----------------------------------------
+
+        @Override
+        public Void visitMethod(MethodTree node, Void unused) {
+            // javac adds a default constructor with no source extent of its own
+            if (analysis.trees.getSourcePositions().getEndPosition(analysis.unit, node) >= 0) {
+                methods++;
+            }
+            return super.visitMethod(node, unused);
+        }
+
+        @Override
+        public Void visitVariable(VariableTree node, Void unused) {
+            if (loopDepth > 0) {
+                loopDeclarations++;
+            }
+            return super.visitVariable(node, unused);
+        }
+
+        @Override
+        public Void visitForLoop(ForLoopTree node, Void unused) {
+            forLoops++;
+            recordBound(node.getCondition());
+            if (node.getInitializer().size() == 1 && node.getInitializer().get(0) instanceof VariableTree) {
+                ExpressionTree init = ((VariableTree) node.getInitializer().get(0)).getInitializer();
+                if (init instanceof LiteralTree && Integer.valueOf(1).equals(((LiteralTree) init).getValue())) {
+                    loopStartsAtOne++;
+                }
+            }
+            // The initializer's declaration belongs to the loop header, not its body
+            scan(node.getInitializer(), unused);
+            enterLoop();
+            scan(node.getCondition(), unused);
+            scan(node.getUpdate(), unused);
+            scan(node.getStatement(), unused);
+            return exitLoop();
+        }
+
+        @Override
+        public Void visitEnhancedForLoop(EnhancedForLoopTree node, Void unused) {
+            foreachLoops++;
+            scan(node.getExpression(), unused);
+            enterLoop();
+            scan(node.getStatement(), unused);
+            return exitLoop();
+        }
+
+        @Override
+        public Void visitWhileLoop(WhileLoopTree node, Void unused) {
+            whileLoops++;
+            recordBound(node.getCondition());
+            enterLoop();
+            super.visitWhileLoop(node, unused);
+            return exitLoop();
+        }
+
+        @Override
+        public Void visitDoWhileLoop(DoWhileLoopTree node, Void unused) {
+            doLoops++;
+            recordBound(node.getCondition());
+            enterLoop();
+            super.visitDoWhileLoop(node, unused);
+            return exitLoop();
+        }
+
+        @Override
+        public Void visitIf(IfTree node, Void unused) {
+            ifStatements++;
+            // Count the chain once, from its head
+            if (!(getCurrentPath().getParentPath().getLeaf() instanceof IfTree
+                    && ((IfTree) getCurrentPath().getParentPath().getLeaf()).getElseStatement() == node)) {
+                int chain = 0;
+                for (StatementTree s = node.getElseStatement(); s instanceof IfTree;
+                        s = ((IfTree) s).getElseStatement()) {
+                    chain++;
+                }
+                maxElseIfChain = Math.max(maxElseIfChain, chain);
+            }
+            return super.visitIf(node, unused);
+        }
+
+        @Override
+        public Void visitSwitch(SwitchTree node, Void unused) {
+            switches++;
+            return super.visitSwitch(node, unused);
+        }
+
+        @Override
+        public Void visitCase(CaseTree node, Void unused) {
+            for (ExpressionTree label : node.getExpressions()) {
+                recordConstant(label);
+            }
+            return super.visitCase(node, unused);
+        }
+
+        @Override
+        public Void visitExpressionStatement(ExpressionStatementTree node, Void unused) {
+            ExpressionTree expr = node.getExpression();
+            if (expr instanceof MethodInvocationTree) {
+                TypeMirror type = typeOf(expr);
+                if (type != null && type.getKind() != TypeKind.VOID && type.getKind() != TypeKind.ERROR) {
+                    discardedCalls++;
+                    ExpressionTree select = ((MethodInvocationTree) expr).getMethodSelect();
+                    discardedMethods.add(select instanceof MemberSelectTree
+                            ? ((MemberSelectTree) select).getIdentifier().toString()
+                            : select.toString());
+                }
+            }
+            return super.visitExpressionStatement(node, unused);
+        }
+
+        // -- expressions -----------------------------------------------------
+
+        @Override
+        public Void visitArrayAccess(ArrayAccessTree node, Void unused) {
+            arrayAccesses++;
+            String shape = shape(node.getIndex());
+            indexShapes.add(shape);
+            if (shape.startsWith("var+") || shape.startsWith("var-")) {
+                indexOffset++;
+            }
+            if (shape.equals("length") || shape.equals("size")) {
+                indexLength++;
+            }
+            return super.visitArrayAccess(node, unused);
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+            ExpressionTree select = node.getMethodSelect();
+            if (select instanceof MemberSelectTree) {
+                ExpressionTree receiver = ((MemberSelectTree) select).getExpression();
+                String method = ((MemberSelectTree) select).getIdentifier().toString();
+                if (hasType(receiver, "java.lang.String")) {
+                    stringCalls++;
+                    stringMethods.add(method);
+                } else if (hasType(receiver, "java.util.Scanner") && method.startsWith("next")) {
+                    scannerReads++;
+                } else if (receiver instanceof IdentifierTree
+                        && ((IdentifierTree) receiver).getName().contentEquals("Math")) {
+                    mathCalls++;
+                }
+            }
+            return super.visitMethodInvocation(node, unused);
+        }
+
+        @Override
+        public Void visitBinary(BinaryTree node, Void unused) {
+            String op = operator(node.getKind());
+            if (op != null && RELATIONAL.contains(op)) {
+                recordConstant(node.getLeftOperand());
+                recordConstant(node.getRightOperand());
+            }
+            switch (node.getKind()) {
+                case DIVIDE:
+                    if (isIntegral(node.getLeftOperand()) && isIntegral(node.getRightOperand())) {
+                        intDivisions++;
+                    }
+                    break;
+                case XOR:
+                    xorOps++;
+                    break;
+                case EQUAL_TO:
+                case NOT_EQUAL_TO:
+                    if (hasType(node.getLeftOperand(), "java.lang.String")
+                            && hasType(node.getRightOperand(), "java.lang.String")) {
+                        stringRefCompares++;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return super.visitBinary(node, unused);
+        }
+
+        @Override
+        public Void visitTypeCast(TypeCastTree node, Void unused) {
+            casts++;
+            return super.visitTypeCast(node, unused);
+        }
+
+        @Override
+        public Void visitCompoundAssignment(CompoundAssignmentTree node, Void unused) {
+            compoundAssignments++;
+            return super.visitCompoundAssignment(node, unused);
+        }
+    }
+}
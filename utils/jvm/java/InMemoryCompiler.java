@@ -0,0 +1,195 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Trees;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * javac driven through javax.tools, with sources and class files kept in memory.
+ *
+ * The compiler and the standard file manager are created once per JVM and reused
+ * for every unit, so after the first few units each compile costs milliseconds
+ * instead of a javac process start. Each unit is compiled on its own so one
+ * broken submission cannot fail its neighbours.
+ */
+public class InMemoryCompiler {
+
+    /** Outcome of compiling one unit. */
+    public static final class Result {
+        public final boolean success;
+        public final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        public final Map<String, byte[]> classes;
+
+        Result(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                Map<String, byte[]> classes) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.classes = classes;
+        }
+    }
+
+    /** Syntax trees of one source, attributed as far as javac got. */
+    public static final class Analysis {
+        public final CompilationUnitTree unit;
+        public final Trees trees;
+        public final String source;
+        /** False when the source has errors; types of broken expressions are then ERROR. */
+        public final boolean clean;
+
+        Analysis(CompilationUnitTree unit, Trees trees, String source, boolean clean) {
+            this.unit = unit;
+            this.trees = trees;
+            this.source = source;
+            this.clean = clean;
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+                    Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension),
+                    Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        final Map<String, ClassFile> outputs = new LinkedHashMap<>();
+
+        MemoryFileManager(JavaFileManager delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                JavaFileObject.Kind kind, FileObject sibling) {
+            ClassFile file = new ClassFile(className);
+            outputs.put(className, file);
+            return file;
+        }
+    }
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager standardManager;
+
+    public InMemoryCompiler() {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler (running on a JRE?)");
+        }
+        standardManager = compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+    }
+
+    /** Compile one source whose public class is {@code className}. */
+    public Result compile(String className, String source, List<String> options) {
+        return compileAll(Map.of(className, source), options);
+    }
+
+    /** Compile several sources (keyed by public class name) as one unit. Thread-safe. */
+    public synchronized Result compileAll(Map<String, String> sources, List<String> options) {
+        List<JavaFileObject> units = new ArrayList<>();
+        for (Map.Entry<String, String> e : sources.entrySet()) {
+            units.add(new SourceFile(e.getKey(), e.getValue()));
+        }
+
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        MemoryFileManager fileManager = new MemoryFileManager(standardManager);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, options,
+                null, units);
+        boolean ok = Boolean.TRUE.equals(task.call());
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, ClassFile> e : fileManager.outputs.entrySet()) {
+            classes.put(e.getKey(), e.getValue().bytes.toByteArray());
+        }
+        return new Result(ok, new ArrayList<>(collector.getDiagnostics()), classes);
+    }
+
+    /**
+     * Parse and attribute one source without generating code. Returns null if it
+     * does not even parse. Thread-safe; the returned trees stay usable afterwards.
+     */
+    public synchronized Analysis analyze(String className, String source) throws IOException {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        JavacTask task = (JavacTask) compiler.getTask(null, standardManager, collector,
+                List.of("-proc:none", "-Xlint:none"), null,
+                List.of(new SourceFile(className, source)));
+        CompilationUnitTree unit = null;
+        for (CompilationUnitTree parsed : task.parse()) {
+            unit = parsed;
+        }
+        if (unit == null) {
+            return null;
+        }
+        try {
+            task.analyze();
+        } catch (IllegalStateException | AssertionError e) {
+            // javac gives up on some broken sources; keep the unattributed trees
+        }
+        boolean clean = collector.getDiagnostics().stream()
+                .noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR);
+        return new Analysis(unit, Trees.instance(task), source, clean);
+    }
+
+    /** Write compiled classes under {@code outDir} using the usual package layout. */
+    public static void writeClasses(Map<String, byte[]> classes, String outDir) throws IOException {
+        Path root = Paths.get(outDir);
+        for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+            Path target = root.resolve(e.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(target.getParent());
+            Files.write(target, e.getValue());
+        }
+    }
+
+    /** Render a diagnostic the way command-line javac prints its first line. */
+    public static String format(String fileName, Diagnostic<? extends JavaFileObject> d) {
+        String kind = d.getKind().toString().toLowerCase(Locale.ROOT).replace("mandatory_", "");
+        if (d.getLineNumber() == Diagnostic.NOPOS) {
+            return kind + ": " + d.getMessage(Locale.ROOT);
+        }
+        return fileName + ":" + d.getLineNumber() + ": " + kind + ": " + d.getMessage(Locale.ROOT);
+    }
+}
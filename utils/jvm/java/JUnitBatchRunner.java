@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+/**
+ * Runs the Q*Test JUnit suites against many student submissions in one JVM.
+ *
+ * Replaces one run_tests.sh invocation (rm -rf, copy, javac, JUnit console JVM)
+ * per file: each submission is compiled in memory together with its QnTest, loaded
+ * in its own MemoryClassLoader, and executed through the JUnit Platform Launcher.
+ *
+ * Usage:
+ *   java -cp helpers:junit-standalone.jar JUnitBatchRunner \
+ *       --tests data/a2/tests/src --manifest subs.tsv --report report.json \
+ *       [--threads N] [--method-threads M] [--timeout "10 s"]
+ *
+ * The manifest has one "student TAB question TAB path/to/Qn.java" line per
+ * submission. The report is JSON with one entry per manifest line.
+ *
+ * Each test entry carries the wall time, CPU time and allocation measured by
+ * ResourceProfiler (null for tests it did not see).
+ *
+ * The tests capture stdin/stdout through StdioRouter, which binds them per
+ * thread, so N submissions are graded concurrently and, with M > 1, the test
+ * methods and parameterized cases of each submission run on M threads too.
+ *
+ * A submission that calls System.exit() (redirected by MemoryClassLoader) or
+ * leaves a thread running that cannot be stopped gets status "error", with the
+ * cause in its errors; the other submissions are unaffected.
+ */
+public class JUnitBatchRunner {
+
+    private static final class Submission {
+        final String student;
+        final String question;
+        final Path file;
+
+        Submission(String student, String question, Path file) {
+            this.student = student;
+            this.question = question;
+            this.file = file;
+        }
+    }
+
+    private static final class TestOutcome {
+        final String name;
+        final String method;
+        final String status;
+        final String message;
+        /** ResourceProfiler's wall_ms, cpu_ms and alloc_bytes; empty if it did not run. */
+        final Map<String, String> profile;
+
+        TestOutcome(String name, String method, String status, String message,
+                Map<String, String> profile) {
+            this.name = name;
+            this.method = method;
+            this.status = status;
+            this.message = message;
+            this.profile = profile;
+        }
+    }
+
+    /**
+     * Collects per-test outcomes for one submission's launcher run. Callbacks come
+     * from several threads when test methods run in parallel.
+     */
+    private static final class Recorder implements TestExecutionListener {
+        final List<TestOutcome> outcomes = new ArrayList<>();
+        final List<String> containerErrors = new ArrayList<>();
+        /** The first System.exit() a test ran into, as a submission error; null if none. */
+        String exit;
+        private final Map<String, Map<String, String>> profiles = new HashMap<>();
+        private TestPlan plan;
+
+        @Override
+        public void testPlanExecutionStarted(TestPlan testPlan) {
+            plan = testPlan;
+        }
+
+        @Override
+        public synchronized void executionSkipped(TestIdentifier id, String reason) {
+            if (id.isTest()) {
+                outcomes.add(new TestOutcome(displayName(id), id.getLegacyReportingName(),
+                        "SKIPPED", reason, Map.of()));
+            }
+        }
+
+        @Override
+        public synchronized void reportingEntryPublished(TestIdentifier id, ReportEntry entry) {
+            if (entry.getKeyValuePairs().containsKey("cpu_ms")) {
+                profiles.put(id.getUniqueId(), entry.getKeyValuePairs());
+            }
+        }
+
+        @Override
+        public synchronized void executionFinished(TestIdentifier id, TestExecutionResult result) {
+            String message = result.getThrowable().map(JUnitBatchRunner::describe).orElse(null);
+            SystemExit.Trap trap = result.getThrowable().map(SystemExit::find).orElse(null);
+            if (trap != null && exit == null) {
+                exit = trap.getMessage() + " called in " + displayName(id);
+            }
+            if (id.isTest()) {
+                outcomes.add(new TestOutcome(displayName(id), id.getLegacyReportingName(),
+                        result.getStatus().name(), message,
+                        profiles.getOrDefault(id.getUniqueId(), Map.of())));
+            } else if (result.getStatus() != TestExecutionResult.Status.SUCCESSFUL) {
+                containerErrors.add(id.getDisplayName() + ": " + message);
+            }
+        }
+
+        private String displayName(TestIdentifier id) {
+            // Parameterized invocations are named "[1] 100, A"; prefix the template name
+            return plan.getParent(id)
+                    .filter(parent -> parent.getSource().filter(MethodSource.class::isInstance).isPresent())
+                    .map(parent -> parent.getDisplayName() + " " + id.getDisplayName())
+                    .orElse(id.getDisplayName());
+        }
+    }
+
+    /** How long leftover threads get to end after an interrupt, and after Thread.stop(). */
+    private static final long STOP_GRACE_MILLIS = 200;
+
+    private static final List<String> PROFILE_KEYS = List.of("wall_ms", "cpu_ms", "alloc_bytes");
+
+    private static final InMemoryCompiler COMPILER = new InMemoryCompiler();
+    private static final ThreadLocal<Launcher> LAUNCHER = ThreadLocal.withInitial(LauncherFactory::create);
+    private static final Map<String, String> TEST_SOURCES = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        Path testsDir = Paths.get(require(opts, "--tests"));
+        Path manifest = Paths.get(require(opts, "--manifest"));
+        Path report = Paths.get(require(opts, "--report"));
+        int threads = Integer.parseInt(opts.getOrDefault("--threads", "1"));
+        int methodThreads = Integer.parseInt(opts.getOrDefault("--method-threads", "1"));
+        String timeout = opts.getOrDefault("--timeout", "10 s");
+
+        StdioRouter.install();
+
+        List<Submission> submissions = readManifest(manifest);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<String>> futures = new ArrayList<>();
+        for (Submission sub : submissions) {
+            futures.add(executor.submit(() -> runSubmission(sub, testsDir, timeout, methodThreads)));
+        }
+
+        StringBuilder json = new StringBuilder("{\"submissions\": [\n");
+        for (int i = 0; i < futures.size(); i++) {
+            json.append(i == 0 ? "" : ",\n").append(futures.get(i).get());
+        }
+        json.append("\n]}\n");
+        executor.shutdownNow();
+
+        Files.writeString(report, json.toString(), StandardCharsets.UTF_8);
+        // Student code may leave non-daemon threads spinning after a timeout
+        System.exit(0);
+    }
+
+    private static String runSubmission(Submission sub, Path testsDir, String timeout,
+            int methodThreads) {
+        long start = System.nanoTime();
+        String testClass = sub.question + "Test";
+
+        Map<String, String> sources = new LinkedHashMap<>();
+        InMemoryCompiler.Result compiled;
+        try {
+            sources.put(sub.question, Files.readString(sub.file, StandardCharsets.UTF_8));
+            sources.put(testClass, TEST_SOURCES.computeIfAbsent(testClass, name -> {
+                try {
+                    return Files.readString(testsDir.resolve(name + ".java"), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Missing test source " + name + ".java", e);
+                }
+            }));
+            compiled = COMPILER.compileAll(sources, List.of("-proc:none"));
+        } catch (IOException | IllegalStateException e) {
+            return entry(sub, "error", start, List.of(), List.of(describe(e)));
+        }
+
+        if (!compiled.success) {
+            List<String> errors = new ArrayList<>();
+            for (Diagnostic<? extends JavaFileObject> d : compiled.diagnostics) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    String file = d.getSource() == null ? "" : d.getSource().getName().replace("/", "");
+                    errors.add(InMemoryCompiler.format(file, d));
+                }
+            }
+            return entry(sub, "compile_error", start, List.of(), errors);
+        }
+
+        ClassLoader loader = new MemoryClassLoader(compiled.classes,
+                JUnitBatchRunner.class.getClassLoader());
+        Recorder recorder = new Recorder();
+        List<String> leaked = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        ClassLoader savedContext = thread.getContextClassLoader();
+        // The streams are StdioRouter's; restore them in case student code swapped them
+        InputStream savedIn = System.in;
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        try {
+            thread.setContextClassLoader(loader);
+            LauncherDiscoveryRequestBuilder request = LauncherDiscoveryRequestBuilder.request()
+                    .selectors(DiscoverySelectors.selectClass(Class.forName(testClass, false, loader)))
+                    .configurationParameter("junit.jupiter.execution.timeout.default", timeout)
+                    .configurationParameter("junit.jupiter.execution.timeout.thread.mode.default",
+                            "SEPARATE_THREAD");
+            if (methodThreads > 1) {
+                request.configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                        .configurationParameter("junit.jupiter.execution.parallel.mode.default",
+                                "concurrent")
+                        .configurationParameter("junit.jupiter.execution.parallel.config.strategy",
+                                "fixed")
+                        .configurationParameter(
+                                "junit.jupiter.execution.parallel.config.fixed.parallelism",
+                                String.valueOf(methodThreads));
+            }
+            LAUNCHER.get().execute(request.build(), recorder);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return entry(sub, "error", start, List.of(), List.of(describe(e)));
+        } finally {
+            leaked.addAll(stopLeftoverThreads(loader));
+            thread.setContextClassLoader(savedContext);
+            System.setIn(savedIn);
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+        }
+
+        List<String> errors = new ArrayList<>(recorder.containerErrors);
+        if (recorder.exit != null) {
+            errors.add(recorder.exit);
+        }
+        if (!leaked.isEmpty()) {
+            errors.add(leaked.size() + " thread(s) still running after the tests: "
+                    + String.join(", ", leaked.stream().distinct().toList()));
+        }
+        if (recorder.exit != null || !leaked.isEmpty()) {
+            return entry(sub, "error", start, recorder.outcomes, errors);
+        }
+        boolean allPassed = errors.isEmpty() && !recorder.outcomes.isEmpty()
+                && recorder.outcomes.stream().allMatch(o -> o.status.equals("SUCCESSFUL"));
+        return entry(sub, allPassed ? "passed" : "failed", start, recorder.outcomes, errors);
+    }
+
+    /**
+     * Stops threads the submission left running (a timed-out test's main, or
+     * threads the student started). They inherited the submission's class loader
+     * as their context loader, which no other thread has.
+     *
+     * Each gets an interrupt and a short grace period first. Those still running
+     * are stopped where Thread.stop() works (before JDK 20); the names of any
+     * left after that are returned, so the submission can be failed for them.
+     * They keep running until the batch JVM exits.
+     */
+    @SuppressWarnings({ "deprecation", "removal" }) // no other way to end a thread that ignores interrupts
+    static List<String> stopLeftoverThreads(ClassLoader loader) {
+        Thread self = Thread.currentThread();
+        List<Thread> leftover = new ArrayList<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t != self && t.getContextClassLoader() == loader) {
+                t.interrupt();
+                leftover.add(t);
+            }
+        }
+        awaitAll(leftover);
+        if (Runtime.version().feature() < 20) {
+            for (Thread t : leftover) {
+                if (t.isAlive()) {
+                    t.stop();
+                }
+            }
+            awaitAll(leftover);
+        }
+        List<String> running = new ArrayList<>();
+        for (Thread t : leftover) {
+            if (t.isAlive()) {
+                running.add(t.getName());
+            }
+        }
+        return running;
+    }
+
+    /** Waits up to STOP_GRACE_MILLIS in total for the threads to end. */
+    private static void awaitAll(List<Thread> threads) {
+        long deadline = System.nanoTime() + STOP_GRACE_MILLIS * 1_000_000;
+        try {
+            for (Thread t : threads) {
+                long left = (deadline - System.nanoTime()) / 1_000_000;
+                if (left <= 0) {
+                    return;
+                }
+                t.join(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String entry(Submission sub, String status, long startNanos,
+            List<TestOutcome> outcomes, List<String> errors) {
+        long passed = outcomes.stream().filter(o -> o.status.equals("SUCCESSFUL")).count();
+        StringBuilder sb = new StringBuilder();
+        sb.append("  {\"student\": ").append(Json.quote(sub.student))
+                .append(", \"question\": ").append(Json.quote(sub.question))
+                .append(", \"status\": ").append(Json.quote(status))
+                .append(", \"tests_run\": ").append(outcomes.size())
+                .append(", \"tests_passed\": ").append(passed)
+                .append(", \"duration_ms\": ").append((System.nanoTime() - startNanos) / 1_000_000)
+                .append(",\n   \"errors\": [");
+        for (int i = 0; i < errors.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(Json.quote(errors.get(i)));
+        }
+        sb.append("],\n   \"tests\": [");
+        for (int i = 0; i < outcomes.size(); i++) {
+            TestOutcome o = outcomes.get(i);
+            sb.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(Json.quote(o.name))
+                    .append(", \"method\": ").append(Json.quote(o.method))
+                    .append(", \"status\": ").append(Json.quote(o.status))
+                    .append(", \"message\": ").append(Json.quote(o.message));
+            for (String key : PROFILE_KEYS) {
+                sb.append(", \"").append(key).append("\": ").append(o.profile.getOrDefault(key, "null"));
+            }
+            sb.append("}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    static String describe(Throwable t) {
+        String message = t.getMessage();
+        return t.getClass().getSimpleName() + (message == null ? "" : ": " + message);
+    }
+
+    private static List<Submission> readManifest(Path manifest) throws IOException {
+        List<Submission> subs = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 3);
+            subs.add(new Submission(parts[0], parts[1].toUpperCase(Locale.ROOT), Paths.get(parts[2])));
+        }
+        return subs;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            opts.put(args[i], args[i + 1]);
+        }
+        return opts;
+    }
+
+    private static String require(Map<String, String> opts, String key) {
+        String value = opts.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required option " + key);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Class loader over class files held in memory (see InMemoryCompiler).
+ *
+ * One instance per submission keeps each student's classes, and their static
+ * state, isolated from every other submission loaded in the same JVM.
+ * System.exit() calls in the classes are redirected (see ExitRedirect) to
+ * SystemExit, so a student's exit throws SystemExit.Trap instead of ending the
+ * batch.
+ */
+public class MemoryClassLoader extends ClassLoader {
+
+    private final Map<String, byte[]> classes;
+
+    public MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+        super(parent);
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        try {
+            bytes = ExitRedirect.apply(bytes, SystemExit.class.getName());
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+/**
+ * JUnit 5 extension that measures each test invocation of a Q*Test suite.
+ *
+ * Wall time, thread CPU time and bytes allocated are read from the JVM's
+ * ThreadMXBean around the test method and published as a report entry
+ * (wall_ms, cpu_ms, alloc_bytes). JUnitBatchRunner attaches them to the test's
+ * outcome; the JUnit console prints them under the test.
+ *
+ * It intercepts the method invocation itself, inside JUnit's timeout handling,
+ * so the thread measured is the one running the student's main. CPU and
+ * allocation of threads the test starts (a2 Q2 runs main on its own thread) are
+ * not included; wall time covers them. A value of -1 means the JVM does not
+ * support that measurement.
+ *
+ * When the system property resourceProfiler.report names a file (run_tests.sh
+ * sets it), every measurement is also kept and written there as JSON when the
+ * JVM exits.
+ */
+public class ResourceProfiler implements InvocationInterceptor {
+
+    /** System property naming the per-run report file; unset, nothing is kept. */
+    static final String REPORT_PROPERTY = "resourceProfiler.report";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final String REPORT = System.getProperty(REPORT_PROPERTY);
+    /** One JSON object per measured invocation, when REPORT is set. */
+    private static final Queue<String> RECORDS = new ConcurrentLinkedQueue<>();
+
+    static {
+        if (THREADS.isCurrentThreadCpuTimeSupported() && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        if (REPORT != null) {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(() -> writeReport(Path.of(REPORT)), "resource-report"));
+        }
+    }
+
+    @Override
+    public void interceptTestMethod(Invocation<Void> invocation,
+            ReflectiveInvocationContext<Method> invocationContext, ExtensionContext context)
+            throws Throwable {
+        measure(invocation, context);
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(Invocation<Void> invocation,
+            ReflectiveInvocationContext<Method> invocationContext, ExtensionContext context)
+            throws Throwable {
+        measure(invocation, context);
+    }
+
+    private static void measure(Invocation<Void> invocation, ExtensionContext context)
+            throws Throwable {
+        long cpuStart = cpuNanos();
+        long allocStart = allocatedBytes();
+        long wallStart = System.nanoTime();
+        try {
+            invocation.proceed();
+        } finally {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuStart < 0 ? -1 : cpuNanos() - cpuStart;
+            long alloc = allocStart < 0 ? -1 : allocatedBytes() - allocStart;
+
+            Map<String, String> entry = new LinkedHashMap<>();
+            entry.put("wall_ms", millis(wall));
+            entry.put("cpu_ms", cpu < 0 ? "-1" : millis(cpu));
+            entry.put("alloc_bytes", String.valueOf(alloc));
+            context.publishReportEntry(entry);
+            if (REPORT != null) {
+                record(context, entry);
+            }
+        }
+    }
+
+    private static void record(ExtensionContext context, Map<String, String> entry) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"class\": ").append(Json.quote(context.getRequiredTestClass().getName()))
+                .append(", \"method\": ").append(Json.quote(context.getRequiredTestMethod().getName()))
+                .append(", \"name\": ").append(Json.quote(context.getDisplayName()));
+        entry.forEach((key, value) -> sb.append(", \"").append(key).append("\": ").append(value));
+        RECORDS.add(sb.append("}").toString());
+    }
+
+    private static void writeReport(Path path) {
+        List<String> records = new ArrayList<>(RECORDS);
+        String json = "{\"tests\": [" + (records.isEmpty() ? "" : "\n  ")
+                + String.join(",\n  ", records) + "]}\n";
+        try {
+            Files.writeString(path, json, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("ResourceProfiler: cannot write " + path + ": " + e);
+        }
+    }
+
+    private static long cpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    @SuppressWarnings("deprecation") // Thread.getId; threadId() needs Java 19
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) THREADS;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
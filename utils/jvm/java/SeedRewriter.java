@@ -0,0 +1,1359 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.DoWhileLoopTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.IfTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.PrimitiveTypeTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.tree.WhileLoopTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+
+/**
+ * Rule-based seeding: rewrite correct code so it shows one groundtruth misconception.
+ *
+ * Each transform in TRANSFORMS finds the construct its misconception is about in an
+ * attributed file (InMemoryCompiler.analyze) and edits the source text at that
+ * construct's positions, so everything else (names, comments, layout) stays as the
+ * student wrote it. A transform may offer several variants; it offers none when the
+ * code has no such construct (the caller then falls back to the LLM). Candidates are
+ * not compiled or tested here.
+ *
+ *   NM_STATE_01 formula evaluated with zeroed inputs before the reads
+ *   NM_IO_01   input variables read in a different order than prompted
+ *   NM_IO_02   Scanner reads as statements, variables left at 0
+ *   NM_TYP_01  division inputs read as int (or computed operands truncated to int),
+ *              quotient stored in a double
+ *   NM_TYP_02  as NM_TYP_01 with the quotient cast to double afterwards
+ *   NM_SYN_01  Math.pow(x, 2) written as x ^ 2 on int inputs
+ *   NM_SYN_02  parentheses dropped from (a - b) / c
+ *   NM_API_01  Math.sqrt called as a statement, its argument printed
+ *   NM_FLOW_01 accumulator reset at the top of the loop that adds to it
+ *   NM_FLOW_02 first loop one iteration short (<= to <, or 0 to 1)
+ *   NM_FLOW_03 loop input read once before the loop instead of in it
+ *   NM_FLOW_04 inner loop increments (or resets) the outer counter
+ *   NM_LOGIC_01 else-if chain split into separate ifs
+ *   NM_LOGIC_02 last branch of an else-if chain turned into a dangling else
+ *   NM_MEM_01  parallel-array sort replaced by Arrays.sort on the scores
+ *   NM_MEM_02  a[i] == x compared as i == x
+ *   NM_MEM_03  String copies called as statements, the original printed
+ *   NM_MEM_04  loop from 1 to <= n (Q1) or inclusive bound on an indexing loop
+ *   NM_MEM_05  backward shift loop rewritten to copy forward
+ *   NM_OOP_01  this.field = field written as field = field in constructors
+ *   NM_OOP_03  a.equals(b) written as a == b for objects
+ *   NM_OOP_04  roster[i] = new T(...) removed
+ *
+ * Usage:
+ *   java -cp helpers SeedRewriter --manifest jobs.tsv --report candidates.json
+ *   java -cp helpers SeedRewriter --list
+ *
+ * The manifest has one "key TAB NM_ID TAB question TAB path/to/File.java" line per
+ * job. The report is {"files": [{"key", "parsed", "candidates": [{"variant",
+ * "source"}]}]}; --list prints the ids that have a transform.
+ */
+public class SeedRewriter {
+
+    interface Transform {
+        void apply(SeedRewriter r, String question);
+    }
+
+    private static final Map<String, Transform> TRANSFORMS = new LinkedHashMap<>();
+
+    static {
+        TRANSFORMS.put("NM_STATE_01", (r, q) -> r.staleFormula());
+        TRANSFORMS.put("NM_IO_01", (r, q) -> r.readOrder(q.equals("Q1")));
+        TRANSFORMS.put("NM_IO_02", (r, q) -> r.ghostReads());
+        TRANSFORMS.put("NM_TYP_01", (r, q) -> r.integerDivision(false));
+        TRANSFORMS.put("NM_TYP_02", (r, q) -> r.integerDivision(true));
+        TRANSFORMS.put("NM_SYN_01", (r, q) -> r.caretPower());
+        TRANSFORMS.put("NM_SYN_02", (r, q) -> r.droppedParentheses());
+        TRANSFORMS.put("NM_API_01", (r, q) -> r.discardedSqrt());
+        TRANSFORMS.put("NM_FLOW_01", (r, q) -> r.accumulatorReset());
+        TRANSFORMS.put("NM_FLOW_02", (r, q) -> r.shortLoop());
+        TRANSFORMS.put("NM_FLOW_03", (r, q) -> r.readOnce());
+        TRANSFORMS.put("NM_FLOW_04", (r, q) -> r.outerIncrement());
+        TRANSFORMS.put("NM_LOGIC_01", (r, q) -> r.separateIfs());
+        TRANSFORMS.put("NM_LOGIC_02", (r, q) -> r.danglingElse());
+        TRANSFORMS.put("NM_MEM_01", (r, q) -> r.sortOneArray());
+        TRANSFORMS.put("NM_MEM_02", (r, q) -> r.indexForValue());
+        TRANSFORMS.put("NM_MEM_03", (r, q) -> r.discardedStrings());
+        TRANSFORMS.put("NM_MEM_04", (r, q) -> {
+            if (q.equals("Q1")) {
+                r.oneBasedLoop();
+            } else {
+                r.inclusiveBound();
+            }
+        });
+        TRANSFORMS.put("NM_MEM_05", (r, q) -> r.forwardCopy());
+        TRANSFORMS.put("NM_OOP_01", (r, q) -> r.shadowedFields());
+        TRANSFORMS.put("NM_OOP_03", (r, q) -> r.referenceEquality());
+        TRANSFORMS.put("NM_OOP_04", (r, q) -> r.unfilledSlots());
+    }
+
+    private static final Set<String> STRING_COPIES = Set.of("toUpperCase", "toLowerCase", "trim",
+            "strip", "replace", "replaceAll", "replaceFirst", "concat", "substring");
+
+    public static void main(String[] args) throws IOException {
+        String manifest = null;
+        String report = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--manifest":
+                    manifest = args[++i];
+                    break;
+                case "--report":
+                    report = args[++i];
+                    break;
+                case "--list":
+                    TRANSFORMS.keySet().forEach(System.out::println);
+                    return;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (manifest == null || report == null) {
+            System.err.println("usage: SeedRewriter --manifest jobs.tsv --report candidates.json");
+            System.exit(2);
+        }
+
+        InMemoryCompiler compiler = new InMemoryCompiler();
+        StringBuilder sb = new StringBuilder("{\"files\": [\n");
+        boolean first = true;
+        // Jobs for one file are consecutive; analyze it once for all of them
+        Path analyzed = null;
+        InMemoryCompiler.Analysis analysis = null;
+        for (String line : Files.readAllLines(Paths.get(manifest), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 4);
+            Path file = Paths.get(parts[3]);
+            if (!file.equals(analyzed)) {
+                String source = Files.readString(file, StandardCharsets.UTF_8);
+                String className = file.getFileName().toString().replaceFirst("\\.java$", "");
+                analysis = compiler.analyze(className, source);
+                analyzed = file;
+            }
+
+            sb.append(first ? "" : ",\n").append("  {\"key\": ").append(Json.quote(parts[0]));
+            first = false;
+            if (analysis == null) {
+                sb.append(", \"parsed\": false, \"candidates\": []}");
+                continue;
+            }
+            sb.append(", \"parsed\": true, \"candidates\": [");
+            List<String[]> candidates = rewrite(analysis, parts[1], parts[2]);
+            for (int i = 0; i < candidates.size(); i++) {
+                sb.append(i == 0 ? "" : ", ").append("{\"variant\": ").append(Json.quote(candidates.get(i)[0]))
+                        .append(", \"source\": ").append(Json.quote(candidates.get(i)[1])).append('}');
+            }
+            sb.append("]}");
+        }
+        sb.append("\n]}\n");
+        Files.writeString(Paths.get(report), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    /** (variant, source) candidates for one misconception; empty if no transform applies. */
+    static List<String[]> rewrite(InMemoryCompiler.Analysis analysis, String misconception, String question) {
+        Transform transform = TRANSFORMS.get(misconception);
+        if (transform == null) {
+            return List.of();
+        }
+        SeedRewriter rewriter = new SeedRewriter(analysis);
+        try {
+            transform.apply(rewriter, question);
+        } catch (RuntimeException e) {
+            // A construct the transform did not expect; offer what was found before it
+        }
+        return rewriter.candidates;
+    }
+
+    // ========================================================================
+    // Source edits
+    // ========================================================================
+
+    /** Non-overlapping text replacements, applied back to front. */
+    private final class Edits {
+        private final List<long[]> ranges = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+
+        Edits replace(long start, long end, String text) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] r = ranges.get(i);
+                if (r[0] == start && r[1] == end && texts.get(i).equals(text)) {
+                    return this;
+                }
+            }
+            ranges.add(new long[] {start, end});
+            texts.add(text);
+            return this;
+        }
+
+        Edits replace(Tree tree, String text) {
+            return replace(start(tree), end(tree), text);
+        }
+
+        Edits replace(long[] range, String text) {
+            return replace(range[0], range[1], text);
+        }
+
+        Edits insert(long pos, String text) {
+            return replace(pos, pos, text);
+        }
+
+        boolean isEmpty() {
+            return ranges.isEmpty();
+        }
+
+        /** The edited source, or null if two edits overlap. */
+        String apply() {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                order.add(i);
+            }
+            // Back to front; at one position the replacement goes before an insertion
+            order.sort(Comparator.<Integer>comparingLong(i -> ranges.get(i)[0])
+                    .thenComparingLong(i -> ranges.get(i)[1]).reversed());
+            StringBuilder out = new StringBuilder(source);
+            long limit = source.length();
+            for (int i : order) {
+                long[] r = ranges.get(i);
+                if (r[0] < 0 || r[1] > limit) {
+                    return null;
+                }
+                out.replace((int) r[0], (int) r[1], texts.get(i));
+                limit = r[0];
+            }
+            return out.toString();
+        }
+    }
+
+    // ========================================================================
+    // File model
+    // ========================================================================
+
+    private final InMemoryCompiler.Analysis analysis;
+    private final String source;
+    private final List<TreePath> nodes = new ArrayList<>();
+    private final Map<Tree, TreePath> paths = new IdentityHashMap<>();
+    private Map<String, VariableTree> locals;
+    final List<String[]> candidates = new ArrayList<>();
+
+    private SeedRewriter(InMemoryCompiler.Analysis analysis) {
+        this.analysis = analysis;
+        this.source = analysis.source;
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void unused) {
+                if (tree != null) {
+                    TreePath path = new TreePath(getCurrentPath(), tree);
+                    nodes.add(path);
+                    paths.put(tree, path);
+                }
+                return super.scan(tree, unused);
+            }
+        }.scan(analysis.unit, null);
+    }
+
+    private void offer(String variant, Edits edits) {
+        if (edits == null || edits.isEmpty()) {
+            return;
+        }
+        String rewritten = edits.apply();
+        if (rewritten != null && !rewritten.equals(source)) {
+            for (String[] c : candidates) {
+                if (c[1].equals(rewritten)) {
+                    return;
+                }
+            }
+            candidates.add(new String[] {variant, rewritten});
+        }
+    }
+
+    private <T extends Tree> List<T> all(Class<T> type) {
+        List<T> found = new ArrayList<>();
+        for (TreePath path : nodes) {
+            if (type.isInstance(path.getLeaf()) && start(path.getLeaf()) >= 0) {
+                found.add(type.cast(path.getLeaf()));
+            }
+        }
+        return found;
+    }
+
+    private TreePath pathOf(Tree tree) {
+        return paths.get(tree);
+    }
+
+    private Tree parentOf(Tree tree) {
+        TreePath path = pathOf(tree);
+        return path == null || path.getParentPath() == null ? null : path.getParentPath().getLeaf();
+    }
+
+    private long start(Tree tree) {
+        return analysis.trees.getSourcePositions().getStartPosition(analysis.unit, tree);
+    }
+
+    private long end(Tree tree) {
+        return analysis.trees.getSourcePositions().getEndPosition(analysis.unit, tree);
+    }
+
+    private String text(Tree tree) {
+        return source.substring((int) start(tree), (int) end(tree));
+    }
+
+    private long lineStart(long pos) {
+        return source.lastIndexOf('\n', (int) pos - 1) + 1;
+    }
+
+    /** Leading whitespace of the line tree starts on. */
+    private String indent(Tree tree) {
+        long from = lineStart(start(tree));
+        int to = (int) from;
+        while (to < source.length() && (source.charAt(to) == ' ' || source.charAt(to) == '\t')) {
+            to++;
+        }
+        return source.substring((int) from, to);
+    }
+
+    private String unit() {
+        return source.contains("\n\t") ? "\t" : "    ";
+    }
+
+    /** Delete a statement together with its line when nothing else is on it. */
+    private Edits deleteStatement(Edits edits, Tree stmt) {
+        long s = start(stmt);
+        long e = end(stmt);
+        long ls = lineStart(s);
+        int le = source.indexOf('\n', (int) e);
+        boolean aloneBefore = source.substring((int) ls, (int) s).isBlank();
+        boolean aloneAfter = le >= 0 && source.substring((int) e, le).isBlank();
+        if (aloneBefore && aloneAfter) {
+            return edits.replace(ls, le + 1, "");
+        }
+        return edits.replace(s, e, "");
+    }
+
+    private TypeMirror typeOf(Tree tree) {
+        TreePath path = pathOf(tree);
+        return path == null ? null : analysis.trees.getTypeMirror(path);
+    }
+
+    private boolean hasType(Tree tree, String qualifiedName) {
+        TypeMirror type = typeOf(tree);
+        return type != null && type.getKind() == TypeKind.DECLARED && type.toString().equals(qualifiedName);
+    }
+
+    private boolean isFloating(Tree tree) {
+        TypeMirror type = typeOf(tree);
+        return type != null && (type.getKind() == TypeKind.DOUBLE || type.getKind() == TypeKind.FLOAT);
+    }
+
+    private static ExpressionTree unparen(ExpressionTree e) {
+        while (e instanceof ParenthesizedTree) {
+            e = ((ParenthesizedTree) e).getExpression();
+        }
+        return e;
+    }
+
+    private static String name(ExpressionTree e) {
+        e = unparen(e);
+        return e instanceof IdentifierTree ? ((IdentifierTree) e).getName().toString() : null;
+    }
+
+    private boolean isScannerRead(ExpressionTree e) {
+        e = unparen(e);
+        if (!(e instanceof MethodInvocationTree)) {
+            return false;
+        }
+        ExpressionTree select = ((MethodInvocationTree) e).getMethodSelect();
+        return select instanceof MemberSelectTree
+                && ((MemberSelectTree) select).getIdentifier().toString().startsWith("next")
+                && hasType(((MemberSelectTree) select).getExpression(), "java.util.Scanner");
+    }
+
+    /** The statement's read target: "T v = scanner.nextX();" or "v = scanner.nextX();". */
+    private String readTarget(Tree stmt) {
+        ExpressionTree read = readExpression(stmt);
+        if (read == null) {
+            return null;
+        }
+        if (stmt instanceof VariableTree) {
+            return ((VariableTree) stmt).getName().toString();
+        }
+        return name(((AssignmentTree) ((ExpressionStatementTree) stmt).getExpression()).getVariable());
+    }
+
+    /** One of "double a = ..., b = ...;": the declarators share a type and a statement. */
+    private boolean isMultiDeclarator(VariableTree decl) {
+        for (VariableTree other : all(VariableTree.class)) {
+            if (other != decl && other.getType() == decl.getType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ExpressionTree readExpression(Tree stmt) {
+        if (stmt instanceof VariableTree) {
+            if (isMultiDeclarator((VariableTree) stmt)) {
+                return null;
+            }
+            ExpressionTree init = ((VariableTree) stmt).getInitializer();
+            return init != null && isScannerRead(init) ? init : null;
+        }
+        if (stmt instanceof ExpressionStatementTree
+                && ((ExpressionStatementTree) stmt).getExpression() instanceof AssignmentTree) {
+            AssignmentTree a = (AssignmentTree) ((ExpressionStatementTree) stmt).getExpression();
+            return name(a.getVariable()) != null && isScannerRead(a.getExpression()) ? a.getExpression() : null;
+        }
+        return null;
+    }
+
+    /** Local variable declarations by name (the first one of each name). */
+    private Map<String, VariableTree> locals() {
+        if (locals != null) {
+            return locals;
+        }
+        locals = new HashMap<>();
+        for (TreePath path : nodes) {
+            if (path.getLeaf() instanceof VariableTree && !(path.getParentPath().getLeaf() instanceof MethodTree)
+                    && !(path.getParentPath().getLeaf() instanceof com.sun.source.tree.ClassTree)) {
+                VariableTree v = (VariableTree) path.getLeaf();
+                locals.putIfAbsent(v.getName().toString(), v);
+            }
+        }
+        return locals;
+    }
+
+    private Set<String> identifiersIn(Tree tree) {
+        Set<String> names = new HashSet<>();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void unused) {
+                names.add(node.getName().toString());
+                return null;
+            }
+        }.scan(pathOf(tree), null);
+        return names;
+    }
+
+    private List<StatementTree> blockOf(Tree stmt) {
+        Tree parent = parentOf(stmt);
+        return parent instanceof BlockTree ? new ArrayList<>(((BlockTree) parent).getStatements()) : null;
+    }
+
+    // ========================================================================
+    // a1: input, types and arithmetic
+    // ========================================================================
+
+    /**
+     * Turn the double locals behind names (and the locals their values are computed
+     * from) into ints, switching their Scanner reads to nextInt(). False if one of
+     * them gets a value that cannot be an int, such as a Math call.
+     */
+    private boolean intify(Set<String> names, Edits edits, Set<String> done) {
+        Map<String, VariableTree> locals = locals();
+        for (String n : names) {
+            VariableTree decl = locals.get(n);
+            if (decl == null || done.contains(n)) {
+                continue;
+            }
+            if (!(decl.getType() instanceof PrimitiveTypeTree) || !isFloating(decl.getType())) {
+                continue;
+            }
+            if (isMultiDeclarator(decl)) {
+                return false;
+            }
+            done.add(n);
+            edits.replace(decl.getType(), "int");
+            for (TreePath path : nodes) {
+                Tree leaf = path.getLeaf();
+                ExpressionTree value = null;
+                if (leaf == decl) {
+                    value = decl.getInitializer();
+                } else if (leaf instanceof AssignmentTree && n.equals(name(((AssignmentTree) leaf).getVariable()))) {
+                    value = ((AssignmentTree) leaf).getExpression();
+                } else if (leaf instanceof CompoundAssignmentTree
+                        && n.equals(name(((CompoundAssignmentTree) leaf).getVariable()))) {
+                    value = ((CompoundAssignmentTree) leaf).getExpression();
+                }
+                if (value != null && !intifyValue(value, edits, done)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Make an arithmetic value integral: reads become nextInt(), locals ints, 2.0 becomes 2. */
+    private boolean intifyValue(ExpressionTree value, Edits edits, Set<String> done) {
+        for (TreePath path : nodes) {
+            Tree leaf = path.getLeaf();
+            if (!within(leaf, value) || start(leaf) < 0) {
+                continue;
+            }
+            if (leaf instanceof MethodInvocationTree) {
+                ExpressionTree select = ((MethodInvocationTree) leaf).getMethodSelect();
+                if (!(select instanceof MemberSelectTree)
+                        || !hasType(((MemberSelectTree) select).getExpression(), "java.util.Scanner")) {
+                    return false;
+                }
+                String method = ((MemberSelectTree) select).getIdentifier().toString();
+                String integral = method.replaceFirst("(Double|Float)$", "Int");
+                if (!integral.equals(method)) {
+                    long e = end(select);
+                    edits.replace(e - method.length(), e, integral);
+                }
+            } else if (leaf instanceof TypeCastTree || leaf instanceof NewClassTree) {
+                return false;
+            }
+        }
+        return intify(identifiersIn(value), edits, done) && integralLiterals(value, edits);
+    }
+
+    /** Floating literals in value rewritten as ints (2.0 to 2); false for a fractional one. */
+    private boolean integralLiterals(Tree value, Edits edits) {
+        for (TreePath path : nodes) {
+            if (path.getLeaf() instanceof LiteralTree && within(path.getLeaf(), value)) {
+                Object v = ((LiteralTree) path.getLeaf()).getValue();
+                if (v instanceof Double || v instanceof Float) {
+                    double d = ((Number) v).doubleValue();
+                    if (d != Math.rint(d)) {
+                        return false;
+                    }
+                    edits.replace(path.getLeaf(), Long.toString((long) d));
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean within(Tree inner, Tree outer) {
+        return start(inner) >= start(outer) && end(inner) <= end(outer);
+    }
+
+    /** Floating divisions stored in a variable: the final formula of a1 Q1/Q4. */
+    private List<BinaryTree> storedDivisions() {
+        List<BinaryTree> found = new ArrayList<>();
+        for (BinaryTree b : all(BinaryTree.class)) {
+            if (b.getKind() != Tree.Kind.DIVIDE || !isFloating(b)) {
+                continue;
+            }
+            Tree parent = parentOf(b);
+            while (parent instanceof ParenthesizedTree) {
+                parent = parentOf(parent);
+            }
+            if (parent instanceof VariableTree || parent instanceof AssignmentTree) {
+                found.add(b);
+            }
+        }
+        return found;
+    }
+
+    private void integerDivision(boolean castAfter) {
+        for (BinaryTree division : storedDivisions()) {
+            Edits edits = new Edits();
+            // Operand casts to double would keep the division floating
+            for (TypeCastTree cast : all(TypeCastTree.class)) {
+                if (within(cast, division) && isFloating(cast)) {
+                    edits.replace(cast, "(" + text(cast.getExpression()) + ")");
+                }
+            }
+            String variant = "int_inputs";
+            if (!integralLiterals(division, edits)
+                    || !intify(identifiersIn(division), edits, new HashSet<>())) {
+                // Operands computed by a Math call (a1 Q4's sides) cannot be read as ints
+                edits = truncatedOperands(division);
+                variant = "int_operands";
+                if (edits == null) {
+                    continue;
+                }
+            }
+            if (castAfter) {
+                edits.insert(start(division), "(double) (").insert(end(division), ")");
+            }
+            offer(castAfter ? "cast_quotient" : variant, edits);
+        }
+    }
+
+    /** Declare the division's floating locals int, truncating their one value: int s = (int) Math.sqrt(...). */
+    private Edits truncatedOperands(BinaryTree division) {
+        Edits edits = new Edits();
+        if (!integralLiterals(division, edits)) {
+            return null;
+        }
+        Map<String, VariableTree> locals = locals();
+        for (String n : identifiersIn(division)) {
+            VariableTree decl = locals.get(n);
+            if (decl == null || !(decl.getType() instanceof PrimitiveTypeTree) || !isFloating(decl.getType())) {
+                continue;
+            }
+            ExpressionTree init = decl.getInitializer();
+            if (init == null || isMultiDeclarator(decl) || isReassigned(n)) {
+                return null;
+            }
+            boolean bare = init instanceof MethodInvocationTree || init instanceof IdentifierTree
+                    || init instanceof ParenthesizedTree;
+            edits.replace(decl.getType(), "int").replace(init, "(int) " + (bare ? text(init) : "(" + text(init) + ")"));
+        }
+        return edits;
+    }
+
+    private boolean isReassigned(String name) {
+        for (TreePath path : nodes) {
+            Tree leaf = path.getLeaf();
+            if (leaf instanceof AssignmentTree && name.equals(name(((AssignmentTree) leaf).getVariable()))
+                    || leaf instanceof CompoundAssignmentTree
+                            && name.equals(name(((CompoundAssignmentTree) leaf).getVariable()))
+                    || leaf instanceof UnaryTree && leaf.getKind().name().endsWith("CREMENT")
+                            && name.equals(name(((UnaryTree) leaf).getExpression()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void droppedParentheses() {
+        for (BinaryTree b : all(BinaryTree.class)) {
+            if (b.getKind() != Tree.Kind.DIVIDE || !(b.getLeftOperand() instanceof ParenthesizedTree)) {
+                continue;
+            }
+            ExpressionTree inner = unparen(b.getLeftOperand());
+            if (inner.getKind() == Tree.Kind.PLUS || inner.getKind() == Tree.Kind.MINUS) {
+                offer("precedence", new Edits().replace(b.getLeftOperand(), text(inner)));
+            }
+        }
+    }
+
+    private void caretPower() {
+        Edits edits = new Edits();
+        Set<String> done = new HashSet<>();
+        for (MethodInvocationTree call : all(MethodInvocationTree.class)) {
+            String select = call.getMethodSelect().toString();
+            if (!select.equals("Math.pow") || call.getArguments().size() != 2
+                    || !Double.valueOf(2).equals(asNumber(call.getArguments().get(1)))) {
+                continue;
+            }
+            ExpressionTree base = call.getArguments().get(0);
+            if (!intifyValue(base, edits, done)) {
+                return;
+            }
+            String operand = base instanceof IdentifierTree || base instanceof ParenthesizedTree
+                    ? text(base) : "(" + text(base) + ")";
+            // The base's own edits (nextInt, literals) are inside the call; rewrite around them
+            edits.replace(start(call), start(base), operand.startsWith("(") && !(base instanceof ParenthesizedTree) ? "(" : "");
+            edits.replace(end(base), end(call), (operand.startsWith("(") && !(base instanceof ParenthesizedTree) ? ")" : "") + " ^ 2");
+        }
+        offer("xor", edits);
+    }
+
+    private static Double asNumber(ExpressionTree e) {
+        e = unparen(e);
+        if (e instanceof LiteralTree && ((LiteralTree) e).getValue() instanceof Number) {
+            return ((Number) ((LiteralTree) e).getValue()).doubleValue();
+        }
+        return null;
+    }
+
+    private void discardedSqrt() {
+        for (VariableTree decl : all(VariableTree.class)) {
+            ExpressionTree init = decl.getInitializer();
+            if (init instanceof MethodInvocationTree
+                    && ((MethodInvocationTree) init).getMethodSelect().toString().equals("Math.sqrt")
+                    && blockOf(decl) != null) {
+                ExpressionTree arg = ((MethodInvocationTree) init).getArguments().get(0);
+                offer("discarded_sqrt", new Edits()
+                        .replace(init, text(arg))
+                        .insert(end(decl), "\n" + indent(decl) + "Math.sqrt(" + decl.getName() + ");"));
+            }
+        }
+    }
+
+    /** Consecutive-or-not read statements of one block, in order. */
+    private List<Tree> readsInFirstBlock() {
+        for (BlockTree block : all(BlockTree.class)) {
+            List<Tree> reads = new ArrayList<>();
+            for (StatementTree stmt : block.getStatements()) {
+                if (readTarget(stmt) != null) {
+                    reads.add(stmt);
+                }
+            }
+            if (reads.size() >= 2) {
+                return reads;
+            }
+        }
+        return List.of();
+    }
+
+    /** Where the declared or assigned name starts; -1 (no edit applies) if not found. */
+    private long nameStart(Tree stmt) {
+        if (stmt instanceof VariableTree) {
+            String name = ((VariableTree) stmt).getName().toString();
+            Matcher m = Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(source);
+            return m.find((int) end(((VariableTree) stmt).getType())) ? m.start() : -1;
+        }
+        return start(((AssignmentTree) ((ExpressionStatementTree) stmt).getExpression()).getVariable());
+    }
+
+    /** Give the reads' targets to each other: the prompt says one order, the code reads another. */
+    private void readOrder(boolean rotate) {
+        List<Tree> reads = readsInFirstBlock();
+        if (reads.size() < 2) {
+            return;
+        }
+        int k = rotate ? Math.min(3, reads.size()) : 2;
+        String type0 = reads.get(0) instanceof VariableTree ? ((VariableTree) reads.get(0)).getType().toString() : "";
+        Edits edits = new Edits();
+        for (int i = 0; i < k; i++) {
+            Tree stmt = reads.get(i);
+            String type = stmt instanceof VariableTree ? ((VariableTree) stmt).getType().toString() : "";
+            if (!type.equals(type0)) {
+                return;
+            }
+            // The first value read goes into the variable prompted for last
+            String target = readTarget(reads.get((i + k - 1) % k));
+            long s = nameStart(stmt);
+            edits.replace(s, s + readTarget(stmt).length(), target);
+        }
+        offer(rotate ? "rotated_reads" : "swapped_reads", edits);
+    }
+
+    private void ghostReads() {
+        Edits edits = new Edits();
+        Map<String, VariableTree> locals = locals();
+        for (TreePath path : nodes) {
+            Tree stmt = path.getLeaf();
+            ExpressionTree read = readExpression(stmt);
+            if (read == null || !(path.getParentPath().getLeaf() instanceof BlockTree)) {
+                continue;
+            }
+            String target = readTarget(stmt);
+            VariableTree decl = locals.get(target);
+            if (decl == null || !(decl.getType() instanceof PrimitiveTypeTree)) {
+                continue;
+            }
+            if (stmt instanceof VariableTree) {
+                edits.replace(read, "0").insert(end(stmt), "\n" + indent(stmt) + text(read) + ";");
+            } else {
+                edits.replace(stmt, text(read) + ";");
+                if (decl.getInitializer() == null) {
+                    long n = nameStart(decl);
+                    edits.insert(n + target.length(), " = 0");
+                }
+            }
+        }
+        offer("ghost_reads", edits);
+    }
+
+    /** Compute the formula from zeroed inputs before they are read, and never again. */
+    private void staleFormula() {
+        for (VariableTree formula : all(VariableTree.class)) {
+            ExpressionTree init = formula.getInitializer();
+            List<StatementTree> block = blockOf(formula);
+            if (init == null || block == null || !(unparen(init) instanceof BinaryTree)) {
+                continue;
+            }
+            Map<String, VariableTree> reads = new LinkedHashMap<>();
+            for (StatementTree stmt : block) {
+                if (stmt == formula) {
+                    break;
+                }
+                if (stmt instanceof VariableTree && readTarget(stmt) != null) {
+                    reads.put(readTarget(stmt), (VariableTree) stmt);
+                }
+            }
+            Set<String> used = identifiersIn(init);
+            Set<String> localUses = new HashSet<>(used);
+            localUses.retainAll(locals().keySet());
+            if (reads.isEmpty() || !reads.keySet().containsAll(localUses) || localUses.isEmpty()) {
+                continue;
+            }
+            Edits edits = new Edits();
+            StringBuilder hoisted = new StringBuilder();
+            VariableTree firstRead = null;
+            for (VariableTree read : reads.values()) {
+                if (!localUses.contains(read.getName().toString())) {
+                    continue;
+                }
+                if (firstRead == null) {
+                    firstRead = read;
+                }
+                String decl = text(read.getType()) + " " + read.getName();
+                hoisted.append(decl).append(" = 0;\n").append(indent(read));
+                edits.replace(start(read), nameStart(read), "");
+            }
+            String formulaText = source.substring((int) start(formula), (int) end(formula));
+            hoisted.append(formulaText.endsWith(";") ? formulaText : formulaText + ";").append("\n").append(indent(firstRead));
+            edits.insert(start(firstRead), hoisted.toString());
+            deleteStatement(edits, formula);
+            offer("stale_formula", edits);
+            return;
+        }
+    }
+
+    // ========================================================================
+    // a2: loops and branching
+    // ========================================================================
+
+    private ForLoopTree firstCountingLoop() {
+        for (ForLoopTree loop : all(ForLoopTree.class)) {
+            if (loop.getInitializer().size() == 1 && loop.getInitializer().get(0) instanceof VariableTree
+                    && loop.getCondition() instanceof BinaryTree) {
+                return loop;
+            }
+        }
+        return null;
+    }
+
+    private String counter(ForLoopTree loop) {
+        return ((VariableTree) loop.getInitializer().get(0)).getName().toString();
+    }
+
+    private void accumulatorReset() {
+        for (Tree loop : loops()) {
+            List<StatementTree> block = blockOf(loop);
+            StatementTree body = loopBody(loop);
+            if (block == null || !(body instanceof BlockTree)) {
+                continue;
+            }
+            for (StatementTree stmt : block) {
+                if (stmt == loop) {
+                    break;
+                }
+                if (!(stmt instanceof VariableTree) || !(((VariableTree) stmt).getInitializer() instanceof LiteralTree)) {
+                    continue;
+                }
+                String acc = ((VariableTree) stmt).getName().toString();
+                if (accumulates(body, acc)) {
+                    String reset = acc + " = " + text(((VariableTree) stmt).getInitializer()) + ";";
+                    long brace = start(body) + 1;
+                    String inner = ((BlockTree) body).getStatements().isEmpty() ? indent(loop) + unit()
+                            : indent(((BlockTree) body).getStatements().get(0));
+                    offer("reset_in_loop", new Edits().insert(brace, "\n" + inner + reset));
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean accumulates(Tree body, String acc) {
+        for (TreePath path : nodes) {
+            Tree leaf = path.getLeaf();
+            if (!within(leaf, body) || start(leaf) < 0) {
+                continue;
+            }
+            if (leaf instanceof CompoundAssignmentTree && acc.equals(name(((CompoundAssignmentTree) leaf).getVariable()))) {
+                return true;
+            }
+            if (leaf instanceof AssignmentTree && acc.equals(name(((AssignmentTree) leaf).getVariable()))
+                    && identifiersIn(((AssignmentTree) leaf).getExpression()).contains(acc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Tree> loops() {
+        List<Tree> loops = new ArrayList<>();
+        for (TreePath path : nodes) {
+            Tree leaf = path.getLeaf();
+            if (leaf instanceof ForLoopTree || leaf instanceof WhileLoopTree || leaf instanceof DoWhileLoopTree) {
+                loops.add(leaf);
+            }
+        }
+        return loops;
+    }
+
+    private static StatementTree loopBody(Tree loop) {
+        if (loop instanceof ForLoopTree) {
+            return ((ForLoopTree) loop).getStatement();
+        }
+        if (loop instanceof WhileLoopTree) {
+            return ((WhileLoopTree) loop).getStatement();
+        }
+        return ((DoWhileLoopTree) loop).getStatement();
+    }
+
+    private void shortLoop() {
+        ForLoopTree loop = firstCountingLoop();
+        if (loop == null) {
+            return;
+        }
+        BinaryTree cond = (BinaryTree) loop.getCondition();
+        ExpressionTree init = ((VariableTree) loop.getInitializer().get(0)).getInitializer();
+        if (!counter(loop).equals(name(cond.getLeftOperand()))) {
+            return;
+        }
+        if (cond.getKind() == Tree.Kind.LESS_THAN_EQUAL) {
+            offer("strict_bound", new Edits().replace(operator(cond), "<"));
+        } else if (cond.getKind() == Tree.Kind.LESS_THAN && Double.valueOf(0).equals(asNumber(init))) {
+            offer("start_at_one", new Edits().replace(init, "1"));
+        }
+    }
+
+    /** Source range of a binary operator (between the operands). */
+    private long[] operator(BinaryTree b) {
+        int from = (int) end(b.getLeftOperand());
+        String between = source.substring(from, (int) start(b.getRightOperand()));
+        String op = between.strip();
+        int at = from + between.indexOf(op);
+        return new long[] {at, at + op.length()};
+    }
+
+    private void readOnce() {
+        Map<String, VariableTree> locals = locals();
+        for (Tree loop : loops()) {
+            if (loop instanceof ForLoopTree) {
+                continue;
+            }
+            for (TreePath path : nodes) {
+                Tree stmt = path.getLeaf();
+                if (!(stmt instanceof ExpressionStatementTree) || !within(stmt, loop) || readExpression(stmt) == null) {
+                    continue;
+                }
+                String target = readTarget(stmt);
+                VariableTree decl = locals.get(target);
+                if (decl == null || start(decl) > start(loop) || !(parentOf(loop) instanceof BlockTree)) {
+                    continue;
+                }
+                String read = target + " = " + text(readExpression(stmt)) + ";";
+                Edits edits = deleteStatement(new Edits(), stmt).insert(start(loop), read + "\n" + indent(loop));
+                offer("read_once", edits);
+                return;
+            }
+        }
+    }
+
+    private void outerIncrement() {
+        for (ForLoopTree outer : all(ForLoopTree.class)) {
+            if (outer.getInitializer().size() != 1 || !(outer.getInitializer().get(0) instanceof VariableTree)) {
+                continue;
+            }
+            for (ForLoopTree inner : all(ForLoopTree.class)) {
+                if (inner == outer || !within(inner, outer.getStatement()) || inner.getUpdate().size() != 1) {
+                    continue;
+                }
+                offer("outer_increment", new Edits().replace(inner.getUpdate().get(0), counter(outer) + "++"));
+                StatementTree body = inner.getStatement();
+                if (body instanceof BlockTree && !((BlockTree) body).getStatements().isEmpty()) {
+                    List<? extends StatementTree> stmts = ((BlockTree) body).getStatements();
+                    StatementTree last = stmts.get(stmts.size() - 1);
+                    offer("outer_reset", new Edits().insert(end(last), "\n" + indent(last) + counter(outer) + " = 0;"));
+                }
+                return;
+            }
+        }
+    }
+
+    /** Head of the longest else-if chain. */
+    private IfTree chainHead() {
+        IfTree best = null;
+        int bestLength = 1;
+        for (IfTree head : all(IfTree.class)) {
+            Tree parent = parentOf(head);
+            if (parent instanceof IfTree && ((IfTree) parent).getElseStatement() == head) {
+                continue;
+            }
+            int length = 0;
+            for (StatementTree s = head.getElseStatement(); s instanceof IfTree; s = ((IfTree) s).getElseStatement()) {
+                length++;
+            }
+            if (length > bestLength - 1 && length >= 2) {
+                best = head;
+                bestLength = length + 1;
+            }
+        }
+        return best;
+    }
+
+    private void separateIfs() {
+        IfTree head = chainHead();
+        if (head == null) {
+            return;
+        }
+        Edits edits = new Edits();
+        for (IfTree link = head; link.getElseStatement() instanceof IfTree; link = (IfTree) link.getElseStatement()) {
+            edits.replace(end(link.getThenStatement()), start(link.getElseStatement()), "\n" + indent(head));
+        }
+        offer("separate_ifs", edits);
+    }
+
+    private String single(StatementTree stmt) {
+        if (stmt instanceof BlockTree) {
+            List<? extends StatementTree> stmts = ((BlockTree) stmt).getStatements();
+            return stmts.size() == 1 && !(stmts.get(0) instanceof BlockTree) ? text(stmts.get(0)) : null;
+        }
+        return text(stmt);
+    }
+
+    private void danglingElse() {
+        IfTree head = chainHead();
+        if (head == null) {
+            return;
+        }
+        IfTree last = head;
+        while (last.getElseStatement() instanceof IfTree) {
+            last = (IfTree) last.getElseStatement();
+        }
+        if (last == head || last.getElseStatement() == null) {
+            return;
+        }
+        String then = single(last.getThenStatement());
+        String otherwise = single(last.getElseStatement());
+        if (then == null || otherwise == null) {
+            return;
+        }
+        String ind = indent(head);
+        String cond = text(last.getCondition());
+        String rewritten = "if " + cond + "\n" + ind + unit() + "if " + cond + "\n" + ind + unit() + unit() + then
+                + "\n" + ind + "else\n" + ind + unit() + otherwise;
+        Edits edits = new Edits().replace(last, rewritten);
+        // The branch that now never runs may be the only one that assigns a result
+        for (AssignmentTree a : all(AssignmentTree.class)) {
+            VariableTree decl = locals().get(name(a.getVariable()));
+            if (within(a, head) && decl != null && decl.getInitializer() == null && start(decl) < start(head)) {
+                String type = decl.getType().toString();
+                String zero = type.equals("String") ? "\"\"" : type.equals("char") ? "' '"
+                        : type.equals("boolean") ? "false" : "0";
+                edits.insert(nameStart(decl) + decl.getName().length(), " = " + zero);
+            }
+        }
+        offer("dangling_else", edits);
+    }
+
+    // ========================================================================
+    // a3: arrays and strings
+    // ========================================================================
+
+    private void sortOneArray() {
+        for (Tree loop : loops()) {
+            Tree parent = parentOf(loop);
+            if (!(parent instanceof BlockTree)) {
+                continue;
+            }
+            Map<String, Boolean> written = new LinkedHashMap<>();
+            for (TreePath path : nodes) {
+                Tree leaf = path.getLeaf();
+                if (leaf instanceof AssignmentTree && within(leaf, loop)
+                        && unparen(((AssignmentTree) leaf).getVariable()) instanceof ArrayAccessTree) {
+                    ArrayAccessTree target = (ArrayAccessTree) unparen(((AssignmentTree) leaf).getVariable());
+                    String array = name(target.getExpression());
+                    if (array != null) {
+                        TypeMirror type = typeOf(target);
+                        written.put(array, type != null && type.getKind().isPrimitive());
+                    }
+                }
+            }
+            String numeric = null;
+            for (Map.Entry<String, Boolean> e : written.entrySet()) {
+                if (e.getValue()) {
+                    numeric = e.getKey();
+                }
+            }
+            // Only a loop that reorders two arrays together, and doesn't read input
+            if (written.size() < 2 || numeric == null || containsRead(loop)) {
+                continue;
+            }
+            Edits edits = new Edits().replace(loop, "Arrays.sort(" + numeric + ");");
+            if (!importsArrays()) {
+                List<? extends ImportTree> imports = analysis.unit.getImports();
+                long at = imports.isEmpty() ? 0 : end(imports.get(imports.size() - 1));
+                edits.insert(at, imports.isEmpty() ? "import java.util.Arrays;\n\n" : "\nimport java.util.Arrays;");
+            }
+            offer("sort_scores_only", edits);
+            return;
+        }
+    }
+
+    private boolean containsRead(Tree tree) {
+        for (TreePath path : nodes) {
+            if (path.getLeaf() instanceof MethodInvocationTree && within(path.getLeaf(), tree)
+                    && isScannerRead((ExpressionTree) path.getLeaf())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean importsArrays() {
+        for (ImportTree imp : analysis.unit.getImports()) {
+            String name = imp.getQualifiedIdentifier().toString();
+            if (name.equals("java.util.Arrays") || name.equals("java.util.*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void indexForValue() {
+        for (BinaryTree b : all(BinaryTree.class)) {
+            if (b.getKind() != Tree.Kind.EQUAL_TO) {
+                continue;
+            }
+            for (ExpressionTree side : List.of(b.getLeftOperand(), b.getRightOperand())) {
+                if (unparen(side) instanceof ArrayAccessTree
+                        && name(((ArrayAccessTree) unparen(side)).getIndex()) != null) {
+                    offer("index_compared", new Edits().replace(side, name(((ArrayAccessTree) unparen(side)).getIndex())));
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Calls of a String-copy chain, innermost first, or null if it is not one. */
+    private List<MethodInvocationTree> copyChain(ExpressionTree e) {
+        List<MethodInvocationTree> chain = new ArrayList<>();
+        e = unparen(e);
+        while (e instanceof MethodInvocationTree
+                && ((MethodInvocationTree) e).getMethodSelect() instanceof MemberSelectTree) {
+            MemberSelectTree select = (MemberSelectTree) ((MethodInvocationTree) e).getMethodSelect();
+            if (!STRING_COPIES.contains(select.getIdentifier().toString())) {
+                return null;
+            }
+            chain.add(0, (MethodInvocationTree) e);
+            e = unparen(select.getExpression());
+        }
+        return chain.isEmpty() || name(e) == null || !hasType(e, "java.lang.String") ? null : chain;
+    }
+
+    private void discardedStrings() {
+        Map<String, String> alias = new HashMap<>();
+        List<Tree> replaced = new ArrayList<>();
+        Edits edits = new Edits();
+        for (TreePath path : nodes) {
+            Tree stmt = path.getLeaf();
+            if (path.getParentPath() == null || !(path.getParentPath().getLeaf() instanceof BlockTree)) {
+                if (stmt instanceof IdentifierTree && alias.containsKey(((IdentifierTree) stmt).getName().toString())
+                        && replaced.stream().noneMatch(r -> within(stmt, r))) {
+                    edits.replace(stmt, alias.get(((IdentifierTree) stmt).getName().toString()));
+                }
+                continue;
+            }
+            String target;
+            ExpressionTree value;
+            if (stmt instanceof VariableTree) {
+                target = ((VariableTree) stmt).getName().toString();
+                value = ((VariableTree) stmt).getInitializer();
+            } else if (stmt instanceof ExpressionStatementTree
+                    && ((ExpressionStatementTree) stmt).getExpression() instanceof AssignmentTree) {
+                AssignmentTree a = (AssignmentTree) ((ExpressionStatementTree) stmt).getExpression();
+                target = name(a.getVariable());
+                value = a.getExpression();
+            } else {
+                continue;
+            }
+            List<MethodInvocationTree> chain = value == null ? null : copyChain(value);
+            if (target == null || chain == null) {
+                continue;
+            }
+            String receiver = name(((MemberSelectTree) chain.get(0).getMethodSelect()).getExpression());
+            String root = alias.getOrDefault(receiver, receiver);
+            if (stmt instanceof ExpressionStatementTree && !target.equals(root) && !alias.containsKey(target)) {
+                continue;
+            }
+            StringBuilder calls = new StringBuilder();
+            for (MethodInvocationTree call : chain) {
+                MemberSelectTree select = (MemberSelectTree) call.getMethodSelect();
+                String args = source.substring((int) end(select), (int) end(call));
+                calls.append(calls.length() == 0 ? "" : "\n" + indent(stmt))
+                        .append(root).append('.').append(select.getIdentifier()).append(args).append(';');
+            }
+            edits.replace(stmt, calls.toString());
+            replaced.add(stmt);
+            if (!target.equals(root)) {
+                alias.put(target, root);
+            }
+        }
+        if (!alias.isEmpty() || !edits.isEmpty()) {
+            offer("discarded_copies", edits);
+        }
+    }
+
+    private void oneBasedLoop() {
+        for (ForLoopTree loop : all(ForLoopTree.class)) {
+            if (loop.getInitializer().size() != 1 || !(loop.getInitializer().get(0) instanceof VariableTree)
+                    || !(loop.getCondition() instanceof BinaryTree)) {
+                continue;
+            }
+            BinaryTree cond = (BinaryTree) loop.getCondition();
+            ExpressionTree init = ((VariableTree) loop.getInitializer().get(0)).getInitializer();
+            if (cond.getKind() == Tree.Kind.LESS_THAN && Double.valueOf(0).equals(asNumber(init))
+                    && counter(loop).equals(name(cond.getLeftOperand())) && indexes(loop.getStatement(), counter(loop))) {
+                offer("one_based", new Edits().replace(init, "1").replace(operator(cond), "<="));
+                return;
+            }
+        }
+    }
+
+    private boolean indexes(Tree body, String counter) {
+        for (ArrayAccessTree access : all(ArrayAccessTree.class)) {
+            if (within(access, body) && identifiersIn(access.getIndex()).contains(counter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean copiesElements(Tree body) {
+        for (AssignmentTree a : all(AssignmentTree.class)) {
+            if (within(a, body) && unparen(a.getVariable()) instanceof ArrayAccessTree
+                    && unparen(a.getExpression()) instanceof ArrayAccessTree) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void inclusiveBound() {
+        ForLoopTree chosen = null;
+        for (ForLoopTree loop : all(ForLoopTree.class)) {
+            if (loop.getInitializer().size() != 1 || !(loop.getInitializer().get(0) instanceof VariableTree)
+                    || !(loop.getCondition() instanceof BinaryTree) || !indexes(loop.getStatement(), counter(loop))) {
+                continue;
+            }
+            if (chosen == null || (copiesElements(loop.getStatement()) && !copiesElements(chosen.getStatement()))) {
+                chosen = loop;
+            }
+        }
+        if (chosen == null) {
+            return;
+        }
+        BinaryTree cond = (BinaryTree) chosen.getCondition();
+        if (cond.getKind() == Tree.Kind.LESS_THAN) {
+            offer("inclusive_bound", new Edits().replace(operator(cond), "<="));
+        } else if (cond.getKind() == Tree.Kind.GREATER_THAN) {
+            offer("inclusive_bound", new Edits().replace(operator(cond), ">="));
+        }
+    }
+
+    private void forwardCopy() {
+        for (ForLoopTree loop : all(ForLoopTree.class)) {
+            if (loop.getInitializer().size() != 1 || !(loop.getInitializer().get(0) instanceof VariableTree)
+                    || !(loop.getCondition() instanceof BinaryTree) || loop.getUpdate().size() != 1) {
+                continue;
+            }
+            String i = counter(loop);
+            BinaryTree cond = (BinaryTree) loop.getCondition();
+            ExpressionTree update = loop.getUpdate().get(0).getExpression();
+            boolean down = update.getKind() == Tree.Kind.POSTFIX_DECREMENT || update.getKind() == Tree.Kind.PREFIX_DECREMENT;
+            if (!down || cond.getKind() != Tree.Kind.GREATER_THAN || !i.equals(name(cond.getLeftOperand()))) {
+                continue;
+            }
+            // arr[i] = arr[i - 1]
+            for (AssignmentTree a : all(AssignmentTree.class)) {
+                if (!within(a, loop.getStatement()) || !(unparen(a.getVariable()) instanceof ArrayAccessTree)
+                        || !(unparen(a.getExpression()) instanceof ArrayAccessTree)) {
+                    continue;
+                }
+                ArrayAccessTree to = (ArrayAccessTree) unparen(a.getVariable());
+                ArrayAccessTree from = (ArrayAccessTree) unparen(a.getExpression());
+                if (!i.equals(name(to.getIndex())) || !(unparen(from.getIndex()) instanceof BinaryTree)
+                        || unparen(from.getIndex()).getKind() != Tree.Kind.MINUS) {
+                    continue;
+                }
+                String array = text(to.getExpression());
+                String upper = text(((VariableTree) loop.getInitializer().get(0)).getInitializer());
+                String lower = text(cond.getRightOperand());
+                VariableTree decl = (VariableTree) loop.getInitializer().get(0);
+                Edits edits = new Edits()
+                        .replace(decl.getInitializer(), lower)
+                        .replace(cond, i + " < " + upper)
+                        .replace(loop.getUpdate().get(0), i + "++")
+                        .replace(a, array + "[" + i + " + 1] = " + array + "[" + i + "]");
+                offer("forward_copy", edits);
+                return;
+            }
+        }
+    }
+
+    // ========================================================================
+    // a4: objects
+    // ========================================================================
+
+    private void shadowedFields() {
+        Edits edits = new Edits();
+        for (MethodTree method : all(MethodTree.class)) {
+            if (!method.getName().contentEquals("<init>") || method.getBody() == null) {
+                continue;
+            }
+            Set<String> params = new HashSet<>();
+            method.getParameters().forEach(p -> params.add(p.getName().toString()));
+            for (AssignmentTree a : all(AssignmentTree.class)) {
+                ExpressionTree target = a.getVariable();
+                if (within(a, method.getBody()) && target instanceof MemberSelectTree
+                        && ((MemberSelectTree) target).getExpression().toString().equals("this")
+                        && params.contains(((MemberSelectTree) target).getIdentifier().toString())) {
+                    edits.replace(target, ((MemberSelectTree) target).getIdentifier().toString());
+                }
+            }
+        }
+        offer("shadowed_fields", edits);
+    }
+
+    private void referenceEquality() {
+        Edits edits = new Edits();
+        for (MethodInvocationTree call : all(MethodInvocationTree.class)) {
+            if (!(call.getMethodSelect() instanceof MemberSelectTree) || call.getArguments().size() != 1) {
+                continue;
+            }
+            MemberSelectTree select = (MemberSelectTree) call.getMethodSelect();
+            ExpressionTree receiver = select.getExpression();
+            TypeMirror type = typeOf(receiver);
+            if (select.getIdentifier().contentEquals("equals") && type != null
+                    && type.getKind() == TypeKind.DECLARED && !type.toString().startsWith("java.")) {
+                edits.replace(call, text(receiver) + " == " + text(call.getArguments().get(0)));
+            }
+        }
+        offer("reference_equality", edits);
+    }
+
+    private void unfilledSlots() {
+        Edits edits = new Edits();
+        for (ExpressionStatementTree stmt : all(ExpressionStatementTree.class)) {
+            if (stmt.getExpression() instanceof AssignmentTree) {
+                AssignmentTree a = (AssignmentTree) stmt.getExpression();
+                if (unparen(a.getVariable()) instanceof ArrayAccessTree && unparen(a.getExpression()) instanceof NewClassTree) {
+                    deleteStatement(edits, stmt);
+                }
+            }
+        }
+        offer("unfilled_slots", edits);
+    }
+}
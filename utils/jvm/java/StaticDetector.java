@@ -0,0 +1,906 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.BreakTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.DoWhileLoopTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.IfTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.tree.WhileLoopTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.TreeScanner;
+
+/**
+ * Rule-based detector for misconceptions that are visible in the code's structure.
+ *
+ * Every file is parsed and attributed with the javac Tree API (InMemoryCompiler.analyze,
+ * no class files), then one scan applies the rules below. Each finding names the
+ * groundtruth id whose pattern it matches, the line and that line's source:
+ *
+ *   NM_MEM_03  String method called as a statement (s.toUpperCase();)
+ *   NM_API_01  Math method called as a statement (Math.sqrt(d);)
+ *   NM_IO_02   Scanner value read as a statement (scanner.nextInt();)
+ *   NM_MEM_04  a[a.length] or a[n] for new int[n]; loop bound "i <= a.length" (or
+ *              "i <= n" with a[i] in the body)
+ *   NM_SYN_01  "^" with a numeric literal operand (x ^ 2)
+ *   NM_TYP_02  integer division cast to double afterwards ((double) (a / b))
+ *   NM_TYP_01  integer division stored in a double (double avg = sum / n)
+ *   NM_LOGIC_02 unbraced if/else as the body of an if without else (dangling else)
+ *   NM_LOGIC_01 three or more bare ifs comparing the same variable
+ *   NM_FLOW_04 nested loop that changes the outer loop's counter
+ *   NM_FLOW_01 accumulator declared inside the loop that adds to it
+ *   NM_FLOW_03 while loop whose condition variables never change in its body
+ *   NM_MEM_05  "a = b; b = a;" swap without a temporary, or a[i + 1] = a[i] while i rises
+ *   NM_STATE_01 value computed from variables that are read from the Scanner afterwards
+ *   NM_MEM_01  Arrays.sort on one of several arrays declared together
+ *
+ * Usage:
+ *   java -cp helpers StaticDetector --manifest files.tsv --report findings.json
+ *
+ * The manifest has one "key TAB path/to/File.java" line per file. The report is
+ * {"files": [{"key", "parsed", "clean", "findings": [{"rule", "line", "snippet"}]}]}.
+ */
+public class StaticDetector {
+
+    private static final Set<String> STRING_COPIES = Set.of("toUpperCase", "toLowerCase", "trim",
+            "strip", "stripLeading", "stripTrailing", "replace", "replaceAll", "replaceFirst",
+            "concat", "substring", "repeat", "intern");
+
+    private static final Set<String> SCANNER_VALUES = Set.of("nextInt", "nextDouble", "nextLong",
+            "nextFloat", "nextShort", "nextByte", "nextBoolean", "nextBigInteger",
+            "nextBigDecimal");
+
+    /** One rule match. */
+    static final class Finding {
+        final String rule;
+        final long line;
+        final String snippet;
+
+        Finding(String rule, long line, String snippet) {
+            this.rule = rule;
+            this.line = line;
+            this.snippet = snippet;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String manifest = null;
+        String report = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--manifest":
+                    manifest = args[++i];
+                    break;
+                case "--report":
+                    report = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (manifest == null || report == null) {
+            System.err.println("usage: StaticDetector --manifest files.tsv --report findings.json");
+            System.exit(2);
+        }
+
+        InMemoryCompiler compiler = new InMemoryCompiler();
+        StringBuilder sb = new StringBuilder("{\"files\": [\n");
+        boolean first = true;
+        for (String line : Files.readAllLines(Paths.get(manifest), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 2);
+            Path file = Paths.get(parts[1]);
+            String source = Files.readString(file, StandardCharsets.UTF_8);
+            String className = file.getFileName().toString().replaceFirst("\\.java$", "");
+            InMemoryCompiler.Analysis analysis = compiler.analyze(className, source);
+
+            sb.append(first ? "" : ",\n").append("  {\"key\": ").append(Json.quote(parts[0]));
+            first = false;
+            if (analysis == null) {
+                sb.append(", \"parsed\": false, \"clean\": false, \"findings\": []}");
+                continue;
+            }
+            sb.append(", \"parsed\": true, \"clean\": ").append(analysis.clean)
+                    .append(", \"findings\": [");
+            List<Finding> findings = detect(analysis);
+            for (int i = 0; i < findings.size(); i++) {
+                Finding f = findings.get(i);
+                sb.append(i == 0 ? "" : ", ").append("{\"rule\": ").append(Json.quote(f.rule))
+                        .append(", \"line\": ").append(f.line)
+                        .append(", \"snippet\": ").append(Json.quote(f.snippet)).append('}');
+            }
+            sb.append("]}");
+        }
+        sb.append("\n]}\n");
+        Files.writeString(Paths.get(report), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    /** Apply every rule to one analysed file. */
+    static List<Finding> detect(InMemoryCompiler.Analysis analysis) {
+        Rules rules = new Rules(analysis);
+        rules.scan(analysis.unit, null);
+        return rules.findings;
+    }
+
+    private static final class Rules extends TreePathScanner<Void, Void> {
+        final List<Finding> findings = new ArrayList<>();
+        private final InMemoryCompiler.Analysis analysis;
+        private final String[] lines;
+        private final Set<String> seen = new HashSet<>();
+
+        Rules(InMemoryCompiler.Analysis analysis) {
+            this.analysis = analysis;
+            this.lines = analysis.source.split("\r?\n", -1);
+        }
+
+        // -- helpers ----------------------------------------------------------
+
+        private long lineOf(Tree tree) {
+            long pos = analysis.trees.getSourcePositions().getStartPosition(analysis.unit, tree);
+            return pos < 0 ? -1 : analysis.unit.getLineMap().getLineNumber(pos);
+        }
+
+        private void report(String rule, Tree tree) {
+            long line = lineOf(tree);
+            if (line < 1 || !seen.add(rule + ":" + line)) {
+                return;
+            }
+            String snippet = line <= lines.length ? lines[(int) line - 1].strip() : "";
+            findings.add(new Finding(rule, line, snippet));
+        }
+
+        private TypeMirror typeOf(Tree tree) {
+            TreePath path = TreePath.getPath(analysis.unit, tree);
+            return path == null ? null : analysis.trees.getTypeMirror(path);
+        }
+
+        private boolean isIntegral(Tree tree) {
+            TypeMirror type = typeOf(tree);
+            if (type == null) {
+                return false;
+            }
+            switch (type.getKind()) {
+                case INT:
+                case LONG:
+                case SHORT:
+                case BYTE:
+                case CHAR:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static boolean isFloating(TypeMirror type) {
+            return type != null && (type.getKind() == TypeKind.DOUBLE || type.getKind() == TypeKind.FLOAT);
+        }
+
+        private boolean hasType(Tree tree, String qualifiedName) {
+            TypeMirror type = typeOf(tree);
+            return type != null && type.getKind() == TypeKind.DECLARED
+                    && type.toString().equals(qualifiedName);
+        }
+
+        private static ExpressionTree unparen(ExpressionTree e) {
+            while (e instanceof ParenthesizedTree) {
+                e = ((ParenthesizedTree) e).getExpression();
+            }
+            return e;
+        }
+
+        private static String name(ExpressionTree e) {
+            e = unparen(e);
+            return e instanceof IdentifierTree ? ((IdentifierTree) e).getName().toString() : null;
+        }
+
+        private static Set<String> assignedIn(List<? extends Tree> trees) {
+            Set<String> names = new HashSet<>();
+            for (Tree tree : trees) {
+                names.addAll(assignedIn(tree));
+            }
+            return names;
+        }
+
+        /** Names of local variables assigned, incremented or compound-assigned in tree. */
+        private static Set<String> assignedIn(Tree tree) {
+            Set<String> names = new HashSet<>();
+            if (tree == null) {
+                return names;
+            }
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitAssignment(AssignmentTree node, Void unused) {
+                    add(node.getVariable());
+                    return super.visitAssignment(node, unused);
+                }
+
+                @Override
+                public Void visitCompoundAssignment(CompoundAssignmentTree node, Void unused) {
+                    add(node.getVariable());
+                    return super.visitCompoundAssignment(node, unused);
+                }
+
+                @Override
+                public Void visitUnary(UnaryTree node, Void unused) {
+                    switch (node.getKind()) {
+                        case PREFIX_INCREMENT:
+                        case PREFIX_DECREMENT:
+                        case POSTFIX_INCREMENT:
+                        case POSTFIX_DECREMENT:
+                            add(node.getExpression());
+                            break;
+                        default:
+                            break;
+                    }
+                    return super.visitUnary(node, unused);
+                }
+
+                private void add(ExpressionTree target) {
+                    String n = name(target);
+                    if (n != null) {
+                        names.add(n);
+                    }
+                }
+            }.scan(tree, null);
+            return names;
+        }
+
+        /** Identifiers read in tree, or null if it calls a method (which may change state). */
+        private static Set<String> identifiersIn(Tree tree) {
+            Set<String> names = new HashSet<>();
+            boolean[] calls = {false};
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitIdentifier(IdentifierTree node, Void unused) {
+                    names.add(node.getName().toString());
+                    return null;
+                }
+
+                @Override
+                public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+                    calls[0] = true;
+                    return null;
+                }
+            }.scan(tree, null);
+            return calls[0] ? null : names;
+        }
+
+        private static boolean exitsEarly(Tree body) {
+            boolean[] exits = {false};
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitBreak(BreakTree node, Void unused) {
+                    exits[0] = true;
+                    return null;
+                }
+
+                @Override
+                public Void visitReturn(ReturnTree node, Void unused) {
+                    exits[0] = true;
+                    return null;
+                }
+
+                @Override
+                public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+                    if (node.getMethodSelect().toString().equals("System.exit")) {
+                        exits[0] = true;
+                    }
+                    return super.visitMethodInvocation(node, unused);
+                }
+            }.scan(body, null);
+            return exits[0];
+        }
+
+        private boolean isScannerRead(ExpressionTree e) {
+            e = unparen(e);
+            if (!(e instanceof MethodInvocationTree)) {
+                return false;
+            }
+            ExpressionTree select = ((MethodInvocationTree) e).getMethodSelect();
+            return select instanceof MemberSelectTree
+                    && ((MemberSelectTree) select).getIdentifier().toString().startsWith("next")
+                    && hasType(((MemberSelectTree) select).getExpression(), "java.util.Scanner");
+        }
+
+        // -- statement-level rules -------------------------------------------
+
+        @Override
+        public Void visitExpressionStatement(ExpressionStatementTree node, Void unused) {
+            ExpressionTree expr = node.getExpression();
+            if (expr instanceof MethodInvocationTree) {
+                ExpressionTree select = ((MethodInvocationTree) expr).getMethodSelect();
+                if (select instanceof MemberSelectTree) {
+                    String method = ((MemberSelectTree) select).getIdentifier().toString();
+                    ExpressionTree receiver = ((MemberSelectTree) select).getExpression();
+                    if (STRING_COPIES.contains(method) && hasType(receiver, "java.lang.String")) {
+                        report("NM_MEM_03", node);
+                    } else if ("Math".equals(name(receiver))) {
+                        report("NM_API_01", node);
+                    } else if (SCANNER_VALUES.contains(method)
+                            && hasType(receiver, "java.util.Scanner")) {
+                        report("NM_IO_02", node);
+                    }
+                }
+            }
+            return super.visitExpressionStatement(node, unused);
+        }
+
+        @Override
+        public Void visitBlock(BlockTree node, Void unused) {
+            List<? extends StatementTree> stmts = node.getStatements();
+            checkBareIfChain(stmts);
+            checkLossySwap(stmts);
+            checkEarlyCalculation(stmts);
+            return super.visitBlock(node, unused);
+        }
+
+        /** NM_LOGIC_01: if (g >= 90) ...; if (g >= 80) ...; if (g >= 70) ... */
+        private void checkBareIfChain(List<? extends StatementTree> stmts) {
+            int run = 0;
+            String variable = null;
+            for (int i = 0; i <= stmts.size(); i++) {
+                String v = i < stmts.size() ? comparedVariable(stmts.get(i)) : null;
+                if (v != null && v.equals(variable)) {
+                    run++;
+                } else {
+                    if (run >= 3) {
+                        report("NM_LOGIC_01", stmts.get(i - run));
+                    }
+                    run = v == null ? 0 : 1;
+                    variable = v;
+                }
+            }
+        }
+
+        private static String comparedVariable(StatementTree stmt) {
+            if (!(stmt instanceof IfTree) || ((IfTree) stmt).getElseStatement() != null) {
+                return null;
+            }
+            ExpressionTree cond = unparen(((IfTree) stmt).getCondition());
+            if (!(cond instanceof BinaryTree)) {
+                return null;
+            }
+            switch (cond.getKind()) {
+                case GREATER_THAN:
+                case GREATER_THAN_EQUAL:
+                case LESS_THAN:
+                case LESS_THAN_EQUAL:
+                    return name(((BinaryTree) cond).getLeftOperand());
+                default:
+                    return null;
+            }
+        }
+
+        /** NM_MEM_05: a[i] = a[j]; a[j] = a[i]; */
+        private void checkLossySwap(List<? extends StatementTree> stmts) {
+            for (int i = 0; i + 1 < stmts.size(); i++) {
+                AssignmentTree a = assignment(stmts.get(i));
+                AssignmentTree b = assignment(stmts.get(i + 1));
+                if (a != null && b != null
+                        && a.getVariable().toString().equals(b.getExpression().toString())
+                        && a.getExpression().toString().equals(b.getVariable().toString())
+                        && !a.getVariable().toString().equals(a.getExpression().toString())) {
+                    report("NM_MEM_05", stmts.get(i));
+                }
+            }
+        }
+
+        private static AssignmentTree assignment(StatementTree stmt) {
+            if (stmt instanceof ExpressionStatementTree
+                    && ((ExpressionStatementTree) stmt).getExpression() instanceof AssignmentTree) {
+                return (AssignmentTree) ((ExpressionStatementTree) stmt).getExpression();
+            }
+            return null;
+        }
+
+        /** NM_STATE_01: double cost = d / mpg * p; ... d = scanner.nextDouble(); */
+        private void checkEarlyCalculation(List<? extends StatementTree> stmts) {
+            for (int i = 0; i < stmts.size(); i++) {
+                ExpressionTree computed = null;
+                if (stmts.get(i) instanceof VariableTree) {
+                    computed = ((VariableTree) stmts.get(i)).getInitializer();
+                } else if (assignment(stmts.get(i)) != null) {
+                    computed = assignment(stmts.get(i)).getExpression();
+                }
+                if (computed == null || !(unparen(computed) instanceof BinaryTree)) {
+                    continue;
+                }
+                Set<String> inputs = identifiersIn(computed);
+                if (inputs == null || inputs.isEmpty()) {
+                    continue;
+                }
+                for (int j = i + 1; j < stmts.size(); j++) {
+                    AssignmentTree later = assignment(stmts.get(j));
+                    if (later != null && inputs.contains(name(later.getVariable()))
+                            && isScannerRead(later.getExpression())) {
+                        report("NM_STATE_01", stmts.get(i));
+                        break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Void visitIf(IfTree node, Void unused) {
+            // NM_LOGIC_02: the else binds to the inner if, so the outer if has no else branch
+            if (node.getElseStatement() == null && node.getThenStatement() instanceof IfTree
+                    && ((IfTree) node.getThenStatement()).getElseStatement() != null) {
+                report("NM_LOGIC_02", node);
+            }
+            return super.visitIf(node, unused);
+        }
+
+        // -- loops -----------------------------------------------------------
+
+        @Override
+        public Void visitForLoop(ForLoopTree node, Void unused) {
+            Set<String> counters = new HashSet<>();
+            for (StatementTree init : node.getInitializer()) {
+                if (init instanceof VariableTree) {
+                    counters.add(((VariableTree) init).getName().toString());
+                }
+            }
+            counters.addAll(assignedIn(node.getInitializer()));
+            counters.addAll(assignedIn(node.getUpdate()));
+            checkLoop(node.getCondition(), node.getStatement(), counters);
+            return super.visitForLoop(node, unused);
+        }
+
+        @Override
+        public Void visitWhileLoop(WhileLoopTree node, Void unused) {
+            checkLoop(node.getCondition(), node.getStatement(),
+                    assignedOutsideLoops(node.getStatement()));
+            checkStagnation(node, node.getCondition(), node.getStatement());
+            return super.visitWhileLoop(node, unused);
+        }
+
+        @Override
+        public Void visitDoWhileLoop(DoWhileLoopTree node, Void unused) {
+            checkStagnation(node, node.getCondition(), node.getStatement());
+            return super.visitDoWhileLoop(node, unused);
+        }
+
+        /** Rules shared by for and while loops; counters are what the loop itself advances. */
+        private void checkLoop(ExpressionTree condition, StatementTree body, Set<String> counters) {
+            ExpressionTree cond = condition == null ? null : unparen(condition);
+            Set<String> read = cond == null ? null : identifiersIn(cond);
+            counters.retainAll(read == null ? Set.of() : read);
+
+            // NM_MEM_04: i <= a.length, or i <= n with arr[i] in the body
+            if (cond != null && cond.getKind() == Tree.Kind.LESS_THAN_EQUAL) {
+                String index = name(((BinaryTree) cond).getLeftOperand());
+                ExpressionTree bound = unparen(((BinaryTree) cond).getRightOperand());
+                if (index != null && (isLengthOf(bound)
+                        || (isArraySize(bound) && indexesWith(body, index)))) {
+                    report("NM_MEM_04", cond);
+                }
+            }
+
+            // NM_FLOW_04: a nested loop advances the outer loop's counter
+            if (!counters.isEmpty()) {
+                new TreeScanner<Void, Void>() {
+                    @Override
+                    public Void visitForLoop(ForLoopTree inner, Void unused) {
+                        check(inner);
+                        return super.visitForLoop(inner, unused);
+                    }
+
+                    @Override
+                    public Void visitWhileLoop(WhileLoopTree inner, Void unused) {
+                        check(inner);
+                        return super.visitWhileLoop(inner, unused);
+                    }
+
+                    private void check(Tree inner) {
+                        Set<String> changed = assignedIn(inner);
+                        changed.retainAll(counters);
+                        if (!changed.isEmpty()) {
+                            report("NM_FLOW_04", inner);
+                        }
+                    }
+                }.scan(body, null);
+            }
+
+            checkAccumulator(body);
+            checkForwardCopy(body, counters);
+        }
+
+        /** Variables body changes outside the loops nested in it. */
+        private static Set<String> assignedOutsideLoops(StatementTree body) {
+            Set<String> names = new HashSet<>();
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitForLoop(ForLoopTree node, Void unused) {
+                    return null;
+                }
+
+                @Override
+                public Void visitWhileLoop(WhileLoopTree node, Void unused) {
+                    return null;
+                }
+
+                @Override
+                public Void visitDoWhileLoop(DoWhileLoopTree node, Void unused) {
+                    return null;
+                }
+
+                @Override
+                public Void visitExpressionStatement(ExpressionStatementTree node, Void unused) {
+                    names.addAll(assignedIn(node));
+                    return null;
+                }
+            }.scan(body, null);
+            return names;
+        }
+
+        private static boolean indexesWith(Tree body, String index) {
+            boolean[] found = {false};
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitArrayAccess(ArrayAccessTree node, Void unused) {
+                    found[0] |= index.equals(name(node.getIndex()));
+                    return super.visitArrayAccess(node, unused);
+                }
+            }.scan(body, null);
+            return found[0];
+        }
+
+        /** NM_MEM_05: a[i + 1] = a[i] while i counts up overwrites every later element. */
+        private void checkForwardCopy(StatementTree body, Set<String> counters) {
+            if (counters.isEmpty() || !countsUp(body, counters)) {
+                return;
+            }
+            Map<String, String> nextOf = new HashMap<>();
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void unused) {
+                    String base = successorOf(node.getInitializer());
+                    if (base != null) {
+                        nextOf.put(node.getName().toString(), base);
+                    }
+                    return super.visitVariable(node, unused);
+                }
+
+                @Override
+                public Void visitAssignment(AssignmentTree node, Void unused) {
+                    ExpressionTree target = unparen(node.getVariable());
+                    ExpressionTree value = unparen(node.getExpression());
+                    if (target instanceof ArrayAccessTree && value instanceof ArrayAccessTree) {
+                        ArrayAccessTree to = (ArrayAccessTree) target;
+                        ArrayAccessTree from = (ArrayAccessTree) value;
+                        String i = name(from.getIndex());
+                        String next = successorOf(to.getIndex());
+                        if (next == null) {
+                            next = nextOf.get(name(to.getIndex()));
+                        }
+                        if (i != null && counters.contains(i) && i.equals(next)
+                                && to.getExpression().toString()
+                                        .equals(from.getExpression().toString())) {
+                            report("NM_MEM_05", node);
+                        }
+                    }
+                    return super.visitAssignment(node, unused);
+                }
+            }.scan(body, null);
+        }
+
+        /** "v + 1" gives v, anything else null. */
+        private static String successorOf(ExpressionTree e) {
+            e = e == null ? null : unparen(e);
+            if (e != null && e.getKind() == Tree.Kind.PLUS) {
+                ExpressionTree right = unparen(((BinaryTree) e).getRightOperand());
+                if (right instanceof LiteralTree
+                        && Integer.valueOf(1).equals(((LiteralTree) right).getValue())) {
+                    return name(((BinaryTree) e).getLeftOperand());
+                }
+            }
+            return null;
+        }
+
+        /** False if a counter is decremented in the loop body or the for update. */
+        private boolean countsUp(StatementTree body, Set<String> counters) {
+            boolean[] down = {false};
+            TreeScanner<Void, Void> scanner = new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitUnary(UnaryTree node, Void unused) {
+                    if ((node.getKind() == Tree.Kind.POSTFIX_DECREMENT
+                            || node.getKind() == Tree.Kind.PREFIX_DECREMENT)
+                            && counters.contains(name(node.getExpression()))) {
+                        down[0] = true;
+                    }
+                    return super.visitUnary(node, unused);
+                }
+
+                @Override
+                public Void visitCompoundAssignment(CompoundAssignmentTree node, Void unused) {
+                    if (node.getKind() == Tree.Kind.MINUS_ASSIGNMENT
+                            && counters.contains(name(node.getVariable()))) {
+                        down[0] = true;
+                    }
+                    return super.visitCompoundAssignment(node, unused);
+                }
+
+                @Override
+                public Void visitAssignment(AssignmentTree node, Void unused) {
+                    if (counters.contains(name(node.getVariable()))
+                            && unparen(node.getExpression()).getKind() == Tree.Kind.MINUS) {
+                        down[0] = true;
+                    }
+                    return super.visitAssignment(node, unused);
+                }
+            };
+            scanner.scan(body, null);
+            if (getCurrentPath().getLeaf() instanceof ForLoopTree) {
+                scanner.scan(((ForLoopTree) getCurrentPath().getLeaf()).getUpdate(), null);
+            }
+            return !down[0];
+        }
+
+        private static boolean isLengthOf(ExpressionTree e) {
+            if (e instanceof MemberSelectTree) {
+                return ((MemberSelectTree) e).getIdentifier().contentEquals("length");
+            }
+            if (e instanceof MethodInvocationTree) {
+                ExpressionTree select = ((MethodInvocationTree) e).getMethodSelect();
+                return select instanceof MemberSelectTree
+                        && (((MemberSelectTree) select).getIdentifier().contentEquals("length")
+                                || ((MemberSelectTree) select).getIdentifier().contentEquals("size"));
+            }
+            return false;
+        }
+
+        @Override
+        public Void visitArrayAccess(ArrayAccessTree node, Void unused) {
+            // NM_MEM_04: a[a.length] or a[n] for an array created as new int[n]
+            String array = name(node.getExpression());
+            ExpressionTree index = unparen(node.getIndex());
+            if (array != null && (index.toString().equals(array + ".length")
+                    || (name(index) != null && name(index).equals(sizeOf(array))))) {
+                report("NM_MEM_04", node);
+            }
+            return super.visitArrayAccess(node, unused);
+        }
+
+        /** The variable `array` was created with (new T[size]) in this method, or null. */
+        private String sizeOf(String array) {
+            MethodTree method = enclosingMethod();
+            if (method == null) {
+                return null;
+            }
+            String[] size = {null};
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void unused) {
+                    record(node.getName().toString(), node.getInitializer());
+                    return super.visitVariable(node, unused);
+                }
+
+                @Override
+                public Void visitAssignment(AssignmentTree node, Void unused) {
+                    record(name(node.getVariable()), node.getExpression());
+                    return super.visitAssignment(node, unused);
+                }
+
+                private void record(String target, ExpressionTree value) {
+                    if (array.equals(target) && value instanceof NewArrayTree
+                            && ((NewArrayTree) value).getDimensions().size() == 1) {
+                        size[0] = name(((NewArrayTree) value).getDimensions().get(0));
+                    }
+                }
+            }.scan(method, null);
+            return size[0];
+        }
+
+        /** True if e is a variable some array in the enclosing method was created with. */
+        private boolean isArraySize(ExpressionTree e) {
+            String bound = name(e);
+            MethodTree method = enclosingMethod();
+            if (bound == null || method == null) {
+                return false;
+            }
+            boolean[] found = {false};
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitNewArray(NewArrayTree node, Void unused) {
+                    for (ExpressionTree dim : node.getDimensions()) {
+                        found[0] |= bound.equals(name(dim));
+                    }
+                    return super.visitNewArray(node, unused);
+                }
+            }.scan(method, null);
+            return found[0];
+        }
+
+        private MethodTree enclosingMethod() {
+            for (TreePath p = getCurrentPath(); p != null; p = p.getParentPath()) {
+                if (p.getLeaf() instanceof MethodTree) {
+                    return (MethodTree) p.getLeaf();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * NM_FLOW_01: for (...) { int sum = 0; sum += x; }. Declaration and update sit in
+         * the same iteration, outside any nested loop (a per-row counter that an inner
+         * loop adds to is fine).
+         */
+        private void checkAccumulator(StatementTree body) {
+            Set<String> resetHere = new HashSet<>();
+            List<Tree> updates = new ArrayList<>();
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void unused) {
+                    if (node.getInitializer() != null
+                            && unparen(node.getInitializer()) instanceof LiteralTree) {
+                        resetHere.add(node.getName().toString());
+                    }
+                    return super.visitVariable(node, unused);
+                }
+
+                @Override
+                public Void visitCompoundAssignment(CompoundAssignmentTree node, Void unused) {
+                    if (node.getKind() == Tree.Kind.PLUS_ASSIGNMENT) {
+                        updates.add(node);
+                    }
+                    return super.visitCompoundAssignment(node, unused);
+                }
+
+                @Override
+                public Void visitAssignment(AssignmentTree node, Void unused) {
+                    ExpressionTree value = unparen(node.getExpression());
+                    String target = name(node.getVariable());
+                    if (target != null && value.getKind() == Tree.Kind.PLUS
+                            && target.equals(name(((BinaryTree) value).getLeftOperand()))) {
+                        updates.add(node);
+                    }
+                    return super.visitAssignment(node, unused);
+                }
+
+                @Override
+                public Void visitForLoop(ForLoopTree node, Void unused) {
+                    return null;
+                }
+
+                @Override
+                public Void visitWhileLoop(WhileLoopTree node, Void unused) {
+                    return null;
+                }
+
+                @Override
+                public Void visitDoWhileLoop(DoWhileLoopTree node, Void unused) {
+                    return null;
+                }
+            }.scan(body, null);
+            for (Tree update : updates) {
+                ExpressionTree target = update instanceof AssignmentTree
+                        ? ((AssignmentTree) update).getVariable()
+                        : ((CompoundAssignmentTree) update).getVariable();
+                if (resetHere.contains(name(target))) {
+                    report("NM_FLOW_01", update);
+                }
+            }
+        }
+
+        /** NM_FLOW_03: nothing the condition reads changes inside the loop. */
+        private void checkStagnation(Tree loop, ExpressionTree cond, StatementTree body) {
+            Set<String> read = identifiersIn(cond);
+            if (read == null || read.isEmpty() || exitsEarly(body)) {
+                return;
+            }
+            Set<String> changed = assignedIn(body);
+            changed.retainAll(read);
+            if (changed.isEmpty()) {
+                report("NM_FLOW_03", loop);
+            }
+        }
+
+        // -- expressions -----------------------------------------------------
+
+        @Override
+        public Void visitBinary(BinaryTree node, Void unused) {
+            if (node.getKind() == Tree.Kind.XOR
+                    && unparen(node.getRightOperand()).getKind() == Tree.Kind.INT_LITERAL) {
+                report("NM_SYN_01", node);
+            }
+            if (node.getKind() == Tree.Kind.DIVIDE && isIntegral(node.getLeftOperand())
+                    && isIntegral(node.getRightOperand()) && storedAsFloating()) {
+                report("NM_TYP_01", node);
+            }
+            return super.visitBinary(node, unused);
+        }
+
+        /** The current integer expression ends up in a double/float variable, uncast. */
+        private boolean storedAsFloating() {
+            for (TreePath p = getCurrentPath().getParentPath(); p != null; p = p.getParentPath()) {
+                Tree leaf = p.getLeaf();
+                if (leaf instanceof ParenthesizedTree || leaf instanceof BinaryTree
+                        || leaf instanceof UnaryTree) {
+                    continue;
+                }
+                if (leaf instanceof VariableTree) {
+                    return isFloating(analysis.trees.getTypeMirror(p));
+                }
+                if (leaf instanceof AssignmentTree) {
+                    return isFloating(typeOf(((AssignmentTree) leaf).getVariable()));
+                }
+                return false;
+            }
+            return false;
+        }
+
+        @Override
+        public Void visitTypeCast(TypeCastTree node, Void unused) {
+            ExpressionTree inner = unparen(node.getExpression());
+            if (isFloating(typeOf(node)) && inner.getKind() == Tree.Kind.DIVIDE
+                    && isIntegral(((BinaryTree) inner).getLeftOperand())
+                    && isIntegral(((BinaryTree) inner).getRightOperand())) {
+                report("NM_TYP_02", node);
+            }
+            return super.visitTypeCast(node, unused);
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+            // NM_MEM_01: Arrays.sort(scores) next to a parallel names array
+            if (node.getMethodSelect().toString().equals("Arrays.sort")
+                    && node.getArguments().size() == 1 && arraysDeclared() >= 2) {
+                report("NM_MEM_01", node);
+            }
+            return super.visitMethodInvocation(node, unused);
+        }
+
+        private int arraysDeclared() {
+            MethodTree method = enclosingMethod();
+            if (method == null) {
+                return 0;
+            }
+            int[] count = {0};
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void unused) {
+                    if (node.getType() != null && node.getType().getKind() == Tree.Kind.ARRAY_TYPE
+                            && !(node.getInitializer() instanceof ArrayAccessTree)) {
+                        count[0]++;
+                    }
+                    return super.visitVariable(node, unused);
+                }
+            }.scan(method.getBody(), null);
+            return count[0];
+        }
+    }
+}
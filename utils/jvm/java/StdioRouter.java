@@ -0,0 +1,158 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Per-thread System.in and System.out for the Q*Test suites.
+ *
+ * System.setIn/setOut are process-global, so tests that swap them can only run one
+ * at a time. install() replaces both once with routing streams; a thread inside
+ * capture() reads its own input and writes to its own buffer, and threads it starts
+ * (a test's timeout thread running main, or threads the student creates) inherit
+ * that binding. Threads without a binding use the original streams.
+ *
+ * With every test going through capture(), JUnit can run test methods,
+ * parameterized cases and submissions in parallel in one JVM.
+ *
+ * Captured output is capped at OUTPUT_LIMIT bytes (the rest is dropped), so a
+ * runaway print loop cannot exhaust the heap before its test times out.
+ */
+public final class StdioRouter {
+
+    /** Test body that runs student code; may throw whatever main throws. */
+    @FunctionalInterface
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    static final int OUTPUT_LIMIT = 1 << 20;
+
+    private static final class Binding {
+        final InputStream in;
+        final CappedBuffer out = new CappedBuffer(OUTPUT_LIMIT);
+
+        Binding(InputStream in) {
+            this.in = in;
+        }
+    }
+
+    private static final InheritableThreadLocal<Binding> CURRENT = new InheritableThreadLocal<>();
+
+    private static InputStream originalIn;
+    private static PrintStream originalOut;
+
+    private StdioRouter() {
+    }
+
+    /** Route System.in/System.out through the current thread's binding. Idempotent. */
+    public static synchronized void install() {
+        if (originalOut != null) {
+            return;
+        }
+        originalIn = System.in;
+        originalOut = System.out;
+        System.setIn(new RoutingInput());
+        System.setOut(new PrintStream(new RoutingOutput(), true));
+    }
+
+    /**
+     * Run body with `input` as this thread's stdin and return what it printed.
+     *
+     * Output written after capture() returns (by a thread the body left running)
+     * goes to a buffer nobody reads, never to another test's output.
+     */
+    public static String capture(String input, Body body) throws Exception {
+        install();
+        Binding previous = CURRENT.get();
+        Binding binding = new Binding(new ByteArrayInputStream(input.getBytes()));
+        CURRENT.set(binding);
+        try {
+            body.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+        return binding.out.toString();
+    }
+
+    private static InputStream in() {
+        Binding binding = CURRENT.get();
+        return binding == null ? originalIn : binding.in;
+    }
+
+    private static OutputStream out() {
+        Binding binding = CURRENT.get();
+        return binding == null ? originalOut : binding.out;
+    }
+
+    /** Keeps the first `cap` bytes written and silently drops the rest. */
+    private static final class CappedBuffer extends ByteArrayOutputStream {
+        private final int cap;
+
+        CappedBuffer(int cap) {
+            this.cap = cap;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count < cap) {
+                super.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            super.write(b, off, Math.max(0, Math.min(len, cap - count)));
+        }
+    }
+
+    private static final class RoutingInput extends InputStream {
+        @Override
+        public int read() throws IOException {
+            return in().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return in().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in().available();
+        }
+
+        @Override
+        public void close() {
+            // Scanner.close() on System.in must not close the shared stream
+        }
+    }
+
+    private static final class RoutingOutput extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            out().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out().flush();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Where ExitRedirect points a submission's System.exit(int) calls.
+ *
+ * exit() throws Trap instead of ending the JVM, so the exit unwinds the
+ * student's main() like an exception, and the runner that loaded the class
+ * (TracerWorker, JUnitBatchRunner, ClassSpecRunner) reports it for that
+ * submission alone. Trap is an Error so a student's catch (Exception) does not
+ * swallow it.
+ */
+public final class SystemExit {
+
+    /** Thrown in place of exiting the JVM. */
+    public static final class Trap extends Error {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        Trap(int status) {
+            super("System.exit(" + status + ")");
+            this.status = status;
+        }
+    }
+
+    private SystemExit() {
+    }
+
+    public static void exit(int status) {
+        throw new Trap(status);
+    }
+
+    /** The Trap in t's cause chain (test frameworks and reflection wrap it), or null. */
+    static Trap find(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof Trap) {
+                return (Trap) c;
+            }
+            if (c.getCause() == c) {
+                break;
+            }
+        }
+        return null;
+    }
+}
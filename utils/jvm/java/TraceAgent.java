@@ -0,0 +1,273 @@
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Java agent that instruments student classes to feed TraceRecorder.
+ *
+ * At the start of every source line it injects TraceRecorder.line(method, line), and
+ * after every local store (xSTORE, IINC) it reloads the local and passes it to
+ * TraceRecorder.store(value, method, line, slot). Local variable names come from
+ * the LocalVariableTable, so sources should be compiled with -g.
+ *
+ * Only classes defined by application-created class loaders are touched (the
+ * per-run loaders of TracerWorker and JUnitBatchRunner); JDK and helper classes
+ * load through the boot, platform or system loader and are left alone. The
+ * instrumentation uses the ASM jar vendored in utils/jvm/lib, which the agent
+ * jar's Class-Path points to.
+ *
+ * Agent options: "capacity=N" sets the ring buffer size in events.
+ */
+public class TraceAgent {
+
+    private static final String RECORDER = "TraceRecorder";
+
+    public static void premain(String args, Instrumentation inst) {
+        if (args != null) {
+            for (String opt : args.split(",")) {
+                if (opt.startsWith("capacity=")) {
+                    TraceRecorder.setCapacity(Integer.parseInt(opt.substring("capacity=".length())));
+                }
+            }
+        }
+        inst.addTransformer(new Transformer());
+    }
+
+    private static final class Transformer implements ClassFileTransformer {
+        private final ClassLoader system = ClassLoader.getSystemClassLoader();
+        private final ClassLoader platform = ClassLoader.getPlatformClassLoader();
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> redefined,
+                ProtectionDomain domain, byte[] classfile) {
+            if (loader == null || loader == system || loader == platform || redefined != null) {
+                return null;
+            }
+            try {
+                ClassReader reader = new ClassReader(classfile);
+                ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+                reader.accept(new TracingClassVisitor(writer), 0);
+                return writer.toByteArray();
+            } catch (RuntimeException e) {
+                // Leave the class uninstrumented rather than break the run
+                return null;
+            }
+        }
+    }
+
+    private static final class TracingClassVisitor extends ClassVisitor {
+        private String owner;
+
+        TracingClassVisitor(ClassVisitor next) {
+            super(Opcodes.ASM9, next);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature,
+                String superName, String[] interfaces) {
+            owner = name;
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor,
+                String signature, String[] exceptions) {
+            MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                return mv;
+            }
+            int id = TraceRecorder.registerMethod(owner.replace('/', '.') + "." + name + descriptor);
+            return new TracingMethodVisitor(mv, id);
+        }
+    }
+
+    /**
+     * Injects the probes. A line probe is deferred to the first instruction of the
+     * line: ClassReader visits label, line number, then stack map frame, and the
+     * frame must stay at the label's offset (a branch target).
+     */
+    private static final class TracingMethodVisitor extends MethodVisitor {
+        private final int methodId;
+        private int line;
+        private int pendingLine = -1;
+        // Source line in effect at each label, for LocalVariableTable scopes
+        private final Map<Label, Integer> labelLines = new HashMap<>();
+
+        TracingMethodVisitor(MethodVisitor next, int methodId) {
+            super(Opcodes.ASM9, next);
+            this.methodId = methodId;
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            super.visitLabel(label);
+            labelLines.put(label, line);
+        }
+
+        @Override
+        public void visitLineNumber(int lineNumber, Label start) {
+            super.visitLineNumber(lineNumber, start);
+            line = lineNumber;
+            pendingLine = lineNumber;
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            flushLine();
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            flushLine();
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            flushLine();
+            super.visitVarInsn(opcode, var);
+            switch (opcode) {
+                case Opcodes.ISTORE:
+                    recordStore(Opcodes.ILOAD, var, "I");
+                    break;
+                case Opcodes.LSTORE:
+                    recordStore(Opcodes.LLOAD, var, "J");
+                    break;
+                case Opcodes.FSTORE:
+                    recordStore(Opcodes.FLOAD, var, "F");
+                    break;
+                case Opcodes.DSTORE:
+                    recordStore(Opcodes.DLOAD, var, "D");
+                    break;
+                case Opcodes.ASTORE:
+                    recordStore(Opcodes.ALOAD, var, "Ljava/lang/Object;");
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (opcode == Opcodes.NEW) {
+                // Frames may name this NEW's label as an uninitialized type, so the
+                // label must stay on the NEW itself
+                super.visitTypeInsn(opcode, type);
+                flushLine();
+                return;
+            }
+            flushLine();
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            flushLine();
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor,
+                boolean isInterface) {
+            flushLine();
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap,
+                Object... bootstrapArgs) {
+            flushLine();
+            super.visitInvokeDynamicInsn(name, descriptor, bootstrap, bootstrapArgs);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            flushLine();
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            flushLine();
+            super.visitLdcInsn(value);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            flushLine();
+            super.visitIincInsn(var, increment);
+            recordStore(Opcodes.ILOAD, var, "I");
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            flushLine();
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            flushLine();
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            flushLine();
+            super.visitMultiANewArrayInsn(descriptor, numDimensions);
+        }
+
+        @Override
+        public void visitLocalVariable(String name, String descriptor, String signature,
+                Label start, Label end, int index) {
+            super.visitLocalVariable(name, descriptor, signature, start, end, index);
+            if (!name.equals("this")) {
+                TraceRecorder.registerVariable(methodId, index, name,
+                        labelLines.getOrDefault(start, 0), labelLines.getOrDefault(end, line));
+            }
+        }
+
+        private void flushLine() {
+            if (pendingLine < 0) {
+                return;
+            }
+            int lineNumber = pendingLine;
+            pendingLine = -1;
+            push(methodId);
+            push(lineNumber);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "line", "(II)V", false);
+        }
+
+        private void recordStore(int loadOpcode, int var, String valueDescriptor) {
+            super.visitVarInsn(loadOpcode, var);
+            push(methodId);
+            push(line);
+            push(var);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, "store",
+                    "(" + valueDescriptor + "III)V", false);
+        }
+
+        private void push(int value) {
+            if (value >= -1 && value <= 5) {
+                super.visitInsn(Opcodes.ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                super.visitIntInsn(Opcodes.BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                super.visitIntInsn(Opcodes.SIPUSH, value);
+            } else {
+                super.visitLdcInsn(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Bounded ring buffer of line and local-store events, fed by code TraceAgent injects.
+ *
+ * Loaded from the bootstrap class path (see the agent jar's Boot-Class-Path) so
+ * instrumented classes in any class loader can reach it. Events are packed into
+ * parallel arrays; once the buffer is full the oldest events are overwritten,
+ * so a runaway loop keeps the tail of the execution.
+ *
+ * Trace file format (UTF-8, tab-separated, one record per line):
+ *
+ *   #trace  v1  events=N  dropped=D
+ *   M  methodId  Class.method(desc)
+ *   V  methodId  slot  name  fromLine  toLine
+ *   L  methodId  line
+ *   S  methodId  line  slot  value
+ *
+ * M and V records describe the methods the retained events refer to; L and S
+ * records are the retained events in execution order.
+ */
+public final class TraceRecorder {
+
+    private static final int KIND_LINE = 0;
+    private static final int KIND_STORE = 1;
+
+    private static final int MAX_VALUE_CHARS = 80;
+
+    // Static method/variable tables, filled in by TraceAgent at class load time
+    private static final List<String> METHODS = new ArrayList<>();
+    private static final List<String> VARIABLES = new ArrayList<>();
+
+    private static int capacity = 1 << 16;
+    private static long[] meta = new long[capacity];
+    private static Object[] values = new Object[capacity];
+    private static long count;
+    private static String pendingPath;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // The run was cut short (timeout): keep what was recorded so far
+            synchronized (TraceRecorder.class) {
+                if (pendingPath != null) {
+                    dumpQuietly();
+                }
+            }
+        }));
+    }
+
+    private TraceRecorder() {
+    }
+
+    // -- configuration and run boundaries (agent and worker) -----------------
+
+    public static synchronized void setCapacity(int events) {
+        capacity = Math.max(16, events);
+        meta = new long[capacity];
+        values = new Object[capacity];
+        count = 0;
+    }
+
+    public static synchronized int registerMethod(String name) {
+        METHODS.add(name);
+        return METHODS.size() - 1;
+    }
+
+    public static synchronized void registerVariable(int method, int slot, String name,
+            int fromLine, int toLine) {
+        VARIABLES.add(method + "\t" + slot + "\t" + name + "\t" + fromLine + "\t" + toLine);
+    }
+
+    /** Start recording a run whose trace goes to {@code path}. */
+    public static synchronized void begin(String path) {
+        count = 0;
+        Arrays.fill(values, null);
+        pendingPath = path;
+    }
+
+    /** Write the current run's trace and stop tracking it. */
+    public static synchronized void end() throws IOException {
+        if (pendingPath != null) {
+            dump();
+        }
+    }
+
+    // -- injected probes -----------------------------------------------------
+
+    public static synchronized void line(int method, int line) {
+        append(pack(KIND_LINE, method, line, 0), null);
+    }
+
+    public static synchronized void store(int value, int method, int line, int slot) {
+        append(pack(KIND_STORE, method, line, slot), Integer.valueOf(value));
+    }
+
+    public static synchronized void store(long value, int method, int line, int slot) {
+        append(pack(KIND_STORE, method, line, slot), Long.valueOf(value));
+    }
+
+    public static synchronized void store(float value, int method, int line, int slot) {
+        append(pack(KIND_STORE, method, line, slot), Float.valueOf(value));
+    }
+
+    public static synchronized void store(double value, int method, int line, int slot) {
+        append(pack(KIND_STORE, method, line, slot), Double.valueOf(value));
+    }
+
+    public static synchronized void store(Object value, int method, int line, int slot) {
+        append(pack(KIND_STORE, method, line, slot), render(value));
+    }
+
+    // -- internals -----------------------------------------------------------
+
+    private static long pack(int kind, int method, int line, int slot) {
+        return ((long) kind << 62) | ((long) (method & 0x3FFFFF) << 40)
+                | ((long) (line & 0xFFFFF) << 20) | (slot & 0xFFFFF);
+    }
+
+    private static void append(long packed, Object value) {
+        int i = (int) (count % capacity);
+        meta[i] = packed;
+        values[i] = value;
+        count++;
+    }
+
+    /** Snapshot a stored reference: only immutable values are kept as-is. */
+    private static Object render(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof String) {
+            String s = (String) value;
+            return s.length() > MAX_VALUE_CHARS ? s.substring(0, MAX_VALUE_CHARS) + "..." : s;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return value;
+        }
+        Class<?> cls = value.getClass();
+        if (cls.isArray()) {
+            return cls.getComponentType().getSimpleName() + "[" + Array.getLength(value) + "]";
+        }
+        // Calling toString() on student objects could run student code; stay opaque
+        return cls.getSimpleName();
+    }
+
+    private static void dumpQuietly() {
+        try {
+            dump();
+        } catch (IOException e) {
+            // Nothing useful to do during shutdown
+        }
+    }
+
+    private static void dump() throws IOException {
+        String path = pendingPath;
+        pendingPath = null;
+        long retained = Math.min(count, capacity);
+        long first = count - retained;
+        try (BufferedWriter w = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            w.write("#trace\tv1\tevents=" + count + "\tdropped=" + first + "\n");
+            // A long-lived worker accumulates methods from earlier runs; only
+            // describe the ones this run's events refer to
+            BitSet used = new BitSet();
+            for (long e = first; e < count; e++) {
+                used.set((int) ((meta[(int) (e % capacity)] >>> 40) & 0x3FFFFF));
+            }
+            for (int m = used.nextSetBit(0); m >= 0; m = used.nextSetBit(m + 1)) {
+                w.write("M\t" + m + "\t" + METHODS.get(m) + "\n");
+            }
+            for (String v : VARIABLES) {
+                if (used.get(Integer.parseInt(v.substring(0, v.indexOf('\t'))))) {
+                    w.write("V\t" + v + "\n");
+                }
+            }
+            for (long e = first; e < count; e++) {
+                int i = (int) (e % capacity);
+                long packed = meta[i];
+                int method = (int) ((packed >>> 40) & 0x3FFFFF);
+                int line = (int) ((packed >>> 20) & 0xFFFFF);
+                if ((packed >>> 62) == KIND_LINE) {
+                    w.write("L\t" + method + "\t" + line + "\n");
+                } else {
+                    int slot = (int) (packed & 0xFFFFF);
+                    w.write("S\t" + method + "\t" + line + "\t" + slot + "\t"
+                            + escape(String.valueOf(values[i])) + "\n");
+                }
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,438 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Long-lived JVM worker for running student programs.
+ *
+ * Reads length-prefixed requests from the real stdin and answers on the real
+ * stdout, so one JVM can run many submissions back to back. Each run loads the
+ * submission's classes in a throwaway class loader (fresh static state), and
+ * redirects System.in/out/err for the duration of main(). System.exit() calls
+ * in the submission are redirected at class load (see ExitRedirect) to
+ * SystemExit, which ends main() with the exit status instead of the JVM.
+ *
+ * main() runs on its own thread while the worker thread watches it (see
+ * Watchdog) and stops it early when it is clearly not going to terminate:
+ * still burning CPU after all stdin was read, output past the cap, or no
+ * output/input progress for the idle window. A stopped run is answered with
+ * the trigger as its reason; if the thread survives Thread.stop() the worker
+ * answers with retire=1 and exits. On JDK 20+, where Thread.stop() always
+ * throws, every stopped run retires the worker.
+ *
+ * Frames are big-endian: a string is an int byte length followed by UTF-8
+ * bytes, a blob is an int byte length followed by raw bytes.
+ *
+ * Request "run":  op, classDir, className, stdin blob,
+ *                 outputLimit int (bytes), spinMillis int, idleMillis int (0 = off)
+ * Response:       exitCode int, stdout blob, stderr blob, reason string
+ *                 ("" or "stdin_exhausted", "output_limit", "no_progress"), retire int,
+ *                 cpuNanos long, allocBytes long (main's thread; -1 if unsupported)
+ *
+ * Request "trace": as "run" plus tracePath; same response. The run's TraceRecorder
+ *                  events (see TraceAgent) are written to tracePath.
+ *
+ * Request "compile": op, count int, then per unit className, source, outDir
+ *                    (empty outDir keeps the classes in memory only)
+ * Response:          count int, then per unit success int, diagnostic count int,
+ *                    per diagnostic kind, line int, column int, message; then stderr
+ *                    Units are compiled with -g so traces can name local variables.
+ */
+public class TracerWorker {
+
+    private static final PrintStream REAL_ERR = System.err;
+
+    private static final long POLL_MILLIS = 10;
+    private static final long STOP_GRACE_MILLIS = 1000;
+
+    private static InMemoryCompiler compiler;
+
+    public static void main(String[] args) throws Exception {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+        while (true) {
+            String op;
+            try {
+                op = readString(in);
+            } catch (EOFException e) {
+                return;
+            }
+
+            boolean retire = false;
+            if (op.equals("run")) {
+                String classDir = readString(in);
+                String className = readString(in);
+                byte[] stdin = readBlob(in);
+                Limits limits = Limits.read(in);
+                retire = handleRun(out, classDir, className, stdin, limits);
+            } else if (op.equals("trace")) {
+                String classDir = readString(in);
+                String className = readString(in);
+                byte[] stdin = readBlob(in);
+                Limits limits = Limits.read(in);
+                TraceRecorder.begin(readString(in));
+                retire = handleRun(out, classDir, className, stdin, limits);
+                TraceRecorder.end();
+            } else if (op.equals("compile")) {
+                handleCompile(in, out);
+            } else if (op.equals("ping")) {
+                out.writeInt(0);
+            } else {
+                REAL_ERR.println("TracerWorker: unknown op " + op);
+                return;
+            }
+            out.flush();
+            if (retire) {
+                // A student thread outlived Thread.stop(); don't share the JVM with it
+                Runtime.getRuntime().halt(0);
+            }
+        }
+    }
+
+    /** Runs one program; returns true if the worker must retire afterwards. */
+    private static boolean handleRun(DataOutputStream out, String classDir, String className,
+            byte[] stdin, Limits limits) throws Exception {
+        CappedBuffer stdoutBuf = new CappedBuffer(limits.outputBytes);
+        CappedBuffer stderrBuf = new CappedBuffer(limits.outputBytes);
+        ByteArrayInputStream stdinStream = new ByteArrayInputStream(stdin);
+
+        InputStream savedIn = System.in;
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        PrintStream capturedOut = new PrintStream(stdoutBuf, true, StandardCharsets.UTF_8);
+        PrintStream capturedErr = new PrintStream(stderrBuf, true, StandardCharsets.UTF_8);
+
+        int[] exitCode = new int[1];
+        long[] usage = {-1, -1};
+        Thread runner = new Thread(() -> {
+            long cpuStart = threadCpuNanos();
+            long allocStart = threadAllocatedBytes();
+            try {
+                exitCode[0] = runMain(classDir, className, capturedErr);
+            } catch (Throwable t) {
+                exitCode[0] = reportThrowable(t, capturedErr);
+            } finally {
+                usage[0] = cpuStart < 0 ? -1 : threadCpuNanos() - cpuStart;
+                usage[1] = allocStart < 0 ? -1 : threadAllocatedBytes() - allocStart;
+            }
+        }, "main");
+        String reason = null;
+        boolean retire = false;
+        System.setIn(stdinStream);
+        System.setOut(capturedOut);
+        System.setErr(capturedErr);
+        try {
+            Watchdog watchdog = new Watchdog(limits, runner, stdinStream, stdoutBuf, stderrBuf);
+            runner.start();
+            while (runner.isAlive()) {
+                runner.join(POLL_MILLIS);
+                if (runner.isAlive() && (reason = watchdog.check()) != null) {
+                    retire = !stop(runner);
+                    exitCode[0] = 1;
+                    break;
+                }
+            }
+        } finally {
+            capturedOut.flush();
+            capturedErr.flush();
+            System.setIn(savedIn);
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+        }
+
+        out.writeInt(exitCode[0]);
+        writeBlob(out, stdoutBuf.toByteArray());
+        writeBlob(out, stderrBuf.toByteArray());
+        writeString(out, reason == null ? "" : reason);
+        out.writeInt(retire ? 1 : 0);
+        out.writeLong(usage[0]);
+        out.writeLong(usage[1]);
+        return retire;
+    }
+
+    private static long threadCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    @SuppressWarnings("deprecation") // Thread.getId; threadId() needs Java 19
+    private static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /** Stops a runaway student thread; false if it is still alive afterwards. */
+    @SuppressWarnings({ "deprecation", "removal" }) // no other way to end a thread that ignores interrupts
+    private static boolean stop(Thread runner) throws InterruptedException {
+        if (Runtime.version().feature() >= 20) {
+            // Thread.stop() always throws there; only retiring the worker helps
+            return false;
+        }
+        runner.stop();
+        runner.join(STOP_GRACE_MILLIS);
+        return !runner.isAlive();
+    }
+
+    private static void handleCompile(DataInputStream in, DataOutputStream out) throws Exception {
+        if (compiler == null) {
+            compiler = new InMemoryCompiler();
+        }
+        int count = in.readInt();
+        String[][] units = new String[count][];
+        for (int i = 0; i < count; i++) {
+            units[i] = new String[] { readString(in), readString(in), readString(in) };
+        }
+
+        out.writeInt(count);
+        for (String[] unit : units) {
+            String className = unit[0];
+            String outDir = unit[2];
+            InMemoryCompiler.Result result = compiler.compile(className, unit[1], List.of("-g"));
+            if (result.success && !outDir.isEmpty()) {
+                InMemoryCompiler.writeClasses(result.classes, outDir);
+            }
+
+            StringBuilder stderr = new StringBuilder();
+            out.writeInt(result.success ? 1 : 0);
+            out.writeInt(result.diagnostics.size());
+            for (Diagnostic<? extends JavaFileObject> d : result.diagnostics) {
+                writeString(out, d.getKind().toString().toLowerCase(Locale.ROOT));
+                out.writeInt((int) Math.max(d.getLineNumber(), 0));
+                out.writeInt((int) Math.max(d.getColumnNumber(), 0));
+                writeString(out, d.getMessage(Locale.ROOT));
+                stderr.append(InMemoryCompiler.format(className + ".java", d)).append('\n');
+            }
+            writeString(out, stderr.toString());
+        }
+    }
+
+    /** Loads className from classDir in a fresh class loader and runs its main(). */
+    static int runMain(String classDir, String className, PrintStream capturedErr) {
+        try (URLClassLoader loader = new ExitRedirectingLoader(classDir)) {
+            Class<?> cls = Class.forName(className, true, loader);
+            Method main = cls.getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                throw new NoSuchMethodException(className + ".main is not static");
+            }
+            main.setAccessible(true);
+            main.invoke(null, (Object) new String[0]);
+            return 0;
+        } catch (InvocationTargetException e) {
+            return reportThrowable(e.getCause(), capturedErr);
+        } catch (SystemExit.Trap e) {
+            return e.status;
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            capturedErr.println("Error: Could not find or load main class " + className);
+            capturedErr.println("Caused by: " + e);
+            return 1;
+        } catch (IOException | IllegalAccessException e) {
+            capturedErr.println("Error: " + e);
+            return 1;
+        }
+    }
+
+    /** Loads a submission's classes with their System.exit() calls sent to SystemExit. */
+    static final class ExitRedirectingLoader extends URLClassLoader {
+        ExitRedirectingLoader(String classDir) throws IOException {
+            super(new URL[] { Paths.get(classDir).toUri().toURL() }, ClassLoader.getPlatformClassLoader());
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (name.equals(SystemExit.class.getName())) {
+                return SystemExit.class;
+            }
+            URL resource = findResource(name.replace('.', '/') + ".class");
+            if (resource == null) {
+                throw new ClassNotFoundException(name);
+            }
+            try (InputStream in = resource.openStream()) {
+                byte[] bytes = ExitRedirect.apply(in.readAllBytes(), SystemExit.class.getName());
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    private static int reportThrowable(Throwable t, PrintStream err) {
+        if (t instanceof SystemExit.Trap) {
+            return ((SystemExit.Trap) t).status;
+        }
+        if (t instanceof ThreadDeath) {
+            // Stopped by the watchdog, which reports the reason itself
+            return 1;
+        }
+        err.print("Exception in thread \"main\" ");
+        t.printStackTrace(err);
+        return 1;
+    }
+
+    static String readString(DataInputStream in) throws Exception {
+        return new String(readBlob(in), StandardCharsets.UTF_8);
+    }
+
+    static byte[] readBlob(DataInputStream in) throws Exception {
+        int len = in.readInt();
+        byte[] data = new byte[len];
+        in.readFully(data);
+        return data;
+    }
+
+    static void writeBlob(DataOutputStream out, byte[] data) throws Exception {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static void writeString(DataOutputStream out, String s) throws Exception {
+        writeBlob(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Watchdog settings for one run; 0 disables a trigger. */
+    static final class Limits {
+        final int outputBytes;
+        final int spinMillis;
+        final int idleMillis;
+
+        Limits(int outputBytes, int spinMillis, int idleMillis) {
+            this.outputBytes = outputBytes;
+            this.spinMillis = spinMillis;
+            this.idleMillis = idleMillis;
+        }
+
+        static Limits read(DataInputStream in) throws IOException {
+            return new Limits(in.readInt(), in.readInt(), in.readInt());
+        }
+    }
+
+    /** Captured output that keeps at most {@code cap} bytes (0 = all) but counts everything. */
+    static final class CappedBuffer extends ByteArrayOutputStream {
+        private final int cap;
+        private volatile long total;
+
+        CappedBuffer(int cap) {
+            this.cap = cap;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            total++;
+            if (cap == 0 || count < cap) {
+                super.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            total += len;
+            int keep = cap == 0 ? len : Math.min(len, cap - count);
+            if (keep > 0) {
+                super.write(b, off, keep);
+            }
+        }
+
+        long total() {
+            return total;
+        }
+    }
+
+    /**
+     * Decides when a running program will not terminate on its own. Polled by
+     * the worker thread; returns the reason to stop it, or null to keep going.
+     *
+     * As in utils.execution's subprocess monitor, the spin and no-progress
+     * clocks start at main's first stdin read or output, so class loading and
+     * static initialisation on a loaded machine are not taken for a hang.
+     */
+    static final class Watchdog {
+        private final Limits limits;
+        private final Thread runner;
+        private final ByteArrayInputStream stdin;
+        private final CappedBuffer stdout;
+        private final CappedBuffer stderr;
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        private long lastOutput;
+        private int lastAvailable;
+        /** When main last read stdin or wrote output; -1 until it first does. */
+        private long lastProgressNanos = -1;
+        private long cpuAtExhaustion = -1;
+
+        Watchdog(Limits limits, Thread runner, ByteArrayInputStream stdin, CappedBuffer stdout,
+                CappedBuffer stderr) {
+            this.limits = limits;
+            this.runner = runner;
+            this.stdin = stdin;
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.lastAvailable = stdin.available();
+        }
+
+        String check() {
+            long now = System.nanoTime();
+            long output = stdout.total() + stderr.total();
+            int available = stdin.available();
+            if (output != lastOutput || available != lastAvailable) {
+                lastOutput = output;
+                lastAvailable = available;
+                lastProgressNanos = now;
+            }
+
+            if (limits.outputBytes > 0 && output > limits.outputBytes) {
+                return "output_limit";
+            }
+            boolean started = lastProgressNanos >= 0;
+            if (limits.spinMillis > 0 && started && available == 0) {
+                long cpu = cpuNanos(now);
+                if (cpuAtExhaustion < 0) {
+                    cpuAtExhaustion = cpu;
+                } else if (cpu - cpuAtExhaustion > limits.spinMillis * 1_000_000L) {
+                    return "stdin_exhausted";
+                }
+            }
+            if (limits.idleMillis > 0 && started && now - lastProgressNanos > limits.idleMillis * 1_000_000L) {
+                return "no_progress";
+            }
+            return null;
+        }
+
+        private long cpuNanos(long wallNanos) {
+            long cpu = threads.isThreadCpuTimeSupported() ? threads.getThreadCpuTime(runner.getId()) : -1;
+            // Without thread CPU accounting, wall time is the best approximation
+            return cpu >= 0 ? cpu : wallNanos;
+        }
+    }
+}
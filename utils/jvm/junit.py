@@ -0,0 +1,172 @@
+"""Batch JUnit grading of student submissions in a single JVM.
+
+Drives JUnitBatchRunner: every (student, question) file is compiled in memory
+with data/<assignment>/tests/src/<Q>Test.java, isolated in its own class
+loader, and run through the JUnit Platform Launcher. This replaces one
+run_tests.sh call (and one JUnit console JVM) per file.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import json
+import subprocess
+import tempfile
+from pathlib import Path
+from typing import TYPE_CHECKING, Any
+
+from utils.jvm.build import JAVA_SRC_DIR, junit_classpath
+
+if TYPE_CHECKING:
+    from utils.jvm.cache import ExecutionCache
+
+DATA_ROOT = Path("data")
+
+# Outcomes that depend on the code alone; "error" entries and entries with a
+# timed-out test may be load-dependent and are always rerun
+_CACHEABLE_STATUSES = {"passed", "failed", "compile_error"}
+
+
+class JUnitBatchError(RuntimeError):
+    """Raised when the batch runner itself fails (not when tests fail)."""
+
+
+def tests_dir_for(assignment: str) -> Path:
+    return DATA_ROOT / assignment / "tests" / "src"
+
+
+def _runner_digest() -> str:
+    """Cache key part that changes whenever the runner or the test support changes."""
+    digest = hashlib.sha256()
+    for name in (
+        "JUnitBatchRunner.java",
+        "InMemoryCompiler.java",
+        "MemoryClassLoader.java",
+        "ExitRedirect.java",
+        "SystemExit.java",
+        "Json.java",
+        "StdioRouter.java",
+        "ResourceProfiler.java",
+    ):
+        digest.update((JAVA_SRC_DIR / name).read_bytes())
+    return digest.hexdigest()
+
+
+def run_junit_batch(
+    assignment: str,
+    submissions: list[tuple[str, str, Path]],
+    threads: int = 1,
+    method_threads: int = 1,
+    test_timeout: float = 10.0,
+    java: str = "java",
+    jvm_args: tuple[str, ...] = ("-XX:+UseSerialGC",),
+    cache: ExecutionCache | None = None,
+) -> dict[str, dict[str, dict[str, Any]]]:
+    """Run <Q>Test against each (student, question, path) submission.
+
+    Returns a report keyed by student, then question. Each entry has status
+    ("passed", "failed", "compile_error" or "error"), tests_run, tests_passed,
+    duration_ms, errors and per-test outcomes with the wall_ms, cpu_ms and
+    alloc_bytes ResourceProfiler measured. With a cache, submissions whose
+    source, test class, runner and timeout are unchanged are not rerun.
+
+    `threads` submissions are graded at once; method_threads > 1 also runs each
+    submission's test methods in parallel (the tests capture stdio per thread
+    through StdioRouter).
+    """
+    tests_dir = tests_dir_for(assignment)
+    if not tests_dir.is_dir():
+        raise JUnitBatchError(f"No JUnit tests for {assignment}: {tests_dir} not found")
+
+    report: dict[str, dict[str, dict[str, Any]]] = {}
+    keys: dict[tuple[str, str], tuple[str, ...]] = {}
+    if cache is not None:
+        runner = _runner_digest()
+        pending = []
+        for student, question, path in submissions:
+            test_file = tests_dir / f"{question.upper()}Test.java"
+            test_source = test_file.read_text(encoding="utf-8") if test_file.exists() else ""
+            key = (path.read_text(encoding="utf-8"), test_source, runner, f"{test_timeout:g}")
+            cached = cache.get_json("junit", *key)
+            if cached is not None:
+                report.setdefault(student, {})[question] = cached
+            else:
+                keys[(student, question.upper())] = key
+                pending.append((student, question, path))
+        submissions = pending
+        if not submissions:
+            return report
+
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        manifest = tmp_path / "submissions.tsv"
+        manifest.write_text(
+            "".join(f"{student}\t{question}\t{path.resolve()}\n" for student, question, path in submissions),
+            encoding="utf-8",
+        )
+        report_path = tmp_path / "report.json"
+
+        cmd = [
+            java,
+            *jvm_args,
+            "-cp",
+            junit_classpath(),
+            "JUnitBatchRunner",
+            "--tests",
+            str(tests_dir.resolve()),
+            "--manifest",
+            str(manifest),
+            "--report",
+            str(report_path),
+            "--threads",
+            str(threads),
+            "--method-threads",
+            str(method_threads),
+            "--timeout",
+            f"{test_timeout:g} s",
+        ]
+        result = subprocess.run(cmd, capture_output=True, text=True)
+        if result.returncode != 0 or not report_path.exists():
+            raise JUnitBatchError(f"JUnitBatchRunner failed:\n{result.stderr[-2000:]}")
+
+        entries = json.loads(report_path.read_text(encoding="utf-8"))["submissions"]
+
+    for entry in entries:
+        student = entry.pop("student")
+        question = entry.pop("question")
+        report.setdefault(student, {})[question] = entry
+        if cache is not None and cacheable(entry):
+            cache.put_json("junit", entry, *keys[(student, question)])
+    return report
+
+
+def resource_totals(
+    report: dict[str, dict[str, dict[str, Any]]],
+) -> list[tuple[str, str, float, float, int]]:
+    """(student, question, wall_ms, cpu_ms, alloc_bytes) summed over each file's tests.
+
+    Sorted by CPU time, most expensive first. Unmeasured tests count as zero.
+    """
+    totals = []
+    for student, questions in report.items():
+        for question, entry in questions.items():
+            tests = entry.get("tests", [])
+            totals.append(
+                (
+                    student,
+                    question,
+                    sum(max(t.get("wall_ms") or 0, 0) for t in tests),
+                    sum(max(t.get("cpu_ms") or 0, 0) for t in tests),
+                    sum(max(t.get("alloc_bytes") or 0, 0) for t in tests),
+                )
+            )
+    return sorted(totals, key=lambda row: row[3], reverse=True)
+
+
+def cacheable(entry: dict[str, Any]) -> bool:
+    """Whether a runner report entry depends on the code alone, so it may be cached."""
+    if entry["status"] not in _CACHEABLE_STATUSES:
+        return False
+    return not any(
+        (t.get("message") or "").startswith("TimeoutException") for t in entry["tests"]
+    )
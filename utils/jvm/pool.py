@@ -0,0 +1,368 @@
+"""Pool of long-lived JVM workers for running compiled student programs.
+
+Starting a JVM dominates the cost of running a tiny Scanner program, so the
+pool keeps `size` TracerWorker processes alive and hands each run to an idle
+one. A worker runs one program at a time (System.in/out are process-global),
+so parallelism comes from the number of workers.
+
+A run that exceeds its timeout or crashes the worker gets that worker killed
+and replaced; the caller sees the same RunResult it would get from a
+`java` subprocess. The worker enforces the run's Watchdog itself (it can see
+the program's buffered output and stdin position) and stops non-terminating
+programs without losing the warm JVM. On JDK 20+ Thread.stop() is gone, so
+there a stopped program retires its worker and the pool starts a new one.
+
+System.exit() is trapped without a SecurityManager (removed in JDK 24): the
+worker rewrites the submission's exit calls as it loads its classes.
+"""
+
+from __future__ import annotations
+
+import os
+import queue
+import select
+import struct
+import subprocess
+import threading
+import time
+from dataclasses import dataclass
+from pathlib import Path
+
+from utils.execution import CompileDiagnostic, CompileResult, RunResult, Watchdog
+from utils.jvm.build import ensure_built
+
+DEFAULT_JVM_ARGS = (
+    "-XX:+UseSerialGC",
+    "-Xshare:auto",
+)
+
+# First request to a fresh worker also pays JVM startup
+STARTUP_TIMEOUT = 30.0
+
+
+class WorkerCrashed(RuntimeError):
+    """The worker process died or broke the wire protocol."""
+
+
+@dataclass
+class WorkerRun:
+    """A worker's answer to one run/trace request."""
+
+    exit_code: int
+    stdout: bytes
+    stderr: bytes
+    reason: str  # watchdog trigger that stopped the program, "" if it finished
+    retire: bool  # the worker is exiting and must not be reused
+    cpu_nanos: int  # CPU time of main's thread, -1 if unsupported
+    alloc_bytes: int  # bytes allocated by main's thread, -1 if unsupported
+
+
+def _blob(data: bytes) -> bytes:
+    return struct.pack(">i", len(data)) + data
+
+
+def _string(value: str) -> bytes:
+    return _blob(value.encode("utf-8"))
+
+
+class JvmWorker:
+    """A single TracerWorker process speaking the length-prefixed protocol."""
+
+    def __init__(self, java: str, classpath: Path, jvm_args: tuple[str, ...]):
+        self.proc = subprocess.Popen(
+            [java, *jvm_args, "-cp", str(classpath), "TracerWorker"],
+            stdin=subprocess.PIPE,
+            stdout=subprocess.PIPE,
+            stderr=subprocess.DEVNULL,
+            bufsize=0,
+        )
+        self._fd = self.proc.stdout.fileno()
+
+    def alive(self) -> bool:
+        return self.proc.poll() is None
+
+    def kill(self) -> None:
+        if self.alive():
+            self.proc.kill()
+        self.proc.wait()
+
+    def close(self) -> None:
+        """Ask the worker to exit by closing its stdin, killing it if it lingers."""
+        try:
+            self.proc.stdin.close()
+            self.proc.wait(timeout=2.0)
+        except (OSError, subprocess.TimeoutExpired):
+            self.kill()
+
+    def ping(self, timeout: float = STARTUP_TIMEOUT) -> None:
+        self._send(_string("ping"))
+        self._read_int(time.monotonic() + timeout)
+
+    def terminate(self, grace: float = 2.0) -> None:
+        """Stop the worker with SIGTERM so shutdown hooks (trace dumps) run, then kill."""
+        if self.alive():
+            self.proc.terminate()
+            try:
+                self.proc.wait(timeout=grace)
+            except subprocess.TimeoutExpired:
+                pass
+        self.kill()
+
+    def run(
+        self,
+        class_dir: Path,
+        class_name: str,
+        stdin_input: bytes,
+        timeout: float,
+        trace_path: Path | None = None,
+        watchdog: Watchdog | None = None,
+    ) -> WorkerRun:
+        """Run `class_name` from `class_dir`.
+
+        With trace_path, the run is traced (worker started with TraceAgent) and
+        the trace file is written there.
+        """
+        payload = _string(str(class_dir)) + _string(class_name) + _blob(stdin_input)
+        if watchdog is None:
+            payload += struct.pack(">iii", 0, 0, 0)
+        else:
+            payload += struct.pack(
+                ">iii",
+                watchdog.output_limit,
+                round(watchdog.spin_seconds * 1000),
+                round(watchdog.idle_seconds * 1000),
+            )
+        if trace_path is None:
+            self._send(_string("run") + payload)
+        else:
+            self._send(_string("trace") + payload + _string(str(trace_path)))
+        deadline = time.monotonic() + timeout
+        return WorkerRun(
+            exit_code=self._read_int(deadline),
+            stdout=self._read_exact(self._read_int(deadline), deadline),
+            stderr=self._read_exact(self._read_int(deadline), deadline),
+            reason=self._read_string(deadline),
+            retire=self._read_int(deadline) == 1,
+            cpu_nanos=self._read_long(deadline),
+            alloc_bytes=self._read_long(deadline),
+        )
+
+    def compile(
+        self, units: list[tuple[str, str, Path | None]], timeout: float
+    ) -> list[CompileResult]:
+        """Compile (class_name, source, out_dir) units in-process, one result per unit.
+
+        Units with out_dir=None are compiled for diagnostics only.
+        """
+        payload = _string("compile") + struct.pack(">i", len(units))
+        for class_name, source, out_dir in units:
+            payload += _string(class_name) + _string(source)
+            payload += _string(str(Path(out_dir).resolve()) if out_dir is not None else "")
+        self._send(payload)
+
+        deadline = time.monotonic() + timeout
+        results = []
+        for _ in range(self._read_int(deadline)):
+            success = self._read_int(deadline) == 1
+            diagnostics = []
+            for _ in range(self._read_int(deadline)):
+                kind = self._read_string(deadline)
+                line = self._read_int(deadline)
+                column = self._read_int(deadline)
+                message = self._read_string(deadline)
+                diagnostics.append(CompileDiagnostic(kind, line, column, message))
+            stderr = self._read_string(deadline)
+            results.append(CompileResult(success=success, stderr=stderr, diagnostics=diagnostics))
+        return results
+
+    def _send(self, payload: bytes) -> None:
+        try:
+            self.proc.stdin.write(payload)
+            self.proc.stdin.flush()
+        except (BrokenPipeError, OSError) as e:
+            raise WorkerCrashed(str(e)) from e
+
+    def _read_int(self, deadline: float) -> int:
+        return struct.unpack(">i", self._read_exact(4, deadline))[0]
+
+    def _read_long(self, deadline: float) -> int:
+        return struct.unpack(">q", self._read_exact(8, deadline))[0]
+
+    def _read_string(self, deadline: float) -> str:
+        return self._read_exact(self._read_int(deadline), deadline).decode("utf-8")
+
+    def _read_exact(self, n: int, deadline: float) -> bytes:
+        buf = bytearray()
+        while len(buf) < n:
+            remaining = deadline - time.monotonic()
+            if remaining <= 0:
+                raise TimeoutError
+            ready, _, _ = select.select([self._fd], [], [], remaining)
+            if not ready:
+                raise TimeoutError
+            chunk = os.read(self._fd, n - len(buf))
+            if not chunk:
+                raise WorkerCrashed("worker closed its output")
+            buf += chunk
+        return bytes(buf)
+
+
+class JvmWorkerPool:
+    """Thread-safe pool of JvmWorker processes, spawned lazily up to `size`."""
+
+    def __init__(
+        self,
+        size: int | None = None,
+        java: str = "java",
+        jvm_args: tuple[str, ...] = DEFAULT_JVM_ARGS,
+    ):
+        self.size = size or os.cpu_count() or 1
+        self.java = java
+        self.jvm_args = jvm_args
+        self._classpath = ensure_built()
+        self._idle: queue.LifoQueue[JvmWorker | None] = queue.LifoQueue()
+        self._all: set[JvmWorker] = set()
+        self._lock = threading.Lock()
+        self._closed = False
+
+    def __enter__(self) -> JvmWorkerPool:
+        return self
+
+    def __exit__(self, *exc) -> None:
+        self.close()
+
+    def run(
+        self,
+        class_dir: Path,
+        class_name: str,
+        stdin_input: str = "",
+        timeout: float = 10.0,
+        trace_path: Path | None = None,
+        watchdog: Watchdog | None = None,
+    ) -> RunResult:
+        """Run a compiled class on a warm worker, mirroring a `java` subprocess run.
+
+        trace_path requests a trace (see utils.jvm.tracing); on a timeout the
+        worker is stopped gracefully so the partial trace is still written.
+        """
+        try:
+            worker = self._acquire()
+        except (OSError, WorkerCrashed, TimeoutError) as e:
+            return RunResult(
+                success=False,
+                stdout="",
+                stderr=f"JVM worker failed to start: {e}",
+                timed_out=False,
+                infra_error=True,
+            )
+
+        try:
+            reply = worker.run(
+                Path(class_dir).resolve(),
+                class_name,
+                stdin_input.encode("utf-8"),
+                timeout,
+                Path(trace_path).resolve() if trace_path is not None else None,
+                watchdog,
+            )
+        except TimeoutError:
+            self._discard(worker, graceful=trace_path is not None)
+            return RunResult(
+                success=False,
+                stdout="",
+                stderr="Execution timed out",
+                timed_out=True,
+                reason="timeout",
+            )
+        except WorkerCrashed:
+            self._discard(worker)
+            return RunResult(
+                success=False,
+                stdout="",
+                stderr="JVM worker crashed",
+                timed_out=False,
+                infra_error=True,
+            )
+
+        if reply.retire:
+            self._discard(worker)
+        else:
+            self._release(worker)
+        usage = {
+            "cpu_ms": reply.cpu_nanos / 1e6 if reply.cpu_nanos >= 0 else None,
+            "alloc_bytes": reply.alloc_bytes if reply.alloc_bytes >= 0 else None,
+        }
+        if reply.reason:
+            return RunResult(
+                success=False,
+                stdout=reply.stdout.decode("utf-8", errors="replace"),
+                stderr=watchdog.message(reply.reason),
+                timed_out=True,
+                reason=reply.reason,
+                **usage,
+            )
+        return RunResult(
+            success=(reply.exit_code == 0),
+            stdout=reply.stdout.decode("utf-8", errors="replace"),
+            stderr=reply.stderr.decode("utf-8", errors="replace"),
+            timed_out=False,
+            **usage,
+        )
+
+    def start(self) -> None:
+        """Start one worker now, so a JVM that cannot start fails here, not on every run.
+
+        Raises OSError, WorkerCrashed or TimeoutError like a worker start in run().
+        """
+        self._release(self._acquire())
+
+    def close(self) -> None:
+        with self._lock:
+            self._closed = True
+            workers = list(self._all)
+            self._all.clear()
+        for worker in workers:
+            worker.close()
+        # Wake any thread blocked in _acquire so it sees the pool is closed
+        for _ in range(self.size):
+            self._idle.put(None)
+
+    def _acquire(self) -> JvmWorker:
+        while True:
+            if self._closed:
+                raise WorkerCrashed("pool is closed")
+            try:
+                worker = self._idle.get_nowait()
+            except queue.Empty:
+                worker = None
+                with self._lock:
+                    if len(self._all) < self.size:
+                        worker = JvmWorker(self.java, self._classpath, self.jvm_args)
+                        self._all.add(worker)
+                if worker is not None:
+                    try:
+                        worker.ping()
+                    except (TimeoutError, WorkerCrashed):
+                        self._discard(worker)
+                        raise
+                    return worker
+                worker = self._idle.get()
+
+            # None is a wake-up token left by _discard: a slot freed up, so retry spawning
+            if worker is not None:
+                return worker
+
+    def _release(self, worker: JvmWorker) -> None:
+        if worker.alive():
+            self._idle.put(worker)
+        else:
+            self._discard(worker)
+
+    def _discard(self, worker: JvmWorker, graceful: bool = False) -> None:
+        if graceful:
+            worker.terminate()
+        else:
+            worker.kill()
+        with self._lock:
+            self._all.discard(worker)
+        self._idle.put(None)
@@ -0,0 +1,202 @@
+"""Fast-start `java` launch profile for short student program runs.
+
+Student programs are tiny Scanner apps, so a run is dominated by JVM startup:
+class loading/verification and JIT warm-up. The fast-start profile
+
+- maps a prebuilt AppCDS archive holding the JDK's default class list plus
+  every class CdsProbe (a representative student program) loads, so Scanner,
+  regex and Formatter come pre-parsed instead of from the jimage,
+- stops JIT at C1 (`-XX:TieredStopAtLevel=1`) and uses SerialGC, which is
+  cheaper for sub-second programs than C2 + G1,
+- caps heap, metaspace and code cache, and runs java under CPU-time,
+  address-space and file-size rlimits so runaway submissions are contained.
+
+Limits are applied through `sh -c 'ulimit ...; exec java ...'` rather than a
+preexec_fn, which is unsafe to fork from the threaded callers in
+utils.execution's async API.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import math
+import os
+import re
+import shlex
+import shutil
+import subprocess
+import threading
+from dataclasses import dataclass, replace
+from functools import lru_cache
+from pathlib import Path
+
+from utils.jvm.build import BUILD_ROOT, JvmBuildError, ensure_built
+
+FAST_START_ARGS = (
+    "-XX:TieredStopAtLevel=1",
+    "-XX:+UseSerialGC",
+    "-XX:-UsePerfData",
+    "-Xss1m",
+    "-XX:ReservedCodeCacheSize=32m",
+    "-XX:CompressedClassSpaceSize=64m",
+    "-XX:MaxMetaspaceSize=128m",
+)
+
+# CdsProbe input: "int double\nline\n"
+PROBE_STDIN = "42 3.5\nHello World again\nextra\n"
+
+_cds_lock = threading.Lock()
+
+
+@dataclass(frozen=True)
+class LaunchProfile:
+    """How to start `java` for one program run.
+
+    The empty profile reproduces a plain `java ClassName`. Limits left as None
+    are not set.
+    """
+
+    jvm_args: tuple[str, ...] = ()
+    heap_mb: int | None = None
+    cpu_grace_seconds: int | None = None  # CPU-time limit = ceil(timeout) + grace
+    address_space_mb: int | None = None
+    file_size_mb: int | None = None
+
+    def command(self, class_name: str, timeout: float, java: str = "java") -> list[str]:
+        """Build the argv for running class_name from the current directory."""
+        java_cmd = [java, *self.jvm_args]
+        if self.heap_mb is not None:
+            java_cmd.append(f"-Xmx{self.heap_mb}m")
+        java_cmd.append(class_name)
+
+        limits = []
+        if self.cpu_grace_seconds is not None:
+            limits.append(f"ulimit -t {math.ceil(timeout) + self.cpu_grace_seconds}")
+        if self.address_space_mb is not None:
+            limits.append(f"ulimit -v {self.address_space_mb * 1024}")
+        if self.file_size_mb is not None:
+            # POSIX ulimit -f counts 512-byte blocks
+            limits.append(f"ulimit -f {self.file_size_mb * 2048}")
+        if not limits or shutil.which(java) is None:
+            # Without the wrapper a missing java still raises FileNotFoundError
+            return java_cmd
+        # A limit the platform refuses (e.g. -v on macOS) is skipped, not fatal
+        script = "; ".join(f"{limit} 2>/dev/null" for limit in limits) + '; exec "$@"'
+        return ["sh", "-c", script, "sh", *java_cmd]
+
+
+PLAIN_PROFILE = LaunchProfile()
+
+# The address-space limit must leave room for the JVM's own reservations
+# (code cache, class space, thread stacks) on top of the heap
+FAST_START_PROFILE = LaunchProfile(
+    jvm_args=FAST_START_ARGS,
+    heap_mb=256,
+    cpu_grace_seconds=2,
+    address_space_mb=2048,
+    file_size_mb=16,
+)
+
+
+@lru_cache(maxsize=None)
+def fast_start_profile(java: str = "java") -> LaunchProfile:
+    """FAST_START_PROFILE plus the AppCDS archive, built on first use (once per process).
+
+    Falls back to the profile without an archive if it cannot be built; the
+    JVM also silently ignores an archive that does not match it (-Xshare:auto).
+    """
+    try:
+        archive = ensure_cds_archive(java)
+    except JvmBuildError:
+        return FAST_START_PROFILE
+    return replace(
+        FAST_START_PROFILE,
+        jvm_args=(*FAST_START_ARGS, "-Xshare:auto", f"-XX:SharedArchiveFile={archive}"),
+    )
+
+
+def ensure_cds_archive(java: str = "java") -> Path:
+    """Build the AppCDS archive for this JDK if needed and return its path.
+
+    Only JDK classes are archived and the archive is dumped with an empty
+    class path, so it stays valid whatever -cp a student run uses.
+    """
+    helpers = ensure_built()
+    version = _java_version(java)
+    digest = hashlib.sha256(f"{version}\0{helpers.name}".encode()).hexdigest()[:16]
+    archive = BUILD_ROOT / f"cds-{digest}.jsa"
+
+    with _cds_lock:
+        if archive.exists():
+            return archive
+
+        BUILD_ROOT.mkdir(parents=True, exist_ok=True)
+        # Per-process scratch names: other processes may be building too
+        scratch = f"cds-{digest}.{os.getpid()}"
+        probe_list = BUILD_ROOT / f"{scratch}.probe.lst"
+        class_list = BUILD_ROOT / f"{scratch}.lst"
+        _run(
+            [
+                java,
+                "-Xshare:off",
+                f"-XX:DumpLoadedClassList={probe_list}",
+                "-cp",
+                str(helpers),
+                "CdsProbe",
+            ],
+            stdin=PROBE_STDIN,
+            what="CDS probe run",
+        )
+
+        # Start from the JDK's own default class list so nothing the default
+        # archive covers is lost, then add what the probe loaded
+        lines = _default_class_list(java)
+        for line in probe_list.read_text(encoding="utf-8").splitlines():
+            if re.match(r"(@lambda-proxy\s+)?CdsProbe\b", line):
+                continue
+            lines.append(line)
+        class_list.write_text("\n".join(lines) + "\n", encoding="utf-8")
+
+        tmp_archive = BUILD_ROOT / f"{scratch}.jsa"
+        _run(
+            [
+                java,
+                "-Xshare:dump",
+                f"-XX:SharedClassListFile={class_list}",
+                f"-XX:SharedArchiveFile={tmp_archive}",
+            ],
+            what="CDS archive dump",
+        )
+        tmp_archive.replace(archive)
+        probe_list.unlink(missing_ok=True)
+        class_list.unlink(missing_ok=True)
+        return archive
+
+
+def _default_class_list(java: str) -> list[str]:
+    result = _run([java, "-XshowSettings:properties", "-version"], what="java -XshowSettings")
+    match = re.search(r"^\s*java\.home = (.+)$", result.stderr, re.MULTILINE)
+    if not match:
+        return []
+    default_list = Path(match.group(1).strip()) / "lib" / "classlist"
+    if not default_list.exists():
+        return []
+    return [
+        line
+        for line in default_list.read_text(encoding="utf-8").splitlines()
+        if line and not line.startswith("#")
+    ]
+
+
+def _java_version(java: str) -> str:
+    return _run([java, "-version"], what="java -version").stderr.strip()
+
+
+def _run(cmd: list[str], what: str, stdin: str = "") -> subprocess.CompletedProcess:
+    try:
+        result = subprocess.run(cmd, input=stdin, capture_output=True, text=True, timeout=120.0)
+    except (FileNotFoundError, subprocess.TimeoutExpired) as e:
+        raise JvmBuildError(f"{what} failed: {e}") from e
+    if result.returncode != 0:
+        raise JvmBuildError(f"{what} failed ({shlex.join(cmd)}):\n{result.stderr[-2000:]}")
+    return result
@@ -0,0 +1,214 @@
+"""Deterministic static detection of structural misconceptions.
+
+Drives StaticDetector: every file is parsed and attributed with the javac Tree
+API in one JVM and matched against rules for the misconceptions that are
+visible in the code itself (a string method called as a statement, a loop
+bound of `<= a.length`, `x ^ 2`, ...). Each rule is tied to one groundtruth id.
+
+Findings are turned into the LLMDetectionResponse shape under the model key
+STATIC_MODEL, so miscons.py can store them in the same layout as the LLM
+detections and analyze.py can score them. A run over an assignment takes
+about 10 seconds, which also makes it usable as a screen before LLM calls.
+"""
+
+from __future__ import annotations
+
+import json
+import subprocess
+import tempfile
+from dataclasses import dataclass
+from pathlib import Path
+from typing import Any
+
+from utils.jvm.build import ensure_built
+
+STATIC_MODEL = "javac-static"
+
+
+class StaticDetectorError(RuntimeError):
+    """Raised when the detector JVM itself fails."""
+
+
+@dataclass(frozen=True)
+class StaticRule:
+    """How a rule's findings are described in the detection output."""
+
+    name: str
+    belief: str
+    gap: str
+    manifestation: str
+    confidence: float
+
+
+RULES: dict[str, StaticRule] = {
+    "NM_MEM_03": StaticRule(
+        "Discarded String Result",
+        "The student believes String methods such as toUpperCase() change the string they are called on.",
+        "Strings are immutable; the method returns a new String, which is discarded here.",
+        "wrong output",
+        0.95,
+    ),
+    "NM_API_01": StaticRule(
+        "Discarded Math Result",
+        "The student believes calling a Math method stores or prints its result somewhere.",
+        "Math methods return a value and change nothing; the call's result is discarded.",
+        "wrong output",
+        0.9,
+    ),
+    "NM_IO_02": StaticRule(
+        "Discarded Scanner Read",
+        "The student believes calling scanner.nextX() fills in a variable by itself.",
+        "The value read is returned, not stored; the variable it was meant for keeps its old value.",
+        "wrong output",
+        0.85,
+    ),
+    "NM_MEM_04": StaticRule(
+        "One-Based Array Indexing",
+        "The student believes the last valid index of an array is its length.",
+        "Array indices run from 0 to length - 1; `<= length` reads one element past the end.",
+        "runtime exception (ArrayIndexOutOfBoundsException)",
+        0.9,
+    ),
+    "NM_SYN_01": StaticRule(
+        "Caret as Exponent",
+        "The student believes `^` raises a number to a power.",
+        "`^` is bitwise XOR in Java; powers need Math.pow or multiplication.",
+        "wrong output",
+        0.95,
+    ),
+    "NM_TYP_02": StaticRule(
+        "Cast After Integer Division",
+        "The student believes casting the result of a division to double recovers the fraction.",
+        "Both operands are integers, so the division truncates before the cast is applied.",
+        "wrong output",
+        0.9,
+    ),
+    "NM_TYP_01": StaticRule(
+        "Integer Division Into a Double",
+        "The student believes storing an integer division in a double keeps the fraction.",
+        "Integer division truncates first; the double only receives the truncated value.",
+        "wrong output",
+        0.75,
+    ),
+    "NM_LOGIC_02": StaticRule(
+        "Indentation-Based Else",
+        "The student believes an else belongs to the if it is indented under.",
+        "An else binds to the nearest unmatched if, whatever the indentation.",
+        "wrong output",
+        0.85,
+    ),
+    "NM_LOGIC_01": StaticRule(
+        "Independent Ifs as Exclusive Branches",
+        "The student believes only one of several consecutive if statements will run.",
+        "Separate ifs are each evaluated; overlapping conditions all fire.",
+        "wrong output",
+        0.7,
+    ),
+    "NM_FLOW_04": StaticRule(
+        "Inner Loop Changes Outer Counter",
+        "The student believes the outer loop counter can be reused or changed inside the inner loop.",
+        "The outer loop continues from whatever value the inner loop left behind.",
+        "wrong output or infinite loop",
+        0.85,
+    ),
+    "NM_FLOW_01": StaticRule(
+        "Accumulator Reset Inside Loop",
+        "The student believes a variable declared inside the loop keeps its value between iterations.",
+        "The declaration runs every iteration and resets the accumulator.",
+        "wrong output",
+        0.8,
+    ),
+    "NM_FLOW_03": StaticRule(
+        "Loop Condition Never Updated",
+        "The student believes the loop condition will change by itself.",
+        "Nothing the condition reads is updated in the body, so the loop never ends once entered.",
+        "infinite loop",
+        0.75,
+    ),
+    "NM_MEM_05": StaticRule(
+        "Swap Without Temporary",
+        "The student believes two assignments exchange two values.",
+        "The first assignment overwrites one value, so both end up equal.",
+        "wrong output",
+        0.9,
+    ),
+    "NM_STATE_01": StaticRule(
+        "Formula Before Input",
+        "The student believes a computed variable updates when its inputs change later.",
+        "The expression is evaluated once, with the values at that point, before they are read.",
+        "wrong output",
+        0.8,
+    ),
+    "NM_MEM_01": StaticRule(
+        "Sorting One of Parallel Arrays",
+        "The student believes sorting one array keeps its parallel arrays aligned.",
+        "Arrays.sort reorders only its argument; the related arrays keep the old order.",
+        "wrong output",
+        0.6,
+    ),
+}
+
+
+def run_static_detector(
+    files: list[tuple[str, str, Path]],
+    java: str = "java",
+) -> dict[str, dict[str, dict[str, Any]]]:
+    """Detect on each (student, question, path).
+
+    Returns a report keyed by student, then question, with parsed, clean
+    (compiles without errors) and findings (rule, line, snippet).
+    """
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        manifest = tmp_path / "files.tsv"
+        manifest.write_text(
+            "".join(f"{student}/{question}\t{path.resolve()}\n" for student, question, path in files),
+            encoding="utf-8",
+        )
+        report_path = tmp_path / "findings.json"
+        cmd = [
+            java,
+            "-XX:+UseSerialGC",
+            "-XX:TieredStopAtLevel=1",
+            "-cp",
+            str(ensure_built()),
+            "StaticDetector",
+            "--manifest",
+            str(manifest),
+            "--report",
+            str(report_path),
+        ]
+        result = subprocess.run(cmd, capture_output=True, text=True)
+        if result.returncode != 0 or not report_path.exists():
+            raise StaticDetectorError(f"StaticDetector failed:\n{result.stderr[-2000:]}")
+        entries = json.loads(report_path.read_text(encoding="utf-8"))["files"]
+
+    report: dict[str, dict[str, dict[str, Any]]] = {}
+    for entry in entries:
+        student, question = entry.pop("key").split("/", 1)
+        report.setdefault(student, {})[question] = entry
+    return report
+
+
+def to_detection(findings: list[dict[str, Any]]) -> dict[str, Any]:
+    """One NotionalMisconception per rule that fired, with every match as evidence."""
+    by_rule: dict[str, list[dict[str, Any]]] = {}
+    for finding in findings:
+        if finding["rule"] in RULES:
+            by_rule.setdefault(finding["rule"], []).append(finding)
+    misconceptions = []
+    for rule_id, matches in by_rule.items():
+        rule = RULES[rule_id]
+        misconceptions.append(
+            {
+                "inferred_category_name": rule.name,
+                "student_thought_process": rule.belief,
+                "conceptual_gap": rule.gap,
+                "error_manifestation": rule.manifestation,
+                "confidence": rule.confidence,
+                "evidence": [
+                    {"line_number": m["line"], "code_snippet": m["snippet"]} for m in matches
+                ],
+            }
+        )
+    return {"misconceptions": misconceptions, "count": len(misconceptions)}
@@ -0,0 +1,179 @@
+"""Line-level execution traces of student programs.
+
+Traced runs go through TracerWorker JVMs started with TraceAgent, which
+instruments each submission's classes as they load and records executed lines
+and local-variable stores into a bounded ring buffer (TraceRecorder). One
+trace file is written per run; read_trace() parses it and format_trace()
+renders the compact per-line form used in prompts and analysis:
+
+    Q1.main
+      L5
+      L6 sum=0
+      L7 i=0
+      L8 sum=3
+      ...
+
+Sources are compiled in-process with -g so stores carry variable names.
+"""
+
+from __future__ import annotations
+
+import tempfile
+from dataclasses import dataclass, field
+from pathlib import Path
+
+from utils.execution import CompileResult, RunResult, compile_source, extract_class_name
+from utils.jvm.build import ensure_agent_jars
+from utils.jvm.compiler import CompilerService
+from utils.jvm.pool import DEFAULT_JVM_ARGS, JvmWorkerPool
+
+# Events kept per run; older events are overwritten (the tail of a runaway
+# loop is usually the interesting part)
+TRACE_CAPACITY = 1 << 16
+
+# format_trace wraps rows after this many stores on the same line
+STORES_PER_ROW = 8
+
+
+@dataclass
+class TraceEvent:
+    kind: str  # "line" or "store"
+    method: str
+    line: int
+    var: str | None = None
+    value: str | None = None
+
+
+@dataclass
+class Trace:
+    events: list[TraceEvent] = field(default_factory=list)
+    total: int = 0  # events recorded, including dropped ones
+    dropped: int = 0  # overwritten by the ring buffer
+
+
+def trace_jvm_args(capacity: int = TRACE_CAPACITY) -> tuple[str, ...]:
+    """JVM options for a worker that loads TraceAgent."""
+    agent = ensure_agent_jars()
+    return (
+        *DEFAULT_JVM_ARGS,
+        f"-javaagent:{agent}=capacity={capacity}",
+    )
+
+
+class TracingPool(JvmWorkerPool):
+    """JvmWorkerPool whose workers trace every run given a trace_path."""
+
+    def __init__(self, size: int | None = None, java: str = "java", capacity: int = TRACE_CAPACITY):
+        super().__init__(size, java, trace_jvm_args(capacity))
+
+
+def trace_source(
+    java_source: str,
+    trace_path: Path,
+    pool: TracingPool,
+    compiler: CompilerService,
+    stdin_input: str = "",
+    timeout: float = 10.0,
+) -> tuple[CompileResult, RunResult | None]:
+    """Compile and run java_source on a tracing worker, writing its trace to trace_path.
+
+    A run that times out still leaves the events recorded up to the timeout.
+    """
+    class_name = extract_class_name(java_source)
+    if not class_name:
+        return CompileResult(success=False, stderr="No class found in source"), None
+
+    with tempfile.TemporaryDirectory() as tmp:
+        tmp_path = Path(tmp)
+        compiled = compile_source(java_source, tmp_path, compiler=compiler)
+        if not compiled.success:
+            return compiled, None
+        return compiled, pool.run(tmp_path, class_name, stdin_input, timeout, trace_path)
+
+
+def read_trace(path: Path) -> Trace:
+    """Parse a TraceRecorder file, resolving store slots to variable names."""
+    methods: dict[str, str] = {}
+    variables: dict[tuple[str, int], list[tuple[int, int, str]]] = {}
+    trace = Trace()
+
+    for raw in Path(path).read_text(encoding="utf-8").splitlines():
+        parts = raw.split("\t")
+        tag = parts[0]
+        if tag == "#trace":
+            fields = dict(p.split("=", 1) for p in parts[2:])
+            trace.total = int(fields["events"])
+            trace.dropped = int(fields["dropped"])
+        elif tag == "M":
+            methods[parts[1]] = _short_method(parts[2])
+        elif tag == "V":
+            key = (parts[1], int(parts[2]))
+            variables.setdefault(key, []).append((int(parts[4]), int(parts[5]), parts[3]))
+        elif tag == "L":
+            trace.events.append(TraceEvent("line", methods.get(parts[1], parts[1]), int(parts[2])))
+        elif tag == "S":
+            line, slot = int(parts[2]), int(parts[3])
+            var = _resolve_var(variables.get((parts[1], slot), []), line) or f"#{slot}"
+            trace.events.append(
+                TraceEvent("store", methods.get(parts[1], parts[1]), line, var, _unescape(parts[4]))
+            )
+    return trace
+
+
+def format_trace(trace: Trace, max_lines: int = 200) -> str:
+    """Render a trace one executed line per row, with that line's stores appended.
+
+    Longer traces keep the first and last max_lines // 2 rows.
+    """
+    rows: list[str] = []
+    method = None
+    row_line = None
+    row_stores = 0
+    for event in trace.events:
+        if event.method != method:
+            method = event.method
+            rows.append(method)
+            row_line = None
+        if event.kind == "line":
+            rows.append(f"  L{event.line}")
+            row_line, row_stores = event.line, 0
+        elif event.line == row_line and row_stores < STORES_PER_ROW:
+            rows[-1] += f" {event.var}={event.value}"
+            row_stores += 1
+        else:
+            # A loop on a single source line only produces stores; wrap them
+            rows.append(f"  L{event.line} {event.var}={event.value}")
+            row_line, row_stores = event.line, 1
+
+    header = []
+    if trace.dropped:
+        header.append(f"(first {trace.dropped} of {trace.total} events not retained)")
+    if len(rows) > max_lines:
+        half = max_lines // 2
+        omitted = len(rows) - 2 * half
+        rows = rows[:half] + [f"  ... {omitted} rows omitted ..."] + rows[-half:]
+    return "\n".join(header + rows)
+
+
+def _resolve_var(scopes: list[tuple[int, int, str]], line: int) -> str | None:
+    for start, end, name in scopes:
+        if start <= line <= end:
+            return name
+    return scopes[0][2] if scopes else None
+
+
+def _short_method(signature: str) -> str:
+    """"Q1.main([Ljava/lang/String;)V" -> "Q1.main"."""
+    return signature.split("(", 1)[0]
+
+
+def _unescape(value: str) -> str:
+    out = []
+    chars = iter(value)
+    for ch in chars:
+        if ch != "\\":
+            out.append(ch)
+            continue
+        nxt = next(chars, "")
+        out.append({"t": "\t", "n": "\n", "r": "\r"}.get(nxt, nxt))
+    return "".join(out)
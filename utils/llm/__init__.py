@@ -4,4 +4,5 @@ __all__ = [
     "openai",
     "anthropic",
     "gemini",
+    "cache",
 ]
@@ -1,9 +1,13 @@
 import os
 from typing import TypeVar
 
-from anthropic import AsyncAnthropic
+from anthropic import AsyncAnthropic, transform_schema
 from dotenv import load_dotenv
 from pydantic import BaseModel
+from tenacity import retry, retry_if_exception, wait_exponential, wait_random
+
+from utils.llm.batch import BatchRequest, describe_error, parse_json_answer
+from utils.llm.ratelimit import ParseFailure, estimate_tokens, is_retryable, limiter, stop_after
 
 load_dotenv()
 
@@ -14,8 +18,9 @@ DEFAULT_MODEL = os.getenv("ANTHROPIC_DEFAULT_MODEL", "claude-haiku-4-5-20251001"
 STRUCTURED_OUTPUTS_BETA = "structured-outputs-2025-11-13"
 
 # Module-level singleton client to reuse connections
-# Using built-in retry with max_retries=5 for rate limit handling
-# The SDK automatically respects retry-after headers and uses exponential backoff
+# SDK retries are off: every attempt goes through the rate limiter (which
+# sees the 429s and honours retry-after), and tenacity retries the calls
+# that is_retryable accepts, re-raising the last error when it gives up
 _client_instance: AsyncAnthropic | None = None
 
 
@@ -24,7 +29,7 @@ def _client() -> AsyncAnthropic:
     if _client_instance is None:
         _client_instance = AsyncAnthropic(
             api_key=os.getenv("ANTHROPIC_API_KEY"),
-            max_retries=5,  # Built-in retry with exponential backoff
+            max_retries=0,
         )
     return _client_instance
 
@@ -57,6 +62,31 @@ def _split_system_and_messages(
     return system_content, filtered_messages
 
 
+def _request_params(messages: list[dict[str, str]], model: str, reasoning: bool) -> dict:
+    """Message parameters shared by live calls and batch requests."""
+    system_content, filtered_messages = _split_system_and_messages(messages)
+
+    params: dict = {
+        "model": model,
+        "max_tokens": 16000 if reasoning else 8192,
+        "messages": filtered_messages,
+    }
+    if reasoning:
+        params["thinking"] = {
+            "type": "enabled",
+            "budget_tokens": 5000,  # Medium effort equivalent
+        }
+    if system_content:
+        params["system"] = system_content
+    return params
+
+
+@retry(
+    retry=retry_if_exception(is_retryable),
+    stop=stop_after(6),
+    wait=wait_exponential(multiplier=1, min=4, max=10) + wait_random(0, 0.4),
+    reraise=True,
+)
 async def get_structured_response(
     messages: list[dict[str, str]],
     response_model: type[T],
@@ -65,25 +95,25 @@ async def get_structured_response(
     if not messages:
         raise ValueError("messages must contain at least one item")
 
-    system_content, filtered_messages = _split_system_and_messages(messages)
-
-    kwargs: dict = {
-        "model": model,
-        "max_tokens": 8192,
-        "messages": filtered_messages,
-        "betas": [STRUCTURED_OUTPUTS_BETA],
-        "output_format": response_model,
-    }
-    if system_content:
-        kwargs["system"] = system_content
-
-    response = await _client().beta.messages.parse(**kwargs)
+    async with limiter("anthropic").slot(estimate_tokens(messages, reasoning=False)) as reservation:
+        response = await _client().beta.messages.parse(
+            **_request_params(messages, model, reasoning=False),
+            betas=[STRUCTURED_OUTPUTS_BETA],
+            output_format=response_model,
+        )
+        reservation.settle(response)
 
     if response.parsed_output is None:
-        raise ValueError("Anthropic response missing parsed output")
+        raise ParseFailure("Anthropic response missing parsed output")
     return response.parsed_output
 
 
+@retry(
+    retry=retry_if_exception(is_retryable),
+    stop=stop_after(6),
+    wait=wait_exponential(multiplier=1, min=4, max=10) + wait_random(0, 0.4),
+    reraise=True,
+)
 async def get_reasoning_response(
     messages: list[dict[str, str]],
     response_model: type[T],
@@ -92,24 +122,73 @@ async def get_reasoning_response(
     if not messages:
         raise ValueError("messages must contain at least one item")
 
-    system_content, filtered_messages = _split_system_and_messages(messages)
-
-    kwargs: dict = {
-        "model": model,
-        "max_tokens": 16000,
-        "messages": filtered_messages,
-        "betas": [STRUCTURED_OUTPUTS_BETA],
-        "output_format": response_model,
-        "thinking": {
-            "type": "enabled",
-            "budget_tokens": 5000,  # Medium effort equivalent
-        },
-    }
-    if system_content:
-        kwargs["system"] = system_content
-
-    response = await _client().beta.messages.parse(**kwargs)
+    async with limiter("anthropic").slot(estimate_tokens(messages, reasoning=True)) as reservation:
+        response = await _client().beta.messages.parse(
+            **_request_params(messages, model, reasoning=True),
+            betas=[STRUCTURED_OUTPUTS_BETA],
+            output_format=response_model,
+        )
+        reservation.settle(response)
 
     if response.parsed_output is None:
-        raise ValueError("Anthropic response missing parsed output")
+        raise ParseFailure("Anthropic response missing parsed output")
     return response.parsed_output
+
+
+# -- batch API ---------------------------------------------------------------
+
+
+async def submit_batch(
+    requests: list[BatchRequest],
+    response_model: type[T],
+    model: str = DEFAULT_MODEL,
+) -> str:
+    """Submit the requests as a Message Batch; returns the batch id."""
+    output_format = {"type": "json_schema", "schema": transform_schema(response_model)}
+    batch = await _client().beta.messages.batches.create(
+        requests=[
+            {
+                "custom_id": request.custom_id,
+                "params": {
+                    **_request_params(request.messages, model, request.reasoning),
+                    "output_format": output_format,
+                },
+            }
+            for request in requests
+        ],
+        betas=[STRUCTURED_OUTPUTS_BETA],
+    )
+    return batch.id
+
+
+async def batch_status(batch_id: str) -> str:
+    """"running" until processing has ended, then "ended"."""
+    batch = await _client().beta.messages.batches.retrieve(
+        batch_id, betas=[STRUCTURED_OUTPUTS_BETA]
+    )
+    return "ended" if batch.processing_status == "ended" else "running"
+
+
+async def batch_results(
+    batch_id: str,
+    requests: list[BatchRequest],
+    response_model: type[T],
+) -> dict[str, T | str]:
+    """custom_id -> parsed response, or why the request has none."""
+    results: dict[str, T | str] = {}
+    entries = await _client().beta.messages.batches.results(
+        batch_id, betas=[STRUCTURED_OUTPUTS_BETA]
+    )
+    async for entry in entries:
+        result = entry.result
+        if result.type != "succeeded":
+            error = getattr(result, "error", None)
+            results[entry.custom_id] = (
+                f"{result.type}: {describe_error(error.model_dump())}" if error else result.type
+            )
+            continue
+        text = "".join(
+            block.text for block in result.message.content if block.type == "text"
+        )
+        results[entry.custom_id] = parse_json_answer(text, response_model)
+    return results
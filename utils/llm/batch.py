@@ -0,0 +1,175 @@
+"""Offline detection through the providers' batch endpoints.
+
+Every prompt of a detection run is known before the first call, so instead of
+live requests behind a concurrency limit they can be submitted as batch jobs,
+which the providers bill at half price and outside the per-minute rate limits:
+
+1. Requests are grouped into one job per (provider, model): OpenAI and Gemini
+   batches are single-model. A request's custom_id is its response cache key
+   (ResponseCache.key), so identical prompts are sent once.
+2. Each client's submit_batch uploads the job (OpenAI: a JSONL file for
+   /v1/responses; Anthropic: Message Batches; Gemini: inlined requests),
+   batch_status polls it, and batch_results parses each answer into the
+   response model, or an error message for the requests that failed.
+3. Submitted jobs are recorded in a state file. A rerun with the same
+   requests, after a crash or a --max-wait that ran out, polls the recorded
+   jobs instead of submitting them again.
+
+Jobs can take up to a day (OpenAI's completion window is 24 h); most finish
+within an hour.
+"""
+
+from __future__ import annotations
+
+import asyncio
+import json
+import time
+from collections.abc import Callable
+from dataclasses import asdict, dataclass, field
+from pathlib import Path
+from types import ModuleType
+from typing import Any, TypeVar
+
+from pydantic import BaseModel
+
+T = TypeVar("T", bound=BaseModel)
+
+DEFAULT_POLL_INTERVAL = 60.0
+DEFAULT_MAX_WAIT = 24 * 3600.0
+
+
+@dataclass(frozen=True)
+class BatchRequest:
+    """One prompt for one model configuration."""
+
+    custom_id: str
+    provider: str
+    model: str
+    reasoning: bool
+    messages: list[dict[str, str]]
+
+
+@dataclass
+class BatchJob:
+    """A submitted job; status is "running", "ended" or "failed" (as batch_status returns)."""
+
+    provider: str
+    model: str
+    batch_id: str
+    custom_ids: list[str]
+    status: str = "running"
+    collected: bool = False
+    submitted: str = field(default_factory=lambda: time.strftime("%Y-%m-%dT%H:%M:%S"))
+
+
+def load_jobs(state_path: Path) -> list[BatchJob]:
+    if not state_path.exists():
+        return []
+    return [BatchJob(**job) for job in json.loads(state_path.read_text())["jobs"]]
+
+
+def save_jobs(state_path: Path, jobs: list[BatchJob]) -> None:
+    state_path.parent.mkdir(parents=True, exist_ok=True)
+    tmp = state_path.with_suffix(".tmp")
+    tmp.write_text(json.dumps({"jobs": [asdict(job) for job in jobs]}, indent=2))
+    tmp.replace(state_path)
+
+
+async def run_batches(
+    requests: list[BatchRequest],
+    clients: dict[str, ModuleType],
+    response_model: type[T],
+    state_path: Path,
+    poll_interval: float = DEFAULT_POLL_INTERVAL,
+    max_wait: float = DEFAULT_MAX_WAIT,
+    on_update: Callable[[BatchJob], None] | None = None,
+) -> dict[str, T | str]:
+    """Run the requests as batch jobs and wait for them.
+
+    Returns custom_id -> parsed response, or an error message for requests
+    that failed or got no result. Requests of jobs still running after
+    max_wait seconds are left out; their jobs stay in the state file, so the
+    next call with the same requests picks them up. on_update is called for
+    every job submitted, resumed or finished.
+    """
+    groups: dict[tuple[str, str], dict[str, BatchRequest]] = {}
+    for request in requests:
+        groups.setdefault((request.provider, request.model), {})[request.custom_id] = request
+
+    recorded = load_jobs(state_path)
+    jobs: list[BatchJob] = []
+    for (provider, model), by_id in groups.items():
+        job = next(
+            (
+                j
+                for j in recorded
+                if (j.provider, j.model) == (provider, model)
+                and set(j.custom_ids) == set(by_id)
+                and not j.collected
+            ),
+            None,
+        )
+        if job is None:
+            batch_id = await clients[provider].submit_batch(
+                list(by_id.values()), response_model, model
+            )
+            job = BatchJob(provider, model, batch_id, list(by_id))
+            recorded.append(job)
+            save_jobs(state_path, recorded)
+        jobs.append(job)
+        if on_update is not None:
+            on_update(job)
+
+    results: dict[str, T | str] = {}
+    deadline = time.monotonic() + max_wait
+    pending = list(jobs)
+    while pending:
+        for job in list(pending):
+            client = clients[job.provider]
+            job.status = await client.batch_status(job.batch_id)
+            if job.status == "running":
+                continue
+            by_id = groups[(job.provider, job.model)]
+            if job.status == "ended":
+                answers = await client.batch_results(
+                    job.batch_id, list(by_id.values()), response_model
+                )
+            else:
+                answers = {}
+            for custom_id in job.custom_ids:
+                results[custom_id] = answers.get(
+                    custom_id, f"no result in {job.provider} batch {job.batch_id} ({job.status})"
+                )
+            job.collected = True
+            save_jobs(state_path, recorded)
+            pending.remove(job)
+            if on_update is not None:
+                on_update(job)
+        if pending:
+            if time.monotonic() >= deadline:
+                break
+            await asyncio.sleep(poll_interval)
+
+    # Keep only jobs that still have results to collect
+    remaining = [job for job in recorded if not job.collected]
+    if remaining:
+        save_jobs(state_path, remaining)
+    else:
+        state_path.unlink(missing_ok=True)
+    return results
+
+
+def parse_json_answer(text: str | None, response_model: type[T]) -> T | str:
+    """A batch answer's JSON text as the response model, or why it is not one."""
+    if not text:
+        return "empty answer"
+    try:
+        return response_model.model_validate_json(text)
+    except ValueError as e:
+        return f"invalid answer: {e}"
+
+
+def describe_error(error: Any) -> str:
+    if isinstance(error, dict):
+        return f"{error.get('code') or error.get('type', 'error')}: {error.get('message', '')}".strip()
+    return str(error)
@@ -0,0 +1,172 @@
+"""Persistent cache of structured LLM responses.
+
+A response is keyed by the SHA-256 of everything that determines it: the
+provider, the model, whether the reasoning variant was used, the messages,
+and the JSON schema of the response model. Rerunning detection with the same
+prompts therefore sends only the calls that are actually new (more students,
+a new strategy, a run that crashed halfway). Layout under the cache root:
+
+    <provider>/<model>/<kk>/<key>.json    one response with its key inputs
+
+Only successful, schema-valid responses are stored; failures are retried on
+the next run. Nothing expires on its own: a change the key does not see (a
+client's reasoning effort, max_tokens) needs an explicit clear(), by
+provider, by model or of everything.
+
+Writes go through a temp file and os.replace, so concurrent runs sharing a
+cache only ever see complete entries.
+"""
+
+from __future__ import annotations
+
+import hashlib
+import json
+import os
+import re
+import shutil
+import tempfile
+import threading
+from datetime import datetime, timezone
+from pathlib import Path
+from typing import Any, TypeVar
+
+from pydantic import BaseModel, ValidationError
+
+DEFAULT_LLM_CACHE_DIR = Path(".cache") / "llm"
+
+T = TypeVar("T", bound=BaseModel)
+
+
+def _sha256(*parts: str) -> str:
+    digest = hashlib.sha256()
+    for part in parts:
+        digest.update(part.encode("utf-8"))
+        digest.update(b"\0")
+    return digest.hexdigest()
+
+
+def _safe(name: str) -> str:
+    """A provider or model name as a single path component."""
+    return re.sub(r"[^\w.-]", "_", name)
+
+
+class ResponseCache:
+    """Thread- and process-safe cache of parsed LLM responses."""
+
+    def __init__(self, root: Path = DEFAULT_LLM_CACHE_DIR):
+        self.root = Path(root)
+        self.hits = 0
+        self.misses = 0
+        self._lock = threading.Lock()
+        self.root.mkdir(parents=True, exist_ok=True)
+
+    # -- keys ---------------------------------------------------------------
+
+    @staticmethod
+    def key(
+        provider: str,
+        model: str,
+        reasoning: bool,
+        messages: list[dict[str, str]],
+        response_model: type[BaseModel],
+    ) -> str:
+        return _sha256(
+            provider,
+            model,
+            "reasoning" if reasoning else "structured",
+            json.dumps(messages, sort_keys=True),
+            json.dumps(response_model.model_json_schema(), sort_keys=True),
+        )
+
+    def _path(self, provider: str, model: str, key: str) -> Path:
+        return self.root / _safe(provider) / _safe(model) / key[:2] / f"{key}.json"
+
+    # -- responses ----------------------------------------------------------
+
+    def get(
+        self,
+        provider: str,
+        model: str,
+        reasoning: bool,
+        messages: list[dict[str, str]],
+        response_model: type[T],
+    ) -> T | None:
+        """The cached response, or None if there is none that still validates."""
+        path = self._path(
+            provider, model, self.key(provider, model, reasoning, messages, response_model)
+        )
+        try:
+            data = json.loads(path.read_text(encoding="utf-8"))
+            response = response_model.model_validate(data["response"])
+        except (FileNotFoundError, json.JSONDecodeError, KeyError, ValidationError):
+            return self._count(hit=False)
+        self._count(hit=True)
+        return response
+
+    def put(
+        self,
+        provider: str,
+        model: str,
+        reasoning: bool,
+        messages: list[dict[str, str]],
+        response: BaseModel,
+    ) -> None:
+        key = self.key(provider, model, reasoning, messages, type(response))
+        self._write_json(
+            self._path(provider, model, key),
+            {
+                "provider": provider,
+                "model": model,
+                "reasoning": reasoning,
+                "created": datetime.now(timezone.utc).isoformat(),
+                "response": response.model_dump(mode="json"),
+            },
+        )
+
+    # -- maintenance --------------------------------------------------------
+
+    def entries(self) -> dict[tuple[str, str], int]:
+        """(provider, model) -> number of cached responses."""
+        counts = {}
+        for model_dir in sorted(p for p in self.root.glob("*/*") if p.is_dir()):
+            counts[(model_dir.parent.name, model_dir.name)] = sum(
+                1 for _ in model_dir.glob("*/*.json")
+            )
+        return counts
+
+    def size_bytes(self) -> int:
+        return sum(p.stat().st_size for p in self.root.rglob("*") if p.is_file())
+
+    def clear(self, provider: str | None = None, model: str | None = None) -> int:
+        """Delete the responses of one provider, one model, or all. Returns entries removed."""
+        removed = 0
+        for (entry_provider, entry_model), count in self.entries().items():
+            if provider is not None and entry_provider != _safe(provider):
+                continue
+            if model is not None and entry_model != _safe(model):
+                continue
+            shutil.rmtree(self.root / entry_provider / entry_model, ignore_errors=True)
+            removed += count
+        for provider_dir in self.root.iterdir():
+            try:
+                provider_dir.rmdir()  # drop providers with no models left
+            except OSError:
+                pass
+        return removed
+
+    # -- internals ----------------------------------------------------------
+
+    def _count(self, hit: bool) -> None:
+        with self._lock:
+            if hit:
+                self.hits += 1
+            else:
+                self.misses += 1
+
+    @staticmethod
+    def _write_json(path: Path, value: Any) -> None:
+        path.parent.mkdir(parents=True, exist_ok=True)
+        fd, tmp = tempfile.mkstemp(prefix=".tmp-", dir=path.parent)
+        with os.fdopen(fd, "w", encoding="utf-8") as f:
+            json.dump(value, f)
+        os.replace(tmp, path)
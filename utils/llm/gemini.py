@@ -5,7 +5,10 @@ from dotenv import load_dotenv
 from google import genai
 from google.genai import types
 from pydantic import BaseModel
-from tenacity import retry, stop_after_attempt, wait_exponential, wait_random
+from tenacity import retry, retry_if_exception, wait_exponential, wait_random
+
+from utils.llm.batch import BatchRequest, parse_json_answer
+from utils.llm.ratelimit import ParseFailure, estimate_tokens, is_retryable, limiter, stop_after
 
 load_dotenv()
 
@@ -124,20 +127,11 @@ def _build_user_contents(messages: list[dict[str, str]]) -> list[types.Content]:
     return contents
 
 
-@retry(
-    stop=stop_after_attempt(10),
-    wait=wait_exponential(multiplier=1, min=4, max=60) + wait_random(0, 1),
-)
-async def get_structured_response(
-    messages: list[dict[str, str]],
-    response_model: type[T],
-    model: str = DEFAULT_MODEL,
-) -> T:
-    if not messages:
-        raise ValueError("messages must contain at least one item")
-
+def _config(
+    messages: list[dict[str, str]], response_model: type[BaseModel], reasoning: bool
+) -> types.GenerateContentConfig:
+    """Generation config shared by live calls and batch requests."""
     system_instruction = _get_system_instruction(messages)
-    contents = _build_user_contents(messages)
 
     # Get JSON schema and strip additionalProperties for Gemini compatibility
     schema = response_model.model_json_schema()
@@ -147,28 +141,50 @@ async def get_structured_response(
         response_mime_type="application/json",
         response_schema=cleaned_schema,
     )
+    if reasoning:
+        config.thinking_config = types.ThinkingConfig(thinking_level="medium")
     if system_instruction:
         config.system_instruction = system_instruction
+    return config
+
+
+@retry(
+    retry=retry_if_exception(is_retryable),
+    stop=stop_after(10),
+    wait=wait_exponential(multiplier=1, min=4, max=60) + wait_random(0, 1),
+    reraise=True,
+)
+async def get_structured_response(
+    messages: list[dict[str, str]],
+    response_model: type[T],
+    model: str = DEFAULT_MODEL,
+) -> T:
+    if not messages:
+        raise ValueError("messages must contain at least one item")
 
     try:
-        response = await _client().aio.models.generate_content(
-            model=model,
-            contents=contents,
-            config=config,
-        )
+        async with limiter("gemini").slot(estimate_tokens(messages)) as reservation:
+            response = await _client().aio.models.generate_content(
+                model=model,
+                contents=_build_user_contents(messages),
+                config=_config(messages, response_model, reasoning=False),
+            )
+            reservation.settle(response)
     except Exception as e:
         # Re-raise to trigger tenacity retry
         raise e
 
     if response.text is None:
-        raise ValueError("Gemini response missing text output")
+        raise ParseFailure("Gemini response missing text output")
 
     return response_model.model_validate_json(response.text)
 
 
 @retry(
-    stop=stop_after_attempt(10),
+    retry=retry_if_exception(is_retryable),
+    stop=stop_after(10),
     wait=wait_exponential(multiplier=1, min=4, max=60) + wait_random(0, 1),
+    reraise=True,
 )
 async def get_reasoning_response(
     messages: list[dict[str, str]],
@@ -178,28 +194,76 @@ async def get_reasoning_response(
     if not messages:
         raise ValueError("messages must contain at least one item")
 
-    system_instruction = _get_system_instruction(messages)
-    contents = _build_user_contents(messages)
+    async with limiter("gemini").slot(estimate_tokens(messages, reasoning=True)) as reservation:
+        response = await _client().aio.models.generate_content(
+            model=model,
+            contents=_build_user_contents(messages),
+            config=_config(messages, response_model, reasoning=True),
+        )
+        reservation.settle(response)
 
-    # Get JSON schema and strip additionalProperties for Gemini compatibility
-    schema = response_model.model_json_schema()
-    cleaned_schema = _strip_additional_properties(schema)
+    if response.text is None:
+        raise ParseFailure("Gemini response missing text output")
+
+    return response_model.model_validate_json(response.text)
 
-    config = types.GenerateContentConfig(
-        response_mime_type="application/json",
-        response_schema=cleaned_schema,
-        thinking_config=types.ThinkingConfig(thinking_level="medium"),
-    )
-    if system_instruction:
-        config.system_instruction = system_instruction
 
-    response = await _client().aio.models.generate_content(
+# -- batch API ---------------------------------------------------------------
+
+# Job states after which a batch has no more results to produce
+_ENDED_STATES = {"JOB_STATE_SUCCEEDED", "JOB_STATE_CANCELLED", "JOB_STATE_EXPIRED"}
+_FAILED_STATES = {"JOB_STATE_FAILED"}
+
+
+async def submit_batch(
+    requests: list[BatchRequest],
+    response_model: type[T],
+    model: str = DEFAULT_MODEL,
+) -> str:
+    """Submit the requests as one inlined batch job; returns the job name."""
+    job = await _client().aio.batches.create(
         model=model,
-        contents=contents,
-        config=config,
+        src=[
+            types.InlinedRequest(
+                contents=_build_user_contents(request.messages),
+                config=_config(request.messages, response_model, request.reasoning),
+                metadata={"custom_id": request.custom_id},
+            )
+            for request in requests
+        ],
+        config=types.CreateBatchJobConfig(display_name=f"detection-{model}"),
     )
+    return job.name
 
-    if response.text is None:
-        raise ValueError("Gemini response missing text output")
 
-    return response_model.model_validate_json(response.text)
+async def batch_status(batch_id: str) -> str:
+    """"running", "ended" (results can be read) or "failed"."""
+    job = await _client().aio.batches.get(name=batch_id)
+    state = getattr(job.state, "name", str(job.state))
+    if state in _ENDED_STATES:
+        return "ended"
+    if state in _FAILED_STATES:
+        return "failed"
+    return "running"
+
+
+async def batch_results(
+    batch_id: str,
+    requests: list[BatchRequest],
+    response_model: type[T],
+) -> dict[str, T | str]:
+    """custom_id -> parsed response, or why the request has none.
+
+    Inlined responses come back in request order.
+    """
+    job = await _client().aio.batches.get(name=batch_id)
+    responses = (job.dest.inlined_responses if job.dest else None) or []
+    results: dict[str, T | str] = {}
+    for request, inlined in zip(requests, responses):
+        if inlined.error is not None:
+            results[request.custom_id] = f"error: {inlined.error.message or inlined.error.code}"
+        elif inlined.response is None:
+            results[request.custom_id] = "no response"
+        else:
+            results[request.custom_id] = parse_json_answer(inlined.response.text, response_model)
+    return results
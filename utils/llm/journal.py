@@ -0,0 +1,94 @@
+"""Run journal of detection cells: one (student, question, strategy, model) each.
+
+Every model call a detection run makes ends in a record appended to
+<output>/_journal.jsonl: "done" with the number of misconceptions found, or
+"error" with the provider's error. The file is append-only and written one
+line per cell as results come in, so a run that crashes or is interrupted
+leaves an accurate account of what finished. `miscons.py resume` replays it
+to skip the cells that are done and retry the ones that failed or never ran.
+
+The last record of a cell wins. A line cut off by a crash is ignored.
+"""
+
+from __future__ import annotations
+
+import json
+from collections import Counter
+from datetime import datetime, timezone
+from pathlib import Path
+from typing import Any
+
+DONE = "done"
+ERROR = "error"
+
+Cell = tuple[str, str, str, str]  # (student, question, strategy, model key)
+
+
+def journal_path(output_dir: Path) -> Path:
+    return output_dir / "_journal.jsonl"
+
+
+class RunJournal:
+    """Cell statuses of the runs into one output directory."""
+
+    def __init__(self, path: Path):
+        self.path = Path(path)
+        self.cells: dict[Cell, dict[str, Any]] = {}
+        if self.path.exists():
+            for line in self.path.read_text(encoding="utf-8").splitlines():
+                try:
+                    record = json.loads(line)
+                except json.JSONDecodeError:
+                    continue
+                self.cells[self._cell(record)] = record
+
+    @staticmethod
+    def _cell(record: dict[str, Any]) -> Cell:
+        return (record["student"], record["question"], record["strategy"], record["model"])
+
+    def status(self, student: str, question: str, strategy: str, model: str) -> str | None:
+        """DONE, ERROR, or None for a cell no run has finished."""
+        record = self.cells.get((student, question, strategy, model))
+        return record["status"] if record else None
+
+    def record(
+        self,
+        student: str,
+        question: str,
+        strategy: str,
+        model: str,
+        status: str,
+        count: int | None = None,
+        error: str | None = None,
+    ) -> None:
+        record: dict[str, Any] = {
+            "student": student,
+            "question": question,
+            "strategy": strategy,
+            "model": model,
+            "status": status,
+            "timestamp": datetime.now(timezone.utc).isoformat(),
+        }
+        if count is not None:
+            record["count"] = count
+        if error is not None:
+            record["error"] = error
+        self.path.parent.mkdir(parents=True, exist_ok=True)
+        with self.path.open("a", encoding="utf-8") as f:
+            f.write(json.dumps(record) + "\n")
+        self.cells[self._cell(record)] = record
+
+    def summary(self, strategy: str | None = None) -> Counter[str]:
+        """Cells per status, of one strategy or all."""
+        return Counter(
+            record["status"]
+            for (_, _, cell_strategy, _), record in self.cells.items()
+            if strategy is None or cell_strategy == strategy
+        )
+
+    def errors(self, strategy: str | None = None) -> list[dict[str, Any]]:
+        return [
+            record
+            for (_, _, cell_strategy, _), record in sorted(self.cells.items())
+            if record["status"] == ERROR and (strategy is None or cell_strategy == strategy)
+        ]
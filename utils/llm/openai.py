@@ -1,10 +1,14 @@
+import json
 import os
 from typing import TypeVar
 
 from dotenv import load_dotenv
-from openai import AsyncOpenAI
+from openai import AsyncOpenAI, pydantic_function_tool
 from pydantic import BaseModel
-from tenacity import retry, stop_after_attempt, wait_exponential, wait_random
+from tenacity import retry, retry_if_exception, wait_exponential, wait_random
+
+from utils.llm.batch import BatchRequest, describe_error, parse_json_answer
+from utils.llm.ratelimit import ParseFailure, estimate_tokens, is_retryable, limiter, stop_after
 
 load_dotenv()
 
@@ -12,13 +16,16 @@ T = TypeVar("T", bound=BaseModel)
 DEFAULT_MODEL = os.getenv("OPENAI_DEFAULT_MODEL", "gpt-5.2-2025-12-11")
 
 # Module-level singleton client to reuse connections and avoid cleanup issues
+# SDK retries are off: every attempt goes through the rate limiter (which
+# sees the 429s and honours retry-after), and tenacity retries the calls
+# that is_retryable accepts, re-raising the last error when it gives up
 _client_instance: AsyncOpenAI | None = None
 
 
 def _client() -> AsyncOpenAI:
     global _client_instance
     if _client_instance is None:
-        _client_instance = AsyncOpenAI(api_key=os.getenv("OPENAI_API_KEY"))
+        _client_instance = AsyncOpenAI(api_key=os.getenv("OPENAI_API_KEY"), max_retries=0)
     return _client_instance
 
 
@@ -31,8 +38,10 @@ async def cleanup() -> None:
 
 
 @retry(
-    stop=stop_after_attempt(3),
+    retry=retry_if_exception(is_retryable),
+    stop=stop_after(6),
     wait=wait_exponential(multiplier=1, min=4, max=10) + wait_random(0, 0.4),
+    reraise=True,
 )
 async def get_structured_response(
     messages: list[dict[str, str]],
@@ -42,19 +51,23 @@ async def get_structured_response(
     if not messages:
         raise ValueError("messages must contain at least one item")
 
-    response = await _client().responses.parse(
-        model=model,
-        input=messages,
-        text_format=response_model,
-    )
+    async with limiter("openai").slot(estimate_tokens(messages)) as reservation:
+        response = await _client().responses.parse(
+            model=model,
+            input=messages,
+            text_format=response_model,
+        )
+        reservation.settle(response)
     if response.output_parsed is None:
-        raise ValueError("OpenAI response missing parsed output")
+        raise ParseFailure("OpenAI response missing parsed output")
     return response.output_parsed
 
 
 @retry(
-    stop=stop_after_attempt(3),
+    retry=retry_if_exception(is_retryable),
+    stop=stop_after(6),
     wait=wait_exponential(multiplier=1, min=4, max=10) + wait_random(0, 0.4),
+    reraise=True,
 )
 async def get_reasoning_response(
     messages: list[dict[str, str]],
@@ -64,12 +77,104 @@ async def get_reasoning_response(
     if not messages:
         raise ValueError("messages must contain at least one item")
 
-    response = await _client().responses.parse(
-        model=model,
-        input=messages,
-        text_format=response_model,
-        reasoning={"effort": "medium"},
-    )
+    async with limiter("openai").slot(estimate_tokens(messages, reasoning=True)) as reservation:
+        response = await _client().responses.parse(
+            model=model,
+            input=messages,
+            text_format=response_model,
+            reasoning={"effort": "medium"},
+        )
+        reservation.settle(response)
     if response.output_parsed is None:
-        raise ValueError("OpenAI response missing parsed output")
+        raise ParseFailure("OpenAI response missing parsed output")
     return response.output_parsed
+
+
+# -- batch API ---------------------------------------------------------------
+
+
+async def submit_batch(
+    requests: list[BatchRequest],
+    response_model: type[T],
+    model: str = DEFAULT_MODEL,
+) -> str:
+    """Upload the requests as a /v1/responses batch; returns the batch id."""
+    # The SDK's public pydantic helper builds the same strict schema that
+    # responses.parse sends for text_format
+    schema = pydantic_function_tool(response_model)["function"]["parameters"]
+    text_format = {
+        "format": {
+            "type": "json_schema",
+            "name": response_model.__name__,
+            "schema": schema,
+            "strict": True,
+        }
+    }
+    lines = []
+    for request in requests:
+        body: dict = {"model": model, "input": request.messages, "text": text_format}
+        if request.reasoning:
+            body["reasoning"] = {"effort": "medium"}
+        lines.append(
+            json.dumps(
+                {
+                    "custom_id": request.custom_id,
+                    "method": "POST",
+                    "url": "/v1/responses",
+                    "body": body,
+                }
+            )
+        )
+    batch_file = await _client().files.create(
+        file=("batch.jsonl", "\n".join(lines).encode("utf-8")), purpose="batch"
+    )
+    batch = await _client().batches.create(
+        input_file_id=batch_file.id, endpoint="/v1/responses", completion_window="24h"
+    )
+    return batch.id
+
+
+async def batch_status(batch_id: str) -> str:
+    """"running", "ended" (results, possibly partial, can be read) or "failed"."""
+    batch = await _client().batches.retrieve(batch_id)
+    if batch.status in ("completed", "expired", "cancelled"):
+        return "ended"
+    if batch.status == "failed":
+        return "failed"
+    return "running"
+
+
+async def batch_results(
+    batch_id: str,
+    requests: list[BatchRequest],
+    response_model: type[T],
+) -> dict[str, T | str]:
+    """custom_id -> parsed response, or the error of a request that failed."""
+    batch = await _client().batches.retrieve(batch_id)
+    results: dict[str, T | str] = {}
+    for file_id in (batch.output_file_id, batch.error_file_id):
+        if not file_id:
+            continue
+        content = await _client().files.content(file_id)
+        for line in content.text.splitlines():
+            if line.strip():
+                entry = json.loads(line)
+                results[entry["custom_id"]] = _batch_answer(entry, response_model)
+    return results
+
+
+def _batch_answer(entry: dict, response_model: type[T]) -> T | str:
+    if entry.get("error"):
+        return describe_error(entry["error"])
+    response = entry.get("response") or {}
+    body = response.get("body") or {}
+    if response.get("status_code") != 200:
+        return describe_error(body.get("error") or f"HTTP {response.get('status_code')}")
+    text = "".join(
+        part.get("text", "")
+        for item in body.get("output", [])
+        if item.get("type") == "message"
+        for part in item.get("content", [])
+        if part.get("type") == "output_text"
+    )
+    return parse_json_answer(text, response_model)
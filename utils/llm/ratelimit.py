@@ -0,0 +1,319 @@
+"""Per-provider request pacing: token buckets for RPM and TPM, AIMD concurrency.
+
+Detection fans every file out to all providers at once, so a single global
+concurrency limit runs OpenAI and Gemini at Anthropic's pace. Each provider
+gets its own AdaptiveLimiter instead:
+
+- two token buckets hold it under its requests-per-minute and
+  tokens-per-minute limits (a request reserves an estimate from the prompt
+  length plus an expected answer size, and the reservation is corrected to
+  the usage the response reports);
+- its concurrency limit grows by one per limit-many successful calls
+  (additive increase) and halves on a 429 (multiplicative decrease); calls
+  that were already in flight when the limit was cut do not cut it again;
+- after a 429 no new call starts before the retry-after the provider sent
+  (or DEFAULT_BACKOFF seconds).
+
+Waiting calls sleep until the budget has refilled or a slot is released,
+rather than polling. The clients' tenacity decorators take is_retryable and
+stop_after from here.
+
+Defaults are conservative Tier 1 figures for the models in use and can be
+overridden per provider with <PROVIDER>_RPM, <PROVIDER>_TPM and
+<PROVIDER>_MAX_CONCURRENCY (e.g. ANTHROPIC_RPM=1000 on a higher tier).
+
+The only asyncio objects a limiter holds are the futures of calls waiting
+for a slot, each created on that call's loop, so the limiters outlive the
+event loops of successive asyncio.run calls.
+"""
+
+from __future__ import annotations
+
+import asyncio
+import json
+import os
+import time
+from collections.abc import AsyncIterator, Callable
+from contextlib import asynccontextmanager
+from dataclasses import dataclass
+from typing import Any
+
+# (requests per minute, tokens per minute, maximum concurrency)
+DEFAULT_LIMITS = {
+    "openai": (500, 500_000, 32),
+    "anthropic": (50, 50_000, 8),
+    "gemini": (1_000, 1_000_000, 32),
+}
+
+INITIAL_CONCURRENCY = 4
+# Pause after a 429 that came without retry-after, in seconds
+DEFAULT_BACKOFF = 5.0
+# Attempts for a call whose answer does not parse against the schema; a new
+# sample often does, but not reliably enough to spend every attempt on it
+PARSE_ATTEMPTS = 3
+# Expected answer size in tokens; reasoning answers include the thinking
+OUTPUT_TOKENS = 1_500
+REASONING_OUTPUT_TOKENS = 6_000
+
+
+class TokenBucket:
+    """capacity units, refilled continuously at capacity per minute."""
+
+    def __init__(self, per_minute: float):
+        self.capacity = float(per_minute)
+        self.rate = per_minute / 60.0
+        self.level = self.capacity
+        self.updated = time.monotonic()
+
+    def _refill(self, now: float) -> None:
+        self.level = min(self.capacity, self.level + (now - self.updated) * self.rate)
+        self.updated = now
+
+    def wait_time(self, amount: float, now: float) -> float:
+        self._refill(now)
+        return 0.0 if self.level >= amount else (amount - self.level) / self.rate
+
+    def take(self, amount: float) -> None:
+        self.level -= amount
+
+    def give(self, amount: float) -> None:
+        """Return unused units (or, negative, charge more), never above capacity."""
+        self.level = min(self.capacity, self.level + amount)
+
+
+@dataclass
+class LimiterStats:
+    calls: int = 0
+    rate_limited: int = 0
+    waited_s: float = 0.0
+
+
+def is_rate_limited(error: BaseException) -> bool:
+    """A 429 from any of the SDKs (status_code on OpenAI/Anthropic, code on google-genai)."""
+    return getattr(error, "status_code", None) == 429 or getattr(error, "code", None) == 429
+
+
+class ParseFailure(ValueError):
+    """A response without a usable answer (no parsed output or text)."""
+
+
+def is_parse_failure(error: BaseException | None) -> bool:
+    """An answer that did not fit the schema: ParseFailure, pydantic's ValidationError, bad JSON."""
+    if isinstance(error, (ParseFailure, json.JSONDecodeError)):
+        return True
+    return error is not None and any(
+        cls.__name__ == "ValidationError" for cls in type(error).__mro__
+    )
+
+
+def is_retryable(error: BaseException) -> bool:
+    """Whether a failed call is worth another attempt.
+
+    Rate limits (429), request timeouts (408), overloaded or failing servers
+    (5xx, including Anthropic's 529) and lost connections are. Connection
+    errors arrive as APIConnectionError from OpenAI/Anthropic and as httpx's
+    TransportError from google-genai. So is an answer that does not parse
+    (see is_parse_failure), for up to PARSE_ATTEMPTS attempts (see
+    stop_after). Anything else, such as a 400, would fail the same way again.
+    """
+    status = getattr(error, "status_code", None) or getattr(error, "code", None)
+    if isinstance(status, int):
+        return status in (408, 429) or status >= 500
+    if isinstance(error, (ConnectionError, TimeoutError)) or is_parse_failure(error):
+        return True
+    return any(cls.__name__ in ("APIConnectionError", "TransportError") for cls in type(error).__mro__)
+
+
+def stop_after(
+    attempts: int, parse_attempts: int = PARSE_ATTEMPTS
+) -> Callable[[Any], bool]:
+    """tenacity stop condition: `attempts` in all, parse_attempts if the answer did not parse."""
+
+    def stop(retry_state: Any) -> bool:
+        outcome = retry_state.outcome
+        error = outcome.exception() if outcome is not None and outcome.failed else None
+        limit = min(attempts, parse_attempts) if is_parse_failure(error) else attempts
+        return retry_state.attempt_number >= limit
+
+    return stop
+
+
+def retry_after(error: BaseException) -> float | None:
+    """The retry-after header of a rate-limit error, in seconds, if it sent one."""
+    response = getattr(error, "response", None)
+    headers = getattr(response, "headers", None) or {}
+    for name in ("retry-after-ms", "retry-after"):
+        value = headers.get(name)
+        if value is None:
+            continue
+        try:
+            seconds = float(value)
+        except ValueError:
+            continue
+        return seconds / 1000.0 if name == "retry-after-ms" else seconds
+    return None
+
+
+def usage_tokens(response: object) -> int | None:
+    """Tokens a response reports it used, prompt and answer (thinking included), if any.
+
+    OpenAI reports usage.total_tokens, Anthropic usage.input_tokens and
+    output_tokens, google-genai usage_metadata.total_token_count.
+    """
+    usage = getattr(response, "usage", None)
+    if usage is not None:
+        total = getattr(usage, "total_tokens", None)
+        if isinstance(total, int):
+            return total
+        parts = [getattr(usage, name, None) for name in ("input_tokens", "output_tokens")]
+        if all(isinstance(part, int) for part in parts):
+            return sum(parts)
+    total = getattr(getattr(response, "usage_metadata", None), "total_token_count", None)
+    return total if isinstance(total, int) else None
+
+
+class Reservation:
+    """The tokens a call reserved from its provider's per-minute budget."""
+
+    def __init__(self, bucket: TokenBucket, tokens: float):
+        self.bucket = bucket
+        self.tokens = tokens
+
+    def settle(self, response: object) -> None:
+        """Correct the reservation to the usage the response reports.
+
+        The estimate assumes a full-size answer, so most calls give tokens
+        back; one that used more than estimated is charged the difference.
+        """
+        used = usage_tokens(response)
+        if used is not None:
+            self.bucket.give(self.tokens - used)
+            self.tokens = used
+
+
+class AdaptiveLimiter:
+    """Paces one provider's calls.
+
+    Use `async with limiter.slot(tokens) as reservation:` around each call and
+    pass the response to reservation.settle().
+    """
+
+    def __init__(
+        self,
+        provider: str,
+        rpm: int,
+        tpm: int,
+        max_concurrency: int,
+        initial_concurrency: int = INITIAL_CONCURRENCY,
+    ):
+        self.provider = provider
+        self.requests = TokenBucket(rpm)
+        self.tokens = TokenBucket(tpm)
+        self.max_concurrency = max_concurrency
+        self.limit = float(min(initial_concurrency, max_concurrency))
+        self.in_flight = 0
+        self.paused_until = 0.0
+        self.epoch = 0
+        self.stats = LimiterStats()
+        # Calls waiting for a concurrency slot; release() wakes them
+        self._waiters: list[asyncio.Future[None]] = []
+
+    async def acquire(self, tokens: float) -> int:
+        """Wait for a slot and budget; returns the epoch the call started in."""
+        tokens = min(tokens, self.tokens.capacity)
+        started = time.monotonic()
+        while True:
+            now = time.monotonic()
+            wait = self.paused_until - now
+            if wait <= 0 and self.in_flight >= int(self.limit):
+                await self._slot_released()
+                continue
+            if wait <= 0:
+                wait = max(self.requests.wait_time(1, now), self.tokens.wait_time(tokens, now))
+            if wait <= 0:
+                self.requests.take(1)
+                self.tokens.take(tokens)
+                self.in_flight += 1
+                self.stats.calls += 1
+                self.stats.waited_s += now - started
+                return self.epoch
+            await asyncio.sleep(wait)
+
+    async def _slot_released(self) -> None:
+        """Sleep until release() frees a concurrency slot."""
+        waiter = asyncio.get_running_loop().create_future()
+        self._waiters.append(waiter)
+        try:
+            await waiter
+        finally:
+            if waiter in self._waiters:
+                self._waiters.remove(waiter)
+
+    def _wake_waiters(self) -> None:
+        free = int(self.limit) - self.in_flight
+        while free > 0 and self._waiters:
+            waiter = self._waiters.pop(0)
+            # A waiter left behind by an earlier asyncio.run has a closed loop
+            if not waiter.done() and not waiter.get_loop().is_closed():
+                waiter.set_result(None)
+                free -= 1
+
+    def release(self, epoch: int, error: BaseException | None = None) -> None:
+        self.in_flight -= 1
+        try:
+            self._update(epoch, error)
+        finally:
+            self._wake_waiters()
+
+    def _update(self, epoch: int, error: BaseException | None) -> None:
+        if error is None:
+            self.limit = min(float(self.max_concurrency), self.limit + 1.0 / self.limit)
+            return
+        if not is_rate_limited(error):
+            return
+        self.stats.rate_limited += 1
+        if epoch == self.epoch:
+            self.limit = max(1.0, self.limit / 2.0)
+            self.epoch += 1
+        pause = retry_after(error)
+        self.paused_until = max(
+            self.paused_until, time.monotonic() + (DEFAULT_BACKOFF if pause is None else pause)
+        )
+
+    @asynccontextmanager
+    async def slot(self, tokens: float) -> AsyncIterator[Reservation]:
+        epoch = await self.acquire(tokens)
+        try:
+            yield Reservation(self.tokens, min(tokens, self.tokens.capacity))
+        except BaseException as e:
+            self.release(epoch, e)
+            raise
+        self.release(epoch)
+
+
+_LIMITERS: dict[str, AdaptiveLimiter] = {}
+
+
+def limiter(provider: str) -> AdaptiveLimiter:
+    """The process-wide limiter of a provider, created from its (overridable) defaults."""
+    if provider not in _LIMITERS:
+        rpm, tpm, max_concurrency = DEFAULT_LIMITS[provider]
+        prefix = provider.upper()
+        _LIMITERS[provider] = AdaptiveLimiter(
+            provider,
+            rpm=int(os.getenv(f"{prefix}_RPM", rpm)),
+            tpm=int(os.getenv(f"{prefix}_TPM", tpm)),
+            max_concurrency=int(os.getenv(f"{prefix}_MAX_CONCURRENCY", max_concurrency)),
+        )
+    return _LIMITERS[provider]
+
+
+def limiters() -> dict[str, AdaptiveLimiter]:
+    """The limiters used so far in this process."""
+    return dict(_LIMITERS)
+
+
+def estimate_tokens(messages: list[dict[str, str]], reasoning: bool = False) -> int:
+    """Prompt tokens (about 4 characters each) plus the expected answer."""
+    prompt = sum(len(m.get("content", "")) for m in messages) // 4
+    return prompt + (REASONING_OUTPUT_TOKENS if reasoning else OUTPUT_TOKENS)